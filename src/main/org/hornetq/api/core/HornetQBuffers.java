@@ -80,6 +80,26 @@ public class HornetQBuffers
       return new ChannelBufferWrapper(ChannelBuffers.wrappedBuffer(underlying));
    }
 
+   /**
+    * Creates a HornetQBuffer made of the readable bytes of the given buffers, without copying them
+    * 
+    * The content of the buffers is shared: changes on them are visible on the created buffer
+    * 
+    * @param buffers the buffers to compose
+    * @return a HornetQBuffer composed of the readable bytes of the given buffers
+    */
+   public static HornetQBuffer wrappedBuffer(final HornetQBuffer... buffers)
+   {
+      ChannelBuffer[] channelBuffers = new ChannelBuffer[buffers.length];
+
+      for (int i = 0; i < buffers.length; i++)
+      {
+         channelBuffers[i] = buffers[i].channelBuffer();
+      }
+
+      return new ChannelBufferWrapper(ChannelBuffers.wrappedBuffer(channelBuffers));
+   }
+
    /**
     * Creates a <em>fixed</em> HornetQBuffer of the given size
     * 
@@ -58,6 +58,26 @@ public interface AddressControl
     */
    long getNumberOfBytesPerPage() throws Exception;
 
+   /**
+    * Returns the number of lookups on the page cache of this address which found the page already decoded.
+    */
+   long getPageCacheHits() throws Exception;
+
+   /**
+    * Returns the number of lookups on the page cache of this address which had to read the page from disk.
+    */
+   long getPageCacheMisses() throws Exception;
+
+   /**
+    * Returns the number of pages evicted from the page cache of this address to keep it within its limits.
+    */
+   long getPageCacheEvictions() throws Exception;
+
+   /**
+    * Returns the size in bytes of the decoded messages held by the page cache of this address.
+    */
+   long getPageCacheSizeBytes() throws Exception;
+
    /**
     * Returns the names of all bindings (both queues and diverts) bound to this address
     */
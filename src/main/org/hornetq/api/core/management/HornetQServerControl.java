@@ -129,6 +129,18 @@ public interface HornetQServerControl
     */
    int getJournalBufferTimeout();
 
+   /**
+    * Returns the timeout (in nanoseconds) currently used to flush internal buffers on the journal.
+    * It differs from {@link #getJournalBufferTimeout()} only when the journal buffer is adaptive.
+    */
+   int getJournalCurrentBufferTimeout();
+
+   /**
+    * Returns the average time (in nanoseconds) taken to sync the journal.
+    * It is only measured when the journal buffer is adaptive, 0 otherwise.
+    */
+   long getJournalAverageSyncLatency();
+
    /**
     * do any clients failover on a server shutdown
     */
@@ -150,6 +162,41 @@ public interface HornetQServerControl
     */
    int getJournalCompactPercentage();
 
+   /**
+    * Returns the maximum number of bytes per second read and written while compacting the journal (-1 means no limit).
+    */
+   int getJournalCompactMaxRate();
+
+   /**
+    * Returns the maximum number of journal files, starting from the oldest ones, read by each compacting (-1 means every file).
+    */
+   int getJournalCompactMaxFiles();
+
+   /**
+    * Returns the number of times the message journal was compacted since this server started.
+    */
+   long getJournalCompactCount();
+
+   /**
+    * Returns the number of bytes of journal files released by compacting since this server started.
+    */
+   long getJournalCompactReclaimedBytes();
+
+   /**
+    * Returns the duration in milliseconds of the last compaction of the message journal.
+    */
+   long getLastJournalCompactDuration();
+
+   /**
+    * Returns the number of journal files read by the current (or last) compaction.
+    */
+   int getJournalCompactFilesToProcess();
+
+   /**
+    * Returns the number of journal files already read by the current (or last) compaction.
+    */
+   int getJournalCompactFilesProcessed();
+
    /**
     * Returns whether this server is using persistence and store data.
     */
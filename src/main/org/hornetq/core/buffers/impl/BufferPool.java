@@ -0,0 +1,175 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.buffers.impl;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+
+/**
+ * A pool of self-expanding buffers of one size, used by the connections for the packets they encode and write.
+ *
+ * A buffer is acquired when a packet is encoded and released once the connection is done with it, usually when the
+ * write completes. Buffers that are never released are just collected, and buffers that grew over the pooled size
+ * are not taken back, so the pool never holds more than maxBuffers buffers of bufferSize.
+ */
+public class BufferPool
+{
+   // Constants -----------------------------------------------------
+
+   // Attributes ----------------------------------------------------
+
+   private final int bufferSize;
+
+   private final BlockingQueue<PooledBuffer> buffers;
+
+   private final AtomicLong allocations = new AtomicLong(0);
+
+   private final AtomicLong hits = new AtomicLong(0);
+
+   // Static --------------------------------------------------------
+
+   /**
+    * Returns the buffer to the pool it was acquired from. Buffers that weren't acquired from a pool are ignored.
+    * The buffer must not be used after it's released.
+    */
+   public static void release(final HornetQBuffer buffer)
+   {
+      if (buffer instanceof PooledBuffer)
+      {
+         PooledBuffer pooled = (PooledBuffer)buffer;
+
+         pooled.pool.release(pooled);
+      }
+   }
+
+   public static boolean isPooled(final HornetQBuffer buffer)
+   {
+      return buffer instanceof PooledBuffer;
+   }
+
+   // Constructors --------------------------------------------------
+
+   public BufferPool(final int bufferSize, final int maxBuffers)
+   {
+      this.bufferSize = bufferSize;
+
+      buffers = new ArrayBlockingQueue<PooledBuffer>(maxBuffers);
+   }
+
+   // Public --------------------------------------------------------
+
+   /**
+    * A buffer with the given initial size. Only buffers of the pooled size are taken from the pool, any other size is
+    * just allocated.
+    */
+   public HornetQBuffer acquire(final int size)
+   {
+      if (size != bufferSize)
+      {
+         allocations.incrementAndGet();
+
+         return new ChannelBufferWrapper(ChannelBuffers.dynamicBuffer(size));
+      }
+
+      PooledBuffer buffer = buffers.poll();
+
+      if (buffer == null)
+      {
+         allocations.incrementAndGet();
+
+         return new PooledBuffer(this, ChannelBuffers.dynamicBuffer(bufferSize));
+      }
+      else
+      {
+         hits.incrementAndGet();
+
+         buffer.released = false;
+
+         return buffer;
+      }
+   }
+
+   public int getBufferSize()
+   {
+      return bufferSize;
+   }
+
+   /** The buffers currently held by the pool */
+   public int getPooledBuffers()
+   {
+      return buffers.size();
+   }
+
+   /** The buffers allocated because the pool was empty or the size wasn't pooled */
+   public long getAllocations()
+   {
+      return allocations.get();
+   }
+
+   /** The buffers reused from the pool */
+   public long getHits()
+   {
+      return hits.get();
+   }
+
+   @Override
+   public String toString()
+   {
+      return "BufferPool[bufferSize=" + bufferSize +
+             ", pooled=" +
+             buffers.size() +
+             ", allocations=" +
+             allocations +
+             ", hits=" +
+             hits +
+             "]";
+   }
+
+   // Private -------------------------------------------------------
+
+   private void release(final PooledBuffer buffer)
+   {
+      if (buffer.released || buffer.capacity() != bufferSize)
+      {
+         return;
+      }
+
+      buffer.released = true;
+
+      buffer.clear();
+
+      buffers.offer(buffer);
+   }
+
+   // Inner classes -------------------------------------------------
+
+   private static final class PooledBuffer extends ChannelBufferWrapper
+   {
+      private final BufferPool pool;
+
+      private boolean released;
+
+      PooledBuffer(final BufferPool pool, final ChannelBuffer buffer)
+      {
+         super(buffer);
+
+         this.pool = pool;
+      }
+   }
+}
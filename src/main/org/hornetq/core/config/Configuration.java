@@ -567,6 +567,45 @@ public interface Configuration extends Serializable
     */
    void setJournalCompactPercentage(int percentage);
 
+   /**
+    * Returns the maximum rate, in bytes per second, at which the journal is read and written while compacting.
+    * <br>
+    * Default value is {@value org.hornetq.core.config.impl.ConfigurationImpl#DEFAULT_JOURNAL_COMPACT_MAX_RATE} (no limit).
+    */
+   int getJournalCompactMaxRate();
+
+   /**
+    * Sets the maximum rate, in bytes per second, at which the journal is read and written while compacting.
+    * -1 means no limit.
+    */
+   void setJournalCompactMaxRate(int maxRate);
+
+   /**
+    * Returns the maximum number of journal files, starting from the oldest ones, read by each compacting.
+    * <br>
+    * Default value is {@value org.hornetq.core.config.impl.ConfigurationImpl#DEFAULT_JOURNAL_COMPACT_MAX_FILES} (every file).
+    */
+   int getJournalCompactMaxFiles();
+
+   /**
+    * Sets the maximum number of journal files, starting from the oldest ones, read by each compacting.
+    * -1 means every file.
+    */
+   void setJournalCompactMaxFiles(int maxFiles);
+
+   /**
+    * Returns the number of journal files decoded concurrently while the journal is loaded.
+    * <br>
+    * Default value is {@value org.hornetq.core.config.impl.ConfigurationImpl#DEFAULT_JOURNAL_LOAD_PARALLELISM}.
+    */
+   int getJournalLoadParallelism();
+
+   /**
+    * Sets the number of journal files decoded concurrently while the journal is loaded.
+    * 1 reads the files one after the other.
+    */
+   void setJournalLoadParallelism(int parallelism);
+
    /**
     * Returns the number of journal files to pre-create.
     * <br>
@@ -653,6 +692,19 @@ public interface Configuration extends Serializable
     */
    void setJournalBufferSize_NIO(int journalBufferSize);
 
+   /**
+    * Returns whether the journal buffer timeout adapts to the sync latency of the journal device.
+    * The buffer timeout configured for AIO or NIO is then the maximum timeout.
+    * <br>
+    * Default value is {@value org.hornetq.core.config.impl.ConfigurationImpl#DEFAULT_JOURNAL_BUFFER_ADAPTIVE}.
+    */
+   boolean isJournalBufferAdaptive();
+
+   /**
+    * Sets whether the journal buffer timeout adapts to the sync latency of the journal device.
+    */
+   void setJournalBufferAdaptive(boolean adaptive);
+
    /**
     * Returns whether the bindings directory is created on this server startup.
     * <br>
@@ -717,6 +769,31 @@ public interface Configuration extends Serializable
     */
    void setPagingDirectory(String dir);
 
+   /**
+    * Returns whether page files are read through a memory mapping, decoding each paged message only when it's used.
+    * <br>
+    * Default value is {@value org.hornetq.core.config.impl.ConfigurationImpl#DEFAULT_PAGE_MAPPED_READ}.
+    */
+   boolean isPageMappedRead();
+
+   /**
+    * Sets whether page files are read through a memory mapping.
+    */
+   void setPageMappedRead(boolean mappedRead);
+
+   /**
+    * Returns the maximum memory, in bytes, used by the messages of all the addresses together. Past it every address
+    * pages, drops or blocks as configured by its address-full-policy.
+    * <br>
+    * Default value is {@value org.hornetq.core.config.impl.ConfigurationImpl#DEFAULT_GLOBAL_MAX_SIZE} (no limit).
+    */
+   long getGlobalMaxSize();
+
+   /**
+    * Sets the maximum memory, in bytes, used by the messages of all the addresses together. -1 means no limit.
+    */
+   void setGlobalMaxSize(long maxSize);
+
    // Large Messages Properties ------------------------------------------------------------
 
    /**
@@ -839,6 +916,19 @@ public interface Configuration extends Serializable
     */
    void setMessageExpiryThreadPriority(int messageExpiryThreadPriority);
 
+   /**
+    * Returns the resolution (in milliseconds) of scheduled deliveries.
+    * Scheduled messages due within the same tick are delivered together, at the end of the tick.
+    * <br>
+    * Default value is {@value org.hornetq.core.config.impl.ConfigurationImpl#DEFAULT_SCHEDULED_DELIVERY_TICK}.
+    */
+   long getScheduledDeliveryTick();
+
+   /**
+    * Sets the resolution (in milliseconds) of scheduled deliveries.
+    */
+   void setScheduledDeliveryTick(long tick);
+
    /**
     * 
     * @return A list of AddressSettings per matching to be deployed to the address settings repository
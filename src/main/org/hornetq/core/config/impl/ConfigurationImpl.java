@@ -92,6 +92,10 @@ public class ConfigurationImpl implements Configuration
    
    public static final int DEFAULT_MAX_CONCURRENT_PAGE_IO = 5;
 
+   public static final boolean DEFAULT_PAGE_MAPPED_READ = false;
+
+   public static final long DEFAULT_GLOBAL_MAX_SIZE = -1;
+
    public static final boolean DEFAULT_CREATE_JOURNAL_DIR = true;
 
    public static final JournalType DEFAULT_JOURNAL_TYPE = JournalType.ASYNCIO;
@@ -106,6 +110,12 @@ public class ConfigurationImpl implements Configuration
 
    public static final int DEFAULT_JOURNAL_COMPACT_PERCENTAGE = 30;
 
+   public static final int DEFAULT_JOURNAL_COMPACT_MAX_RATE = -1;
+
+   public static final int DEFAULT_JOURNAL_COMPACT_MAX_FILES = -1;
+
+   public static final int DEFAULT_JOURNAL_LOAD_PARALLELISM = 2;
+
    public static final int DEFAULT_JOURNAL_MIN_FILES = 2;
 
    // AIO and NIO need to have different defaults for some values
@@ -122,6 +132,8 @@ public class ConfigurationImpl implements Configuration
 
    public static final int DEFAULT_JOURNAL_BUFFER_SIZE_NIO = 490 * 1024;
 
+   public static final boolean DEFAULT_JOURNAL_BUFFER_ADAPTIVE = false;
+
    public static final boolean DEFAULT_JOURNAL_LOG_WRITE_RATE = false;
 
    public static final int DEFAULT_JOURNAL_PERF_BLAST_PAGES = -1;
@@ -157,6 +169,8 @@ public class ConfigurationImpl implements Configuration
 
    public static final int DEFAULT_MESSAGE_EXPIRY_THREAD_PRIORITY = 3;
 
+   public static final long DEFAULT_SCHEDULED_DELIVERY_TICK = 10;
+
    public static final int DEFAULT_ID_CACHE_SIZE = 2000;
 
    public static final boolean DEFAULT_PERSIST_ID_CACHE = true;
@@ -237,6 +251,8 @@ public class ConfigurationImpl implements Configuration
 
    protected int messageExpiryThreadPriority = ConfigurationImpl.DEFAULT_MESSAGE_EXPIRY_THREAD_PRIORITY;
 
+   protected long scheduledDeliveryTick = ConfigurationImpl.DEFAULT_SCHEDULED_DELIVERY_TICK;
+
    protected int idCacheSize = ConfigurationImpl.DEFAULT_ID_CACHE_SIZE;
 
    protected boolean persistIDCache = ConfigurationImpl.DEFAULT_PERSIST_ID_CACHE;
@@ -267,6 +283,10 @@ public class ConfigurationImpl implements Configuration
 
    protected String pagingDirectory = ConfigurationImpl.DEFAULT_PAGING_DIR;
 
+   protected boolean pageMappedRead = ConfigurationImpl.DEFAULT_PAGE_MAPPED_READ;
+
+   protected long globalMaxSize = ConfigurationImpl.DEFAULT_GLOBAL_MAX_SIZE;
+
    // File related attributes -----------------------------------------------------------
    
    protected int maxConcurrentPageIO = ConfigurationImpl.DEFAULT_MAX_CONCURRENT_PAGE_IO;
@@ -291,6 +311,12 @@ public class ConfigurationImpl implements Configuration
 
    protected int journalCompactPercentage = ConfigurationImpl.DEFAULT_JOURNAL_COMPACT_PERCENTAGE;
 
+   protected int journalCompactMaxRate = ConfigurationImpl.DEFAULT_JOURNAL_COMPACT_MAX_RATE;
+
+   protected int journalCompactMaxFiles = ConfigurationImpl.DEFAULT_JOURNAL_COMPACT_MAX_FILES;
+
+   protected int journalLoadParallelism = ConfigurationImpl.DEFAULT_JOURNAL_LOAD_PARALLELISM;
+
    protected int journalFileSize = ConfigurationImpl.DEFAULT_JOURNAL_FILE_SIZE;
 
    protected int journalMinFiles = ConfigurationImpl.DEFAULT_JOURNAL_MIN_FILES;
@@ -309,6 +335,8 @@ public class ConfigurationImpl implements Configuration
 
    protected int journalBufferSize_NIO = ConfigurationImpl.DEFAULT_JOURNAL_BUFFER_SIZE_NIO;
 
+   protected boolean journalBufferAdaptive = ConfigurationImpl.DEFAULT_JOURNAL_BUFFER_ADAPTIVE;
+
    protected boolean logJournalWriteRate = ConfigurationImpl.DEFAULT_JOURNAL_LOG_WRITE_RATE;
 
    protected int journalPerfBlastPages = ConfigurationImpl.DEFAULT_JOURNAL_PERF_BLAST_PAGES;
@@ -672,6 +700,26 @@ public class ConfigurationImpl implements Configuration
       return pagingDirectory;
    }
 
+   public boolean isPageMappedRead()
+   {
+      return pageMappedRead;
+   }
+
+   public void setPageMappedRead(final boolean mappedRead)
+   {
+      pageMappedRead = mappedRead;
+   }
+
+   public long getGlobalMaxSize()
+   {
+      return globalMaxSize;
+   }
+
+   public void setGlobalMaxSize(final long maxSize)
+   {
+      globalMaxSize = maxSize;
+   }
+
    public void setJournalType(final JournalType type)
    {
       journalType = type;
@@ -717,6 +765,16 @@ public class ConfigurationImpl implements Configuration
       journalMinFiles = files;
    }
 
+   public boolean isJournalBufferAdaptive()
+   {
+      return journalBufferAdaptive;
+   }
+
+   public void setJournalBufferAdaptive(final boolean adaptive)
+   {
+      journalBufferAdaptive = adaptive;
+   }
+
    public boolean isLogJournalWriteRate()
    {
       return logJournalWriteRate;
@@ -817,6 +875,16 @@ public class ConfigurationImpl implements Configuration
       this.messageExpiryThreadPriority = messageExpiryThreadPriority;
    }
 
+   public long getScheduledDeliveryTick()
+   {
+      return scheduledDeliveryTick;
+   }
+
+   public void setScheduledDeliveryTick(final long tick)
+   {
+      scheduledDeliveryTick = tick;
+   }
+
    public boolean isSecurityEnabled()
    {
       return securityEnabled;
@@ -957,6 +1025,36 @@ public class ConfigurationImpl implements Configuration
       journalCompactPercentage = percentage;
    }
 
+   public int getJournalCompactMaxRate()
+   {
+      return journalCompactMaxRate;
+   }
+
+   public void setJournalCompactMaxRate(final int maxRate)
+   {
+      journalCompactMaxRate = maxRate;
+   }
+
+   public int getJournalCompactMaxFiles()
+   {
+      return journalCompactMaxFiles;
+   }
+
+   public void setJournalCompactMaxFiles(final int maxFiles)
+   {
+      journalCompactMaxFiles = maxFiles;
+   }
+
+   public int getJournalLoadParallelism()
+   {
+      return journalLoadParallelism;
+   }
+
+   public void setJournalLoadParallelism(final int parallelism)
+   {
+      journalLoadParallelism = parallelism;
+   }
+
    public long getServerDumpInterval()
    {
       return serverDumpInterval;
@@ -1173,6 +1271,18 @@ public class ConfigurationImpl implements Configuration
       {
          return false;
       }
+      if (journalCompactMaxRate != other.journalCompactMaxRate)
+      {
+         return false;
+      }
+      if (journalCompactMaxFiles != other.journalCompactMaxFiles)
+      {
+         return false;
+      }
+      if (journalLoadParallelism != other.journalLoadParallelism)
+      {
+         return false;
+      }
       if (journalDirectory == null)
       {
          if (other.journalDirectory != null)
@@ -1227,6 +1337,10 @@ public class ConfigurationImpl implements Configuration
       {
          return false;
       }
+      if (journalBufferAdaptive != other.journalBufferAdaptive)
+      {
+         return false;
+      }
       if (logJournalWriteRate != other.logJournalWriteRate)
       {
          return false;
@@ -1299,6 +1413,10 @@ public class ConfigurationImpl implements Configuration
       {
          return false;
       }
+      if (scheduledDeliveryTick != other.scheduledDeliveryTick)
+      {
+         return false;
+      }
       if (pagingDirectory == null)
       {
          if (other.pagingDirectory != null)
@@ -1310,6 +1428,14 @@ public class ConfigurationImpl implements Configuration
       {
          return false;
       }
+      if (pageMappedRead != other.pageMappedRead)
+      {
+         return false;
+      }
+      if (globalMaxSize != other.globalMaxSize)
+      {
+         return false;
+      }
       if (persistDeliveryCountBeforeDelivery != other.persistDeliveryCountBeforeDelivery)
       {
          return false;
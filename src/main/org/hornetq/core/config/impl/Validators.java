@@ -15,6 +15,7 @@ package org.hornetq.core.config.impl;
 
 import org.hornetq.core.server.JournalType;
 import org.hornetq.core.settings.impl.AddressFullMessagePolicy;
+import org.hornetq.core.settings.impl.PageCacheEvictionPolicy;
 
 /**
  * A Validators.
@@ -177,4 +178,18 @@ public final class Validators
          }
       }
    };
+
+   public static final Validator PAGE_CACHE_EVICTION_POLICY_TYPE = new Validator()
+   {
+      public void validate(final String name, final Object value)
+      {
+         String val = (String)value;
+         if (val == null || !val.equals(PageCacheEvictionPolicy.LRU.toString()) &&
+             !val.equals(PageCacheEvictionPolicy.LFU.toString()) &&
+             !val.equals(PageCacheEvictionPolicy.FURTHEST_NEXT_USE.toString()))
+         {
+            throw new IllegalArgumentException("Invalid page cache eviction policy type " + val);
+         }
+      }
+   };
 }
@@ -39,6 +39,7 @@ import org.hornetq.core.server.JournalType;
 import org.hornetq.core.server.group.impl.GroupingHandlerConfiguration;
 import org.hornetq.core.settings.impl.AddressFullMessagePolicy;
 import org.hornetq.core.settings.impl.AddressSettings;
+import org.hornetq.core.settings.impl.PageCacheEvictionPolicy;
 import org.hornetq.utils.XMLConfigurationUtil;
 import org.hornetq.utils.XMLUtil;
 import org.w3c.dom.Element;
@@ -118,6 +119,20 @@ public class FileConfigurationParser
 
    private static final String SEND_TO_DLA_ON_NO_ROUTE = "send-to-dla-on-no-route";
 
+   private static final String SELECTOR_INDEX_NODE_NAME = "selector-index";
+
+   private static final String PAGE_CACHE_MAX_BYTES_NODE_NAME = "page-cache-max-bytes";
+
+   private static final String PAGE_CACHE_EVICTION_POLICY_NODE_NAME = "page-cache-eviction-policy";
+
+   private static final String PAGE_READ_AHEAD_NODE_NAME = "page-read-ahead";
+
+   private static final String PAGE_READ_AHEAD_THRESHOLD_NODE_NAME = "page-read-ahead-threshold";
+
+   private static final String PAGE_INDEX_NODE_NAME = "page-index";
+
+   private static final String PAGE_COMPRESS_NODE_NAME = "page-compress";
+
    // Attributes ----------------------------------------------------
 
    private boolean validateAIO = false;
@@ -247,6 +262,11 @@ public class FileConfigurationParser
                                                                             config.getMessageExpiryThreadPriority(),
                                                                             Validators.THREAD_PRIORITY_RANGE));
 
+      config.setScheduledDeliveryTick(XMLConfigurationUtil.getLong(e,
+                                                                   "scheduled-delivery-tick",
+                                                                   config.getScheduledDeliveryTick(),
+                                                                   Validators.GT_ZERO));
+
       config.setIDCacheSize(XMLConfigurationUtil.getInteger(e,
                                                             "id-cache-size",
                                                             config.getIDCacheSize(),
@@ -436,6 +456,13 @@ public class FileConfigurationParser
                                                                config.getPagingDirectory(),
                                                                Validators.NOT_NULL_OR_EMPTY));
 
+      config.setPageMappedRead(XMLConfigurationUtil.getBoolean(e, "page-mapped-read", config.isPageMappedRead()));
+
+      config.setGlobalMaxSize(XMLConfigurationUtil.getLong(e,
+                                                           "global-max-size",
+                                                           config.getGlobalMaxSize(),
+                                                           Validators.MINUS_ONE_OR_GT_ZERO));
+
       config.setCreateJournalDir(XMLConfigurationUtil.getBoolean(e, "create-journal-dir", config.isCreateJournalDir()));
 
       String s = XMLConfigurationUtil.getString(e,
@@ -514,6 +541,10 @@ public class FileConfigurationParser
          config.setJournalMaxIO_NIO(journalMaxIO);
       }
 
+      config.setJournalBufferAdaptive(XMLConfigurationUtil.getBoolean(e,
+                                                                      "journal-buffer-adaptive",
+                                                                      config.isJournalBufferAdaptive()));
+
       config.setJournalMinFiles(XMLConfigurationUtil.getInteger(e,
                                                                 "journal-min-files",
                                                                 config.getJournalMinFiles(),
@@ -529,6 +560,21 @@ public class FileConfigurationParser
                                                                          config.getJournalCompactPercentage(),
                                                                          Validators.PERCENTAGE));
 
+      config.setJournalCompactMaxRate(XMLConfigurationUtil.getInteger(e,
+                                                                      "journal-compact-max-rate",
+                                                                      config.getJournalCompactMaxRate(),
+                                                                      Validators.MINUS_ONE_OR_GT_ZERO));
+
+      config.setJournalCompactMaxFiles(XMLConfigurationUtil.getInteger(e,
+                                                                       "journal-compact-max-files",
+                                                                       config.getJournalCompactMaxFiles(),
+                                                                       Validators.MINUS_ONE_OR_GT_ZERO));
+
+      config.setJournalLoadParallelism(XMLConfigurationUtil.getInteger(e,
+                                                                       "journal-load-parallelism",
+                                                                       config.getJournalLoadParallelism(),
+                                                                       Validators.GT_ZERO));
+
       config.setLogJournalWriteRate(XMLConfigurationUtil.getBoolean(e,
                                                                     "log-journal-write-rate",
                                                                     ConfigurationImpl.DEFAULT_JOURNAL_LOG_WRITE_RATE));
@@ -832,6 +878,37 @@ public class FileConfigurationParser
          {
             addressSettings.setSendToDLAOnNoRoute(Boolean.valueOf(child.getTextContent().trim()));
          }
+         else if (FileConfigurationParser.SELECTOR_INDEX_NODE_NAME.equalsIgnoreCase(child.getNodeName()))
+         {
+            addressSettings.setSelectorIndex(Boolean.valueOf(child.getTextContent().trim()));
+         }
+         else if (FileConfigurationParser.PAGE_CACHE_MAX_BYTES_NODE_NAME.equalsIgnoreCase(child.getNodeName()))
+         {
+            addressSettings.setPageCacheMaxBytes(Long.valueOf(child.getTextContent().trim()));
+         }
+         else if (FileConfigurationParser.PAGE_CACHE_EVICTION_POLICY_NODE_NAME.equalsIgnoreCase(child.getNodeName()))
+         {
+            String value = child.getTextContent().trim();
+            Validators.PAGE_CACHE_EVICTION_POLICY_TYPE.validate(FileConfigurationParser.PAGE_CACHE_EVICTION_POLICY_NODE_NAME,
+                                                                value);
+            addressSettings.setPageCacheEvictionPolicy(PageCacheEvictionPolicy.valueOf(value));
+         }
+         else if (FileConfigurationParser.PAGE_READ_AHEAD_NODE_NAME.equalsIgnoreCase(child.getNodeName()))
+         {
+            addressSettings.setPageReadAhead(Integer.valueOf(child.getTextContent().trim()));
+         }
+         else if (FileConfigurationParser.PAGE_READ_AHEAD_THRESHOLD_NODE_NAME.equalsIgnoreCase(child.getNodeName()))
+         {
+            addressSettings.setPageReadAheadThreshold(Double.valueOf(child.getTextContent().trim()));
+         }
+         else if (FileConfigurationParser.PAGE_INDEX_NODE_NAME.equalsIgnoreCase(child.getNodeName()))
+         {
+            addressSettings.setPageIndex(Boolean.valueOf(child.getTextContent().trim()));
+         }
+         else if (FileConfigurationParser.PAGE_COMPRESS_NODE_NAME.equalsIgnoreCase(child.getNodeName()))
+         {
+            addressSettings.setPageCompress(Boolean.valueOf(child.getTextContent().trim()));
+         }
       }
       return setting;
    }
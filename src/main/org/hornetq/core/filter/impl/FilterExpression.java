@@ -0,0 +1,1029 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.filter.impl;
+
+import java.util.Set;
+
+import org.hornetq.api.core.FilterConstants;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.server.ServerMessage;
+
+/**
+ * A compiled filter expression.
+ * 
+ * FilterParser builds a tree of {@link Operator}s and {@link Identifier}s that keeps the values being evaluated in its
+ * own fields. The tree is compiled once into FilterExpressions which read the identifiers straight from the message
+ * and keep no state between evaluations, so the same expression can be evaluated by many threads at the same time.
+ * 
+ * Numeric comparisons are done on the primitive values of the message properties, without creating new objects.
+ * 
+ * The result of a boolean expression follows the same three-valued logic as {@link Operator}:
+ * {@link Boolean#TRUE}, {@link Boolean#FALSE} or <code>null</code> for unknown.
+ */
+abstract class FilterExpression
+{
+   // Constants -----------------------------------------------------
+
+   private static final int NULL = 0;
+
+   private static final int HEADER_NONE = 0;
+
+   private static final int HEADER_USERID = 1;
+
+   private static final int HEADER_PRIORITY = 2;
+
+   private static final int HEADER_TIMESTAMP = 3;
+
+   private static final int HEADER_DURABLE = 4;
+
+   private static final int HEADER_EXPIRATION = 5;
+
+   private static final int HEADER_SIZE = 6;
+
+   // Static --------------------------------------------------------
+
+   /**
+    * Compiles the result of {@link FilterParser#parse(SimpleString, java.util.Map)}
+    */
+   static FilterExpression compile(final Object parsed) throws Exception
+   {
+      if (parsed == null)
+      {
+         return new Constant(null);
+      }
+
+      Class<?> type = parsed.getClass();
+
+      if (type == Identifier.class)
+      {
+         return new Property(((Identifier)parsed).getName());
+      }
+      else if (type != Operator.class)
+      {
+         return new Constant(parsed);
+      }
+
+      Operator op = (Operator)parsed;
+
+      switch (op.operation)
+      {
+         case Operator.NOT:
+            return new Not(FilterExpression.compile(op.oper1));
+         case Operator.AND:
+            return new And(FilterExpression.compile(op.oper1), FilterExpression.compile(op.oper2));
+         case Operator.OR:
+            return new Or(FilterExpression.compile(op.oper1), FilterExpression.compile(op.oper2));
+         case Operator.EQUAL:
+            return new Equal(false, FilterExpression.compile(op.oper1), FilterExpression.compile(op.oper2));
+         case Operator.DIFFERENT:
+            return new Equal(true, FilterExpression.compile(op.oper1), FilterExpression.compile(op.oper2));
+         case Operator.GT:
+         case Operator.GE:
+         case Operator.LT:
+         case Operator.LE:
+            return new Comparison(op.operation,
+                                  FilterExpression.compile(op.oper1),
+                                  FilterExpression.compile(op.oper2));
+         case Operator.ADD:
+         case Operator.SUB:
+         case Operator.MUL:
+         case Operator.DIV:
+            return new Arithmetic(op.operation,
+                                  FilterExpression.compile(op.oper1),
+                                  FilterExpression.compile(op.oper2));
+         case Operator.NEG:
+            return new Neg(FilterExpression.compile(op.oper1));
+         case Operator.BETWEEN:
+            return new Between(false,
+                               FilterExpression.compile(op.oper1),
+                               FilterExpression.compile(op.oper2),
+                               FilterExpression.compile(op.oper3));
+         case Operator.NOT_BETWEEN:
+            return new Between(true,
+                               FilterExpression.compile(op.oper1),
+                               FilterExpression.compile(op.oper2),
+                               FilterExpression.compile(op.oper3));
+         case Operator.LIKE:
+            return new Like(false, FilterExpression.compile(op.oper1), FilterExpression.createRegExp(op, false));
+         case Operator.NOT_LIKE:
+            return new Like(true, FilterExpression.compile(op.oper1), FilterExpression.createRegExp(op, false));
+         case Operator.LIKE_ESCAPE:
+            return new Like(false, FilterExpression.compile(op.oper1), FilterExpression.createRegExp(op, true));
+         case Operator.NOT_LIKE_ESCAPE:
+            return new Like(true, FilterExpression.compile(op.oper1), FilterExpression.createRegExp(op, true));
+         case Operator.IS_NULL:
+            return new IsNull(false, FilterExpression.compile(op.oper1));
+         case Operator.IS_NOT_NULL:
+            return new IsNull(true, FilterExpression.compile(op.oper1));
+         case Operator.IN:
+            return new In(false, FilterExpression.compile(op.oper1), (Set<?>)op.oper2);
+         case Operator.NOT_IN:
+            return new In(true, FilterExpression.compile(op.oper1), (Set<?>)op.oper2);
+      }
+
+      throw new Exception("Unknown operation: " + op);
+   }
+
+   private static RegExp createRegExp(final Operator op, final boolean useEscape) throws Exception
+   {
+      if (!(op.oper2 instanceof SimpleString))
+      {
+         throw new Exception("LIKE: the pattern must be a string literal: " + op);
+      }
+
+      Character escapeChar = null;
+
+      if (useEscape)
+      {
+         if (!(op.oper3 instanceof SimpleString) || ((SimpleString)op.oper3).length() != 1)
+         {
+            throw new Exception("LIKE ESCAPE: Bad escape character " + op.oper3);
+         }
+
+         escapeChar = ((SimpleString)op.oper3).charAt(0);
+      }
+
+      return new RegExp(op.oper2.toString(), escapeChar);
+   }
+
+   /**
+    * @return the value class as defined on {@link Operator}, or {@link #NULL}
+    */
+   static int classOf(final Object value) throws Exception
+   {
+      if (value == null)
+      {
+         return FilterExpression.NULL;
+      }
+
+      Class<?> type = value.getClass();
+
+      if (type == SimpleString.class)
+      {
+         return Operator.SIMPLE_STRING;
+      }
+      else if (type == Long.class || type == Integer.class || type == Short.class || type == Byte.class)
+      {
+         return Operator.LONG;
+      }
+      else if (type == Double.class || type == Float.class)
+      {
+         return Operator.DOUBLE;
+      }
+      else if (type == Boolean.class)
+      {
+         return Operator.BOOLEAN;
+      }
+      else
+      {
+         throw new Exception("Bad Object: '" + type.getName() + "'");
+      }
+   }
+
+   private static boolean isNumeric(final int valueClass)
+   {
+      return valueClass == Operator.LONG || valueClass == Operator.DOUBLE;
+   }
+
+   /**
+    * Compares two numeric values, as longs when both are integers and as doubles otherwise
+    */
+   private static int compareNumbers(final Object value1, final int class1, final Object value2, final int class2)
+   {
+      if (class1 == Operator.LONG && class2 == Operator.LONG)
+      {
+         long l1 = ((Number)value1).longValue();
+         long l2 = ((Number)value2).longValue();
+         return l1 < l2 ? -1 : l1 == l2 ? 0 : 1;
+      }
+      else
+      {
+         double d1 = ((Number)value1).doubleValue();
+         double d2 = ((Number)value2).doubleValue();
+
+         if (d1 < d2)
+         {
+            return -1;
+         }
+         else if (d1 == d2)
+         {
+            return 0;
+         }
+         else if (d1 > d2)
+         {
+            return 1;
+         }
+         else
+         {
+            // NaN: none of the relational operators is true
+            return Integer.MIN_VALUE;
+         }
+      }
+   }
+
+   private static Boolean relation(final int operation, final int comparison)
+   {
+      if (comparison == Integer.MIN_VALUE)
+      {
+         return Boolean.FALSE;
+      }
+
+      switch (operation)
+      {
+         case Operator.GT:
+            return Boolean.valueOf(comparison > 0);
+         case Operator.GE:
+            return Boolean.valueOf(comparison >= 0);
+         case Operator.LT:
+            return Boolean.valueOf(comparison < 0);
+         default:
+            return Boolean.valueOf(comparison <= 0);
+      }
+   }
+
+   private static Boolean not(final Boolean value)
+   {
+      return value == null ? null : Boolean.valueOf(!value.booleanValue());
+   }
+
+   private static Exception badObject(final int valueClass, final FilterExpression expression)
+   {
+      return new Exception("Bad Object: '" + Operator.getClassName(valueClass) + "' for operation: " + expression);
+   }
+
+   // Public --------------------------------------------------------
+
+   /**
+    * @return the value of this expression for the message. Numbers are returned as they are stored on the message,
+    * which may be any subclass of Number handled by the filters.
+    */
+   abstract Object evaluate(ServerMessage message) throws Exception;
+
+   /**
+    * Evaluates a boolean expression
+    */
+   Boolean evaluateBoolean(final ServerMessage message) throws Exception
+   {
+      Object value = evaluate(message);
+
+      int valueClass = FilterExpression.classOf(value);
+
+      if (valueClass != FilterExpression.NULL && valueClass != Operator.BOOLEAN)
+      {
+         throw FilterExpression.badObject(valueClass, this);
+      }
+
+      return (Boolean)value;
+   }
+
+   /**
+    * @return a condition that must be satisfied for this expression to be true, or null if there is none on a single
+    * property
+    */
+   IndexablePredicate getIndexablePredicate()
+   {
+      return null;
+   }
+
+   /**
+    * @return the name of the property, if the expression is a message property other than a header field
+    */
+   private static SimpleString propertyName(final FilterExpression expression)
+   {
+      if (expression instanceof Property && ((Property)expression).header == FilterExpression.HEADER_NONE)
+      {
+         return ((Property)expression).name;
+      }
+
+      return null;
+   }
+
+   private static boolean isConstant(final FilterExpression expression)
+   {
+      return expression instanceof Constant;
+   }
+
+   // Inner classes -------------------------------------------------
+
+   static final class Constant extends FilterExpression
+   {
+      private final Object value;
+
+      Constant(final Object value)
+      {
+         this.value = value;
+      }
+
+      @Override
+      Object evaluate(final ServerMessage message)
+      {
+         return value;
+      }
+
+      @Override
+      public String toString()
+      {
+         return String.valueOf(value);
+      }
+   }
+
+   static final class Property extends FilterExpression
+   {
+      private final SimpleString name;
+
+      private final int header;
+
+      Property(final SimpleString name)
+      {
+         this.name = name;
+
+         if (!name.startsWith(FilterConstants.HORNETQ_PREFIX))
+         {
+            header = FilterExpression.HEADER_NONE;
+         }
+         else if (FilterConstants.HORNETQ_USERID.equals(name))
+         {
+            header = FilterExpression.HEADER_USERID;
+         }
+         else if (FilterConstants.HORNETQ_PRIORITY.equals(name))
+         {
+            header = FilterExpression.HEADER_PRIORITY;
+         }
+         else if (FilterConstants.HORNETQ_TIMESTAMP.equals(name))
+         {
+            header = FilterExpression.HEADER_TIMESTAMP;
+         }
+         else if (FilterConstants.HORNETQ_DURABLE.equals(name))
+         {
+            header = FilterExpression.HEADER_DURABLE;
+         }
+         else if (FilterConstants.HORNETQ_EXPIRATION.equals(name))
+         {
+            header = FilterExpression.HEADER_EXPIRATION;
+         }
+         else if (FilterConstants.HORNETQ_SIZE.equals(name))
+         {
+            header = FilterExpression.HEADER_SIZE;
+         }
+         else
+         {
+            header = FilterExpression.HEADER_NONE;
+         }
+      }
+
+      @Override
+      Object evaluate(final ServerMessage message)
+      {
+         switch (header)
+         {
+            case HEADER_USERID:
+               // It's the stringified (hex) representation of a user id that can be used in a selector expression
+               return new SimpleString("ID:" + message.getUserID());
+            case HEADER_PRIORITY:
+               return Integer.valueOf(message.getPriority());
+            case HEADER_TIMESTAMP:
+               return Long.valueOf(message.getTimestamp());
+            case HEADER_DURABLE:
+               return message.isDurable() ? FilterConstants.DURABLE : FilterConstants.NON_DURABLE;
+            case HEADER_EXPIRATION:
+               return Long.valueOf(message.getExpiration());
+            case HEADER_SIZE:
+               return Integer.valueOf(message.getEncodeSize());
+            default:
+               return message.getObjectProperty(name);
+         }
+      }
+
+      @Override
+      public String toString()
+      {
+         return name.toString();
+      }
+   }
+
+   static final class Not extends FilterExpression
+   {
+      private final FilterExpression expression;
+
+      Not(final FilterExpression expression)
+      {
+         this.expression = expression;
+      }
+
+      @Override
+      Object evaluate(final ServerMessage message) throws Exception
+      {
+         return FilterExpression.not(expression.evaluateBoolean(message));
+      }
+
+      @Override
+      public String toString()
+      {
+         return "NOT(" + expression + ")";
+      }
+   }
+
+   static final class And extends FilterExpression
+   {
+      private final FilterExpression left;
+
+      private final FilterExpression right;
+
+      And(final FilterExpression left, final FilterExpression right)
+      {
+         this.left = left;
+         this.right = right;
+      }
+
+      @Override
+      Object evaluate(final ServerMessage message) throws Exception
+      {
+         Boolean value1 = left.evaluateBoolean(message);
+
+         if (value1 != null && !value1.booleanValue())
+         {
+            return Boolean.FALSE;
+         }
+
+         Boolean value2 = right.evaluateBoolean(message);
+
+         if (value2 == null)
+         {
+            return null;
+         }
+
+         if (!value2.booleanValue())
+         {
+            return Boolean.FALSE;
+         }
+
+         return value1;
+      }
+
+      @Override
+      IndexablePredicate getIndexablePredicate()
+      {
+         return IndexablePredicate.and(left.getIndexablePredicate(), right.getIndexablePredicate());
+      }
+
+      @Override
+      public String toString()
+      {
+         return "AND(" + left + ", " + right + ")";
+      }
+   }
+
+   static final class Or extends FilterExpression
+   {
+      private final FilterExpression left;
+
+      private final FilterExpression right;
+
+      Or(final FilterExpression left, final FilterExpression right)
+      {
+         this.left = left;
+         this.right = right;
+      }
+
+      @Override
+      Object evaluate(final ServerMessage message) throws Exception
+      {
+         Boolean value1 = left.evaluateBoolean(message);
+
+         if (value1 != null && value1.booleanValue())
+         {
+            return Boolean.TRUE;
+         }
+
+         Boolean value2 = right.evaluateBoolean(message);
+
+         if (value2 == null)
+         {
+            return null;
+         }
+
+         if (value2.booleanValue())
+         {
+            return Boolean.TRUE;
+         }
+
+         return value1;
+      }
+
+      @Override
+      IndexablePredicate getIndexablePredicate()
+      {
+         return IndexablePredicate.or(left.getIndexablePredicate(), right.getIndexablePredicate());
+      }
+
+      @Override
+      public String toString()
+      {
+         return "OR(" + left + ", " + right + ")";
+      }
+   }
+
+   /**
+    * = and &lt;&gt;
+    */
+   static final class Equal extends FilterExpression
+   {
+      private final boolean different;
+
+      private final FilterExpression left;
+
+      private final FilterExpression right;
+
+      Equal(final boolean different, final FilterExpression left, final FilterExpression right)
+      {
+         this.different = different;
+         this.left = left;
+         this.right = right;
+      }
+
+      @Override
+      Object evaluate(final ServerMessage message) throws Exception
+      {
+         Object value1 = left.evaluate(message);
+         int class1 = FilterExpression.classOf(value1);
+
+         if (class1 == FilterExpression.NULL)
+         {
+            if (different)
+            {
+               return Boolean.valueOf(FilterExpression.classOf(right.evaluate(message)) != FilterExpression.NULL);
+            }
+            return Boolean.FALSE;
+         }
+
+         Object value2 = right.evaluate(message);
+         int class2 = FilterExpression.classOf(value2);
+
+         if (FilterExpression.isNumeric(class1))
+         {
+            if (class2 == FilterExpression.NULL)
+            {
+               return null;
+            }
+            if (!FilterExpression.isNumeric(class2))
+            {
+               return Boolean.FALSE;
+            }
+            return Boolean.valueOf((FilterExpression.compareNumbers(value1, class1, value2, class2) == 0) != different);
+         }
+
+         if (class2 == FilterExpression.NULL)
+         {
+            return different ? null : Boolean.FALSE;
+         }
+         if (class2 != class1)
+         {
+            throw new Exception("Bad Object: expected '" + Operator.getClassName(class1) +
+                                "' got '" +
+                                Operator.getClassName(class2) +
+                                "' for operation: " +
+                                this);
+         }
+         return Boolean.valueOf(value1.equals(value2) != different);
+      }
+
+      @Override
+      IndexablePredicate getIndexablePredicate()
+      {
+         if (different)
+         {
+            return null;
+         }
+
+         SimpleString property = FilterExpression.propertyName(left);
+
+         if (property != null && FilterExpression.isConstant(right))
+         {
+            return IndexablePredicate.equal(property, ((Constant)right).value);
+         }
+
+         property = FilterExpression.propertyName(right);
+
+         if (property != null && FilterExpression.isConstant(left))
+         {
+            return IndexablePredicate.equal(property, ((Constant)left).value);
+         }
+
+         return null;
+      }
+
+      @Override
+      public String toString()
+      {
+         return (different ? "DIFFERENT(" : "EQUAL(") + left + ", " + right + ")";
+      }
+   }
+
+   /**
+    * &gt;, &gt;=, &lt; and &lt;=
+    */
+   static final class Comparison extends FilterExpression
+   {
+      private final int operation;
+
+      private final FilterExpression left;
+
+      private final FilterExpression right;
+
+      Comparison(final int operation, final FilterExpression left, final FilterExpression right)
+      {
+         this.operation = operation;
+         this.left = left;
+         this.right = right;
+      }
+
+      @Override
+      Object evaluate(final ServerMessage message) throws Exception
+      {
+         Object value1 = left.evaluate(message);
+         int class1 = FilterExpression.classOf(value1);
+
+         if (class1 == FilterExpression.NULL)
+         {
+            return null;
+         }
+
+         if (!FilterExpression.isNumeric(class1))
+         {
+            return Boolean.FALSE;
+         }
+
+         return compare(value1, class1, right.evaluate(message));
+      }
+
+      Boolean compare(final Object value1, final int class1, final Object value2) throws Exception
+      {
+         int class2 = FilterExpression.classOf(value2);
+
+         if (class2 == FilterExpression.NULL)
+         {
+            return null;
+         }
+
+         if (!FilterExpression.isNumeric(class2))
+         {
+            return Boolean.FALSE;
+         }
+
+         return FilterExpression.relation(operation,
+                                          FilterExpression.compareNumbers(value1, class1, value2, class2));
+      }
+
+      @Override
+      IndexablePredicate getIndexablePredicate()
+      {
+         boolean lower = operation == Operator.GT || operation == Operator.GE;
+
+         SimpleString property = FilterExpression.propertyName(left);
+
+         if (property == null || !FilterExpression.isConstant(right))
+         {
+            // constant < property is the same as property > constant
+            property = FilterExpression.propertyName(right);
+
+            if (property == null || !FilterExpression.isConstant(left))
+            {
+               return null;
+            }
+
+            return lower ? IndexablePredicate.range(property, null, ((Constant)left).value)
+                        : IndexablePredicate.range(property, ((Constant)left).value, null);
+         }
+
+         return lower ? IndexablePredicate.range(property, ((Constant)right).value, null)
+                     : IndexablePredicate.range(property, null, ((Constant)right).value);
+      }
+
+      @Override
+      public String toString()
+      {
+         return Operator.operationString(operation) + "(" + left + ", " + right + ")";
+      }
+   }
+
+   /**
+    * BETWEEN and NOT BETWEEN. The value is only evaluated once for both bounds.
+    */
+   static final class Between extends FilterExpression
+   {
+      private final boolean not;
+
+      private final FilterExpression value;
+
+      private final Comparison lower;
+
+      private final Comparison upper;
+
+      Between(final boolean not, final FilterExpression value, final FilterExpression min, final FilterExpression max)
+      {
+         this.not = not;
+         this.value = value;
+         lower = new Comparison(not ? Operator.LT : Operator.GE, value, min);
+         upper = new Comparison(not ? Operator.GT : Operator.LE, value, max);
+      }
+
+      @Override
+      Object evaluate(final ServerMessage message) throws Exception
+      {
+         Object value1 = value.evaluate(message);
+         int class1 = FilterExpression.classOf(value1);
+
+         if (class1 == FilterExpression.NULL)
+         {
+            return null;
+         }
+
+         if (!FilterExpression.isNumeric(class1))
+         {
+            return Boolean.FALSE;
+         }
+
+         Boolean result = lower.compare(value1, class1, lower.right.evaluate(message));
+
+         // BETWEEN stops at the first false bound, NOT BETWEEN at the first true one
+         if (result == null || result.booleanValue() == not)
+         {
+            return result;
+         }
+
+         return upper.compare(value1, class1, upper.right.evaluate(message));
+      }
+
+      @Override
+      IndexablePredicate getIndexablePredicate()
+      {
+         SimpleString property = FilterExpression.propertyName(value);
+
+         if (not || property == null ||
+             !FilterExpression.isConstant(lower.right) ||
+             !FilterExpression.isConstant(upper.right))
+         {
+            return null;
+         }
+
+         return IndexablePredicate.range(property, ((Constant)lower.right).value, ((Constant)upper.right).value);
+      }
+
+      @Override
+      public String toString()
+      {
+         return (not ? "NOT_BETWEEN(" : "BETWEEN(") + value + ", " + lower.right + ", " + upper.right + ")";
+      }
+   }
+
+   static final class Arithmetic extends FilterExpression
+   {
+      private final int operation;
+
+      private final FilterExpression left;
+
+      private final FilterExpression right;
+
+      Arithmetic(final int operation, final FilterExpression left, final FilterExpression right)
+      {
+         this.operation = operation;
+         this.left = left;
+         this.right = right;
+      }
+
+      @Override
+      Object evaluate(final ServerMessage message) throws Exception
+      {
+         Object value1 = left.evaluate(message);
+         int class1 = FilterExpression.classOf(value1);
+
+         Object value2 = right.evaluate(message);
+         int class2 = FilterExpression.classOf(value2);
+
+         if (class1 == FilterExpression.NULL || class2 == FilterExpression.NULL)
+         {
+            return null;
+         }
+
+         if (!FilterExpression.isNumeric(class1))
+         {
+            throw FilterExpression.badObject(class1, this);
+         }
+
+         if (!FilterExpression.isNumeric(class2))
+         {
+            throw FilterExpression.badObject(class2, this);
+         }
+
+         if (class1 == Operator.LONG && class2 == Operator.LONG)
+         {
+            long l1 = ((Number)value1).longValue();
+            long l2 = ((Number)value2).longValue();
+
+            switch (operation)
+            {
+               case Operator.ADD:
+                  return Long.valueOf(l1 + l2);
+               case Operator.SUB:
+                  return Long.valueOf(l1 - l2);
+               case Operator.MUL:
+                  return Long.valueOf(l1 * l2);
+               default:
+                  // Can throw Divide by zero exception...
+                  return Long.valueOf(l1 / l2);
+            }
+         }
+
+         double d1 = ((Number)value1).doubleValue();
+         double d2 = ((Number)value2).doubleValue();
+
+         switch (operation)
+         {
+            case Operator.ADD:
+               return Double.valueOf(d1 + d2);
+            case Operator.SUB:
+               return Double.valueOf(d1 - d2);
+            case Operator.MUL:
+               return Double.valueOf(d1 * d2);
+            default:
+               return Double.valueOf(d1 / d2);
+         }
+      }
+
+      @Override
+      public String toString()
+      {
+         return Operator.operationString(operation) + "(" + left + ", " + right + ")";
+      }
+   }
+
+   static final class Neg extends FilterExpression
+   {
+      private final FilterExpression expression;
+
+      Neg(final FilterExpression expression)
+      {
+         this.expression = expression;
+      }
+
+      @Override
+      Object evaluate(final ServerMessage message) throws Exception
+      {
+         Object value = expression.evaluate(message);
+
+         switch (FilterExpression.classOf(value))
+         {
+            case NULL:
+               return null;
+            case Operator.LONG:
+               return Long.valueOf(-((Number)value).longValue());
+            case Operator.DOUBLE:
+               return Double.valueOf(-((Number)value).doubleValue());
+            default:
+               throw FilterExpression.badObject(FilterExpression.classOf(value), this);
+         }
+      }
+
+      @Override
+      public String toString()
+      {
+         return "NEG(" + expression + ")";
+      }
+   }
+
+   /**
+    * LIKE and NOT LIKE, with or without ESCAPE. The pattern is compiled once.
+    */
+   static final class Like extends FilterExpression
+   {
+      private final boolean not;
+
+      private final FilterExpression expression;
+
+      private final RegExp re;
+
+      Like(final boolean not, final FilterExpression expression, final RegExp re)
+      {
+         this.not = not;
+         this.expression = expression;
+         this.re = re;
+      }
+
+      @Override
+      Object evaluate(final ServerMessage message) throws Exception
+      {
+         Object value = expression.evaluate(message);
+         int valueClass = FilterExpression.classOf(value);
+
+         if (valueClass == FilterExpression.NULL)
+         {
+            return null;
+         }
+
+         if (valueClass != Operator.SIMPLE_STRING)
+         {
+            throw FilterExpression.badObject(valueClass, this);
+         }
+
+         return Boolean.valueOf(re.isMatch(value) != not);
+      }
+
+      @Override
+      public String toString()
+      {
+         return (not ? "NOT_LIKE(" : "LIKE(") + expression + ")";
+      }
+   }
+
+   static final class In extends FilterExpression
+   {
+      private final boolean not;
+
+      private final FilterExpression expression;
+
+      private final Set<?> values;
+
+      In(final boolean not, final FilterExpression expression, final Set<?> values)
+      {
+         this.not = not;
+         this.expression = expression;
+         this.values = values;
+      }
+
+      @Override
+      Object evaluate(final ServerMessage message) throws Exception
+      {
+         Object value = expression.evaluate(message);
+         int valueClass = FilterExpression.classOf(value);
+
+         if (valueClass == FilterExpression.NULL)
+         {
+            return not ? null : Boolean.FALSE;
+         }
+
+         if (valueClass != Operator.SIMPLE_STRING)
+         {
+            throw FilterExpression.badObject(valueClass, this);
+         }
+
+         return Boolean.valueOf(values.contains(value) != not);
+      }
+
+      @Override
+      IndexablePredicate getIndexablePredicate()
+      {
+         SimpleString property = FilterExpression.propertyName(expression);
+
+         if (not || property == null)
+         {
+            return null;
+         }
+
+         return IndexablePredicate.in(property, values);
+      }
+
+      @Override
+      public String toString()
+      {
+         return (not ? "NOT_IN(" : "IN(") + expression + ", " + values + ")";
+      }
+   }
+
+   static final class IsNull extends FilterExpression
+   {
+      private final boolean not;
+
+      private final FilterExpression expression;
+
+      IsNull(final boolean not, final FilterExpression expression)
+      {
+         this.not = not;
+         this.expression = expression;
+      }
+
+      @Override
+      Object evaluate(final ServerMessage message) throws Exception
+      {
+         boolean isNull = FilterExpression.classOf(expression.evaluate(message)) == FilterExpression.NULL;
+
+         return Boolean.valueOf(isNull != not);
+      }
+
+      @Override
+      public String toString()
+      {
+         return (not ? "IS_NOT_NULL(" : "IS_NULL(") + expression + ")";
+      }
+   }
+}
@@ -16,7 +16,6 @@ package org.hornetq.core.filter.impl;
 import java.util.HashMap;
 import java.util.Map;
 
-import org.hornetq.api.core.FilterConstants;
 import org.hornetq.api.core.HornetQException;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.filter.Filter;
@@ -42,6 +41,8 @@ import org.hornetq.core.server.ServerMessage;
 * Any other identifers that appear in a filter expression represent header values for the message
 * 
 * String values must be set as <code>SimpleString</code>, not <code>java.lang.String</code> (see JBMESSAGING-1307).
+* 
+* The parsed expression is compiled into a stateless {@link FilterExpression}, so match can be called concurrently.
 * Derived from JBoss MQ version by
 * 
 * @author <a href="mailto:Norbert.Lataille@m4x.org">Norbert Lataille</a>
@@ -63,11 +64,9 @@ public class FilterImpl implements Filter
 
    private final SimpleString sfilterString;
 
-   private final Map<SimpleString, Identifier> identifiers = new HashMap<SimpleString, Identifier>();
-
-   private final Object result;
+   private final FilterExpression expression;
 
-   private final Class<? extends Object> resultType;
+   private final IndexablePredicate indexablePredicate;
 
    // Static ---------------------------------------------------------
 
@@ -104,9 +103,13 @@ public class FilterImpl implements Filter
 
       try
       {
-         result = new FilterParser().parse(sfilterString, identifiers);
+         Map<SimpleString, Identifier> identifiers = new HashMap<SimpleString, Identifier>();
+
+         Object result = new FilterParser().parse(sfilterString, identifiers);
+
+         expression = FilterExpression.compile(result);
 
-         resultType = result.getClass();
+         indexablePredicate = expression.getIndexablePredicate();
       }
       catch (Throwable e)
       {
@@ -129,40 +132,10 @@ public class FilterImpl implements Filter
    {
       try
       {
-         // Set the identifiers values
-
-         for (Identifier id : identifiers.values())
-         {
-            Object val = null;
-
-            if (id.getName().startsWith(FilterConstants.HORNETQ_PREFIX))
-            {
-               // Look it up as header fields
-               val = getHeaderFieldValue(message, id.getName());
-            }
-
-            if (val == null)
-            {
-               val = message.getObjectProperty(id.getName());
-            }
-
-            id.setValue(val);
-
-         }
-
-         if (resultType.equals(Identifier.class))
-         {
-            return (Boolean)((Identifier)result).getValue();
-         }
-         else if (resultType.equals(Operator.class))
-         {
-            Operator op = (Operator)result;
-            return (Boolean)op.apply();
-         }
-         else
-         {
-            throw new Exception("Bad object type: " + result);
-         }
+         Boolean result = expression.evaluateBoolean(message);
+
+         // An unknown result doesn't match
+         return result != null && result.booleanValue();
       }
       catch (Exception e)
       {
@@ -172,6 +145,15 @@ public class FilterImpl implements Filter
       }
    }
 
+   /**
+    * @return a condition on a single property that every message matched by this filter satisfies, or null if there
+    * is none. Used to index the filters of the bindings of an address.
+    */
+   public IndexablePredicate getIndexablePredicate()
+   {
+      return indexablePredicate;
+   }
+
    /* (non-Javadoc)
     * @see java.lang.Object#hashCode()
     */
@@ -215,39 +197,4 @@ public class FilterImpl implements Filter
    {
       return "FilterImpl [sfilterString=" + sfilterString + "]";
    }
-
-   // Private --------------------------------------------------------------------------
-
-   private Object getHeaderFieldValue(final ServerMessage msg, final SimpleString fieldName)
-   {
-      if (FilterConstants.HORNETQ_USERID.equals(fieldName))
-      {
-         // It's the stringified (hex) representation of a user id that can be used in a selector expression
-         return new SimpleString("ID:" + msg.getUserID());
-      }
-      else if (FilterConstants.HORNETQ_PRIORITY.equals(fieldName))
-      {
-         return new Integer(msg.getPriority());
-      }
-      else if (FilterConstants.HORNETQ_TIMESTAMP.equals(fieldName))
-      {
-         return msg.getTimestamp();
-      }
-      else if (FilterConstants.HORNETQ_DURABLE.equals(fieldName))
-      {
-         return msg.isDurable() ? FilterConstants.DURABLE : FilterConstants.NON_DURABLE;
-      }
-      else if (FilterConstants.HORNETQ_EXPIRATION.equals(fieldName))
-      {
-         return msg.getExpiration();
-      }
-      else if (FilterConstants.HORNETQ_SIZE.equals(fieldName))
-      {
-         return msg.getEncodeSize();
-      }
-      else
-      {
-         return null;
-      }
-   }
 }
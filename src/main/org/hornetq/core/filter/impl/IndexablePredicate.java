@@ -0,0 +1,226 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.filter.impl;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.hornetq.api.core.SimpleString;
+
+/**
+ * A condition on a single message property that must be satisfied for a filter to match.
+ * 
+ * The condition is either a set of values (from =, IN, or OR'ed equalities) or a numeric range (from &lt;, &lt;=, &gt;,
+ * &gt;= and BETWEEN). It is used to index filters, and may accept messages the filter doesn't match, but never the
+ * opposite: the filter still has to be evaluated on the messages accepted by the predicate.
+ * 
+ * Numbers are normalized to Double by {@link #toIndexKey(Object)}, the same way the filters compare numbers of
+ * different types, and range bounds are always inclusive for the same reason.
+ */
+public final class IndexablePredicate
+{
+   // Attributes ----------------------------------------------------
+
+   private final SimpleString property;
+
+   private final Set<Object> values;
+
+   private final double min;
+
+   private final double max;
+
+   // Static --------------------------------------------------------
+
+   /**
+    * @return the value used to look up a property value on the index, or null if the filters can't match this type of value
+    */
+   public static Object toIndexKey(final Object value)
+   {
+      if (value instanceof SimpleString || value instanceof Boolean)
+      {
+         return value;
+      }
+      else if (value instanceof Long || value instanceof Integer ||
+               value instanceof Short ||
+               value instanceof Byte ||
+               value instanceof Double ||
+               value instanceof Float)
+      {
+         // + 0.0 turns -0.0 into 0.0, as they are equal for the filters
+         return Double.valueOf(((Number)value).doubleValue() + 0.0);
+      }
+      else
+      {
+         return null;
+      }
+   }
+
+   static IndexablePredicate equal(final SimpleString property, final Object value)
+   {
+      Object key = IndexablePredicate.toIndexKey(value);
+
+      if (key == null)
+      {
+         return null;
+      }
+
+      return new IndexablePredicate(property, Collections.singleton(key));
+   }
+
+   static IndexablePredicate in(final SimpleString property, final Set<?> values)
+   {
+      Set<Object> keys = new HashSet<Object>();
+
+      for (Object value : values)
+      {
+         Object key = IndexablePredicate.toIndexKey(value);
+
+         if (key == null)
+         {
+            return null;
+         }
+
+         keys.add(key);
+      }
+
+      return new IndexablePredicate(property, keys);
+   }
+
+   static IndexablePredicate range(final SimpleString property, final Object min, final Object max)
+   {
+      double minValue = Double.NEGATIVE_INFINITY;
+
+      double maxValue = Double.POSITIVE_INFINITY;
+
+      if (min != null)
+      {
+         if (!(IndexablePredicate.toIndexKey(min) instanceof Double))
+         {
+            return null;
+         }
+         minValue = ((Number)min).doubleValue();
+      }
+
+      if (max != null)
+      {
+         if (!(IndexablePredicate.toIndexKey(max) instanceof Double))
+         {
+            return null;
+         }
+         maxValue = ((Number)max).doubleValue();
+      }
+
+      return new IndexablePredicate(property, minValue, maxValue);
+   }
+
+   /**
+    * @return a predicate satisfied when both are, or the most selective of the two
+    */
+   static IndexablePredicate and(final IndexablePredicate pred1, final IndexablePredicate pred2)
+   {
+      if (pred1 == null)
+      {
+         return pred2;
+      }
+
+      if (pred2 == null)
+      {
+         return pred1;
+      }
+
+      if (pred1.isRange() && pred2.isRange() && pred1.property.equals(pred2.property))
+      {
+         return new IndexablePredicate(pred1.property, Math.max(pred1.min, pred2.min), Math.min(pred1.max, pred2.max));
+      }
+
+      return pred1.isRange() && !pred2.isRange() ? pred2 : pred1;
+   }
+
+   /**
+    * @return a predicate satisfied when any of the two is, or null if there is none on a single property
+    */
+   static IndexablePredicate or(final IndexablePredicate pred1, final IndexablePredicate pred2)
+   {
+      if (pred1 == null || pred2 == null || !pred1.property.equals(pred2.property) || pred1.isRange() != pred2.isRange())
+      {
+         return null;
+      }
+
+      if (pred1.isRange())
+      {
+         return new IndexablePredicate(pred1.property, Math.min(pred1.min, pred2.min), Math.max(pred1.max, pred2.max));
+      }
+
+      Set<Object> union = new HashSet<Object>(pred1.values);
+
+      union.addAll(pred2.values);
+
+      return new IndexablePredicate(pred1.property, union);
+   }
+
+   // Constructors --------------------------------------------------
+
+   private IndexablePredicate(final SimpleString property, final Set<Object> values)
+   {
+      this.property = property;
+      this.values = values;
+      min = Double.NaN;
+      max = Double.NaN;
+   }
+
+   private IndexablePredicate(final SimpleString property, final double min, final double max)
+   {
+      this.property = property;
+      values = null;
+      this.min = min;
+      this.max = max;
+   }
+
+   // Public --------------------------------------------------------
+
+   public SimpleString getProperty()
+   {
+      return property;
+   }
+
+   public boolean isRange()
+   {
+      return values == null;
+   }
+
+   /**
+    * @return the index keys accepted by this predicate, or null if this is a range
+    */
+   public Set<Object> getValues()
+   {
+      return values;
+   }
+
+   /**
+    * @return whether a number, as returned by {@link #toIndexKey(Object)}, is on the range of this predicate
+    */
+   public boolean isInRange(final double value)
+   {
+      return value >= min && value <= max;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "IndexablePredicate [property=" + property +
+             (isRange() ? ", min=" + min + ", max=" + max : ", values=" + values) +
+             "]";
+   }
+}
@@ -111,6 +111,12 @@ public interface Journal extends HornetQComponent
 
    JournalLoadInformation load(LoaderCallback reloadManager) throws Exception;
 
+   /** Load the journal handing out only the records that are still alive once all the files were read.
+    *  Deletes are reconciled by the journal itself, so {@link LoaderCallback#deleteRecord(long)} is never called and
+    *  the records can be processed as they arrive instead of being accumulated on a list first.
+    *  Committed records are delivered in the order they were appended, followed by the prepared and failed transactions. */
+   JournalLoadInformation loadStreaming(LoaderCallback reloadManager) throws Exception;
+
    /** Load internal data structures and not expose any data.
     *  This is only useful if you're using the journal but not interested on the current data.
     *  Useful in situations where the journal is being replicated, copied... etc. */
@@ -20,11 +20,11 @@ package org.hornetq.core.journal;
  */
 public interface LoaderCallback extends TransactionFailureCallback
 {
-   void addPreparedTransaction(PreparedTransactionInfo preparedTransaction);
+   void addPreparedTransaction(PreparedTransactionInfo preparedTransaction) throws Exception;
 
-   void addRecord(RecordInfo info);
+   void addRecord(RecordInfo info) throws Exception;
 
-   void deleteRecord(long id);
+   void deleteRecord(long id) throws Exception;
 
-   void updateRecord(RecordInfo info);
+   void updateRecord(RecordInfo info) throws Exception;
 }
@@ -16,7 +16,6 @@ package org.hornetq.core.journal.impl;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
 
 import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.HornetQBuffers;
@@ -27,7 +26,7 @@ import org.hornetq.core.journal.impl.dataformat.ByteArrayEncoding;
 import org.hornetq.core.journal.impl.dataformat.JournalAddRecord;
 import org.hornetq.core.journal.impl.dataformat.JournalInternalRecord;
 import org.hornetq.core.logging.Logger;
-import org.hornetq.utils.ConcurrentHashSet;
+import org.hornetq.utils.ConcurrentLongHashMap;
 
 /**
  * 
@@ -61,7 +60,12 @@ public abstract class AbstractJournalUpdateTask implements JournalReaderCallback
 
    private HornetQBuffer writingChannel;
 
-   private final Set<Long> recordsSnapshot = new ConcurrentHashSet<Long>();
+   private long bytesWritten;
+
+   private static final Object DUMMY = new Object();
+
+   // Used as a set
+   private final ConcurrentLongHashMap<Object> recordsSnapshot;
 
    protected final List<JournalFile> newDataFiles = new ArrayList<JournalFile>();
 
@@ -72,7 +76,7 @@ public abstract class AbstractJournalUpdateTask implements JournalReaderCallback
    protected AbstractJournalUpdateTask(final SequentialFileFactory fileFactory,
                                        final JournalImpl journal,
                                        final JournalFilesRepository filesRepository,
-                                       final Set<Long> recordsSnapshot,
+                                       final long[] recordsSnapshot,
                                        final long nextOrderingID)
    {
       super();
@@ -80,7 +84,11 @@ public abstract class AbstractJournalUpdateTask implements JournalReaderCallback
       this.filesRepository = filesRepository;
       this.fileFactory = fileFactory;
       this.nextOrderingID = nextOrderingID;
-      this.recordsSnapshot.addAll(recordsSnapshot);
+      this.recordsSnapshot = new ConcurrentLongHashMap<Object>(recordsSnapshot.length);
+      for (long id : recordsSnapshot)
+      {
+         this.recordsSnapshot.put(id, AbstractJournalUpdateTask.DUMMY);
+      }
    }
 
    // Public --------------------------------------------------------
@@ -196,7 +204,7 @@ public abstract class AbstractJournalUpdateTask implements JournalReaderCallback
 
    public boolean lookupRecord(final long id)
    {
-      return recordsSnapshot.contains(id);
+      return recordsSnapshot.containsKey(id);
    }
 
    // Package protected ---------------------------------------------
@@ -227,7 +235,7 @@ public abstract class AbstractJournalUpdateTask implements JournalReaderCallback
 
    protected void addToRecordsSnaptshot(final long id)
    {
-      recordsSnapshot.add(id);
+      recordsSnapshot.put(id, AbstractJournalUpdateTask.DUMMY);
    }
 
    /**
@@ -242,6 +250,13 @@ public abstract class AbstractJournalUpdateTask implements JournalReaderCallback
    {
       record.setFileID(currentFile.getRecordID());
       record.encode(getWritingChannel());
+      bytesWritten += record.getEncodeSize();
+   }
+
+   /** Number of bytes encoded into the new files so far */
+   public long getBytesWritten()
+   {
+      return bytesWritten;
    }
 
    protected void writeEncoder(final JournalInternalRecord record, final int txcounter) throws Exception
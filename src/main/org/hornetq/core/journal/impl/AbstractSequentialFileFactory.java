@@ -154,6 +154,25 @@ public abstract class AbstractSequentialFileFactory implements SequentialFileFac
       }
    }
 
+   /**
+    * @see TimedBuffer#setAdaptive(boolean)
+    */
+   public void setBufferAdaptive(final boolean adaptive)
+   {
+      if (timedBuffer != null)
+      {
+         timedBuffer.setAdaptive(adaptive);
+      }
+   }
+
+   /**
+    * @return the buffer shared by the files of this factory, or null if not buffered
+    */
+   public TimedBuffer getTimedBuffer()
+   {
+      return timedBuffer;
+   }
+
    public void flush()
    {
       if (timedBuffer != null)
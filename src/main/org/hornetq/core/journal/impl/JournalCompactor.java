@@ -14,12 +14,8 @@
 package org.hornetq.core.journal.impl;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.HornetQBuffers;
@@ -35,6 +31,7 @@ import org.hornetq.core.journal.impl.dataformat.JournalDeleteRecordTX;
 import org.hornetq.core.journal.impl.dataformat.JournalInternalRecord;
 import org.hornetq.core.journal.impl.dataformat.JournalRollbackRecordTX;
 import org.hornetq.core.logging.Logger;
+import org.hornetq.utils.ConcurrentLongHashMap;
 
 /**
  * A JournalCompactor
@@ -53,18 +50,24 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
    // We will force a moveNextFiles when the compactCount is bellow than COMPACT_SPLIT_LINE
    private final short COMPACT_SPLIT_LINE = 2;
 
+   // When only the oldest files are compacted, the new files take the IDs of the compacted ones, so they can't be split
+   private final boolean incremental;
+
    // Snapshot of transactions that were pending when the compactor started
-   private final Map<Long, PendingTransaction> pendingTransactions = new ConcurrentHashMap<Long, PendingTransaction>();
+   private final ConcurrentLongHashMap<PendingTransaction> pendingTransactions = new ConcurrentLongHashMap<PendingTransaction>();
 
-   private final Map<Long, JournalRecord> newRecords = new HashMap<Long, JournalRecord>();
+   private final ConcurrentLongHashMap<JournalRecord> newRecords = new ConcurrentLongHashMap<JournalRecord>();
 
-   private final Map<Long, JournalTransaction> newTransactions = new HashMap<Long, JournalTransaction>();
+   private final ConcurrentLongHashMap<JournalTransaction> newTransactions = new ConcurrentLongHashMap<JournalTransaction>();
 
    /** Commands that happened during compacting
     *  We can't process any counts during compacting, as we won't know in what files the records are taking place, so
     *  we cache those updates. As soon as we are done we take the right account. */
    private final LinkedList<CompactCommand> pendingCommands = new LinkedList<CompactCommand>();
 
+   // Read by the compacting thread while the appends are queueing commands
+   private volatile int pendingCommandsSize;
+
    public static SequentialFile readControlFile(final SequentialFileFactory fileFactory,
                                                 final List<String> dataFiles,
                                                 final List<String> newFiles,
@@ -132,12 +135,12 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
       return newDataFiles;
    }
 
-   public Map<Long, JournalRecord> getNewRecords()
+   public ConcurrentLongHashMap<JournalRecord> getNewRecords()
    {
       return newRecords;
    }
 
-   public Map<Long, JournalTransaction> getNewTransactions()
+   public ConcurrentLongHashMap<JournalTransaction> getNewTransactions()
    {
       return newTransactions;
    }
@@ -145,10 +148,25 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
    public JournalCompactor(final SequentialFileFactory fileFactory,
                            final JournalImpl journal,
                            final JournalFilesRepository filesRepository,
-                           final Set<Long> recordsSnapshot,
+                           final long[] recordsSnapshot,
                            final long firstFileID)
+   {
+      this(fileFactory, journal, filesRepository, recordsSnapshot, firstFileID, false);
+   }
+
+   /**
+    * @param incremental true when only the oldest data files are compacted, the records on the other files being left
+    *           where they are
+    */
+   public JournalCompactor(final SequentialFileFactory fileFactory,
+                           final JournalImpl journal,
+                           final JournalFilesRepository filesRepository,
+                           final long[] recordsSnapshot,
+                           final long firstFileID,
+                           final boolean incremental)
    {
       super(fileFactory, journal, filesRepository, recordsSnapshot, firstFileID);
+      this.incremental = incremental;
    }
 
    /** This methods informs the Compactor about the existence of a pending (non committed) transaction */
@@ -159,7 +177,7 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
 
    public void addCommandCommit(final JournalTransaction liveTransaction, final JournalFile currentFile)
    {
-      pendingCommands.add(new CommitCompactCommand(liveTransaction, currentFile));
+      addCommand(new CommitCompactCommand(liveTransaction, currentFile));
 
       long ids[] = liveTransaction.getPositiveArray();
 
@@ -192,7 +210,7 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
 
    public void addCommandRollback(final JournalTransaction liveTransaction, final JournalFile currentFile)
    {
-      pendingCommands.add(new RollbackCompactCommand(liveTransaction, currentFile));
+      addCommand(new RollbackCompactCommand(liveTransaction, currentFile));
    }
 
    /**
@@ -201,7 +219,7 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
     */
    public void addCommandDelete(final long id, final JournalFile usedFile)
    {
-      pendingCommands.add(new DeleteCompactCommand(id, usedFile));
+      addCommand(new DeleteCompactCommand(id, usedFile));
    }
 
    /**
@@ -210,7 +228,21 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
     */
    public void addCommandUpdate(final long id, final JournalFile usedFile, final int size)
    {
-      pendingCommands.add(new UpdateCompactCommand(id, usedFile, size));
+      addCommand(new UpdateCompactCommand(id, usedFile, size));
+   }
+
+   /**
+    * @return the number of commands queued by concurrent appends, to be replayed when compacting is done
+    */
+   public int getPendingCommandsSize()
+   {
+      return pendingCommandsSize;
+   }
+
+   private void addCommand(final CompactCommand command)
+   {
+      pendingCommands.add(command);
+      pendingCommandsSize = pendingCommands.size();
    }
 
    private void checkSize(final int size) throws Exception
@@ -256,6 +288,11 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
 
    private boolean checkCompact(final int compactCount) throws Exception
    {
+      if (incremental)
+      {
+         return false;
+      }
+
       if (compactCount >= COMPACT_SPLIT_LINE && !splitted)
       {
          willNeedToSplit = true;
@@ -292,6 +329,7 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
       }
 
       pendingCommands.clear();
+      pendingCommandsSize = 0;
    }
 
    // JournalReaderCallback implementation -------------------------------------------
@@ -641,7 +679,7 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
    /* (non-Javadoc)
     * @see org.hornetq.core.journal.impl.JournalRecordsProvider#getRecords()
     */
-   public Map<Long, JournalRecord> getRecords()
+   public ConcurrentLongHashMap<JournalRecord> getRecords()
    {
       return newRecords;
    }
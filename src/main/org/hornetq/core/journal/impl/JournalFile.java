@@ -49,6 +49,12 @@ public interface JournalFile
    /** The total number of deletes this file has */
    int getTotalNegativeToOthers();
 
+   /** Called when a transaction with records on this file is committed or rolled back on completionFile */
+   void transactionCompleted(JournalFile completionFile);
+
+   /** The ID of the last file where a transaction with records on this file was completed, -1 if there is none */
+   long getLastTransactionCompletionFileID();
+
    void setCanReclaim(boolean canDelete);
 
    boolean isCanReclaim();
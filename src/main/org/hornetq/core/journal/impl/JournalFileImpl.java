@@ -49,6 +49,9 @@ public class JournalFileImpl implements JournalFile
 
    private final AtomicInteger totalNegativeToOthers = new AtomicInteger(0);
 
+   // Transactions are completed holding the append lock
+   private volatile long lastTransactionCompletionFileID = -1;
+
    private final int version;
 
    private final Map<JournalFile, AtomicInteger> negCounts = new ConcurrentHashMap<JournalFile, AtomicInteger>();
@@ -70,6 +73,7 @@ public class JournalFileImpl implements JournalFile
       posCount.set(0);
       liveBytes.set(0);
       totalNegativeToOthers.set(0);
+      lastTransactionCompletionFileID = -1;
    }
 
    public int getPosCount()
@@ -117,7 +121,19 @@ public class JournalFileImpl implements JournalFile
 
    public boolean resetNegCount(final JournalFile file)
    {
-      return negCounts.remove(file) != null;
+      AtomicInteger count = negCounts.remove(file);
+
+      if (count == null)
+      {
+         return false;
+      }
+
+      if (file != this)
+      {
+         totalNegativeToOthers.addAndGet(-count.intValue());
+      }
+
+      return true;
    }
 
    public void incPosCount()
@@ -229,4 +245,17 @@ public class JournalFileImpl implements JournalFile
       return totalNegativeToOthers.get();
    }
 
+   public void transactionCompleted(final JournalFile completionFile)
+   {
+      if (completionFile.getFileID() > lastTransactionCompletionFileID)
+      {
+         lastTransactionCompletionFileID = completionFile.getFileID();
+      }
+   }
+
+   public long getLastTransactionCompletionFileID()
+   {
+      return lastTransactionCompletionFileID;
+   }
+
 }
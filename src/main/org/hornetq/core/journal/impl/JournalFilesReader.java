@@ -0,0 +1,339 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.journal.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hornetq.core.journal.RecordInfo;
+import org.hornetq.core.journal.SequentialFileFactory;
+
+/**
+ * Reads a list of journal files in order while decoding the next files on background threads.
+ * <p>
+ * Each file is decoded into a batch of callbacks by {@link JournalImpl#readJournalFile(SequentialFileFactory, JournalFile, JournalReaderCallback)}
+ * on a pool of <code>parallelism</code> threads. {@link #read(JournalFile, JournalReaderCallback)} then replays the batch on the calling
+ * thread, so the callback sees exactly the same sequence it would see on a sequential read.
+ * At most <code>parallelism</code> files are decoded ahead of the one being replayed, which bounds the memory used.
+ * </p>
+ * <p>
+ * The threads are released once the last file was read or a read failed. They also time out when idle, so a caller
+ * that gives up half way doesn't have to call {@link #close()}.
+ * </p>
+ */
+public class JournalFilesReader
+{
+   // Constants -----------------------------------------------------
+
+   private static final byte ADD_RECORD = 0;
+
+   private static final byte UPDATE_RECORD = 1;
+
+   private static final byte DELETE_RECORD = 2;
+
+   private static final byte ADD_RECORD_TX = 3;
+
+   private static final byte UPDATE_RECORD_TX = 4;
+
+   private static final byte DELETE_RECORD_TX = 5;
+
+   private static final byte PREPARE_RECORD = 6;
+
+   private static final byte COMMIT_RECORD = 7;
+
+   private static final byte ROLLBACK_RECORD = 8;
+
+   private static final byte MARK_AS_DATA_FILE = 9;
+
+   private static final long IDLE_TIMEOUT = 10;
+
+   // Attributes ----------------------------------------------------
+
+   private final SequentialFileFactory fileFactory;
+
+   private final List<JournalFile> files;
+
+   private final int parallelism;
+
+   private final ThreadPoolExecutor executor;
+
+   private final LinkedList<Future<FileBatch>> pending = new LinkedList<Future<FileBatch>>();
+
+   private int nextToSubmit;
+
+   private int nextToRead;
+
+   // Constructors --------------------------------------------------
+
+   /**
+    * @param parallelism number of files decoded concurrently. With 1 (or a single file) the files are read on the calling thread.
+    */
+   public JournalFilesReader(final SequentialFileFactory fileFactory, final List<JournalFile> files, final int parallelism)
+   {
+      this.fileFactory = fileFactory;
+      this.files = files;
+      this.parallelism = Math.max(1, Math.min(parallelism, files.size()));
+
+      if (this.parallelism > 1)
+      {
+         final AtomicInteger threadCount = new AtomicInteger(0);
+
+         executor = new ThreadPoolExecutor(this.parallelism,
+                                           this.parallelism,
+                                           JournalFilesReader.IDLE_TIMEOUT,
+                                           TimeUnit.SECONDS,
+                                           new LinkedBlockingQueue<Runnable>(),
+                                           new ThreadFactory()
+                                           {
+                                              public Thread newThread(final Runnable r)
+                                              {
+                                                 Thread t = new Thread(r, "JournalImpl::FilesReader-" + threadCount.incrementAndGet());
+                                                 t.setDaemon(true);
+                                                 return t;
+                                              }
+                                           });
+
+         executor.allowCoreThreadTimeOut(true);
+      }
+      else
+      {
+         executor = null;
+      }
+   }
+
+   // Public --------------------------------------------------------
+
+   /**
+    * Reads the next file, which has to be passed in the same order as the list given on the constructor.
+    *
+    * @return the position after the last valid record, as returned by {@link JournalImpl#readJournalFile(SequentialFileFactory, JournalFile, JournalReaderCallback)}
+    */
+   public int read(final JournalFile file, final JournalReaderCallback reader) throws Exception
+   {
+      if (nextToRead >= files.size() || files.get(nextToRead) != file)
+      {
+         throw new IllegalStateException("Files have to be read in the order they were given, got " + file);
+      }
+
+      nextToRead++;
+
+      if (executor == null)
+      {
+         return JournalImpl.readJournalFile(fileFactory, file, reader);
+      }
+
+      while (nextToSubmit < files.size() && nextToSubmit < nextToRead + parallelism)
+      {
+         final JournalFile toRead = files.get(nextToSubmit++);
+
+         pending.add(executor.submit(new Callable<FileBatch>()
+         {
+            public FileBatch call() throws Exception
+            {
+               FileBatch batch = new FileBatch();
+               batch.lastDataPos = JournalImpl.readJournalFile(fileFactory, toRead, batch);
+               return batch;
+            }
+         }));
+      }
+
+      boolean success = false;
+
+      try
+      {
+         FileBatch batch = pending.removeFirst().get();
+
+         batch.replay(file, reader);
+
+         success = true;
+
+         return batch.lastDataPos;
+      }
+      catch (ExecutionException e)
+      {
+         Throwable cause = e.getCause();
+
+         if (cause instanceof Exception)
+         {
+            throw (Exception)cause;
+         }
+         else if (cause instanceof Error)
+         {
+            throw (Error)cause;
+         }
+         throw e;
+      }
+      finally
+      {
+         if (!success || nextToRead == files.size())
+         {
+            close();
+         }
+      }
+   }
+
+   public void close()
+   {
+      if (executor != null)
+      {
+         for (Future<FileBatch> future : pending)
+         {
+            future.cancel(false);
+         }
+
+         pending.clear();
+
+         executor.shutdown();
+      }
+   }
+
+   // Inner classes -------------------------------------------------
+
+   /** The callbacks decoded from one file, in the order they were read */
+   private static final class FileBatch implements JournalReaderCallback
+   {
+      private final List<Event> events = new ArrayList<Event>();
+
+      int lastDataPos;
+
+      void replay(final JournalFile file, final JournalReaderCallback reader) throws Exception
+      {
+         for (Event event : events)
+         {
+            switch (event.type)
+            {
+               case ADD_RECORD:
+                  reader.onReadAddRecord(event.info);
+                  break;
+               case UPDATE_RECORD:
+                  reader.onReadUpdateRecord(event.info);
+                  break;
+               case DELETE_RECORD:
+                  reader.onReadDeleteRecord(event.id);
+                  break;
+               case ADD_RECORD_TX:
+                  reader.onReadAddRecordTX(event.id, event.info);
+                  break;
+               case UPDATE_RECORD_TX:
+                  reader.onReadUpdateRecordTX(event.id, event.info);
+                  break;
+               case DELETE_RECORD_TX:
+                  reader.onReadDeleteRecordTX(event.id, event.info);
+                  break;
+               case PREPARE_RECORD:
+                  reader.onReadPrepareRecord(event.id, event.extraData, event.numberOfRecords);
+                  break;
+               case COMMIT_RECORD:
+                  reader.onReadCommitRecord(event.id, event.numberOfRecords);
+                  break;
+               case ROLLBACK_RECORD:
+                  reader.onReadRollbackRecord(event.id);
+                  break;
+               case MARK_AS_DATA_FILE:
+                  reader.markAsDataFile(file);
+                  break;
+               default:
+                  throw new IllegalStateException("Invalid event type " + event.type);
+            }
+         }
+      }
+
+      private void add(final byte type, final long id, final RecordInfo info, final byte[] extraData, final int numberOfRecords)
+      {
+         events.add(new Event(type, id, info, extraData, numberOfRecords));
+      }
+
+      public void onReadAddRecord(final RecordInfo info) throws Exception
+      {
+         add(ADD_RECORD, 0, info, null, 0);
+      }
+
+      public void onReadUpdateRecord(final RecordInfo info) throws Exception
+      {
+         add(UPDATE_RECORD, 0, info, null, 0);
+      }
+
+      public void onReadDeleteRecord(final long recordID) throws Exception
+      {
+         add(DELETE_RECORD, recordID, null, null, 0);
+      }
+
+      public void onReadAddRecordTX(final long transactionID, final RecordInfo info) throws Exception
+      {
+         add(ADD_RECORD_TX, transactionID, info, null, 0);
+      }
+
+      public void onReadUpdateRecordTX(final long transactionID, final RecordInfo info) throws Exception
+      {
+         add(UPDATE_RECORD_TX, transactionID, info, null, 0);
+      }
+
+      public void onReadDeleteRecordTX(final long transactionID, final RecordInfo info) throws Exception
+      {
+         add(DELETE_RECORD_TX, transactionID, info, null, 0);
+      }
+
+      public void onReadPrepareRecord(final long transactionID, final byte[] extraData, final int numberOfRecords) throws Exception
+      {
+         add(PREPARE_RECORD, transactionID, null, extraData, numberOfRecords);
+      }
+
+      public void onReadCommitRecord(final long transactionID, final int numberOfRecords) throws Exception
+      {
+         add(COMMIT_RECORD, transactionID, null, null, numberOfRecords);
+      }
+
+      public void onReadRollbackRecord(final long transactionID) throws Exception
+      {
+         add(ROLLBACK_RECORD, transactionID, null, null, 0);
+      }
+
+      public void markAsDataFile(final JournalFile file)
+      {
+         add(MARK_AS_DATA_FILE, 0, null, null, 0);
+      }
+   }
+
+   private static final class Event
+   {
+      final byte type;
+
+      /** transactionID, or the recordID on deletes */
+      final long id;
+
+      final RecordInfo info;
+
+      final byte[] extraData;
+
+      final int numberOfRecords;
+
+      Event(final byte type, final long id, final RecordInfo info, final byte[] extraData, final int numberOfRecords)
+      {
+         this.type = type;
+         this.id = id;
+         this.info = info;
+         this.extraData = extraData;
+         this.numberOfRecords = numberOfRecords;
+      }
+   }
+}
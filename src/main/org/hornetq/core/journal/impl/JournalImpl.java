@@ -24,8 +24,6 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -62,7 +60,10 @@ import org.hornetq.core.journal.impl.dataformat.JournalDeleteRecordTX;
 import org.hornetq.core.journal.impl.dataformat.JournalInternalRecord;
 import org.hornetq.core.journal.impl.dataformat.JournalRollbackRecordTX;
 import org.hornetq.core.logging.Logger;
+import org.hornetq.utils.ConcurrentLongHashMap;
 import org.hornetq.utils.DataConstants;
+import org.hornetq.utils.TokenBucketLimiter;
+import org.hornetq.utils.TokenBucketLimiterImpl;
 
 /**
  * 
@@ -112,6 +113,15 @@ public class JournalImpl implements TestableJournal, JournalRecordProvider
       JournalImpl.log.trace(message);
    }
 
+   // Number of files decoded concurrently during load, see JournalFilesReader
+   public static final int DEFAULT_LOAD_PARALLELISM = 2;
+
+   private static final int COMPACT_RATE_UNIT = 1024;
+
+   // Appends made while compacting are queued on the compactor and only replayed at the end. Once this many are queued
+   // the compactor stops waiting on the limiter, so throttling doesn't make the queue grow without bound
+   public static final int DEFAULT_COMPACT_THROTTLE_MAX_PENDING_COMMANDS = 10000;
+
    // The sizes of primitive types
 
    public static final int MIN_FILE_SIZE = 1024;
@@ -171,6 +181,27 @@ public class JournalImpl implements TestableJournal, JournalRecordProvider
 
    private volatile boolean autoReclaim = true;
 
+   private volatile int loadParallelism = JournalImpl.DEFAULT_LOAD_PARALLELISM;
+
+   // Limits the IO done while compacting, null means no limit. Each token accounts for COMPACT_RATE_UNIT bytes
+   private volatile TokenBucketLimiter compactLimiter;
+
+   private volatile int compactThrottleMaxPendingCommands = JournalImpl.DEFAULT_COMPACT_THROTTLE_MAX_PENDING_COMMANDS;
+
+   // Maximum number of data files read by each compacting, starting from the oldest ones. <= 0 means all of them
+   private volatile int compactMaxFiles = -1;
+
+   // Compacting statistics
+   private volatile int compactFilesToProcess;
+
+   private volatile int compactFilesProcessed;
+
+   private final AtomicLong compactCount = new AtomicLong(0);
+
+   private final AtomicLong compactReclaimedBytes = new AtomicLong(0);
+
+   private volatile long lastCompactDuration;
+
    private final int userVersion;
 
    private final int fileSize;
@@ -186,10 +217,10 @@ public class JournalImpl implements TestableJournal, JournalRecordProvider
    private final JournalFilesRepository filesRepository;
 
    // Compacting may replace this structure
-   private final ConcurrentMap<Long, JournalRecord> records = new ConcurrentHashMap<Long, JournalRecord>();
+   private final ConcurrentLongHashMap<JournalRecord> records = new ConcurrentLongHashMap<JournalRecord>();
 
    // Compacting may replace this structure
-   private final ConcurrentMap<Long, JournalTransaction> transactions = new ConcurrentHashMap<Long, JournalTransaction>();
+   private final ConcurrentLongHashMap<JournalTransaction> transactions = new ConcurrentLongHashMap<JournalTransaction>();
 
    // This will be set only while the JournalCompactor is being executed
    private volatile JournalCompactor compactor;
@@ -364,7 +395,7 @@ public class JournalImpl implements TestableJournal, JournalRecordProvider
       latch.await();
    }
 
-   public Map<Long, JournalRecord> getRecords()
+   public ConcurrentLongHashMap<JournalRecord> getRecords()
    {
       return records;
    }
@@ -1637,8 +1668,18 @@ public class JournalImpl implements TestableJournal, JournalRecordProvider
 
       ArrayList<JournalFile> dataFilesToProcess = new ArrayList<JournalFile>(filesRepository.getDataFilesCount());
 
+      // Only set when compacting the oldest files (compactMaxFiles), holding the records added on them
+      ConcurrentLongHashMap<JournalRecord> replacedRecords = null;
+
+      Set<JournalFile> compactedFiles = null;
+
+      // The compacted files must take IDs lower than this one, so they are still loaded before the files left behind
+      long nextFileID = Long.MAX_VALUE;
+
       boolean previousReclaimValue = autoReclaim;
 
+      long start = System.currentTimeMillis();
+
       try
       {
          log.debug("Starting compacting operation on journal");
@@ -1666,44 +1707,106 @@ public class JournalImpl implements TestableJournal, JournalRecordProvider
 
             dataFilesToProcess.addAll(filesRepository.getDataFiles());
 
-            filesRepository.clearDataFiles();
-
             if (dataFilesToProcess.size() == 0)
             {
                trace("Finishing compacting, nothing to process");
                return;
             }
 
-            compactor = new JournalCompactor(fileFactory,
-                                             this,
-                                             filesRepository,
-                                             records.keySet(),
-                                             dataFilesToProcess.get(0).getFileID());
+            Collections.sort(dataFilesToProcess, new JournalFileComparator());
+
+            int filesToCompact = selectFilesToCompact(dataFilesToProcess);
 
-            for (Map.Entry<Long, JournalTransaction> entry : transactions.entrySet())
+            if (filesToCompact == dataFilesToProcess.size())
             {
-               compactor.addPendingTransaction(entry.getKey(), entry.getValue().getPositiveArray());
-               entry.getValue().setCompacting();
+               filesRepository.clearDataFiles();
+
+               compactor = new JournalCompactor(fileFactory,
+                                                this,
+                                                filesRepository,
+                                                records.keys(),
+                                                dataFilesToProcess.get(0).getFileID());
+
+               ConcurrentLongHashMap.EntryCursor<JournalTransaction> pendingTransactions = transactions.entryCursor();
+
+               while (pendingTransactions.next())
+               {
+                  compactor.addPendingTransaction(pendingTransactions.getKey(),
+                                                  pendingTransactions.getValue().getPositiveArray());
+                  pendingTransactions.getValue().setCompacting();
+               }
+
+               // We will calculate the new records during compacting, what will take the position the records will
+               // take after compacting
+               records.clear();
             }
+            else
+            {
+               nextFileID = dataFilesToProcess.get(filesToCompact).getFileID();
+
+               dataFilesToProcess.subList(filesToCompact, dataFilesToProcess.size()).clear();
+
+               compactedFiles = new HashSet<JournalFile>(dataFilesToProcess);
+
+               for (JournalFile file : dataFilesToProcess)
+               {
+                  filesRepository.removeDataFile(file);
+               }
+
+               // The records added on the compacted files are taken out until compacting is done, so updates and
+               // deletes on them are queued on the compactor. The other records stay where they are
+               replacedRecords = new ConcurrentLongHashMap<JournalRecord>();
 
-            // We will calculate the new records during compacting, what will take the position the records will take
-            // after compacting
-            records.clear();
+               ConcurrentLongHashMap.EntryCursor<JournalRecord> recordsCursor = records.entryCursor();
+
+               while (recordsCursor.next())
+               {
+                  if (compactedFiles.contains(recordsCursor.getValue().getAddFile()))
+                  {
+                     replacedRecords.put(recordsCursor.getKey(), recordsCursor.getValue());
+                  }
+               }
+
+               long[] replacedIDs = replacedRecords.keys();
+
+               for (long id : replacedIDs)
+               {
+                  records.remove(id);
+               }
+
+               compactor = new JournalCompactor(fileFactory,
+                                                this,
+                                                filesRepository,
+                                                replacedIDs,
+                                                dataFilesToProcess.get(0).getFileID(),
+                                                true);
+
+               if (JournalImpl.trace)
+               {
+                  JournalImpl.trace("Compacting " + filesToCompact + " files with " + replacedIDs.length + " records");
+               }
+            }
          }
          finally
          {
             compactingLock.writeLock().unlock();
          }
 
-         Collections.sort(dataFilesToProcess, new JournalFileComparator());
-
          // This is where most of the work is done, taking most of the time of the compacting routine.
          // Notice there are no locks while this is being done.
 
          // Read the files, and use the JournalCompactor class to create the new outputFiles, and the new collections as
          // well
+         compactFilesToProcess = dataFilesToProcess.size();
+         compactFilesProcessed = 0;
+
          for (final JournalFile file : dataFilesToProcess)
          {
+            // Throttling happens between files, so the journal is never locked while waiting for the limiter
+            throttleCompact(compactor, fileSize);
+
+            long writtenBefore = compactor.getBytesWritten();
+
             try
             {
                JournalImpl.readJournalFile(fileFactory, file, compactor);
@@ -1713,10 +1816,25 @@ public class JournalImpl implements TestableJournal, JournalRecordProvider
                JournalImpl.log.warn("Error on reading compacting for " + file);
                throw new Exception("Error on reading compacting for " + file, e);
             }
+
+            throttleCompact(compactor, compactor.getBytesWritten() - writtenBefore);
+
+            compactFilesProcessed++;
          }
 
          compactor.flush();
 
+         for (JournalFile newFile : compactor.getNewDataFiles())
+         {
+            if (newFile.getFileID() >= nextFileID)
+            {
+               throw new IllegalStateException("Compacted file " + newFile +
+                                               " would be loaded after the file " +
+                                               nextFileID +
+                                               ", that was not compacted");
+            }
+         }
+
          // pointcut for tests
          // We need to test concurrent updates on the journal, as the compacting is being performed.
          // Usually tests will use this to hold the compacting while other structures are being updated.
@@ -1739,9 +1857,40 @@ public class JournalImpl implements TestableJournal, JournalRecordProvider
             newDatafiles = localCompactor.getNewDataFiles();
 
             // Restore newRecords created during compacting
-            for (Map.Entry<Long, JournalRecord> newRecordEntry : localCompactor.getNewRecords().entrySet())
+            if (replacedRecords == null)
+            {
+               records.putAll(localCompactor.getNewRecords());
+            }
+            else
             {
-               records.put(newRecordEntry.getKey(), newRecordEntry.getValue());
+               // The deletes on files left behind may still account the compacted files
+               for (JournalFile file : filesRepository.getDataFiles())
+               {
+                  for (JournalFile compactedFile : compactedFiles)
+                  {
+                     file.resetNegCount(compactedFile);
+                  }
+               }
+
+               for (JournalFile compactedFile : compactedFiles)
+               {
+                  currentFile.resetNegCount(compactedFile);
+               }
+
+               ConcurrentLongHashMap.EntryCursor<JournalRecord> newRecords = localCompactor.getNewRecords()
+                                                                                          .entryCursor();
+
+               while (newRecords.next())
+               {
+                  JournalRecord replaced = replacedRecords.get(newRecords.getKey());
+
+                  if (replaced != null)
+                  {
+                     newRecords.getValue().takeUpdateFiles(replaced, compactedFiles);
+                  }
+
+                  records.put(newRecords.getKey(), newRecords.getValue());
+               }
             }
 
             // Restore compacted dataFiles
@@ -1762,7 +1911,7 @@ public class JournalImpl implements TestableJournal, JournalRecordProvider
 
             // Replay pending commands (including updates, deletes and commits)
 
-            for (JournalTransaction newTransaction : localCompactor.getNewTransactions().values())
+            for (JournalTransaction newTransaction : localCompactor.getNewTransactions().valuesSnapshot())
             {
                newTransaction.replaceRecordProvider(this);
             }
@@ -1773,7 +1922,7 @@ public class JournalImpl implements TestableJournal, JournalRecordProvider
             // This has to be done after the replay pending commands, as we need to delete committs that happened during
             // the compacting
 
-            for (JournalTransaction newTransaction : localCompactor.getNewTransactions().values())
+            for (JournalTransaction newTransaction : localCompactor.getNewTransactions().valuesSnapshot())
             {
                if (JournalImpl.trace)
                {
@@ -1799,6 +1948,10 @@ public class JournalImpl implements TestableJournal, JournalRecordProvider
          renameFiles(dataFilesToProcess, newDatafiles);
          deleteControlFile(controlFile);
 
+         compactCount.incrementAndGet();
+         compactReclaimedBytes.addAndGet((long)(dataFilesToProcess.size() - newDatafiles.size()) * fileSize);
+         lastCompactDuration = System.currentTimeMillis() - start;
+
          log.debug("Finished compacting on journal");
          
       }
@@ -1822,6 +1975,69 @@ public class JournalImpl implements TestableJournal, JournalRecordProvider
 
    }
 
+   /**
+    * Chooses how many of the oldest data files are compacted.
+    * <p>
+    * When compactMaxFiles is set, no transaction can be split between the compacted files and the ones left behind:
+    * the compacted files can't have records of pending transactions, and the transactions with records on them must
+    * have been committed or rolled back on them as well. The largest such number within compactMaxFiles is chosen, or
+    * the smallest one above it when there is none.
+    * </p>
+    * @param sortedDataFiles every data file, ordered by ID
+    */
+   private int selectFilesToCompact(final List<JournalFile> sortedDataFiles)
+   {
+      int maxFiles = compactMaxFiles;
+
+      if (maxFiles <= 0 || maxFiles >= sortedDataFiles.size())
+      {
+         return sortedDataFiles.size();
+      }
+
+      long firstPendingFileID = Long.MAX_VALUE;
+
+      for (JournalTransaction tx : transactions.valuesSnapshot())
+      {
+         Set<JournalFile> pendingFiles = tx.getPendingFiles();
+
+         if (pendingFiles != null)
+         {
+            for (JournalFile file : pendingFiles)
+            {
+               firstPendingFileID = Math.min(firstPendingFileID, file.getFileID());
+            }
+         }
+      }
+
+      int chosen = 0;
+
+      long lastCompletionFileID = -1;
+
+      for (int count = 1; count < sortedDataFiles.size(); count++)
+      {
+         JournalFile lastFile = sortedDataFiles.get(count - 1);
+
+         if (lastFile.getFileID() >= firstPendingFileID)
+         {
+            break;
+         }
+
+         lastCompletionFileID = Math.max(lastCompletionFileID, lastFile.getLastTransactionCompletionFileID());
+
+         if (lastCompletionFileID < sortedDataFiles.get(count).getFileID())
+         {
+            chosen = count;
+         }
+
+         if (count >= maxFiles && chosen > 0)
+         {
+            break;
+         }
+      }
+
+      return chosen == 0 ? sortedDataFiles.size() : chosen;
+   }
+
    /** 
     * <p>Load data accordingly to the record layouts</p>
     * 
@@ -1864,7 +2080,24 @@ public class JournalImpl implements TestableJournal, JournalRecordProvider
       return load(loadManager, true);
    }
    
-   public synchronized JournalLoadInformation load(final LoaderCallback loadManager, final boolean changeData) throws Exception
+   public JournalLoadInformation loadStreaming(final LoaderCallback loadManager) throws Exception
+   {
+      return load(loadManager, true, true);
+   }
+
+   public JournalLoadInformation load(final LoaderCallback loadManager, final boolean changeData) throws Exception
+   {
+      return load(loadManager, changeData, false);
+   }
+
+   /**
+    * @param streaming when true the records are not passed to the loadManager while the files are scanned.
+    *                  They are read again by {@link #streamLiveRecords(List, ConcurrentLongHashMap, LoaderCallback)}
+    *                  once the scan has established which records are still alive.
+    */
+   private synchronized JournalLoadInformation load(final LoaderCallback loadManager,
+                                                    final boolean changeData,
+                                                    final boolean streaming) throws Exception
    {
       if (state != JournalImpl.STATE_STARTED)
       {
@@ -1889,13 +2122,20 @@ public class JournalImpl implements TestableJournal, JournalRecordProvider
 
       final AtomicLong maxID = new AtomicLong(-1);
 
+      // Transactions that were committed with all their records, used to replay them on streaming loads
+      final ConcurrentLongHashMap<Boolean> committedTransactions = new ConcurrentLongHashMap<Boolean>();
+
+      final List<JournalFile> filesWithData = new ArrayList<JournalFile>();
+
+      final JournalFilesReader filesReader = new JournalFilesReader(fileFactory, orderedFiles, loadParallelism);
+
       for (final JournalFile file : orderedFiles)
       {
          JournalImpl.trace("Loading file " + file.getFile().getFileName());
 
          final AtomicBoolean hasData = new AtomicBoolean(false);
 
-         int resultLastPost = JournalImpl.readJournalFile(fileFactory, file, new JournalReaderCallback()
+         int resultLastPost = filesReader.read(file, new JournalReaderCallback()
          {
 
             private void checkID(final long id)
@@ -1912,7 +2152,10 @@ public class JournalImpl implements TestableJournal, JournalRecordProvider
 
                hasData.set(true);
 
-               loadManager.addRecord(info);
+               if (!streaming)
+               {
+                  loadManager.addRecord(info);
+               }
 
                records.put(info.id, new JournalRecord(file, info.data.length + JournalImpl.SIZE_ADD_RECORD + 1));
             }
@@ -1923,7 +2166,10 @@ public class JournalImpl implements TestableJournal, JournalRecordProvider
 
                hasData.set(true);
 
-               loadManager.updateRecord(info);
+               if (!streaming)
+               {
+                  loadManager.updateRecord(info);
+               }
 
                JournalRecord posFiles = records.get(info.id);
 
@@ -1942,7 +2188,10 @@ public class JournalImpl implements TestableJournal, JournalRecordProvider
             {
                hasData.set(true);
 
-               loadManager.deleteRecord(recordID);
+               if (!streaming)
+               {
+                  loadManager.deleteRecord(recordID);
+               }
 
                JournalRecord posFiles = records.remove(recordID);
 
@@ -2081,23 +2330,30 @@ public class JournalImpl implements TestableJournal, JournalRecordProvider
 
                   if (healthy)
                   {
-                     for (RecordInfo txRecord : tx.recordInfos)
+                     if (streaming)
+                     {
+                        committedTransactions.put(transactionID, Boolean.TRUE);
+                     }
+                     else
                      {
-                        if (txRecord.isUpdate)
+                        for (RecordInfo txRecord : tx.recordInfos)
                         {
-                           loadManager.updateRecord(txRecord);
+                           if (txRecord.isUpdate)
+                           {
+                              loadManager.updateRecord(txRecord);
+                           }
+                           else
+                           {
+                              loadManager.addRecord(txRecord);
+                           }
                         }
-                        else
+
+                        for (RecordInfo deleteValue : tx.recordsToDelete)
                         {
-                           loadManager.addRecord(txRecord);
+                           loadManager.deleteRecord(deleteValue.id);
                         }
                      }
 
-                     for (RecordInfo deleteValue : tx.recordsToDelete)
-                     {
-                        loadManager.deleteRecord(deleteValue.id);
-                     }
-
                      journalTransaction.commit(file);
                   }
                   else
@@ -2149,6 +2405,7 @@ public class JournalImpl implements TestableJournal, JournalRecordProvider
          {
             lastDataPos = resultLastPost;
             filesRepository.addDataFileOnBottom(file);
+            filesWithData.add(file);
          }
          else
          {
@@ -2160,6 +2417,11 @@ public class JournalImpl implements TestableJournal, JournalRecordProvider
          }
       }
 
+      if (streaming)
+      {
+         streamLiveRecords(filesWithData, committedTransactions, loadManager);
+      }
+
       // Create any more files we need
 
       filesRepository.ensureMinFiles();
@@ -2229,6 +2491,110 @@ public class JournalImpl implements TestableJournal, JournalRecordProvider
       return new JournalLoadInformation(records.size(), maxID.longValue());
    }
 
+   /**
+    * Second pass of a streaming load. The data files are read again and only the records still present on
+    * {@link #records} are handed to the loadManager, so deleted records never reach it.
+    * Transactional records are held until their commit record is read, as on a regular load.
+    */
+   private void streamLiveRecords(final List<JournalFile> files,
+                                  final ConcurrentLongHashMap<Boolean> committedTransactions,
+                                  final LoaderCallback loadManager) throws Exception
+   {
+      final ConcurrentLongHashMap<List<RecordInfo>> pendingTransactions = new ConcurrentLongHashMap<List<RecordInfo>>();
+
+      final JournalFilesReader filesReader = new JournalFilesReader(fileFactory, files, loadParallelism);
+
+      for (final JournalFile file : files)
+      {
+         JournalImpl.trace("Streaming records from file " + file.getFile().getFileName());
+
+         filesReader.read(file, new JournalReaderCallbackAbstract()
+         {
+            @Override
+            public void onReadAddRecord(final RecordInfo info) throws Exception
+            {
+               if (records.containsKey(info.id))
+               {
+                  loadManager.addRecord(info);
+               }
+            }
+
+            @Override
+            public void onReadUpdateRecord(final RecordInfo info) throws Exception
+            {
+               if (records.containsKey(info.id))
+               {
+                  loadManager.updateRecord(info);
+               }
+            }
+
+            @Override
+            public void onReadUpdateRecordTX(final long transactionID, final RecordInfo info) throws Exception
+            {
+               onReadAddRecordTX(transactionID, info);
+            }
+
+            @Override
+            public void onReadAddRecordTX(final long transactionID, final RecordInfo info) throws Exception
+            {
+               if (committedTransactions.containsKey(transactionID) && records.containsKey(info.id))
+               {
+                  List<RecordInfo> txRecords = pendingTransactions.get(transactionID);
+
+                  if (txRecords == null)
+                  {
+                     txRecords = new ArrayList<RecordInfo>();
+
+                     pendingTransactions.put(transactionID, txRecords);
+                  }
+
+                  txRecords.add(info);
+               }
+            }
+
+            @Override
+            public void onReadCommitRecord(final long transactionID, final int numberOfRecords) throws Exception
+            {
+               List<RecordInfo> txRecords = pendingTransactions.remove(transactionID);
+
+               if (txRecords != null)
+               {
+                  for (RecordInfo txRecord : txRecords)
+                  {
+                     if (txRecord.isUpdate)
+                     {
+                        loadManager.updateRecord(txRecord);
+                     }
+                     else
+                     {
+                        loadManager.addRecord(txRecord);
+                     }
+                  }
+               }
+            }
+         });
+      }
+   }
+
+   private void throttleCompact(final JournalCompactor localCompactor, final long bytes)
+   {
+      TokenBucketLimiter limiter = compactLimiter;
+
+      if (limiter != null)
+      {
+         for (long units = bytes / JournalImpl.COMPACT_RATE_UNIT; units > 0; units--)
+         {
+            if (localCompactor.getPendingCommandsSize() >= compactThrottleMaxPendingCommands)
+            {
+               // finish as fast as possible, so the pending commands are replayed and released
+               return;
+            }
+
+            limiter.limit();
+         }
+      }
+   }
+
    /** 
     * @return true if cleanup was called
     */
@@ -2353,6 +2719,100 @@ public class JournalImpl implements TestableJournal, JournalRecordProvider
       return autoReclaim;
    }
 
+   /**
+    * Number of journal files that are decoded concurrently while loading. 1 reads the files sequentially on the loading thread.
+    */
+   public void setLoadParallelism(final int loadParallelism)
+   {
+      this.loadParallelism = loadParallelism;
+   }
+
+   public int getLoadParallelism()
+   {
+      return loadParallelism;
+   }
+
+   /**
+    * Limits the bytes read and written per second while compacting, so the compactor doesn't take the disk away from
+    * regular appends. A value <= 0 removes the limit.
+    */
+   public void setCompactMaxRate(final int bytesPerSecond)
+   {
+      if (bytesPerSecond <= 0)
+      {
+         compactLimiter = null;
+      }
+      else
+      {
+         compactLimiter = new TokenBucketLimiterImpl(Math.max(1, bytesPerSecond / JournalImpl.COMPACT_RATE_UNIT), false);
+      }
+   }
+
+   public int getCompactMaxRate()
+   {
+      TokenBucketLimiter limiter = compactLimiter;
+
+      return limiter == null ? -1 : limiter.getRate() * JournalImpl.COMPACT_RATE_UNIT;
+   }
+
+   /**
+    * Limits compacting to the oldest data files, so each compacting reads at most this many files instead of the whole
+    * journal. More files may be read when the files within the limit have records of transactions completed on
+    * later files, and every file is read when there is no such limit. A value <= 0 removes the limit.
+    */
+   public void setCompactMaxFiles(final int maxFiles)
+   {
+      compactMaxFiles = maxFiles;
+   }
+
+   public int getCompactMaxFiles()
+   {
+      return compactMaxFiles;
+   }
+
+   /**
+    * Compacting stops being throttled once this many appends are waiting to be replayed on the compacted files.
+    */
+   public void setCompactThrottleMaxPendingCommands(final int maxPendingCommands)
+   {
+      compactThrottleMaxPendingCommands = maxPendingCommands;
+   }
+
+   public int getCompactThrottleMaxPendingCommands()
+   {
+      return compactThrottleMaxPendingCommands;
+   }
+
+   /** Number of compactions completed since the journal was created */
+   public long getCompactCount()
+   {
+      return compactCount.get();
+   }
+
+   /** Total size of the data files released by compacting */
+   public long getCompactReclaimedBytes()
+   {
+      return compactReclaimedBytes.get();
+   }
+
+   /** Duration in milliseconds of the last completed compaction */
+   public long getLastCompactDuration()
+   {
+      return lastCompactDuration;
+   }
+
+   /** Number of files to be read by the current (or last) compaction */
+   public int getCompactFilesToProcess()
+   {
+      return compactFilesToProcess;
+   }
+
+   /** Number of files already read by the current (or last) compaction */
+   public int getCompactFilesProcessed()
+   {
+      return compactFilesProcessed;
+   }
+
    public String debug() throws Exception
    {
       reclaimer.scan(getDataFiles());
@@ -2404,7 +2864,7 @@ public class JournalImpl implements TestableJournal, JournalRecordProvider
    {
       fileFactory.flush();
 
-      for (JournalTransaction tx : transactions.values())
+      for (JournalTransaction tx : transactions.valuesSnapshot())
       {
          tx.waitCallbacks();
       }
@@ -15,6 +15,7 @@ package org.hornetq.core.journal.impl;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import org.hornetq.api.core.Pair;
 
@@ -45,6 +46,34 @@ public class JournalRecord
       addFile.addSize(size);
    }
 
+   JournalFile getAddFile()
+   {
+      return addFile;
+   }
+
+   /**
+    * Used by incremental compacting, when this record replaces one from the compacted files. The updates of the
+    * replaced record on the files that were not compacted are already accounted on those files.
+    */
+   void takeUpdateFiles(final JournalRecord replaced, final Set<JournalFile> compactedFiles)
+   {
+      if (replaced.updateFiles != null)
+      {
+         for (Pair<JournalFile, Integer> updFile : replaced.updateFiles)
+         {
+            if (!compactedFiles.contains(updFile.getA()))
+            {
+               if (updateFiles == null)
+               {
+                  updateFiles = new ArrayList<Pair<JournalFile, Integer>>();
+               }
+
+               updateFiles.add(updFile);
+            }
+         }
+      }
+   }
+
    void addUpdateFile(final JournalFile updateFile, final int size)
    {
       if (updateFiles == null)
@@ -103,6 +103,14 @@ public class JournalTransaction
       }
    }
 
+   /**
+    * @return the files this transaction has records on, null if there are none
+    */
+   public Set<JournalFile> getPendingFiles()
+   {
+      return pendingFiles;
+   }
+
    public void setCompacting()
    {
       compacting = true;
@@ -312,6 +320,7 @@ public class JournalTransaction
          for (JournalFile jf : pendingFiles)
          {
             file.incNegCount(jf);
+            jf.transactionCompleted(file);
          }
       }
    }
@@ -363,6 +372,7 @@ public class JournalTransaction
          for (JournalFile jf : pendingFiles)
          {
             file.incNegCount(jf);
+            jf.transactionCompleted(file);
          }
       }
    }
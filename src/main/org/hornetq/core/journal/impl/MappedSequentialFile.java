@@ -0,0 +1,92 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.journal.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.concurrent.Executor;
+
+import org.hornetq.api.core.HornetQException;
+import org.hornetq.core.journal.SequentialFile;
+import org.hornetq.core.journal.SequentialFileFactory;
+
+/**
+ * A NIOSequentialFile whose content can also be read through a memory mapping, without copying it to a buffer.
+ * Writes are still done through the file channel.
+ */
+public class MappedSequentialFile extends NIOSequentialFile
+{
+   private final int maxIO;
+
+   public MappedSequentialFile(final SequentialFileFactory factory,
+                               final String directory,
+                               final String fileName,
+                               final int maxIO,
+                               final Executor writerExecutor)
+   {
+      super(factory, directory, fileName, maxIO, writerExecutor);
+      this.maxIO = maxIO;
+   }
+
+   public MappedSequentialFile(final SequentialFileFactory factory,
+                               final File file,
+                               final int maxIO,
+                               final Executor writerExecutor)
+   {
+      super(factory, file, maxIO, writerExecutor);
+      this.maxIO = maxIO;
+   }
+
+   /**
+    * Maps the current content of the file, read only.
+    * <p>
+    * The mapping is only released when the returned buffer is garbage collected, it stays valid after the file is
+    * closed or deleted. The file must not be truncated while the buffer is in use.
+    * </p>
+    */
+   public synchronized ByteBuffer map() throws Exception
+   {
+      FileChannel channel = getChannel();
+
+      if (channel == null)
+      {
+         throw new HornetQException(HornetQException.IO_ERROR, "File " + getFileName() + " has a null channel");
+      }
+
+      try
+      {
+         return channel.map(MapMode.READ_ONLY, 0, channel.size());
+      }
+      catch (IOException e)
+      {
+         factory.onIOError(HornetQException.IO_ERROR, "MappedSequentialFile - Error mapping file=" + getFileName(), e, this);
+         throw e;
+      }
+   }
+
+   @Override
+   public SequentialFile cloneFile()
+   {
+      return new MappedSequentialFile(factory, getFile(), maxIO, writerExecutor);
+   }
+
+   @Override
+   public String toString()
+   {
+      return "MappedSequentialFile " + getFile();
+   }
+}
@@ -295,6 +295,11 @@ public class NIOSequentialFile extends AbstractSequentialFile
       return new NIOSequentialFile(factory, getFile(), maxIO, writerExecutor);
    }
 
+   protected synchronized FileChannel getChannel()
+   {
+      return channel;
+   }
+
    public void writeDirect(final ByteBuffer bytes, final boolean sync, final IOAsyncTask callback)
    {
       if (callback == null)
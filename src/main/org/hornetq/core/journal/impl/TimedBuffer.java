@@ -20,6 +20,7 @@ import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.hornetq.api.core.HornetQBuffer;
@@ -44,6 +45,12 @@ public class TimedBuffer
 
    protected static final Logger log = Logger.getLogger(TimedBuffer.class);
 
+   // On adaptive mode the timeout is never smaller than the configured timeout / ADAPTIVE_MIN_TIMEOUT_DIVIDER
+   private static final int ADAPTIVE_MIN_TIMEOUT_DIVIDER = 20;
+
+   // Each new sample weights 1 / (2 ^ SYNC_LATENCY_AVERAGE_SHIFT) on the average sync latency
+   private static final int SYNC_LATENCY_AVERAGE_SHIFT = 3;
+
    // Attributes ----------------------------------------------------
 
    protected TimedBufferObserver bufferObserver;
@@ -94,6 +101,19 @@ public class TimedBuffer
    // no need to be volatile as every access is synchronized
    private boolean spinning = false;
 
+   // for adaptive group commit
+
+   private volatile boolean adaptive = false;
+
+   // Moving average of the time (in nanoseconds) between flushing a buffer that requested sync and its completion
+   // 0 while nothing was measured yet
+   protected final AtomicLong averageSyncLatency = new AtomicLong(0);
+
+   // Flushes that requested sync and didn't complete yet
+   protected final AtomicInteger pendingSyncs = new AtomicInteger(0);
+
+   protected final AtomicLong syncsDone = new AtomicLong(0);
+
    // Static --------------------------------------------------------
 
    // Constructors --------------------------------------------------
@@ -134,6 +154,63 @@ public class TimedBuffer
       this.useSleep = useSleep;
    }
 
+   /**
+    * On adaptive mode the timeout is resized according to the sync latency observed on the completions of previous flushes.
+    * <p>
+    * While a sync is still pending on the device a new flush would have to wait for it anyway, so the buffer keeps
+    * collecting writes for about the time of one sync. When the device is idle the buffer waits only a fraction of that.
+    * The configured timeout is always the upper limit.
+    * </p>
+    */
+   public void setAdaptive(final boolean adaptive)
+   {
+      this.adaptive = adaptive;
+   }
+
+   public boolean isAdaptive()
+   {
+      return adaptive;
+   }
+
+   /**
+    * @return the timeout (in nanoseconds) currently used to flush pending syncs
+    */
+   public int getCurrentTimeout()
+   {
+      long latency = averageSyncLatency.get();
+
+      if (!adaptive || latency == 0)
+      {
+         return timeout;
+      }
+
+      long window = pendingSyncs.get() > 0 ? latency : latency / 4;
+
+      return (int)Math.max(timeout / TimedBuffer.ADAPTIVE_MIN_TIMEOUT_DIVIDER, Math.min(timeout, window));
+   }
+
+   /**
+    * @return the average time (in nanoseconds) taken to complete a flush that requested sync, 0 if nothing was measured
+    *         yet. Only measured on adaptive mode
+    */
+   public long getAverageSyncLatency()
+   {
+      return averageSyncLatency.get();
+   }
+
+   /**
+    * @return the number of flushes that requested sync and didn't complete yet
+    */
+   public int getPendingSyncs()
+   {
+      return pendingSyncs.get();
+   }
+
+   public long getSyncsDone()
+   {
+      return syncsDone.get();
+   }
+
    public synchronized void start()
    {
       if (started)
@@ -324,6 +401,12 @@ public class TimedBuffer
 
             bufferToFlush.put(buffer.toByteBuffer().array(), 0, pos);
 
+            if (pendingSync && adaptive)
+            {
+               // the latency is only measured when it's used. first on the list so the user's callbacks are not accounted as sync time
+               callbacks.add(0, new SyncLatencyCallback());
+            }
+
             bufferObserver.flushBuffer(bufferToFlush, pendingSync, callbacks);
 
             stopSpin();
@@ -348,8 +431,53 @@ public class TimedBuffer
 
    // Private -------------------------------------------------------
 
+   private void syncDone(final long latency)
+   {
+      long average;
+      long newAverage;
+
+      do
+      {
+         average = averageSyncLatency.get();
+
+         newAverage = average == 0 ? latency : average + ((latency - average) >> TimedBuffer.SYNC_LATENCY_AVERAGE_SHIFT);
+
+         if (newAverage == 0)
+         {
+            // 0 means no measure
+            newAverage = 1;
+         }
+      }
+      while (!averageSyncLatency.compareAndSet(average, newAverage));
+
+      syncsDone.incrementAndGet();
+   }
+
    // Inner classes -------------------------------------------------
 
+   /** Measures the time taken by the observer to write and sync a flushed buffer */
+   private class SyncLatencyCallback implements IOAsyncTask
+   {
+      private final long start = System.nanoTime();
+
+      SyncLatencyCallback()
+      {
+         pendingSyncs.incrementAndGet();
+      }
+
+      public void done()
+      {
+         pendingSyncs.decrementAndGet();
+
+         syncDone(System.nanoTime() - start);
+      }
+
+      public void onError(final int errorCode, final String errorMessage)
+      {
+         pendingSyncs.decrementAndGet();
+      }
+   }
+
    protected class LogRatesTimerTask extends TimerTask
    {
       private boolean closed;
@@ -379,6 +507,13 @@ public class TimedBuffer
                                     " MiB / sec");
                double flushRate = 1000 * (double)(flushesD - lastFlushesDone) / (now - lastExecution);
                TimedBuffer.log.info("Flush rate = " + flushRate + " flushes / sec");
+               if (adaptive)
+               {
+                  TimedBuffer.log.info("Average sync latency = " + getAverageSyncLatency() +
+                                       " ns, timeout = " +
+                                       getCurrentTimeout() +
+                                       " ns");
+               }
             }
 
             lastExecution = now;
@@ -406,9 +541,6 @@ public class TimedBuffer
       int failedChecks = 0;
       long timeBefore = 0;
 
-      final int sleepMillis = timeout / 1000000; // truncates
-      final int sleepNanos = timeout % 1000000;
-
 
       public void run()
       {
@@ -430,7 +562,7 @@ public class TimedBuffer
                lastFlushTime = System.nanoTime();
                }
                else
-               if (bufferObserver != null && System.nanoTime() > lastFlushTime + timeout)
+               if (bufferObserver != null && System.nanoTime() > lastFlushTime + getCurrentTimeout())
                {
                   // if not using flush we will spin and do the time checks manually
                   flush();
@@ -470,9 +602,12 @@ public class TimedBuffer
                timeBefore = System.nanoTime();
             }
 
+            // on adaptive mode the timeout may change at every loop
+            int sleepTimeout = getCurrentTimeout();
+
             try
             {
-               sleep(sleepMillis, sleepNanos);
+               sleep(sleepTimeout / 1000000, sleepTimeout % 1000000);
             }
             catch (InterruptedException e)
             {
@@ -489,6 +624,7 @@ public class TimedBuffer
                long realTimeSleep = System.nanoTime() - timeBefore;
 
                // I'm letting the real time to be up to 50% than the requested sleep.
+               // The configured timeout is used here as the adaptive timeout may be smaller than what nano-sleep can honour
                if (realTimeSleep > timeout * 1.5)
                {
                   failedChecks++;
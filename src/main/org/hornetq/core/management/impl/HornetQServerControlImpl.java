@@ -48,12 +48,15 @@ import org.hornetq.api.core.management.QueueControl;
 import org.hornetq.core.config.BridgeConfiguration;
 import org.hornetq.core.config.Configuration;
 import org.hornetq.core.config.DivertConfiguration;
+import org.hornetq.core.journal.impl.JournalImpl;
+import org.hornetq.core.journal.impl.TimedBuffer;
 import org.hornetq.core.logging.Logger;
 import org.hornetq.core.messagecounter.MessageCounterManager;
 import org.hornetq.core.messagecounter.impl.MessageCounterManagerImpl;
 import org.hornetq.core.persistence.StorageManager;
 import org.hornetq.core.persistence.config.PersistedAddressSetting;
 import org.hornetq.core.persistence.config.PersistedRoles;
+import org.hornetq.core.persistence.impl.journal.JournalStorageManager;
 import org.hornetq.core.postoffice.PostOffice;
 import org.hornetq.core.remoting.server.RemotingService;
 import org.hornetq.core.security.CheckType;
@@ -269,6 +272,40 @@ public class HornetQServerControlImpl extends AbstractControl implements HornetQ
       }
    }
 
+   public int getJournalCurrentBufferTimeout()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         TimedBuffer timedBuffer = getMessageJournalTimedBuffer();
+
+         return timedBuffer == null ? getJournalBufferTimeout() : timedBuffer.getCurrentTimeout();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getJournalAverageSyncLatency()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         TimedBuffer timedBuffer = getMessageJournalTimedBuffer();
+
+         return timedBuffer == null ? 0 : timedBuffer.getAverageSyncLatency();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
    public void setFailoverOnServerShutdown(boolean failoverOnServerShutdown)
    {
       checkStarted();
@@ -391,6 +428,121 @@ public class HornetQServerControlImpl extends AbstractControl implements HornetQ
       }
    }
 
+   public int getJournalCompactMaxRate()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return configuration.getJournalCompactMaxRate();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public int getJournalCompactMaxFiles()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return configuration.getJournalCompactMaxFiles();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getJournalCompactCount()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         JournalImpl journal = getLocalMessageJournal();
+
+         return journal == null ? 0 : journal.getCompactCount();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getJournalCompactReclaimedBytes()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         JournalImpl journal = getLocalMessageJournal();
+
+         return journal == null ? 0 : journal.getCompactReclaimedBytes();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getLastJournalCompactDuration()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         JournalImpl journal = getLocalMessageJournal();
+
+         return journal == null ? 0 : journal.getLastCompactDuration();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public int getJournalCompactFilesToProcess()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         JournalImpl journal = getLocalMessageJournal();
+
+         return journal == null ? 0 : journal.getCompactFilesToProcess();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public int getJournalCompactFilesProcessed()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         JournalImpl journal = getLocalMessageJournal();
+
+         return journal == null ? 0 : journal.getCompactFilesProcessed();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
    public boolean isPersistenceEnabled()
    {
       checkStarted();
@@ -1952,6 +2104,30 @@ public class HornetQServerControlImpl extends AbstractControl implements HornetQ
       }
    }
 
+   private JournalImpl getLocalMessageJournal()
+   {
+      if (storageManager instanceof JournalStorageManager)
+      {
+         return ((JournalStorageManager)storageManager).getLocalMessageJournal();
+      }
+      else
+      {
+         return null;
+      }
+   }
+
+   private TimedBuffer getMessageJournalTimedBuffer()
+   {
+      if (storageManager instanceof JournalStorageManager)
+      {
+         return ((JournalStorageManager)storageManager).getMessageJournalTimedBuffer();
+      }
+      else
+      {
+         return null;
+      }
+   }
+
    public String[] listTargetAddresses(final String sessionID)
    {
       ServerSession session = server.getSessionByID(sessionID);
@@ -23,6 +23,7 @@ import org.hornetq.api.core.HornetQBuffers;
 import org.hornetq.api.core.HornetQException;
 import org.hornetq.api.core.PropertyConversionException;
 import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.buffers.impl.ChannelBufferWrapper;
 import org.hornetq.core.buffers.impl.ResetLimitWrappedHornetQBuffer;
 import org.hornetq.core.logging.Logger;
 import org.hornetq.core.message.BodyEncoder;
@@ -30,6 +31,7 @@ import org.hornetq.core.protocol.core.impl.PacketImpl;
 import org.hornetq.utils.DataConstants;
 import org.hornetq.utils.TypedProperties;
 import org.hornetq.utils.UUID;
+import org.jboss.netty.buffer.ChannelBuffers;
 
 /**
  * A concrete implementation of a message
@@ -177,7 +179,7 @@ public abstract class MessageImpl implements MessageInternal
 
             // We need to copy the underlying buffer too, since the different messsages thereafter might have different
             // properties set on them, making their encoding different
-            buffer = other.buffer.copy(0, other.buffer.capacity());
+            buffer = copyBuffer(other.buffer);
 
             buffer.setIndex(other.buffer.readerIndex(), other.buffer.writerIndex());
          }
@@ -502,6 +504,18 @@ public abstract class MessageImpl implements MessageInternal
          return buffer;
       }
    }
+
+   public synchronized HornetQBuffer getSharedEncodedBuffer()
+   {
+      HornetQBuffer buff = encodeToBuffer();
+
+      // Deliveries only read the view, the buffer is copied before it's changed again
+      bufferUsed = true;
+
+      return new ChannelBufferWrapper(ChannelBuffers.unmodifiableBuffer(buff.channelBuffer()
+                                                                            .slice(BUFFER_HEADER_SPACE,
+                                                                                   endOfMessagePosition - BUFFER_HEADER_SPACE)));
+   }
    
    public void setAddressTransient(final SimpleString address)
    {
@@ -897,6 +911,15 @@ public abstract class MessageImpl implements MessageInternal
             endOfBodyPosition = buffer.writerIndex();
          }
 
+         // A message decoded from a received packet may be on a fixed size buffer, so make room for the properties
+         // that may have been added since
+         int encodeSize = endOfBodyPosition + DataConstants.SIZE_INT + getHeadersAndPropertiesEncodeSize();
+
+         if (encodeSize > buffer.capacity())
+         {
+            grow(encodeSize);
+         }
+
          // write it
          buffer.setInt(BUFFER_HEADER_SPACE, endOfBodyPosition);
 
@@ -955,7 +978,7 @@ public abstract class MessageImpl implements MessageInternal
    {
       // Must copy buffer before sending it
 
-      buffer = buffer.copy(0, buffer.capacity());
+      buffer = copyBuffer(buffer);
 
       buffer.setIndex(0, endOfBodyPosition);
 
@@ -967,6 +990,33 @@ public abstract class MessageImpl implements MessageInternal
       bufferUsed = false;
    }
 
+   /**
+    * The copy is a dynamic buffer: a message decoded from a received packet may be on a fixed size buffer, and its
+    * copies may still be changed.
+    */
+   private static HornetQBuffer copyBuffer(final HornetQBuffer source)
+   {
+      HornetQBuffer copy = HornetQBuffers.dynamicBuffer(source.capacity());
+
+      copy.writeBytes(source, 0, source.capacity());
+
+      return copy;
+   }
+
+   private void grow(final int size)
+   {
+      HornetQBuffer grown = HornetQBuffers.dynamicBuffer(size);
+
+      grown.writeBytes(buffer, 0, endOfBodyPosition);
+
+      buffer = grown;
+
+      if (bodyBuffer != null)
+      {
+         bodyBuffer.setBuffer(buffer);
+      }
+   }
+
    // Inner classes -------------------------------------------------
 
    private final class DecodingContext implements BodyEncoder
@@ -48,6 +48,12 @@ public interface MessageInternal extends Message
    boolean isServerMessage();
 
    HornetQBuffer getEncodedBuffer();
+
+   /**
+    * A read only view of the encoded message, from the end of the packet headers to the end of the message.
+    * The view is shared by every delivery of the message, any later change on the message is encoded on a copy.
+    */
+   HornetQBuffer getSharedEncodedBuffer();
    
    int getHeadersAndPropertiesEncodeSize();
 
@@ -31,6 +31,12 @@ public interface Page
    void write(PagedMessage message) throws Exception;
 
    List<PagedMessage> read(StorageManager storage) throws Exception;
+
+   /**
+    * Reads a single message, if the page was written with an index.
+    * @return null if the message can't be read through an index, the caller should read the entire page then
+    */
+   PagedMessage readMessage(StorageManager storage, int messageNumber) throws Exception;
    
    void setLiveCache(LivePageCache pageCache);
 
@@ -79,6 +79,30 @@ public interface PagingManager extends HornetQComponent, HierarchicalRepositoryC
    SimpleString[] getStoreNames();
 
    void deletePageStore(SimpleString storeName) throws Exception;
-   
+
    void processReload() throws Exception;
+
+   /**
+    * Accounts memory used or released by any of the addresses.
+    * @return the approximate memory used by all the addresses
+    */
+   long addSize(long size);
+
+   /** The memory used by all the addresses */
+   long getTotalMemory();
+
+   /** The global-max-size, -1 if there's no limit */
+   long getMaxMemory();
+
+   /**
+    * True once the addresses go over the global-max-size, until they go back under 90% of it.
+    * Addresses then page, drop or block according to their address-full-policy.
+    */
+   boolean isGlobalFull();
+
+   /**
+    * Runs the runnable once the manager is no longer {@link #isGlobalFull()}, or at once if it isn't.
+    * The runnable is called on the thread releasing the memory, it should hand any work to an executor.
+    */
+   void executeRunnableWhenMemoryAvailable(Runnable runnable);
 }
@@ -54,6 +54,11 @@ public interface PagingStore extends HornetQComponent
 
    long getPageSizeBytes();
 
+   /**
+    * @return true if pages are written with an index, so single messages can be read from them
+    */
+   boolean isPageIndex();
+
    long getAddressSize();
    
    long getMaxSize();
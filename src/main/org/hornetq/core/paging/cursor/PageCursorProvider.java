@@ -16,6 +16,7 @@ package org.hornetq.core.paging.cursor;
 import org.hornetq.core.filter.Filter;
 import org.hornetq.core.paging.PagedMessage;
 import org.hornetq.core.paging.PagingStore;
+import org.hornetq.core.settings.impl.PageCacheEvictionPolicy;
 
 /**
  * The provider of Cursor for a given Address
@@ -58,6 +59,17 @@ public interface PageCursorProvider
 
    void processReload() throws Exception;
 
+   /**
+    * Informs the record of the last snapshot of the counters loaded from the journal, to be deleted by the next one.
+    */
+   void loadCounterSnapshot(long recordID);
+
+   /**
+    * Replaces the value and increment records of every persistent subscription counter on the address by a single
+    * snapshot record, so they are restored on startup by reading one record. This should be called from the executor.
+    */
+   void snapshotCounters();
+
    void stop();
 
    void flushExecutors();
@@ -70,12 +82,69 @@ public interface PageCursorProvider
    void onPageModeCleared();
 
    // Perform the cleanup at the caller's thread (for startup and recovery)
+   // The files of the consumed pages are deleted afterwards on the cleanup executor, see flushExecutors
    void cleanup();
 
    int getCacheMaxSize();
 
    void setCacheMaxSize(int size);
 
+   /**
+    * @return the maximum decoded bytes held by the page cache, 0 or less for no limit
+    */
+   long getCacheMaxSizeBytes();
+
+   void setCacheMaxSizeBytes(long bytes);
+
+   PageCacheEvictionPolicy getCacheEvictionPolicy();
+
+   void setCacheEvictionPolicy(PageCacheEvictionPolicy policy);
+
+   long getCacheSizeBytes();
+
+   long getCacheHits();
+
+   long getCacheMisses();
+
+   long getCacheEvictions();
+
+   /**
+    * @return how many pinned pages were evicted because the cache couldn't hold every pinned page
+    */
+   long getCachePinnedEvictions();
+
+   /**
+    * @return how many pages are read ahead of a subscription, 0 if read-ahead is disabled
+    */
+   int getReadAhead();
+
+   void setReadAhead(int pages);
+
+   /**
+    * @return the fraction of a page a subscription has to go through before the next pages are read ahead
+    */
+   double getReadAheadThreshold();
+
+   void setReadAheadThreshold(double threshold);
+
+   /**
+    * Reads and decodes the page into the cache on the executor, unless it's cached already.
+    */
+   void readAhead(long pageId);
+
+   /**
+    * Marks the page as being read by a subscription, pinned pages are evicted from the cache only after every unpinned
+    * page. Every call is matched by a call to {@link #unpinPage(long)}.
+    */
+   void pinPage(long pageId);
+
+   void unpinPage(long pageId);
+
+   /**
+    * @return how many iterators are pinning the page
+    */
+   int getPagePins(long pageId);
+
    /**
     * @param pageCursorImpl
     */
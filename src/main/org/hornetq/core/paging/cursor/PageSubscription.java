@@ -152,7 +152,8 @@ public interface PageSubscription
 
    /**
     * @param deletedPage
+    * @param tx the records of the page are deleted on this transaction, to be committed by the caller
     * @throws Exception 
     */
-   void onDeletePage(Page deletedPage) throws Exception;
+   void onDeletePage(Page deletedPage, Transaction tx) throws Exception;
 }
@@ -27,11 +27,19 @@ public interface PageSubscriptionCounter
 
    long getValue();
 
+   boolean isPersistent();
+
    void increment(Transaction tx, int add) throws Exception;
 
    void loadValue(final long recordValueID, final long value);
    
    void loadInc(final long recordInd, final int add);
+
+   /**
+    * The value held for this counter by the last snapshot of the counters of the address.
+    * Value and increment records loaded for the counter are applied on top of it by {@link #processReload()}.
+    */
+   void loadSnapshotValue(final long value);
    
    void applyIncrement(Transaction tx, long recordID, int add);
    
@@ -50,4 +58,17 @@ public interface PageSubscriptionCounter
    
    void delete(Transaction tx) throws Exception;
 
+   /**
+    * Deletes the value and increment records of the counter on the transaction, as the caller stores the returned
+    * value on a snapshot record. This should be called from the executor of the counter.
+    * The counter keeps the records until {@link #snapshotCommitted(long)}, so if the transaction is rolled back they
+    * are deleted by the next snapshot.
+    */
+   long snapshot(long txID) throws Exception;
+
+   /**
+    * Forgets the records deleted by the snapshot on the transaction, once it's committed.
+    */
+   void snapshotCommitted(long txID);
+
 }
\ No newline at end of file
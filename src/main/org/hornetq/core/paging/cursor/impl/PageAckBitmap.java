@@ -0,0 +1,133 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.paging.cursor.impl;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.hornetq.core.paging.cursor.PagePosition;
+
+/**
+ * The acknowledgement state of a single page on a subscription.
+ * <p>
+ * Instead of holding the acked {@link PagePosition}s, the acks and the removed references are kept as bits indexed by the
+ * message number within the page, and only the journal record IDs of persistent acks are kept (to be deleted once the
+ * page is complete). A page with thousands of acks costs a few hundred bytes instead of a few hundred bytes per ack.
+ * </p>
+ * <p>
+ * Positions with a negative message number (bookmarks before the first message) are not set on the bitmaps, but their
+ * record IDs are kept.
+ * </p>
+ */
+public class PageAckBitmap
+{
+   // Constants -----------------------------------------------------
+
+   private static final long[] EMPTY_RECORDS = new long[0];
+
+   // Attributes ----------------------------------------------------
+
+   // Confirmed ACKs on this page
+   private final BitSet acks = new BitSet();
+
+   // References acked or removed from the cursor, not to be delivered again
+   private final BitSet removed = new BitSet();
+
+   // Journal record IDs of the ACKs
+   private long[] recordIDs = PageAckBitmap.EMPTY_RECORDS;
+
+   private int numberOfRecords;
+
+   // Public --------------------------------------------------------
+
+   /**
+    * @return true if the position wasn't acked before
+    */
+   public synchronized boolean addACK(final PagePosition position)
+   {
+      if (position.getRecordID() >= 0)
+      {
+         if (numberOfRecords == recordIDs.length)
+         {
+            recordIDs = Arrays.copyOf(recordIDs, Math.max(4, numberOfRecords * 2));
+         }
+         recordIDs[numberOfRecords++] = position.getRecordID();
+      }
+
+      int messageNr = position.getMessageNr();
+
+      if (messageNr < 0)
+      {
+         return true;
+      }
+
+      removed.set(messageNr);
+
+      if (acks.get(messageNr))
+      {
+         return false;
+      }
+
+      acks.set(messageNr);
+
+      return true;
+   }
+
+   public synchronized boolean isAcked(final PagePosition position)
+   {
+      return position.getMessageNr() >= 0 && acks.get(position.getMessageNr());
+   }
+
+   public synchronized void remove(final PagePosition position)
+   {
+      if (position.getMessageNr() >= 0)
+      {
+         removed.set(position.getMessageNr());
+      }
+   }
+
+   public synchronized boolean isRemoved(final PagePosition position)
+   {
+      return position.getMessageNr() >= 0 && removed.get(position.getMessageNr());
+   }
+
+   public synchronized int getNumberOfAcks()
+   {
+      return acks.cardinality();
+   }
+
+   /**
+    * @return a copy of the journal record IDs of the acks
+    */
+   public synchronized long[] getRecordIDs()
+   {
+      return Arrays.copyOf(recordIDs, numberOfRecords);
+   }
+
+   /**
+    * Clears the acks and their record IDs, the removed references are kept.
+    */
+   public synchronized void clearACKs()
+   {
+      acks.clear();
+      recordIDs = PageAckBitmap.EMPTY_RECORDS;
+      numberOfRecords = 0;
+   }
+
+   @Override
+   public synchronized String toString()
+   {
+      return "PageAckBitmap(acks=" + acks.cardinality() + ", records=" + numberOfRecords + ")";
+   }
+}
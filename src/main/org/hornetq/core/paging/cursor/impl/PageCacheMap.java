@@ -0,0 +1,497 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.paging.cursor.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hornetq.core.logging.Logger;
+import org.hornetq.core.paging.PagedMessage;
+import org.hornetq.core.paging.cursor.PageCache;
+import org.hornetq.core.settings.impl.PageCacheEvictionPolicy;
+
+/**
+ * The decoded pages cached by a {@link PageCursorProviderImpl}, bounded by number of pages and by decoded bytes.
+ * <p>
+ * Once over any of the limits, pages are evicted in the order given by the {@link PageCacheEvictionPolicy}. Live pages,
+ * pages still being read and the page used last are never evicted, so the cache may stay over its limits when only
+ * those are left.
+ * </p>
+ * <p>
+ * Pages pinned by subscriptions positioned on them are only evicted when no unpinned page is left, so a page is read
+ * once for all the subscriptions going through it as long as the cache can hold the pinned pages.
+ * </p>
+ * <p>
+ * The size of a page is the encode size of its messages, calculated the first time the page is seen complete.
+ * </p>
+ * <p>
+ * This class is not thread safe, the caller is supposed to synchronize on it.
+ * </p>
+ */
+public class PageCacheMap
+{
+   // Constants -----------------------------------------------------
+
+   private static final Logger log = Logger.getLogger(PageCacheMap.class);
+
+   private static final boolean isTrace = log.isTraceEnabled();
+
+   // Attributes ----------------------------------------------------
+
+   private final Map<Long, Entry> entries = new HashMap<Long, Entry>();
+
+   // the entries whose size is not known yet (live pages or pages still being read), the others are on sizeBytes
+   private final Set<Entry> unsizedEntries = new HashSet<Entry>();
+
+   private long sizeBytes;
+
+   // the number of pins on each page, pages may be pinned before they are cached
+   private final Map<Long, Integer> pins = new HashMap<Long, Integer>();
+
+   private int maxElements;
+
+   private long maxBytes;
+
+   private PageCacheEvictionPolicy evictionPolicy;
+
+   // the first page still needed by each subscription, used by FURTHEST_NEXT_USE
+   private long[] readerPages = new long[0];
+
+   private long usedCounter;
+
+   private final AtomicLong hits = new AtomicLong(0);
+
+   private final AtomicLong misses = new AtomicLong(0);
+
+   private final AtomicLong evictions = new AtomicLong(0);
+
+   private final AtomicLong pinnedEvictions = new AtomicLong(0);
+
+   // Constructors --------------------------------------------------
+
+   /**
+    * @param maxElements maximum number of pages, 0 or less for no limit
+    * @param maxBytes maximum number of decoded bytes, 0 or less for no limit
+    */
+   public PageCacheMap(final int maxElements, final long maxBytes, final PageCacheEvictionPolicy evictionPolicy)
+   {
+      this.maxElements = maxElements;
+      this.maxBytes = maxBytes;
+      this.evictionPolicy = evictionPolicy;
+   }
+
+   // Public --------------------------------------------------------
+
+   /**
+    * Returns the cached page, accounting a hit or a miss.
+    */
+   public PageCache get(final long pageId)
+   {
+      Entry entry = entries.get(pageId);
+
+      if (entry == null)
+      {
+         misses.incrementAndGet();
+         return null;
+      }
+
+      hits.incrementAndGet();
+      entry.used();
+      return entry.cache;
+   }
+
+   /**
+    * Returns the cached page without affecting the statistics or the eviction order.
+    */
+   public PageCache peek(final long pageId)
+   {
+      Entry entry = entries.get(pageId);
+      return entry != null ? entry.cache : null;
+   }
+
+   public void put(final long pageId, final PageCache cache)
+   {
+      Entry entry = new Entry(pageId, cache);
+      entry.used();
+
+      Entry previous = entries.put(pageId, entry);
+      if (previous != null)
+      {
+         discard(previous);
+      }
+
+      unsizedEntries.add(entry);
+
+      checkLimits();
+   }
+
+   public PageCache remove(final long pageId)
+   {
+      Entry entry = entries.remove(pageId);
+
+      if (entry == null)
+      {
+         return null;
+      }
+
+      discard(entry);
+
+      return entry.cache;
+   }
+
+   public void clear()
+   {
+      entries.clear();
+      unsizedEntries.clear();
+      sizeBytes = 0;
+      pins.clear();
+   }
+
+   public void pin(final long pageId)
+   {
+      Integer count = pins.get(pageId);
+      pins.put(pageId, count == null ? 1 : count + 1);
+   }
+
+   public void unpin(final long pageId)
+   {
+      Integer count = pins.get(pageId);
+
+      if (count == null)
+      {
+         return;
+      }
+
+      if (count > 1)
+      {
+         pins.put(pageId, count - 1);
+      }
+      else
+      {
+         pins.remove(pageId);
+
+         // the page may have been kept over the limits only because of the pin
+         checkLimits();
+      }
+   }
+
+   public int getPins(final long pageId)
+   {
+      Integer count = pins.get(pageId);
+      return count == null ? 0 : count;
+   }
+
+   public int size()
+   {
+      return entries.size();
+   }
+
+   /**
+    * @return the decoded bytes of the cached pages, live pages or pages still being read are not accounted
+    */
+   public long getSizeBytes()
+   {
+      updateSizes();
+
+      return sizeBytes;
+   }
+
+   public Collection<PageCache> values()
+   {
+      ArrayList<PageCache> list = new ArrayList<PageCache>(entries.size());
+      for (Entry entry : entries.values())
+      {
+         list.add(entry.cache);
+      }
+      return list;
+   }
+
+   public int getMaxElements()
+   {
+      return maxElements;
+   }
+
+   public void setMaxElements(final int maxElements)
+   {
+      this.maxElements = maxElements;
+      checkLimits();
+   }
+
+   public long getMaxBytes()
+   {
+      return maxBytes;
+   }
+
+   public void setMaxBytes(final long maxBytes)
+   {
+      this.maxBytes = maxBytes;
+      checkLimits();
+   }
+
+   public PageCacheEvictionPolicy getEvictionPolicy()
+   {
+      return evictionPolicy;
+   }
+
+   public void setEvictionPolicy(final PageCacheEvictionPolicy evictionPolicy)
+   {
+      this.evictionPolicy = evictionPolicy;
+   }
+
+   /**
+    * @param readerPages the first page still needed by each subscription, negative values are ignored
+    */
+   public void setReaderPages(final long[] readerPages)
+   {
+      this.readerPages = readerPages;
+   }
+
+   public long getHits()
+   {
+      return hits.get();
+   }
+
+   public long getMisses()
+   {
+      return misses.get();
+   }
+
+   public long getEvictions()
+   {
+      return evictions.get();
+   }
+
+   /**
+    * @return how many of the evictions were of pinned pages, meaning the cache is too small for the subscriptions
+    */
+   public long getPinnedEvictions()
+   {
+      return pinnedEvictions.get();
+   }
+
+   /**
+    * Evicts pages until the cache is within its limits. To be called when the size of a page may have changed.
+    */
+   public void checkLimits()
+   {
+      updateSizes();
+
+      while (isOverLimits())
+      {
+         Entry candidate = null;
+
+         boolean candidatePinned = false;
+
+         long lastUsed = Long.MIN_VALUE;
+         for (Entry entry : entries.values())
+         {
+            lastUsed = Math.max(lastUsed, entry.lastUsed);
+         }
+
+         for (Entry entry : entries.values())
+         {
+            // the page used last is kept or a page larger than the limit would be read again for every message
+            if (entry.lastUsed == lastUsed || entry.cache.isLive() || entry.size < 0)
+            {
+               continue;
+            }
+
+            boolean pinned = pins.containsKey(entry.pageId);
+
+            if (candidate == null || candidatePinned && !pinned ||
+                candidatePinned == pinned &&
+                compare(entry, candidate) < 0)
+            {
+               candidate = entry;
+               candidatePinned = pinned;
+            }
+         }
+
+         if (candidate == null)
+         {
+            return;
+         }
+
+         if (isTrace)
+         {
+            log.trace("Evicting page " + candidate.pageId + " with " + candidate.size + " bytes from page cache");
+         }
+
+         entries.remove(candidate.pageId);
+         discard(candidate);
+         evictions.incrementAndGet();
+
+         if (candidatePinned)
+         {
+            pinnedEvictions.incrementAndGet();
+         }
+      }
+   }
+
+   // Private -------------------------------------------------------
+
+   private boolean isOverLimits()
+   {
+      return maxElements > 0 && entries.size() > maxElements || maxBytes > 0 && sizeBytes > maxBytes;
+   }
+
+   /**
+    * Adds the pages whose size became known (they were read or are not live anymore) to sizeBytes.
+    */
+   private void updateSizes()
+   {
+      Iterator<Entry> iterator = unsizedEntries.iterator();
+
+      while (iterator.hasNext())
+      {
+         Entry entry = iterator.next();
+
+         if (entry.calculateSize())
+         {
+            sizeBytes += entry.size;
+            iterator.remove();
+         }
+      }
+   }
+
+   /**
+    * Takes a page removed from entries out of the accounting.
+    */
+   private void discard(final Entry entry)
+   {
+      if (entry.size >= 0)
+      {
+         sizeBytes -= entry.size;
+      }
+      else
+      {
+         unsizedEntries.remove(entry);
+      }
+   }
+
+   /**
+    * @return a negative number if e1 should be evicted before e2
+    */
+   private int compare(final Entry e1, final Entry e2)
+   {
+      int result = 0;
+
+      switch (evictionPolicy)
+      {
+         case LFU:
+         {
+            result = compare(e1.useCount, e2.useCount);
+            break;
+         }
+         case FURTHEST_NEXT_USE:
+         {
+            // the largest distance goes first
+            result = compare(nextUseDistance(e2.pageId), nextUseDistance(e1.pageId));
+            break;
+         }
+         default:
+         {
+            break;
+         }
+      }
+
+      if (result == 0)
+      {
+         result = compare(e1.lastUsed, e2.lastUsed);
+      }
+
+      return result;
+   }
+
+   /**
+    * How many pages the closest subscription behind the page still has to go through before reading it.
+    * Long.MAX_VALUE if every subscription is already past the page.
+    */
+   private long nextUseDistance(final long pageId)
+   {
+      long distance = Long.MAX_VALUE;
+
+      for (long readerPage : readerPages)
+      {
+         if (readerPage >= 0 && readerPage <= pageId)
+         {
+            distance = Math.min(distance, pageId - readerPage);
+         }
+      }
+
+      return distance;
+   }
+
+   private static int compare(final long v1, final long v2)
+   {
+      return v1 < v2 ? -1 : v1 == v2 ? 0 : 1;
+   }
+
+   // Inner classes -------------------------------------------------
+
+   private final class Entry
+   {
+      final long pageId;
+
+      final PageCache cache;
+
+      long lastUsed;
+
+      long useCount;
+
+      // -1 while the page is live or still being read
+      long size = -1;
+
+      Entry(final long pageId, final PageCache cache)
+      {
+         this.pageId = pageId;
+         this.cache = cache;
+      }
+
+      void used()
+      {
+         lastUsed = ++usedCounter;
+         useCount++;
+      }
+
+      /**
+       * @return true if the size is known now
+       */
+      boolean calculateSize()
+      {
+         if (size < 0 && !cache.isLive())
+         {
+            PagedMessage[] messages = cache.getMessages();
+
+            if (messages != null)
+            {
+               long bytes = 0;
+               for (PagedMessage message : messages)
+               {
+                  bytes += message.getEncodeSize();
+               }
+               size = bytes;
+            }
+         }
+
+         return size >= 0;
+      }
+   }
+}
@@ -31,10 +31,12 @@ import org.hornetq.core.paging.cursor.PageSubscription;
 import org.hornetq.core.paging.cursor.PagedReference;
 import org.hornetq.core.paging.cursor.PagedReferenceImpl;
 import org.hornetq.core.persistence.StorageManager;
+import org.hornetq.core.settings.impl.AddressSettings;
+import org.hornetq.core.settings.impl.PageCacheEvictionPolicy;
 import org.hornetq.core.transaction.Transaction;
 import org.hornetq.core.transaction.impl.TransactionImpl;
+import org.hornetq.utils.ConcurrentHashSet;
 import org.hornetq.utils.Future;
-import org.hornetq.utils.SoftValueHashMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -56,6 +58,9 @@ public class PageCursorProviderImpl implements PageCursorProvider
 
    boolean isTrace = log.isTraceEnabled();
 
+   // The consumed pages are deleted in batches, with the records of every page in a batch removed on one transaction
+   private static final int DELETE_BATCH_SIZE = 100;
+
    // Attributes ----------------------------------------------------
 
    /**
@@ -70,10 +75,23 @@ public class PageCursorProviderImpl implements PageCursorProvider
    // This is the same executor used at the PageStoreImpl. One Executor per pageStore
    private final Executor executor;
 
-   private final SoftValueHashMap<Long, PageCache> softCache;
+   // Reads and deletes the files of the consumed pages, so the subscriptions using the executor above won't wait on them
+   private final Executor cleanupExecutor;
+
+   private final PageCacheMap cacheMap;
 
    private final ConcurrentMap<Long, PageSubscription> activeCursors = new ConcurrentHashMap<Long, PageSubscription>();
 
+   private volatile int readAhead = AddressSettings.DEFAULT_PAGE_READ_AHEAD;
+
+   private volatile double readAheadThreshold = AddressSettings.DEFAULT_PAGE_READ_AHEAD_THRESHOLD;
+
+   // pages scheduled to be read ahead, so concurrent subscriptions won't schedule the same page twice
+   private final ConcurrentHashSet<Long> pendingReadAheads = new ConcurrentHashSet<Long>();
+
+   // the journal record holding the last snapshot of the counters, -1 if there's none
+   private volatile long counterSnapshotID = -1;
+
    // Static --------------------------------------------------------
 
    // Constructors --------------------------------------------------
@@ -82,11 +100,23 @@ public class PageCursorProviderImpl implements PageCursorProvider
                                  final StorageManager storageManager,
                                  final Executor executor,
                                  final int maxCacheSize)
+   {
+      this(pagingStore, storageManager, executor, executor, maxCacheSize);
+   }
+
+   public PageCursorProviderImpl(final PagingStore pagingStore,
+                                 final StorageManager storageManager,
+                                 final Executor executor,
+                                 final Executor cleanupExecutor,
+                                 final int maxCacheSize)
    {
       this.pagingStore = pagingStore;
       this.storageManager = storageManager;
       this.executor = executor;
-      this.softCache = new SoftValueHashMap<Long, PageCache>(maxCacheSize);
+      this.cleanupExecutor = cleanupExecutor;
+      this.cacheMap = new PageCacheMap(maxCacheSize,
+                                        AddressSettings.DEFAULT_PAGE_CACHE_MAX_BYTES,
+                                        AddressSettings.DEFAULT_PAGE_CACHE_EVICTION_POLICY);
    }
 
    // Public --------------------------------------------------------
@@ -123,7 +153,25 @@ public class PageCursorProviderImpl implements PageCursorProvider
 
    public PagedMessage getMessage(final PagePosition pos) throws Exception
    {
-      PageCache cache = getPageCache(pos.getPageNr());
+      PageCache cache;
+
+      synchronized (cacheMap)
+      {
+         cache = cacheMap.peek(pos.getPageNr());
+      }
+
+      if (cache == null)
+      {
+         // a single message is needed, so it's read through the page index instead of the entire page
+         PagedMessage msg = readIndexedMessage(pos);
+
+         if (msg != null)
+         {
+            return msg;
+         }
+      }
+
+      cache = getPageCache(pos.getPageNr());
 
       if (cache == null || pos.getMessageNr() >= cache.getNumberOfMessages())
       {
@@ -147,14 +195,14 @@ public class PageCursorProviderImpl implements PageCursorProvider
       {
          boolean needToRead = false;
          PageCache cache = null;
-         synchronized (softCache)
+         synchronized (cacheMap)
          {
             if (pageId > pagingStore.getCurrentWritingPage())
             {
                return null;
             }
 
-            cache = softCache.get(pageId);
+            cache = cacheMap.get(pageId);
             if (cache == null)
             {
                if (!pagingStore.checkPage((int)pageId))
@@ -171,7 +219,7 @@ public class PageCursorProviderImpl implements PageCursorProvider
                {
                   log.trace("adding " + pageId +  " into cursor = " + this.pagingStore.getAddress());
                }
-               softCache.put(pageId, cache);
+               cacheMap.put(pageId, cache);
             }
          }
 
@@ -205,6 +253,12 @@ public class PageCursorProviderImpl implements PageCursorProvider
                storageManager.afterPageRead();
                cache.unlock();
             }
+
+            // the size of the page is only known now
+            synchronized (cacheMap)
+            {
+               cacheMap.checkLimits();
+            }
          }
 
          return cache;
@@ -215,32 +269,187 @@ public class PageCursorProviderImpl implements PageCursorProvider
       }
    }
 
+   public void readAhead(final long pageId)
+   {
+      if (!pendingReadAheads.addIfAbsent(pageId))
+      {
+         return;
+      }
+
+      executor.execute(new Runnable()
+      {
+         public void run()
+         {
+            try
+            {
+               if (!pagingStore.isStarted())
+               {
+                  return;
+               }
+
+               synchronized (cacheMap)
+               {
+                  if (cacheMap.peek(pageId) != null)
+                  {
+                     return;
+                  }
+               }
+
+               if (isTrace)
+               {
+                  log.trace("Reading ahead page " + pageId + " on address " + pagingStore.getAddress());
+               }
+
+               getPageCache(pageId);
+            }
+            catch (Throwable e)
+            {
+               log.warn("Couldn't read ahead page " + pageId + " on address " + pagingStore.getAddress(), e);
+            }
+            finally
+            {
+               pendingReadAheads.remove(pageId);
+            }
+         }
+      });
+   }
+
+   public void pinPage(final long pageId)
+   {
+      synchronized (cacheMap)
+      {
+         cacheMap.pin(pageId);
+      }
+   }
+
+   public void unpinPage(final long pageId)
+   {
+      synchronized (cacheMap)
+      {
+         cacheMap.unpin(pageId);
+      }
+   }
+
+   public int getPagePins(final long pageId)
+   {
+      synchronized (cacheMap)
+      {
+         return cacheMap.getPins(pageId);
+      }
+   }
+
+   public int getReadAhead()
+   {
+      return readAhead;
+   }
+
+   public void setReadAhead(final int pages)
+   {
+      this.readAhead = pages;
+   }
+
+   public double getReadAheadThreshold()
+   {
+      return readAheadThreshold;
+   }
+
+   public void setReadAheadThreshold(final double threshold)
+   {
+      this.readAheadThreshold = threshold;
+   }
+
    public void addPageCache(PageCache cache)
    {
-      synchronized (softCache)
+      synchronized (cacheMap)
       {
-         softCache.put(cache.getPageId(), cache);
+         cacheMap.put(cache.getPageId(), cache);
       }
    }
 
    public int getCacheMaxSize()
    {
-      return softCache.getMaxEelements();
+      synchronized (cacheMap)
+      {
+         return cacheMap.getMaxElements();
+      }
    }
 
    public void setCacheMaxSize(final int size)
    {
-      softCache.setMaxElements(size);
+      synchronized (cacheMap)
+      {
+         cacheMap.setMaxElements(size);
+      }
+   }
+
+   public long getCacheMaxSizeBytes()
+   {
+      synchronized (cacheMap)
+      {
+         return cacheMap.getMaxBytes();
+      }
+   }
+
+   public void setCacheMaxSizeBytes(final long bytes)
+   {
+      synchronized (cacheMap)
+      {
+         cacheMap.setMaxBytes(bytes);
+      }
+   }
+
+   public PageCacheEvictionPolicy getCacheEvictionPolicy()
+   {
+      synchronized (cacheMap)
+      {
+         return cacheMap.getEvictionPolicy();
+      }
+   }
+
+   public void setCacheEvictionPolicy(final PageCacheEvictionPolicy policy)
+   {
+      synchronized (cacheMap)
+      {
+         cacheMap.setEvictionPolicy(policy);
+      }
    }
 
    public int getCacheSize()
    {
-      synchronized (softCache)
+      synchronized (cacheMap)
       {
-         return softCache.size();
+         return cacheMap.size();
       }
    }
 
+   public long getCacheSizeBytes()
+   {
+      synchronized (cacheMap)
+      {
+         return cacheMap.getSizeBytes();
+      }
+   }
+
+   public long getCacheHits()
+   {
+      return cacheMap.getHits();
+   }
+
+   public long getCacheMisses()
+   {
+      return cacheMap.getMisses();
+   }
+
+   public long getCacheEvictions()
+   {
+      return cacheMap.getEvictions();
+   }
+
+   public long getCachePinnedEvictions()
+   {
+      return cacheMap.getPinnedEvictions();
+   }
+
    public void processReload() throws Exception
    {
       Collection<PageSubscription> cursorList = this.activeCursors.values();
@@ -273,40 +482,100 @@ public class PageCursorProviderImpl implements PageCursorProvider
 
    }
 
-   public void stop()
+   public void loadCounterSnapshot(final long recordID)
+   {
+      counterSnapshotID = recordID;
+   }
+
+   public synchronized void snapshotCounters()
    {
+      ArrayList<PageSubscription> persistentCursors = new ArrayList<PageSubscription>(activeCursors.size());
+
       for (PageSubscription cursor : activeCursors.values())
       {
-         cursor.stop();
+         if (cursor.isPersistent() && cursor.getCounter().isPersistent())
+         {
+            persistentCursors.add(cursor);
+         }
       }
 
-      Future future = new Future();
+      long[] queueIDs = new long[persistentCursors.size()];
+      long[] values = new long[persistentCursors.size()];
 
-      executor.execute(future);
+      long txSnapshot = storageManager.generateUniqueID();
 
-      while (!future.await(10000))
+      long newSnapshotID = -1;
+
+      try
       {
-         log.warn("Waiting cursor provider " + this + " to finish executors");
-      }
+         for (int i = 0; i < queueIDs.length; i++)
+         {
+            PageSubscription cursor = persistentCursors.get(i);
+            queueIDs[i] = cursor.getId();
+            values[i] = cursor.getCounter().snapshot(txSnapshot);
+         }
+
+         if (counterSnapshotID >= 0)
+         {
+            storageManager.deletePageCounter(txSnapshot, counterSnapshotID);
+         }
 
+         if (queueIDs.length > 0)
+         {
+            newSnapshotID = storageManager.storePageCounterSnapshot(txSnapshot, queueIDs, values);
+         }
+
+         storageManager.commit(txSnapshot);
+
+         for (PageSubscription cursor : persistentCursors)
+         {
+            cursor.getCounter().snapshotCommitted(txSnapshot);
+         }
+
+         if (isTrace)
+         {
+            log.trace("Replacing counter snapshot " + counterSnapshotID +
+                      " by " +
+                      newSnapshotID +
+                      " with " +
+                      queueIDs.length +
+                      " counters on " +
+                      pagingStore.getAddress());
+         }
+
+         counterSnapshotID = newSnapshotID;
+      }
+      catch (Exception e)
+      {
+         log.warn("Couldn't snapshot the page counters on " + pagingStore.getAddress() + ": " + e.getMessage(), e);
+         try
+         {
+            storageManager.rollback(txSnapshot);
+         }
+         catch (Exception ignored)
+         {
+         }
+      }
    }
 
-   public void flushExecutors()
+   public void stop()
    {
       for (PageSubscription cursor : activeCursors.values())
       {
-         cursor.flushExecutors();
+         cursor.stop();
       }
 
-      Future future = new Future();
-
-      executor.execute(future);
+      flushCleanup();
+   }
 
-      while (!future.await(10000))
+   public void flushExecutors()
+   {
+      for (PageSubscription cursor : activeCursors.values())
       {
-         log.warn("Waiting cursor provider " + this + " to finish executors");
+         cursor.flushExecutors();
       }
 
+      flushCleanup();
    }
 
    public void close(PageSubscription cursor)
@@ -457,6 +726,9 @@ public class PageCursorProviderImpl implements PageCursorProvider
 
                   pagingStore.stopPaging();
 
+                  // every cursor was moved to the new page, so the completed one goes on this cleanup as well
+                  minPage = currentPage.getPageId();
+
                }
             }
 
@@ -498,70 +770,7 @@ public class PageCursorProviderImpl implements PageCursorProvider
          }
       }
 
-      try
-      {
-         for (Page depagedPage : depagedPages)
-         {
-            PageCache cache;
-            PagedMessage[] pgdMessages;
-            synchronized (softCache)
-            {
-               cache = softCache.get((long)depagedPage.getPageId());
-            }
-
-            if (isTrace)
-            {
-               log.trace("Removing page " + depagedPage.getPageId() + " from page-cache");
-            }
-
-            if (cache == null)
-            {
-               // The page is not on cache any more
-               // We need to read the page-file before deleting it
-               // to make sure we remove any large-messages pending
-               storageManager.beforePageRead();
-
-               List<PagedMessage> pgdMessagesList = null;
-               try
-               {
-                  depagedPage.open();
-                  pgdMessagesList = depagedPage.read(storageManager);
-               }
-               finally
-               {
-                  try
-                  {
-                     depagedPage.close();
-                  }
-                  catch (Exception e)
-                  {
-                  }
-
-                  storageManager.afterPageRead();
-               }
-               depagedPage.close();
-               pgdMessages = pgdMessagesList.toArray(new PagedMessage[pgdMessagesList.size()]);
-            }
-            else
-            {
-               pgdMessages = cache.getMessages();
-            }
-
-            depagedPage.delete(pgdMessages);
-            onDeletePage(depagedPage);
-
-            synchronized (softCache)
-            {
-               softCache.remove((long)depagedPage.getPageId());
-            }
-         }
-      }
-      catch (Exception ex)
-      {
-         log.warn("Couldn't complete cleanup on paging", ex);
-         return;
-      }
-
+      deletePages(depagedPages);
    }
 
    /**
@@ -574,12 +783,12 @@ public class PageCursorProviderImpl implements PageCursorProvider
       return cursorList;
    }
 
-   protected void onDeletePage(Page deletedPage) throws Exception
+   protected void onDeletePage(Page deletedPage, Transaction tx) throws Exception
    {
       List<PageSubscription> subscriptions = cloneSubscriptions();
       for (PageSubscription subs: subscriptions)
       {
-         subs.onDeletePage(deletedPage);
+         subs.onDeletePage(deletedPage, tx);
       }
    }
 
@@ -615,7 +824,12 @@ public class PageCursorProviderImpl implements PageCursorProvider
    public void printDebug()
    {
       System.out.println("Debug information for PageCursorProviderImpl:");
-      for (PageCache cache : softCache.values())
+      Collection<PageCache> caches;
+      synchronized (cacheMap)
+      {
+         caches = cacheMap.values();
+      }
+      for (PageCache cache : caches)
       {
          System.out.println("Cache " + cache);
       }
@@ -633,6 +847,180 @@ public class PageCursorProviderImpl implements PageCursorProvider
 
    // Private -------------------------------------------------------
 
+   /**
+    * A cleanup on the executor hands the pages over to the cleanup executor, which hands their records back to the
+    * executor once the files are deleted.
+    */
+   private void flushCleanup()
+   {
+      flushExecutor(executor);
+      flushExecutor(cleanupExecutor);
+      flushExecutor(executor);
+   }
+
+   private void flushExecutor(final Executor executor)
+   {
+      Future future = new Future();
+
+      executor.execute(future);
+
+      while (!future.await(10000))
+      {
+         log.warn("Waiting cursor provider " + this + " to finish executors");
+      }
+   }
+
+   /**
+    * The pages were already removed from the PagingStore, the files are deleted on the cleanup executor in batches of
+    * DELETE_BATCH_SIZE pages. The records of each batch are then removed on the executor, as the subscriptions change
+    * them there too.
+    */
+   private void deletePages(final List<Page> depagedPages)
+   {
+      for (int i = 0; i < depagedPages.size(); i += DELETE_BATCH_SIZE)
+      {
+         final List<Page> batch = depagedPages.subList(i, Math.min(i + DELETE_BATCH_SIZE, depagedPages.size()));
+
+         cleanupExecutor.execute(new Runnable()
+         {
+            public void run()
+            {
+               storageManager.setContext(storageManager.newSingleThreadContext());
+               try
+               {
+                  deleteBatch(batch);
+               }
+               catch (Exception ex)
+               {
+                  log.warn("Couldn't complete cleanup on paging", ex);
+               }
+               finally
+               {
+                  storageManager.clearContext();
+               }
+            }
+         });
+      }
+   }
+
+   private void deleteBatch(final List<Page> batch) throws Exception
+   {
+      for (Page depagedPage : batch)
+      {
+         PageCache cache;
+         PagedMessage[] pgdMessages;
+         synchronized (cacheMap)
+         {
+            cache = cacheMap.peek((long)depagedPage.getPageId());
+         }
+
+         if (isTrace)
+         {
+            log.trace("Removing page " + depagedPage.getPageId() + " from page-cache");
+         }
+
+         if (cache == null)
+         {
+            // The page is not on cache any more
+            // We need to read the page-file before deleting it
+            // to make sure we remove any large-messages pending
+            storageManager.beforePageRead();
+
+            List<PagedMessage> pgdMessagesList = null;
+            try
+            {
+               depagedPage.open();
+               pgdMessagesList = depagedPage.read(storageManager);
+            }
+            finally
+            {
+               try
+               {
+                  depagedPage.close();
+               }
+               catch (Exception e)
+               {
+               }
+
+               storageManager.afterPageRead();
+            }
+            depagedPage.close();
+            pgdMessages = pgdMessagesList.toArray(new PagedMessage[pgdMessagesList.size()]);
+         }
+         else
+         {
+            pgdMessages = cache.getMessages();
+         }
+
+         depagedPage.delete(pgdMessages);
+
+         synchronized (cacheMap)
+         {
+            cacheMap.remove((long)depagedPage.getPageId());
+         }
+      }
+
+      executor.execute(new Runnable()
+      {
+         public void run()
+         {
+            storageManager.setContext(storageManager.newSingleThreadContext());
+            try
+            {
+               // the records of the whole batch are removed on a single transaction
+               Transaction tx = new TransactionImpl(storageManager);
+
+               for (Page depagedPage : batch)
+               {
+                  onDeletePage(depagedPage, tx);
+               }
+
+               tx.commit();
+            }
+            catch (Exception ex)
+            {
+               log.warn("Couldn't complete cleanup on paging", ex);
+            }
+            finally
+            {
+               storageManager.clearContext();
+            }
+         }
+      });
+   }
+
+   /**
+    * @return null if page-index is disabled, or if the page is live, deleted or has no usable index
+    */
+   private PagedMessage readIndexedMessage(final PagePosition pos) throws Exception
+   {
+      if (!pagingStore.isPageIndex() || pos.getPageNr() >= pagingStore.getCurrentWritingPage() ||
+          !pagingStore.checkPage((int)pos.getPageNr()))
+      {
+         return null;
+      }
+
+      Page page = pagingStore.createPage((int)pos.getPageNr());
+
+      storageManager.beforePageRead();
+      try
+      {
+         page.open();
+         return page.readMessage(storageManager, pos.getMessageNr());
+      }
+      finally
+      {
+         try
+         {
+            page.close();
+         }
+         catch (Throwable ignored)
+         {
+         }
+         storageManager.afterPageRead();
+      }
+   }
+
    /**
     * This method is synchronized because we want it to be atomic with the cursors being used
     */
@@ -640,9 +1028,14 @@ public class PageCursorProviderImpl implements PageCursorProvider
    {
       long minPage = Long.MAX_VALUE;
 
+      // the pages each subscription is reading from, for the FURTHEST_NEXT_USE eviction on the page cache
+      long[] readerPages = new long[cursorList.size()];
+      int readerIndex = 0;
+
       for (PageSubscription cursor : cursorList)
       {
          long firstPage = cursor.getFirstPage();
+         readerPages[readerIndex++] = firstPage;
          if (log.isDebugEnabled())
          {
             log.debug(this.pagingStore.getAddress() + " has a cursor " + cursor + " with first page=" + firstPage);
@@ -655,6 +1048,11 @@ public class PageCursorProviderImpl implements PageCursorProvider
          }
       }
 
+      synchronized (cacheMap)
+      {
+         cacheMap.setReaderPages(readerPages);
+      }
+
       if (log.isDebugEnabled())
       {
          log.debug(this.pagingStore.getAddress() + " has minPage=" + minPage);
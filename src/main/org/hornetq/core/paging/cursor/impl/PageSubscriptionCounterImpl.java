@@ -68,6 +68,18 @@ public class PageSubscriptionCounterImpl implements PageSubscriptionCounter
 
    private LinkedList<Pair<Long, Integer>> loadList;
 
+   // the value loaded from the last snapshot of the address, if the counter was on one
+   private boolean snapshotLoaded;
+
+   private long loadedSnapshotValue;
+
+   // the records deleted by the snapshot on snapshotTX, forgotten only once it's committed
+   private long snapshotTX = -1;
+
+   private int snapshotIncrements;
+
+   private long snapshotRecordID = -1;
+
    private final Runnable cleanupCheck = new Runnable()
    {
       public void run()
@@ -169,6 +181,20 @@ public class PageSubscriptionCounterImpl implements PageSubscriptionCounter
       this.recordID = recordID;
    }
 
+   /* (non-Javadoc)
+    * @see org.hornetq.core.paging.cursor.PageSubscriptionCounter#loadSnapshotValue(long)
+    */
+   public synchronized void loadSnapshotValue(final long value)
+   {
+      if (this.subscription != null)
+      {
+         // it could be null on testcases... which is ok
+         this.subscription.notEmpty();
+      }
+      snapshotLoaded = true;
+      loadedSnapshotValue = value;
+   }
+
    /* (non-Javadoc)
     * @see org.hornetq.core.paging.cursor.impl.PagingSubscriptionCounterInterface#incrementProcessed(long, int)
     */
@@ -208,6 +234,7 @@ public class PageSubscriptionCounterImpl implements PageSubscriptionCounter
       recordID = -1;
       value.set(0);
       incrementRecords.clear();
+      snapshotTX = -1;
 
    }
 
@@ -229,6 +256,16 @@ public class PageSubscriptionCounterImpl implements PageSubscriptionCounter
     */
    public void processReload()
    {
+      if (snapshotLoaded)
+      {
+         // a value record is only written after the snapshot that deleted the previous one, so it's always newer
+         if (recordID < 0)
+         {
+            value.set(loadedSnapshotValue);
+         }
+         snapshotLoaded = false;
+      }
+
       if (loadList != null)
       {
          if (subscription != null)
@@ -260,6 +297,54 @@ public class PageSubscriptionCounterImpl implements PageSubscriptionCounter
       }
    }
 
+   /* (non-Javadoc)
+    * @see org.hornetq.core.paging.cursor.PageSubscriptionCounter#snapshot(long)
+    */
+   public synchronized long snapshot(final long txID) throws Exception
+   {
+      for (Long record : incrementRecords)
+      {
+         storage.deleteIncrementRecord(txID, record.longValue());
+      }
+
+      if (recordID >= 0)
+      {
+         storage.deletePageCounter(txID, recordID);
+      }
+
+      snapshotTX = txID;
+      snapshotIncrements = incrementRecords.size();
+      snapshotRecordID = recordID;
+
+      return value.get();
+   }
+
+   public synchronized void snapshotCommitted(final long txID)
+   {
+      if (txID != snapshotTX)
+      {
+         return;
+      }
+
+      // increments added since the snapshot are after the ones it deleted
+      for (int i = 0; i < snapshotIncrements; i++)
+      {
+         incrementRecords.removeFirst();
+      }
+
+      if (recordID == snapshotRecordID)
+      {
+         recordID = -1;
+      }
+
+      snapshotTX = -1;
+   }
+
+   public boolean isPersistent()
+   {
+      return persistent;
+   }
+
    /** used on testing only */
    public void setPersistent(final boolean persistent)
    {
@@ -269,6 +354,22 @@ public class PageSubscriptionCounterImpl implements PageSubscriptionCounter
    /** This method sould alwas be called from a single threaded executor */
    protected void cleanup()
    {
+      if (subscription != null && persistent)
+      {
+         synchronized (this)
+         {
+            if (incrementRecords.size() <= FLUSH_COUNTER)
+            {
+               return;
+            }
+         }
+
+         // the counters of every subscription on the address are replaced by a single snapshot record
+         subscription.getPagingStore().getCursorProvier().snapshotCounters();
+
+         return;
+      }
+
       ArrayList<Long> deleteList;
 
       long valueReplace;
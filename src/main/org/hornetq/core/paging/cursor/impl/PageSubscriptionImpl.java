@@ -17,7 +17,6 @@ import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -113,6 +112,9 @@ public class PageSubscriptionImpl implements PageSubscription
    // We only store the position for redeliveries. They will be read from the SoftCache again during delivery.
    private final ConcurrentLinkedQueue<PagePosition> redeliveries = new ConcurrentLinkedQueue<PagePosition>();
 
+   // The open iterators, whose pins are released when the subscription is destroyed
+   private final Set<CursorIterator> iterators = new ConcurrentHashSet<CursorIterator>();
+
 
 
    // Static --------------------------------------------------------
@@ -338,21 +340,18 @@ public class PageSubscriptionImpl implements PageSubscription
          }
 
          // it will delete the page ack records
-         for (PagePosition pos : infoPG.acks)
+         for (long recordID : infoPG.acks.getRecordIDs())
          {
-            if (pos.getRecordID() >= 0)
+            store.deleteCursorAcknowledgeTransactional(tx.getID(), recordID);
+            if (!persist)
             {
-               store.deleteCursorAcknowledgeTransactional(tx.getID(), pos.getRecordID());
-               if (!persist)
-               {
-                  // only need to set it once
-                  tx.setContainsPersistent();
-                  persist = true;
-               }
+               // only need to set it once
+               tx.setContainsPersistent();
+               persist = true;
             }
          }
 
-         infoPG.acks.clear();
+         infoPG.acks.clearACKs();
       }
 
       tx.addOperation(new TransactionOperationAbstract()
@@ -399,10 +398,14 @@ public class PageSubscriptionImpl implements PageSubscription
     */
    public LinkedListIterator<PagedReference> iterator()
    {
-      return new CursorIterator();
+      CursorIterator iterator = new CursorIterator();
+
+      iterators.add(iterator);
+
+      return iterator;
    }
 
-   private PagedReference internalGetNext(final PagePosition pos)
+   private PagedReference internalGetNext(final CursorIterator iterator, final PagePosition pos)
    {
       PagePosition retPos = pos.nextMessage();
 
@@ -430,6 +433,8 @@ public class PageSubscriptionImpl implements PageSubscription
       }
       else
       {
+         checkReadAhead(iterator, retPos, cache);
+
          PagedMessage serverMessage = cache.getMessage(retPos.getMessageNr());
 
          if (serverMessage != null)
@@ -443,6 +448,33 @@ public class PageSubscriptionImpl implements PageSubscription
       }
    }
 
+   /**
+    * Once the position goes past the read-ahead threshold of its page, the next pages are read and decoded on the
+    * executor so moving into them won't block on disk.
+    */
+   private void checkReadAhead(final CursorIterator iterator, final PagePosition pos, final PageCache cache)
+   {
+      int readAhead = cursorProvider.getReadAhead();
+
+      if (readAhead <= 0 || cache.isLive() || pos.getPageNr() <= iterator.lastReadAheadPage)
+      {
+         return;
+      }
+
+      if (pos.getMessageNr() + 1 >= cache.getNumberOfMessages() * cursorProvider.getReadAheadThreshold())
+      {
+         iterator.lastReadAheadPage = pos.getPageNr();
+
+         // the current writing page is live and doesn't need to be read
+         long lastPage = Math.min(pos.getPageNr() + readAhead, pageStore.getCurrentWritingPage() - 1);
+
+         for (long page = pos.getPageNr() + 1; page <= lastPage; page++)
+         {
+            cursorProvider.readAhead(page);
+         }
+      }
+   }
+
    /**
     * @param pos
     * @return
@@ -551,12 +583,15 @@ public class PageSubscriptionImpl implements PageSubscription
    {
       synchronized (consumedPages)
       {
-         if (empty && consumedPages.isEmpty())
+         // the pages before the first page of the store were already handed over to be deleted
+         SortedMap<Long, PageCursorInfo> pages = consumedPages.tailMap(Long.valueOf(pageStore.getFirstPage()));
+
+         if (empty && pages.isEmpty())
          {
             return -1;
          }
          long lastPageSeen = 0;
-         for (Map.Entry<Long, PageCursorInfo> info : consumedPages.entrySet())
+         for (Map.Entry<Long, PageCursorInfo> info : pages.entrySet())
          {
             lastPageSeen = info.getKey();
             if (!info.getValue().isDone() && !info.getValue().isPendingDelete())
@@ -691,13 +726,10 @@ public class PageSubscriptionImpl implements PageSubscription
          {
             for (PageCursorInfo cursor : consumedPages.values())
             {
-               for (PagePosition info : cursor.acks)
+               for (long recordID : cursor.acks.getRecordIDs())
                {
-                  if (info.getRecordID() >= 0)
-                  {
-                     isPersistent = true;
-                     store.deleteCursorAcknowledgeTransactional(tx, info.getRecordID());
-                  }
+                  isPersistent = true;
+                  store.deleteCursorAcknowledgeTransactional(tx, recordID);
                }
                PagePosition completeInfo = cursor.getCompleteInfo();
                if (completeInfo != null && completeInfo.getRecordID() >= 0)
@@ -713,6 +745,11 @@ public class PageSubscriptionImpl implements PageSubscription
             store.commit(tx);
          }
 
+         for (CursorIterator iterator : iterators)
+         {
+            iterator.close();
+         }
+
          cursorProvider.close(this);
       }
       catch (Exception e)
@@ -814,7 +851,7 @@ public class PageSubscriptionImpl implements PageSubscription
    }
 
 
-   public void onDeletePage(Page deletedPage) throws Exception
+   public void onDeletePage(Page deletedPage, Transaction tx) throws Exception
    {
       PageCursorInfo info;
       synchronized (consumedPages)
@@ -828,7 +865,8 @@ public class PageSubscriptionImpl implements PageSubscription
          {
             try
             {
-               store.deletePageComplete(completeInfo.getRecordID());
+               store.deletePageCompleteTransactional(tx.getID(), completeInfo.getRecordID());
+               tx.setContainsPersistent();
             }
             catch (Exception e)
             {
@@ -836,21 +874,19 @@ public class PageSubscriptionImpl implements PageSubscription
             }
             info.setCompleteInfo(null);
          }
-         for (PagePosition deleteInfo : info.acks)
+         for (long recordID : info.acks.getRecordIDs())
          {
-            if (deleteInfo.getRecordID() >= 0)
+            try
             {
-               try
-               {
-                  store.deleteCursorAcknowledge(deleteInfo.getRecordID());
-               }
-               catch (Exception e)
-               {
-                  log.warn("Error while deleting page-complete-record", e);
-               }
+               store.deleteCursorAcknowledgeTransactional(tx.getID(), recordID);
+               tx.setContainsPersistent();
+            }
+            catch (Exception e)
+            {
+               log.warn("Error while deleting page-complete-record", e);
             }
          }
-         info.acks.clear();
+         info.acks.clearACKs();
       }
    }
 
@@ -1014,13 +1050,11 @@ public class PageSubscriptionImpl implements PageSubscription
 
       private final long pageId;
 
-      // Confirmed ACKs on this page
-      private final Set<PagePosition> acks = Collections.synchronizedSet(new LinkedHashSet<PagePosition>());
+      // Confirmed ACKs and removed references on this page
+      private final PageAckBitmap acks = new PageAckBitmap();
 
       private WeakReference<PageCache> cache;
 
-      private Set<PagePosition> removedReferences = new ConcurrentHashSet<PagePosition>();
-
       // The page was live at the time of the creation
       private final boolean wasLive;
 
@@ -1130,12 +1164,12 @@ public class PageSubscriptionImpl implements PageSubscription
 
       public boolean isRemoved(final PagePosition pos)
       {
-         return removedReferences.contains(pos);
+         return acks.isRemoved(pos);
       }
 
       public void remove(final PagePosition position)
       {
-         removedReferences.add(position);
+         acks.remove(position);
       }
 
       public void addACK(final PagePosition posACK)
@@ -1172,8 +1206,7 @@ public class PageSubscriptionImpl implements PageSubscription
 
       private boolean internalAddACK(final PagePosition posACK)
       {
-         removedReferences.add(posACK);
-         return acks.add(posACK);
+         return acks.addACK(posACK);
       }
 
       /**
@@ -1272,6 +1305,17 @@ public class PageSubscriptionImpl implements PageSubscription
        *  it has to be delivered on next next operation */
       private volatile PagedReference cachedNext;
 
+      // The page pinned on the cache while the iterator is delivering from it, guarded by pinLock
+      private long pinnedPage = -1;
+
+      private boolean closed;
+
+      private final Object pinLock = new Object();
+
+      // The last page whose following pages were read ahead by this iterator, guarded by the subscription's lock
+      // taken on moveNext. Each iterator reads ahead of its own position
+      private long lastReadAheadPage = -1;
+
       public CursorIterator()
       {
       }
@@ -1362,7 +1406,7 @@ public class PageSubscriptionImpl implements PageSubscription
                      isredelivery = false;
                   }
 
-                  message = internalGetNext(tmpPosition);
+                  message = internalGetNext(this, tmpPosition);
                }
 
                if (message == null)
@@ -1370,6 +1414,8 @@ public class PageSubscriptionImpl implements PageSubscription
                   break;
                }
 
+               pinPage(message.getPosition().getPageNr());
+
                tmpPosition = message.getPosition();
 
                boolean valid = true;
@@ -1497,6 +1543,42 @@ public class PageSubscriptionImpl implements PageSubscription
        */
       public void close()
       {
+         synchronized (pinLock)
+         {
+            closed = true;
+
+            if (pinnedPage >= 0)
+            {
+               cursorProvider.unpinPage(pinnedPage);
+               pinnedPage = -1;
+            }
+         }
+
+         iterators.remove(this);
+      }
+
+      /**
+       * Moves the pin to the page the iterator is delivering from, so the page stays cached for the other
+       * subscriptions behind this one on the same address.
+       */
+      private void pinPage(final long pageNr)
+      {
+         synchronized (pinLock)
+         {
+            if (closed || pageNr == pinnedPage)
+            {
+               return;
+            }
+
+            cursorProvider.pinPage(pageNr);
+
+            if (pinnedPage >= 0)
+            {
+               cursorProvider.unpinPage(pinnedPage);
+            }
+
+            pinnedPage = pageNr;
+         }
       }
    }
 
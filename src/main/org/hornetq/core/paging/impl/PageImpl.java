@@ -17,12 +17,16 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.HornetQBuffers;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.journal.SequentialFile;
 import org.hornetq.core.journal.SequentialFileFactory;
+import org.hornetq.core.journal.impl.MappedSequentialFile;
 import org.hornetq.core.logging.Logger;
 import org.hornetq.core.paging.Page;
 import org.hornetq.core.paging.PagedMessage;
@@ -51,6 +55,17 @@ public class PageImpl implements Page, Comparable<Page>
 
    private static final byte END_BYTE = (byte)'}';
 
+   /** Starts a record holding a deflated message, preceded by its encode size */
+   private static final byte COMPRESSED_START_BYTE = (byte)'[';
+
+   /** Deflate can't compress beyond this ratio, a larger uncompressed size means the record is damaged */
+   private static final int MAX_DEFLATE_RATIO = 1032;
+
+   /** Each entry on the index file is the offset and the length of a record on the page file */
+   public static final int SIZE_INDEX_RECORD = DataConstants.SIZE_INT + DataConstants.SIZE_INT;
+
+   private static final String INDEX_EXTENSION = "index";
+
    // Attributes ----------------------------------------------------
 
    private final int pageId;
@@ -74,6 +89,21 @@ public class PageImpl implements Page, Comparable<Page>
 
    private final SimpleString storeName;
 
+   /** If an index of the records is written along the page file */
+   private volatile boolean indexed;
+
+   /** Open while the page is written with an index */
+   private SequentialFile indexFile;
+
+   /** Set when the existing index doesn't match the records already on the page, so it's not written any more */
+   private boolean indexDiscarded;
+
+   /** If the messages are written deflated */
+   private volatile boolean compressed;
+
+   /** Only used by write, which is called by a single thread at a time */
+   private Deflater deflater;
+
    // Static --------------------------------------------------------
 
    // Constructors --------------------------------------------------
@@ -105,79 +135,198 @@ public class PageImpl implements Page, Comparable<Page>
       this.pageCache = pageCache;
    }
 
-   public List<PagedMessage> read(StorageManager storage) throws Exception
+   /**
+    * When set, the offset of each record written is kept on an index file so single messages can be read through
+    * {@link #readMessage(StorageManager, int)}.
+    */
+   public void setIndexed(final boolean indexed)
    {
-      if (isDebug)
+      this.indexed = indexed;
+   }
+
+   public boolean isIndexed()
+   {
+      return indexed;
+   }
+
+   /**
+    * When set, each message is written deflated, unless that wouldn't make its record any smaller. A page may have
+    * both kinds of records.
+    */
+   public void setCompressed(final boolean compressed)
+   {
+      this.compressed = compressed;
+   }
+
+   public boolean isCompressed()
+   {
+      return compressed;
+   }
+
+   /**
+    * Reads a single message through the index file, without reading the entire page.
+    * @return null if there's no index for the page, or if it doesn't match the records on the page
+    */
+   public PagedMessage readMessage(final StorageManager storage, final int messageNumber) throws Exception
+   {
+      SequentialFile index = fileFactory.createSequentialFile(createIndexFileName(), 1);
+
+      if (messageNumber < 0 || !index.exists())
       {
-         log.debug("reading page " + this.pageId + " on address = " + storeName);
+         return null;
       }
 
-      ArrayList<PagedMessage> messages = new ArrayList<PagedMessage>();
+      int offset;
+      int length;
 
-      size.set((int)file.size());
-      // Using direct buffer, as described on https://jira.jboss.org/browse/HORNETQ-467
-      ByteBuffer directBuffer = storage.allocateDirectBuffer((int)file.size());
+      ByteBuffer indexBuffer = storage.allocateDirectBuffer(PageImpl.SIZE_INDEX_RECORD);
 
       try
       {
+         index.open();
 
-         file.position(0);
-         file.read(directBuffer);
+         long indexPosition = (long)messageNumber * PageImpl.SIZE_INDEX_RECORD;
+
+         if (index.size() < indexPosition + PageImpl.SIZE_INDEX_RECORD)
+         {
+            return null;
+         }
+
+         index.position(indexPosition);
+
+         if (index.read(indexBuffer) < PageImpl.SIZE_INDEX_RECORD)
+         {
+            return null;
+         }
+
+         indexBuffer.rewind();
+
+         offset = indexBuffer.getInt();
+         length = indexBuffer.getInt();
+      }
+      finally
+      {
+         index.close();
+         storage.freeDirectBuffer(indexBuffer);
+      }
+
+      if (offset < 0 || length <= PageImpl.SIZE_RECORD || (long)offset + length > file.size())
+      {
+         return null;
+      }
+
+      ByteBuffer directBuffer = storage.allocateDirectBuffer(length);
+
+      try
+      {
+         file.position(offset);
+
+         if (file.read(directBuffer) < length)
+         {
+            return null;
+         }
 
          directBuffer.rewind();
 
          HornetQBuffer fileBuffer = HornetQBuffers.wrappedBuffer(directBuffer);
-         fileBuffer.writerIndex(fileBuffer.capacity());
+         fileBuffer.writerIndex(length);
 
-         while (fileBuffer.readable())
-         {
-            final int position = fileBuffer.readerIndex();
+         byte startByte = fileBuffer.readByte();
 
-            byte byteRead = fileBuffer.readByte();
+         PagedMessageImpl msg = null;
 
-            if (byteRead == PageImpl.START_BYTE)
+         // the record has to be exactly where the index says, otherwise the whole page is read instead
+         if ((startByte == PageImpl.START_BYTE || startByte == PageImpl.COMPRESSED_START_BYTE) && fileBuffer.readInt() == length - PageImpl.SIZE_RECORD &&
+             fileBuffer.getByte(length - 1) == PageImpl.END_BYTE)
+         {
+            if (startByte == PageImpl.COMPRESSED_START_BYTE)
             {
-               if (fileBuffer.readerIndex() + DataConstants.SIZE_INT < fileBuffer.capacity())
+               Inflater inflater = new Inflater();
+               try
                {
-                  int messageSize = fileBuffer.readInt();
-                  int oldPos = fileBuffer.readerIndex();
-                  if (fileBuffer.readerIndex() + messageSize < fileBuffer.capacity() && fileBuffer.getByte(oldPos + messageSize) == PageImpl.END_BYTE)
-                  {
-                     PagedMessage msg = new PagedMessageImpl();
-                     msg.decode(fileBuffer);
-                     byte b = fileBuffer.readByte();
-                     if (b != PageImpl.END_BYTE)
-                     {
-                        // Sanity Check: This would only happen if there is a bug on decode or any internal code, as
-                        // this
-                        // constraint was already checked
-                        throw new IllegalStateException("Internal error, it wasn't possible to locate END_BYTE " + b);
-                     }
-                     msg.initMessage(storage);
-                     if (isTrace)
-                     {
-                        log.trace("Reading message " + msg + " on pageId=" + this.pageId + " for address=" + storeName);
-                     }
-                     messages.add(msg);
-                  }
-                  else
-                  {
-                     markFileAsSuspect(position, messages.size());
-                     break;
-                  }
+                  msg = decodeCompressed(fileBuffer, length - PageImpl.SIZE_RECORD, inflater);
+               }
+               finally
+               {
+                  inflater.end();
                }
             }
             else
             {
-               markFileAsSuspect(position, messages.size());
-               break;
+               msg = new PagedMessageImpl();
+               msg.decode(fileBuffer);
             }
          }
+
+         if (msg == null)
+         {
+            if (isDebug)
+            {
+               log.debug("Index of page " + pageId + " on address " + storeName + " doesn't match message " + messageNumber);
+            }
+            return null;
+         }
+
+         msg.initMessage(storage);
+
+         if (isTrace)
+         {
+            log.trace("Reading message " + msg + " through the index on pageId=" + this.pageId + " for address=" + storeName);
+         }
+
+         return msg;
       }
       finally
       {
          storage.freeDirectBuffer(directBuffer);
       }
+   }
+
+   public List<PagedMessage> read(StorageManager storage) throws Exception
+   {
+      if (isDebug)
+      {
+         log.debug("reading page " + this.pageId + " on address = " + storeName);
+      }
+
+      ArrayList<PagedMessage> messages = new ArrayList<PagedMessage>();
+
+      if (file instanceof MappedSequentialFile)
+      {
+         // The messages keep a slice of the mapping and are only decoded when used
+         ByteBuffer mappedBuffer = ((MappedSequentialFile)file).map();
+
+         size.set(mappedBuffer.capacity());
+
+         HornetQBuffer fileBuffer = HornetQBuffers.wrappedBuffer(mappedBuffer);
+         fileBuffer.writerIndex(fileBuffer.capacity());
+
+         readMessages(storage, fileBuffer, messages, true);
+      }
+      else
+      {
+         size.set((int)file.size());
+         // Using direct buffer, as described on https://jira.jboss.org/browse/HORNETQ-467
+         ByteBuffer directBuffer = storage.allocateDirectBuffer((int)file.size());
+
+         try
+         {
+
+            file.position(0);
+            file.read(directBuffer);
+
+            directBuffer.rewind();
+
+            HornetQBuffer fileBuffer = HornetQBuffers.wrappedBuffer(directBuffer);
+            fileBuffer.writerIndex(fileBuffer.capacity());
+
+            readMessages(storage, fileBuffer, messages, false);
+         }
+         finally
+         {
+            storage.freeDirectBuffer(directBuffer);
+         }
+      }
 
       numberOfMessages.set(messages.size());
 
@@ -186,22 +335,39 @@ public class PageImpl implements Page, Comparable<Page>
 
    public void write(final PagedMessage message) throws Exception
    {
-      ByteBuffer buffer = fileFactory.newBuffer(message.getEncodeSize() + PageImpl.SIZE_RECORD);
+      ByteBuffer buffer = null;
 
-      HornetQBuffer wrap = HornetQBuffers.wrappedBuffer(buffer);
-      wrap.clear();
+      if (compressed)
+      {
+         buffer = encodeCompressed(message);
+      }
 
-      wrap.writeByte(PageImpl.START_BYTE);
-      wrap.writeInt(0);
-      int startIndex = wrap.writerIndex();
-      message.encode(wrap);
-      int endIndex = wrap.writerIndex();
-      wrap.setInt(1, endIndex - startIndex); // The encoded length
-      wrap.writeByte(PageImpl.END_BYTE);
+      if (buffer == null)
+      {
+         buffer = fileFactory.newBuffer(message.getEncodeSize() + PageImpl.SIZE_RECORD);
+
+         HornetQBuffer wrap = HornetQBuffers.wrappedBuffer(buffer);
+         wrap.clear();
+
+         wrap.writeByte(PageImpl.START_BYTE);
+         wrap.writeInt(0);
+         int startIndex = wrap.writerIndex();
+         message.encode(wrap);
+         int endIndex = wrap.writerIndex();
+         wrap.setInt(1, endIndex - startIndex); // The encoded length
+         wrap.writeByte(PageImpl.END_BYTE);
+      }
 
       buffer.rewind();
 
+      int offset = size.get();
+
       file.writeDirect(buffer, false);
+
+      if (indexed)
+      {
+         writeIndex(offset, buffer.limit());
+      }
       
       if (pageCache != null)
       {
@@ -241,6 +407,16 @@ public class PageImpl implements Page, Comparable<Page>
          // leave it to the soft cache to decide when to release it now
          pageCache = null;
       }
+      if (indexFile != null)
+      {
+         indexFile.close();
+         indexFile = null;
+      }
+      if (deflater != null)
+      {
+         deflater.end();
+         deflater = null;
+      }
       file.close();
    }
    
@@ -279,6 +455,12 @@ public class PageImpl implements Page, Comparable<Page>
 
       try
       {
+         SequentialFile index = fileFactory.createSequentialFile(createIndexFileName(), 1);
+         if (index.exists())
+         {
+            index.delete();
+         }
+
          if (suspiciousRecords)
          {
             PageImpl.log.warn("File " + file.getFileName() +
@@ -382,11 +564,231 @@ public class PageImpl implements Page, Comparable<Page>
     * @param position
     * @param msgNumber
     */
+   private void readMessages(final StorageManager storage,
+                             final HornetQBuffer fileBuffer,
+                             final List<PagedMessage> messages,
+                             final boolean lazy)
+   {
+      Inflater inflater = null;
+
+      try
+      {
+         while (fileBuffer.readable())
+         {
+            final int position = fileBuffer.readerIndex();
+
+            byte byteRead = fileBuffer.readByte();
+
+            if (byteRead == PageImpl.START_BYTE || byteRead == PageImpl.COMPRESSED_START_BYTE)
+            {
+               if (fileBuffer.readerIndex() + DataConstants.SIZE_INT < fileBuffer.capacity())
+               {
+                  int messageSize = fileBuffer.readInt();
+                  int oldPos = fileBuffer.readerIndex();
+                  if (fileBuffer.readerIndex() + messageSize < fileBuffer.capacity() && fileBuffer.getByte(oldPos + messageSize) == PageImpl.END_BYTE)
+                  {
+                     PagedMessageImpl msg;
+                     if (byteRead == PageImpl.COMPRESSED_START_BYTE)
+                     {
+                        if (inflater == null)
+                        {
+                           inflater = new Inflater();
+                        }
+                        msg = decodeCompressed(fileBuffer, messageSize, inflater);
+                        if (msg == null)
+                        {
+                           markFileAsSuspect(position, messages.size());
+                           break;
+                        }
+                     }
+                     else if (lazy)
+                     {
+                        msg = new PagedMessageImpl();
+                        msg.decodeLazily(fileBuffer);
+                     }
+                     else
+                     {
+                        msg = new PagedMessageImpl();
+                        msg.decode(fileBuffer);
+                     }
+                     byte b = fileBuffer.readByte();
+                     if (b != PageImpl.END_BYTE)
+                     {
+                        // Sanity Check: This would only happen if there is a bug on decode or any internal code, as
+                        // this
+                        // constraint was already checked
+                        throw new IllegalStateException("Internal error, it wasn't possible to locate END_BYTE " + b);
+                     }
+                     msg.initMessage(storage);
+                     if (isTrace)
+                     {
+                        log.trace("Reading message " + msg + " on pageId=" + this.pageId + " for address=" + storeName);
+                     }
+                     messages.add(msg);
+                  }
+                  else
+                  {
+                     markFileAsSuspect(position, messages.size());
+                     break;
+                  }
+               }
+            }
+            else
+            {
+               markFileAsSuspect(position, messages.size());
+               break;
+            }
+         }
+      }
+      finally
+      {
+         if (inflater != null)
+         {
+            inflater.end();
+         }
+      }
+   }
+
+   /**
+    * @return a record holding the deflated message, or null if deflating doesn't make it smaller
+    */
+   private ByteBuffer encodeCompressed(final PagedMessage message)
+   {
+      int encodeSize = message.getEncodeSize();
+
+      byte[] encoded = new byte[encodeSize];
+
+      HornetQBuffer encodedBuffer = HornetQBuffers.wrappedBuffer(encoded);
+      encodedBuffer.clear();
+      message.encode(encodedBuffer);
+
+      if (deflater == null)
+      {
+         deflater = new Deflater(Deflater.BEST_SPEED);
+      }
+
+      deflater.reset();
+      deflater.setInput(encoded, 0, encodedBuffer.writerIndex());
+      deflater.finish();
+
+      // anything not fitting on the encode size itself is not worth it
+      byte[] deflated = new byte[encodeSize];
+
+      int deflatedSize = deflater.deflate(deflated);
+
+      if (!deflater.finished() || deflatedSize + DataConstants.SIZE_INT >= encodeSize)
+      {
+         return null;
+      }
+
+      ByteBuffer buffer = fileFactory.newBuffer(DataConstants.SIZE_INT + deflatedSize + PageImpl.SIZE_RECORD);
+
+      HornetQBuffer wrap = HornetQBuffers.wrappedBuffer(buffer);
+      wrap.clear();
+
+      wrap.writeByte(PageImpl.COMPRESSED_START_BYTE);
+      wrap.writeInt(DataConstants.SIZE_INT + deflatedSize);
+      wrap.writeInt(encodedBuffer.writerIndex());
+      wrap.writeBytes(deflated, 0, deflatedSize);
+      wrap.writeByte(PageImpl.END_BYTE);
+
+      return buffer;
+   }
+
+   /**
+    * @return null if the record can't be inflated
+    */
+   private PagedMessageImpl decodeCompressed(final HornetQBuffer fileBuffer, final int recordSize, final Inflater inflater)
+   {
+      if (recordSize <= DataConstants.SIZE_INT)
+      {
+         return null;
+      }
+
+      int encodeSize = fileBuffer.readInt();
+
+      byte[] deflated = new byte[recordSize - DataConstants.SIZE_INT];
+
+      fileBuffer.readBytes(deflated);
+
+      if (encodeSize <= 0 || encodeSize / PageImpl.MAX_DEFLATE_RATIO > deflated.length)
+      {
+         return null;
+      }
+
+      byte[] encoded = new byte[encodeSize];
+
+      inflater.reset();
+      inflater.setInput(deflated);
+
+      try
+      {
+         if (inflater.inflate(encoded) != encodeSize || !inflater.finished())
+         {
+            return null;
+         }
+      }
+      catch (DataFormatException e)
+      {
+         log.warn("Couldn't inflate record on pageId=" + pageId + " for address=" + storeName, e);
+         return null;
+      }
+
+      PagedMessageImpl msg = new PagedMessageImpl();
+      msg.decode(HornetQBuffers.wrappedBuffer(encoded));
+      return msg;
+   }
+
    private void markFileAsSuspect(final int position, final int msgNumber)
    {
       PageImpl.log.warn("Page file had incomplete records at position " + position + " at record number " + msgNumber);
       suspiciousRecords = true;
    }
 
+   private void writeIndex(final int offset, final int length) throws Exception
+   {
+      if (indexFile == null)
+      {
+         if (indexDiscarded)
+         {
+            return;
+         }
+
+         indexFile = fileFactory.createSequentialFile(createIndexFileName(), 1);
+         indexFile.open();
+
+         // The page may have been written without an index, or the index may have lost records on a crash.
+         // The index is positional, so it's discarded if it doesn't have exactly one entry per record
+         if (indexFile.size() != (long)numberOfMessages.get() * PageImpl.SIZE_INDEX_RECORD)
+         {
+            if (isDebug)
+            {
+               log.debug("Discarding index of page " + pageId + " on address " + storeName +
+                         " as it doesn't match the records on the page");
+            }
+            indexFile.delete();
+            indexFile = null;
+            indexDiscarded = true;
+            return;
+         }
+
+         indexFile.position(indexFile.size());
+      }
+
+      ByteBuffer buffer = fileFactory.newBuffer(PageImpl.SIZE_INDEX_RECORD);
+      buffer.putInt(offset);
+      buffer.putInt(length);
+      buffer.rewind();
+
+      indexFile.writeDirect(buffer, false);
+   }
+
+   private String createIndexFileName()
+   {
+      String fileName = file.getFileName();
+      int extension = fileName.lastIndexOf('.');
+      return (extension >= 0 ? fileName.substring(0, extension) : fileName) + "." + PageImpl.INDEX_EXTENSION;
+   }
+
    // Inner classes -------------------------------------------------
 }
@@ -51,6 +51,9 @@ public class PagedMessageImpl implements PagedMessage
    private byte[] largeMessageLazyData;
 
    private ServerMessage message;
+
+   /** The encoded message when it was decoded lazily, usually a slice of a mapped page file */
+   private volatile HornetQBuffer lazyBuffer;
    
    private long queueIDs[];
 
@@ -74,6 +77,10 @@ public class PagedMessageImpl implements PagedMessage
 
    public ServerMessage getMessage()
    {
+      if (lazyBuffer != null)
+      {
+         decodeMessage();
+      }
       return message;
    }
    
@@ -105,46 +112,29 @@ public class PagedMessageImpl implements PagedMessage
 
    public void decode(final HornetQBuffer buffer)
    {
-      transactionID = buffer.readLong();
-
-      boolean isLargeMessage = buffer.readBoolean();
-
-      if (isLargeMessage)
-      {
-         int largeMessageHeaderSize = buffer.readInt();
-
-         largeMessageLazyData = new byte[largeMessageHeaderSize];
-
-         buffer.readBytes(largeMessageLazyData);
-      }
-      else
-      {
-         buffer.readInt(); // This value is only used on LargeMessages for now
-
-         message = new ServerMessageImpl(-1, 50);
+      decode(buffer, false);
+   }
 
-         message.decode(buffer);
-      }
-      
-      int queueIDsSize = buffer.readInt();
-      
-      queueIDs = new long[queueIDsSize];
-      
-      for (int i = 0 ; i < queueIDsSize; i++)
-      {
-         queueIDs[i] = buffer.readLong();
-      }
+   /**
+    * Decodes everything but the message, which will only be decoded from a slice of the buffer on
+    * {@link #getMessage()}. The buffer content can't change while this PagedMessage is in use.
+    */
+   public void decodeLazily(final HornetQBuffer buffer)
+   {
+      decode(buffer, true);
    }
 
    public void encode(final HornetQBuffer buffer)
    {
+      ServerMessage msg = getMessage();
+
       buffer.writeLong(transactionID);
 
-      buffer.writeBoolean(message instanceof LargeServerMessage);
+      buffer.writeBoolean(msg instanceof LargeServerMessage);
 
-      buffer.writeInt(message.getEncodeSize());
+      buffer.writeInt(msg.getEncodeSize());
 
-      message.encode(buffer);
+      msg.encode(buffer);
       
       buffer.writeInt(queueIDs.length);
       
@@ -156,7 +146,11 @@ public class PagedMessageImpl implements PagedMessage
 
    public int getEncodeSize()
    {
-      return DataConstants.SIZE_LONG + DataConstants.SIZE_BYTE + DataConstants.SIZE_INT + message.getEncodeSize() + 
+      HornetQBuffer encodedMessage = lazyBuffer;
+
+      int messageEncodeSize = encodedMessage != null ? encodedMessage.capacity() : message.getEncodeSize();
+
+      return DataConstants.SIZE_LONG + DataConstants.SIZE_BYTE + DataConstants.SIZE_INT + messageEncodeSize + 
              DataConstants.SIZE_INT + queueIDs.length * DataConstants.SIZE_LONG;
    }
 
@@ -170,7 +164,7 @@ public class PagedMessageImpl implements PagedMessage
              ", transactionID=" +
              transactionID +
              ", message=" +
-             message +
+             (lazyBuffer != null ? "(not decoded)" : message) +
              "]";
    }
    
@@ -182,6 +176,63 @@ public class PagedMessageImpl implements PagedMessage
 
    // Private -------------------------------------------------------
 
+   private void decode(final HornetQBuffer buffer, final boolean lazy)
+   {
+      transactionID = buffer.readLong();
+
+      boolean isLargeMessage = buffer.readBoolean();
+
+      if (isLargeMessage)
+      {
+         int largeMessageHeaderSize = buffer.readInt();
+
+         largeMessageLazyData = new byte[largeMessageHeaderSize];
+
+         buffer.readBytes(largeMessageLazyData);
+      }
+      else if (lazy)
+      {
+         int messageEncodeSize = buffer.readInt();
+
+         lazyBuffer = buffer.slice(buffer.readerIndex(), messageEncodeSize);
+
+         buffer.skipBytes(messageEncodeSize);
+      }
+      else
+      {
+         buffer.readInt(); // This value is only used on LargeMessages and lazy decoding for now
+
+         message = new ServerMessageImpl(-1, 50);
+
+         message.decode(buffer);
+      }
+      
+      int queueIDsSize = buffer.readInt();
+      
+      queueIDs = new long[queueIDsSize];
+      
+      for (int i = 0 ; i < queueIDsSize; i++)
+      {
+         queueIDs[i] = buffer.readLong();
+      }
+   }
+
+   private synchronized void decodeMessage()
+   {
+      HornetQBuffer encodedMessage = lazyBuffer;
+
+      if (encodedMessage != null)
+      {
+         ServerMessage decoded = new ServerMessageImpl(-1, 50);
+
+         decoded.decode(encodedMessage);
+
+         message = decoded;
+
+         lazyBuffer = null;
+      }
+   }
+
    // Inner classes -------------------------------------------------
 
 }
@@ -15,8 +15,10 @@ package org.hornetq.core.paging.impl;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 
 import org.hornetq.api.core.SimpleString;
@@ -29,6 +31,7 @@ import org.hornetq.core.persistence.StorageManager;
 import org.hornetq.core.postoffice.PostOffice;
 import org.hornetq.core.settings.HierarchicalRepository;
 import org.hornetq.core.settings.impl.AddressSettings;
+import org.hornetq.utils.StripedCounter;
 
 /**
  * 
@@ -41,6 +44,9 @@ public class PagingManagerImpl implements PagingManager
 {
    // Constants -----------------------------------------------------
 
+   // the largest amount a stripe of the global size may hold before it's added to the total
+   private static final long GLOBAL_SIZE_SLACK = 64 * 1024;
+
    // Attributes ----------------------------------------------------
 
    private volatile boolean started = false;
@@ -55,6 +61,20 @@ public class PagingManagerImpl implements PagingManager
 
    private final ConcurrentMap</*TransactionID*/Long, PageTransactionInfo> transactions = new ConcurrentHashMap<Long, PageTransactionInfo>();
 
+   private final long globalMaxSize;
+
+   // once full, the addresses are only released under this size, so producers don't block and unblock on every message
+   private final long globalResumeSize;
+
+   // updated by every routed and acknowledged message of every address, striped so they don't contend on it
+   private final StripedCounter globalSize;
+
+   private volatile boolean globalFull;
+
+   private final Object globalFullLock = new Object();
+
+   private final Queue<Runnable> onGlobalMemoryFreedRunnables = new ConcurrentLinkedQueue<Runnable>();
+
    // Static
    // --------------------------------------------------------------------------------------------------------------------------
 
@@ -67,11 +87,35 @@ public class PagingManagerImpl implements PagingManager
    public PagingManagerImpl(final PagingStoreFactory pagingSPI,
                             final StorageManager storageManager,
                             final HierarchicalRepository<AddressSettings> addressSettingsRepository)
+   {
+      this(pagingSPI, storageManager, addressSettingsRepository, -1);
+   }
+
+   /**
+    * @param globalMaxSize the memory all the addresses may use together, -1 for no limit
+    */
+   public PagingManagerImpl(final PagingStoreFactory pagingSPI,
+                            final StorageManager storageManager,
+                            final HierarchicalRepository<AddressSettings> addressSettingsRepository,
+                            final long globalMaxSize)
    {
       pagingStoreFactory = pagingSPI;
       this.addressSettingsRepository = addressSettingsRepository;
       addressSettingsRepository.registerListener(this);
       this.storageManager = storageManager;
+      this.globalMaxSize = globalMaxSize;
+      globalResumeSize = globalMaxSize - globalMaxSize / 10;
+
+      int stripes = Runtime.getRuntime().availableProcessors() * 2;
+
+      // what the stripes may hold is kept under 10% of the limit, so it's never overrun by more than that
+      long slack = PagingManagerImpl.GLOBAL_SIZE_SLACK;
+      if (globalMaxSize > 0)
+      {
+         slack = Math.min(slack, globalMaxSize / 10 / stripes);
+      }
+
+      globalSize = new StripedCounter(stripes, slack);
    }
 
    // Public
@@ -210,6 +254,62 @@ public class PagingManagerImpl implements PagingManager
       return transactions;
    }
 
+   public long addSize(final long size)
+   {
+      long approximateSize = globalSize.add(size);
+
+      if (globalMaxSize > 0)
+      {
+         if (!globalFull)
+         {
+            if (size > 0 && approximateSize > globalMaxSize)
+            {
+               checkGlobalFull();
+            }
+         }
+         else if (size < 0)
+         {
+            checkGlobalMemoryFreed();
+         }
+      }
+
+      return approximateSize;
+   }
+
+   public long getTotalMemory()
+   {
+      return globalSize.sum();
+   }
+
+   public long getMaxMemory()
+   {
+      return globalMaxSize;
+   }
+
+   public boolean isGlobalFull()
+   {
+      return globalFull;
+   }
+
+   public void executeRunnableWhenMemoryAvailable(final Runnable runnable)
+   {
+      if (globalFull)
+      {
+         onGlobalMemoryFreedRunnables.add(runnable);
+
+         // The memory may have been freed after the check and before the runnable was added, same as on
+         // PagingStoreImpl the race is fixed by checking again instead of locking
+         if (!globalFull)
+         {
+            runGlobalMemoryFreedRunnables();
+         }
+
+         return;
+      }
+
+      runnable.run();
+   }
+
 
    // HornetQComponent implementation
    // ------------------------------------------------------------------------------------------------
@@ -267,6 +367,58 @@ public class PagingManagerImpl implements PagingManager
 
    // Private -------------------------------------------------------
 
+   private void checkGlobalFull()
+   {
+      synchronized (globalFullLock)
+      {
+         if (!globalFull && globalSize.sum() > globalMaxSize)
+         {
+            if (isTrace)
+            {
+               log.trace("Global size over " + globalMaxSize + ", addresses will page, drop or block");
+            }
+
+            globalFull = true;
+         }
+      }
+   }
+
+   private void checkGlobalMemoryFreed()
+   {
+      // summed outside the lock first, as every acknowledgement gets here while the addresses are full
+      if (globalSize.sum() > globalResumeSize)
+      {
+         return;
+      }
+
+      synchronized (globalFullLock)
+      {
+         if (!globalFull || globalSize.sum() > globalResumeSize)
+         {
+            return;
+         }
+
+         if (isTrace)
+         {
+            log.trace("Global size under " + globalResumeSize + ", releasing the addresses");
+         }
+
+         globalFull = false;
+      }
+
+      runGlobalMemoryFreedRunnables();
+   }
+
+   private void runGlobalMemoryFreedRunnables()
+   {
+      Runnable runnable;
+
+      while ((runnable = onGlobalMemoryFreedRunnables.poll()) != null)
+      {
+         runnable.run();
+      }
+   }
+
    protected PagingStore newStore(final SimpleString address) 
    {
       return pagingStoreFactory.newStore(address,
@@ -28,6 +28,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.journal.IOCriticalErrorListener;
 import org.hornetq.core.journal.SequentialFileFactory;
+import org.hornetq.core.journal.impl.MappedSequentialFileFactory;
 import org.hornetq.core.journal.impl.NIOSequentialFileFactory;
 import org.hornetq.core.logging.Logger;
 import org.hornetq.core.paging.PagingManager;
@@ -74,6 +75,8 @@ public class PagingStoreFactoryNIO implements PagingStoreFactory
 
    private final IOCriticalErrorListener critialErrorListener;
 
+   private final boolean mappedRead;
+
    // Static --------------------------------------------------------
 
    // Constructors --------------------------------------------------
@@ -93,6 +96,21 @@ public class PagingStoreFactoryNIO implements PagingStoreFactory
                                 final ExecutorFactory executorFactory,
                                 final boolean syncNonTransactional,
                                 final IOCriticalErrorListener critialErrorListener)
+   {
+      this(directory, syncTimeout, scheduledExecutor, executorFactory, syncNonTransactional, critialErrorListener, false);
+   }
+
+   /**
+    * @param mappedRead if true the page files are read through a memory mapping and the messages are only decoded when
+    *           used
+    */
+   public PagingStoreFactoryNIO(final String directory,
+                                final long syncTimeout,
+                                final ScheduledExecutorService scheduledExecutor,
+                                final ExecutorFactory executorFactory,
+                                final boolean syncNonTransactional,
+                                final IOCriticalErrorListener critialErrorListener,
+                                final boolean mappedRead)
    {
       this.directory = directory;
 
@@ -105,6 +123,8 @@ public class PagingStoreFactoryNIO implements PagingStoreFactory
       this.syncTimeout = syncTimeout;
 
       this.critialErrorListener = critialErrorListener;
+
+      this.mappedRead = mappedRead;
    }
 
    // Public --------------------------------------------------------
@@ -126,6 +146,7 @@ public class PagingStoreFactoryNIO implements PagingStoreFactory
                                  address,
                                  settings,
                                  executorFactory.getExecutor(),
+                                 executorFactory.getExecutor(),
                                  syncNonTransactional);
    }
 
@@ -231,6 +252,7 @@ public class PagingStoreFactoryNIO implements PagingStoreFactory
                                                     address,
                                                     settings,
                                                     executorFactory.getExecutor(),
+                                                    executorFactory.getExecutor(),
                                                     syncNonTransactional);
 
             storesReturn.add(store);
@@ -246,6 +268,11 @@ public class PagingStoreFactoryNIO implements PagingStoreFactory
 
    protected SequentialFileFactory newFileFactory(final String directoryName)
    {
+      if (mappedRead)
+      {
+         return new MappedSequentialFileFactory(directory + File.separatorChar + directoryName, critialErrorListener);
+      }
+
       return new NIOSequentialFileFactory(directory + File.separatorChar + directoryName, false, critialErrorListener);
    }
 
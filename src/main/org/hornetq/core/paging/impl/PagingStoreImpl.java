@@ -22,6 +22,7 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -94,6 +95,12 @@ public class PagingStoreImpl implements TestSupportPageStore
 
    private AddressFullMessagePolicy addressFullMessagePolicy;
 
+   // if new pages are written with an index of their records
+   private volatile boolean pageIndex;
+
+   // if messages on new pages are written deflated
+   private volatile boolean pageCompress;
+
    private boolean printedDropMessagesWarning;
 
    private final PagingManager pagingManager;
@@ -146,6 +153,36 @@ public class PagingStoreImpl implements TestSupportPageStore
                           final AddressSettings addressSettings,
                           final Executor executor,
                           final boolean syncNonTransactional)
+   {
+      this(address,
+           scheduledExecutor,
+           syncTimeout,
+           pagingManager,
+           storageManager,
+           fileFactory,
+           storeFactory,
+           storeName,
+           addressSettings,
+           executor,
+           executor,
+           syncNonTransactional);
+   }
+
+   /**
+    * @param cleanupExecutor deletes the consumed pages, so the cursors using the executor won't wait on it
+    */
+   public PagingStoreImpl(final SimpleString address,
+                          final ScheduledExecutorService scheduledExecutor,
+                          final long syncTimeout,
+                          final PagingManager pagingManager,
+                          final StorageManager storageManager,
+                          final SequentialFileFactory fileFactory,
+                          final PagingStoreFactory storeFactory,
+                          final SimpleString storeName,
+                          final AddressSettings addressSettings,
+                          final Executor executor,
+                          final Executor cleanupExecutor,
+                          final boolean syncNonTransactional)
    {
       if (pagingManager == null)
       {
@@ -189,7 +226,15 @@ public class PagingStoreImpl implements TestSupportPageStore
          this.syncTimer = null;
       }
 
-      this.cursorProvider = new PageCursorProviderImpl(this, this.storageManager, executor, addressSettings.getPageCacheMaxSize());
+      this.cursorProvider = new PageCursorProviderImpl(this,
+                                                       this.storageManager,
+                                                       executor,
+                                                       cleanupExecutor,
+                                                       addressSettings.getPageCacheMaxSize());
+      this.cursorProvider.setCacheMaxSizeBytes(addressSettings.getPageCacheMaxBytes());
+      this.cursorProvider.setCacheEvictionPolicy(addressSettings.getPageCacheEvictionPolicy());
+      this.cursorProvider.setReadAhead(addressSettings.getPageReadAhead());
+      this.cursorProvider.setReadAheadThreshold(addressSettings.getPageReadAheadThreshold());
 
    }
 
@@ -207,7 +252,15 @@ public class PagingStoreImpl implements TestSupportPageStore
       if (cursorProvider != null)
       {
          cursorProvider.setCacheMaxSize(addressSettings.getPageCacheMaxSize());
+         cursorProvider.setCacheMaxSizeBytes(addressSettings.getPageCacheMaxBytes());
+         cursorProvider.setCacheEvictionPolicy(addressSettings.getPageCacheEvictionPolicy());
+         cursorProvider.setReadAhead(addressSettings.getPageReadAhead());
+         cursorProvider.setReadAheadThreshold(addressSettings.getPageReadAheadThreshold());
       }
+
+      pageIndex = addressSettings.isPageIndex();
+
+      pageCompress = addressSettings.isPageCompress();
    }
 
    // Public --------------------------------------------------------
@@ -268,6 +321,11 @@ public class PagingStoreImpl implements TestSupportPageStore
    {
       return pageSize;
    }
+
+   public boolean isPageIndex()
+   {
+      return pageIndex;
+   }
    
    public String getFolder()
    {
@@ -597,7 +655,11 @@ public class PagingStoreImpl implements TestSupportPageStore
 
       SequentialFile file = fileFactory.createSequentialFile(fileName, 1000);
 
-      Page page = new PageImpl(storeName, storageManager, fileFactory, file, pageNumber);
+      PageImpl page = new PageImpl(storeName, storageManager, fileFactory, file, pageNumber);
+
+      page.setIndexed(pageIndex);
+
+      page.setCompressed(pageCompress);
 
       // To create the file
       file.open();
@@ -720,6 +782,24 @@ public class PagingStoreImpl implements TestSupportPageStore
 
    private final Runnable memoryFreedRunnablesExecutor = new MemoryFreedRunnablesExecutor();
 
+   // if the store is waiting on the paging manager for the global size to go down
+   private final AtomicBoolean waitingGlobalMemory = new AtomicBoolean(false);
+
+   private class GlobalMemoryFreedRunnable implements Runnable
+   {
+      public void run()
+      {
+         waitingGlobalMemory.set(false);
+
+         if (!isAddressBlocked() && !onMemoryFreedRunnables.isEmpty())
+         {
+            executor.execute(memoryFreedRunnablesExecutor);
+         }
+      }
+   }
+
+   private final Runnable globalMemoryFreedRunnable = new GlobalMemoryFreedRunnable();
+
    class OurRunnable implements Runnable
    {
       boolean ran;
@@ -744,19 +824,25 @@ public class PagingStoreImpl implements TestSupportPageStore
 
    public void executeRunnableWhenMemoryAvailable(final Runnable runnable)
    {
-      if (addressFullMessagePolicy == AddressFullMessagePolicy.BLOCK && maxSize != -1)
+      if (addressFullMessagePolicy == AddressFullMessagePolicy.BLOCK)
       {
-         if (sizeInBytes.get() > maxSize)
+         if (isAddressBlocked() || pagingManager.isGlobalFull())
          {
             OurRunnable ourRunnable = new OurRunnable(runnable);
 
             onMemoryFreedRunnables.add(ourRunnable);
 
+            // The address is released by addSize, but the global size may go down on any other address
+            if (pagingManager.isGlobalFull() && waitingGlobalMemory.compareAndSet(false, true))
+            {
+               pagingManager.executeRunnableWhenMemoryAvailable(globalMemoryFreedRunnable);
+            }
+
             // We check again to avoid a race condition where the size can come down just after the element
             // has been added, but the check to execute was done before the element was added
             // NOTE! We do not fix this race by locking the whole thing, doing this check provides
             // MUCH better performance in a highly concurrent environment
-            if (sizeInBytes.get() <= maxSize)
+            if (!isAddressBlocked() && !pagingManager.isGlobalFull())
             {
                // run it now
                ourRunnable.run();
@@ -771,13 +857,16 @@ public class PagingStoreImpl implements TestSupportPageStore
 
    public void addSize(final int size)
    {
+      pagingManager.addSize(size);
+
       if (addressFullMessagePolicy == AddressFullMessagePolicy.BLOCK)
       {
          if (maxSize != -1)
          {
             long newSize = sizeInBytes.addAndGet(size);
 
-            if (newSize <= maxSize)
+            // while the global size is over the limit the paging manager releases the address
+            if (newSize <= maxSize && !pagingManager.isGlobalFull())
             {
                if (!onMemoryFreedRunnables.isEmpty())
                {
@@ -794,7 +883,7 @@ public class PagingStoreImpl implements TestSupportPageStore
 
          if (size > 0)
          {
-            if (maxSize > 0 && addressSize > maxSize)
+            if (maxSize > 0 && addressSize > maxSize || pagingManager.isGlobalFull())
             {
                if (startPaging())
                {
@@ -1133,7 +1222,12 @@ public class PagingStoreImpl implements TestSupportPageStore
    // To be used on isDropMessagesWhenFull
    private boolean isFull()
    {
-      return maxSize > 0 && getAddressSize() > maxSize;
+      return maxSize > 0 && getAddressSize() > maxSize || pagingManager.isGlobalFull();
+   }
+
+   private boolean isAddressBlocked()
+   {
+      return maxSize != -1 && sizeInBytes.get() > maxSize;
    }
 
    // Inner classes -------------------------------------------------
@@ -172,6 +172,8 @@ public interface StorageManager extends HornetQComponent
    
    void deletePageComplete(long ackID) throws Exception;
 
+   void deletePageCompleteTransactional(long txID, long ackID) throws Exception;
+
    void updateScheduledDeliveryTimeTransactional(long txID, MessageReference ref) throws Exception;
 
    void storeDuplicateIDTransactional(long txID, SimpleString address, byte[] duplID, long recordID) throws Exception;
@@ -262,6 +264,12 @@ public interface StorageManager extends HornetQComponent
    
    void deletePageCounter(long txID, long recordID) throws Exception;
 
+   /**
+    * Stores the values of several page counters on a single record, to be deleted by {@link #deletePageCounter(long, long)}
+    * @return the ID of the snapshot record
+    */
+   long storePageCounterSnapshot(long txID, long[] queueIDs, long[] values) throws Exception;
+
    /**
     * @return the ID with the increment record
     * @throws Exception 
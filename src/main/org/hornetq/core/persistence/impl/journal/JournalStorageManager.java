@@ -22,6 +22,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -50,16 +51,19 @@ import org.hornetq.core.journal.IOAsyncTask;
 import org.hornetq.core.journal.IOCriticalErrorListener;
 import org.hornetq.core.journal.Journal;
 import org.hornetq.core.journal.JournalLoadInformation;
+import org.hornetq.core.journal.LoaderCallback;
 import org.hornetq.core.journal.PreparedTransactionInfo;
 import org.hornetq.core.journal.RecordInfo;
 import org.hornetq.core.journal.SequentialFile;
 import org.hornetq.core.journal.SequentialFileFactory;
 import org.hornetq.core.journal.TransactionFailureCallback;
 import org.hornetq.core.journal.impl.AIOSequentialFileFactory;
+import org.hornetq.core.journal.impl.AbstractSequentialFileFactory;
 import org.hornetq.core.journal.impl.JournalFile;
 import org.hornetq.core.journal.impl.JournalImpl;
 import org.hornetq.core.journal.impl.JournalReaderCallback;
 import org.hornetq.core.journal.impl.NIOSequentialFileFactory;
+import org.hornetq.core.journal.impl.TimedBuffer;
 import org.hornetq.core.logging.Logger;
 import org.hornetq.core.message.impl.MessageInternal;
 import org.hornetq.core.paging.PageTransactionInfo;
@@ -97,6 +101,7 @@ import org.hornetq.core.transaction.TransactionOperation;
 import org.hornetq.core.transaction.TransactionPropertyIndexes;
 import org.hornetq.core.transaction.impl.TransactionImpl;
 import org.hornetq.utils.Base64;
+import org.hornetq.utils.ConcurrentLongHashMap;
 import org.hornetq.utils.DataConstants;
 import org.hornetq.utils.ExecutorFactory;
 import org.hornetq.utils.HornetQThreadFactory;
@@ -165,6 +170,8 @@ public class JournalStorageManager implements StorageManager
 
    public static final byte PAGE_CURSOR_COMPLETE = 42;
 
+   public static final byte PAGE_CURSOR_COUNTER_SNAPSHOT = 43;
+
    private final Semaphore pageMaxConcurrentIO;
 
    private final BatchingIDGenerator idGenerator;
@@ -173,6 +180,9 @@ public class JournalStorageManager implements StorageManager
 
    private final Journal messageJournal;
 
+   // the message journal on this server's disk, messageJournal wraps it when replicating
+   private final JournalImpl localMessageJournal;
+
    private final Journal bindingsJournal;
 
    private final SequentialFileFactory largeMessagesFactory;
@@ -281,31 +291,37 @@ public class JournalStorageManager implements StorageManager
 
       syncTransactional = config.isJournalSyncTransactional();
 
+      AbstractSequentialFileFactory localFF;
+
       if (config.getJournalType() == JournalType.ASYNCIO)
       {
          JournalStorageManager.log.info("Using AIO Journal");
 
-         journalFF = new AIOSequentialFileFactory(journalDir,
-                                                  config.getJournalBufferSize_AIO(),
-                                                  config.getJournalBufferTimeout_AIO(),
-                                                  config.isLogJournalWriteRate(),
-                                                  criticalErrorListener);
+         localFF = new AIOSequentialFileFactory(journalDir,
+                                                config.getJournalBufferSize_AIO(),
+                                                config.getJournalBufferTimeout_AIO(),
+                                                config.isLogJournalWriteRate(),
+                                                criticalErrorListener);
       }
       else if (config.getJournalType() == JournalType.NIO)
       {
          JournalStorageManager.log.info("Using NIO Journal");
-         journalFF = new NIOSequentialFileFactory(journalDir,
-                                                  true,
-                                                  config.getJournalBufferSize_NIO(),
-                                                  config.getJournalBufferTimeout_NIO(),
-                                                  config.isLogJournalWriteRate(),
-                                                  criticalErrorListener);
+         localFF = new NIOSequentialFileFactory(journalDir,
+                                                true,
+                                                config.getJournalBufferSize_NIO(),
+                                                config.getJournalBufferTimeout_NIO(),
+                                                config.isLogJournalWriteRate(),
+                                                criticalErrorListener);
       }
       else
       {
          throw new IllegalArgumentException("Unsupported journal type " + config.getJournalType());
       }
 
+      localFF.setBufferAdaptive(config.isJournalBufferAdaptive());
+
+      journalFF = localFF;
+
       if (config.isBackup() && !config.isSharedStore())
       {
          idGenerator = null;
@@ -314,15 +330,23 @@ public class JournalStorageManager implements StorageManager
       {
          idGenerator = new BatchingIDGenerator(0, JournalStorageManager.CHECKPOINT_BATCH_SIZE, bindingsJournal);
       }
-      Journal localMessage = new JournalImpl(config.getJournalFileSize(),
-                                             config.getJournalMinFiles(),
-                                             config.getJournalCompactMinFiles(),
-                                             config.getJournalCompactPercentage(),
-                                             journalFF,
-                                             "hornetq-data",
-                                             "hq",
-                                             config.getJournalType() == JournalType.ASYNCIO ? config.getJournalMaxIO_AIO()
-                                                                                           : config.getJournalMaxIO_NIO());
+      JournalImpl localMessage = new JournalImpl(config.getJournalFileSize(),
+                                                 config.getJournalMinFiles(),
+                                                 config.getJournalCompactMinFiles(),
+                                                 config.getJournalCompactPercentage(),
+                                                 journalFF,
+                                                 "hornetq-data",
+                                                 "hq",
+                                                 config.getJournalType() == JournalType.ASYNCIO ? config.getJournalMaxIO_AIO()
+                                                                                               : config.getJournalMaxIO_NIO());
+
+      localMessage.setCompactMaxRate(config.getJournalCompactMaxRate());
+
+      localMessage.setCompactMaxFiles(config.getJournalCompactMaxFiles());
+
+      localMessage.setLoadParallelism(config.getJournalLoadParallelism());
+
+      localMessageJournal = localMessage;
 
       if (replicator != null)
       {
@@ -731,6 +755,11 @@ public class JournalStorageManager implements StorageManager
       messageJournal.appendDeleteRecord(ackID, false);
    }
 
+   public void deletePageCompleteTransactional(long txID, long ackID) throws Exception
+   {
+      messageJournal.appendDeleteRecordTransactional(txID, ackID);
+   }
+
    /* (non-Javadoc)
     * @see org.hornetq.core.persistence.StorageManager#deleteCursorAcknowledgeTransactional(long, long)
     */
@@ -926,366 +955,444 @@ public class JournalStorageManager implements StorageManager
                                                     final PagingManager pagingManager,
                                                     final ResourceManager resourceManager,
                                                     final Map<Long, Queue> queues,
-                                                    Map<Long, QueueBindingInfo> queueInfos,
+                                                    final Map<Long, QueueBindingInfo> queueInfos,
                                                     final Map<SimpleString, List<Pair<byte[], Long>>> duplicateIDMap,
                                                     final Set<Pair<Long, Long>> pendingLargeMessages) throws Exception
    {
-      List<RecordInfo> records = new ArrayList<RecordInfo>();
+      final List<PreparedTransactionInfo> preparedTransactions = new ArrayList<PreparedTransactionInfo>();
 
-      List<PreparedTransactionInfo> preparedTransactions = new ArrayList<PreparedTransactionInfo>();
+      final ConcurrentLongHashMap<ServerMessage> messages = new ConcurrentLongHashMap<ServerMessage>();
 
-      Map<Long, ServerMessage> messages = new HashMap<Long, ServerMessage>();
+      final ArrayList<LargeServerMessage> largeMessages = new ArrayList<LargeServerMessage>();
 
-      JournalLoadInformation info = messageJournal.load(records,
-                                                        preparedTransactions,
-                                                        new LargeMessageTXFailureCallback(messages));
+      final Map<Long, Map<Long, AddMessageRecord>> queueMap = new HashMap<Long, Map<Long, AddMessageRecord>>();
 
-      ArrayList<LargeServerMessage> largeMessages = new ArrayList<LargeServerMessage>();
+      final Map<Long, PageSubscription> pageSubscriptions = new HashMap<Long, PageSubscription>();
 
-      Map<Long, Map<Long, AddMessageRecord>> queueMap = new HashMap<Long, Map<Long, AddMessageRecord>>();
+      // Records that can't be reloaded are only deleted after the journal has finished loading
+      final List<Long> recordsToDelete = new ArrayList<Long>();
 
-      Map<Long, PageSubscription> pageSubscriptions = new HashMap<Long, PageSubscription>();
+      // Page transactions with update records, rewritten after the load so their updates are not replayed again
+      final Set<Long> updatedPageTransactions = new HashSet<Long>();
 
-      final int totalSize = records.size();
+      final LargeMessageTXFailureCallback failureCallback = new LargeMessageTXFailureCallback(messages);
 
-      for (int reccount = 0; reccount < totalSize; reccount++)
+      // The records are applied as the journal reads them, so the journal contents are never held in memory as a whole
+      JournalLoadInformation info = messageJournal.loadStreaming(new LoaderCallback()
       {
-         // It will show log.info only with large journals (more than 1 million records)
-         if (reccount > 0 && reccount % 1000000 == 0)
+         private long reccount;
+
+         public void addRecord(final RecordInfo record) throws Exception
          {
-            long percent = (long)((((double)reccount) / ((double)totalSize)) * 100f);
+            reloadRecord(record);
+         }
 
-            log.info(percent + "% loaded");
+         public void updateRecord(final RecordInfo record) throws Exception
+         {
+            reloadRecord(record);
          }
 
-         RecordInfo record = records.get(reccount);
-         byte[] data = record.data;
+         public void deleteRecord(final long id)
+         {
+            // streaming loads never deliver deleted records
+         }
 
-         HornetQBuffer buff = HornetQBuffers.wrappedBuffer(data);
+         public void addPreparedTransaction(final PreparedTransactionInfo preparedTransaction)
+         {
+            preparedTransactions.add(preparedTransaction);
+         }
 
-         byte recordType = record.getUserRecordType();
+         public void failedTransaction(final long transactionID,
+                                       final List<RecordInfo> records,
+                                       final List<RecordInfo> recordsToDelete)
+         {
+            failureCallback.failedTransaction(transactionID, records, recordsToDelete);
+         }
 
-         switch (recordType)
+         private void reloadRecord(final RecordInfo record) throws Exception
          {
-            case ADD_LARGE_MESSAGE_PENDING:
+            // It will show log.info only with large journals (more than 1 million records)
+            if (++reccount % 1000000 == 0)
             {
-               PendingLargeMessageEncoding pending = new PendingLargeMessageEncoding();
-
-               pending.decode(buff);
-
-               if (pendingLargeMessages != null)
-               {
-                  // it could be null on tests, and we don't need anything on that case
-                  pendingLargeMessages.add(new Pair<Long, Long>(record.id, pending.largeMessageID));
-               }
-               break;
+               log.info(reccount + " records loaded");
             }
-            case ADD_LARGE_MESSAGE:
-            {
-               LargeServerMessage largeMessage = parseLargeMessage(messages, buff);
 
-               messages.put(record.id, largeMessage);
-
-               largeMessages.add(largeMessage);
-
-               break;
-            }
-            case ADD_MESSAGE:
-            {
-               ServerMessage message = new ServerMessageImpl(record.id, 50);
+            byte[] data = record.data;
 
-               message.decode(buff);
+            HornetQBuffer buff = HornetQBuffers.wrappedBuffer(data);
 
-               messages.put(record.id, message);
+            byte recordType = record.getUserRecordType();
 
-               break;
-            }
-            case ADD_REF:
+            switch (recordType)
             {
-               long messageID = record.id;
+               case ADD_LARGE_MESSAGE_PENDING:
+               {
+                  PendingLargeMessageEncoding pending = new PendingLargeMessageEncoding();
+
+                  pending.decode(buff);
 
-               RefEncoding encoding = new RefEncoding();
+                  if (pendingLargeMessages != null)
+                  {
+                     // it could be null on tests, and we don't need anything on that case
+                     pendingLargeMessages.add(new Pair<Long, Long>(record.id, pending.largeMessageID));
+                  }
+                  break;
+               }
+               case ADD_LARGE_MESSAGE:
+               {
+                  LargeServerMessage largeMessage = parseLargeMessage(messages, buff);
 
-               encoding.decode(buff);
+                  messages.put(record.id, largeMessage);
 
-               Map<Long, AddMessageRecord> queueMessages = queueMap.get(encoding.queueID);
+                  largeMessages.add(largeMessage);
 
-               if (queueMessages == null)
+                  break;
+               }
+               case ADD_MESSAGE:
                {
-                  queueMessages = new LinkedHashMap<Long, AddMessageRecord>();
+                  ServerMessage message = new ServerMessageImpl(record.id, 50);
 
-                  queueMap.put(encoding.queueID, queueMessages);
-               }
+                  message.decode(buff);
 
-               ServerMessage message = messages.get(messageID);
+                  messages.put(record.id, message);
 
-               if (message == null)
-               {
-                  log.error("Cannot find message " + record.id);
+                  break;
                }
-               else
+               case ADD_REF:
                {
-                  queueMessages.put(messageID, new AddMessageRecord(message));
-               }
+                  long messageID = record.id;
 
-               break;
-            }
-            case ACKNOWLEDGE_REF:
-            {
-               long messageID = record.id;
+                  RefEncoding encoding = new RefEncoding();
 
-               RefEncoding encoding = new RefEncoding();
+                  encoding.decode(buff);
 
-               encoding.decode(buff);
+                  Map<Long, AddMessageRecord> queueMessages = queueMap.get(encoding.queueID);
 
-               Map<Long, AddMessageRecord> queueMessages = queueMap.get(encoding.queueID);
+                  if (queueMessages == null)
+                  {
+                     queueMessages = new LinkedHashMap<Long, AddMessageRecord>();
 
-               if (queueMessages == null)
-               {
-                  log.error("Cannot find queue messages for queueID=" + encoding.queueID +
-                            " on ack for messageID=" +
-                            messageID);
-               }
-               else
-               {
-                  AddMessageRecord rec = queueMessages.remove(messageID);
+                     queueMap.put(encoding.queueID, queueMessages);
+                  }
+
+                  ServerMessage message = messages.get(messageID);
 
-                  if (rec == null)
+                  if (message == null)
                   {
-                     log.error("Cannot find message " + messageID);
+                     log.error("Cannot find message " + record.id);
+                  }
+                  else
+                  {
+                     queueMessages.put(messageID, new AddMessageRecord(message));
                   }
-               }
-
-               break;
-            }
-            case UPDATE_DELIVERY_COUNT:
-            {
-               long messageID = record.id;
 
-               DeliveryCountUpdateEncoding encoding = new DeliveryCountUpdateEncoding();
+                  break;
+               }
+               case ACKNOWLEDGE_REF:
+               {
+                  long messageID = record.id;
 
-               encoding.decode(buff);
+                  RefEncoding encoding = new RefEncoding();
 
-               Map<Long, AddMessageRecord> queueMessages = queueMap.get(encoding.queueID);
+                  encoding.decode(buff);
 
-               if (queueMessages == null)
-               {
-                  log.warn("Cannot find queue " + encoding.queueID + " to update delivery count");
-               }
-               else
-               {
-                  AddMessageRecord rec = queueMessages.get(messageID);
+                  Map<Long, AddMessageRecord> queueMessages = queueMap.get(encoding.queueID);
 
-                  if (rec == null)
+                  if (queueMessages == null)
                   {
-                     log.warn("Cannot find message " + messageID + " to update delivery count");
+                     log.error("Cannot find queue messages for queueID=" + encoding.queueID +
+                               " on ack for messageID=" +
+                               messageID);
                   }
                   else
                   {
-                     rec.deliveryCount = encoding.count;
+                     AddMessageRecord rec = queueMessages.remove(messageID);
+
+                     if (rec == null)
+                     {
+                        log.error("Cannot find message " + messageID);
+                     }
                   }
-               }
 
-               break;
-            }
-            case PAGE_TRANSACTION:
-            {
-               if (record.isUpdate)
+                  break;
+               }
+               case UPDATE_DELIVERY_COUNT:
                {
-                  PageUpdateTXEncoding pageUpdate = new PageUpdateTXEncoding();
+                  long messageID = record.id;
+
+                  DeliveryCountUpdateEncoding encoding = new DeliveryCountUpdateEncoding();
 
-                  pageUpdate.decode(buff);
+                  encoding.decode(buff);
 
-                  PageTransactionInfo pageTX = pagingManager.getTransaction(pageUpdate.pageTX);
+                  Map<Long, AddMessageRecord> queueMessages = queueMap.get(encoding.queueID);
 
-                  pageTX.onUpdate(pageUpdate.recods, null, null);
+                  if (queueMessages == null)
+                  {
+                     log.warn("Cannot find queue " + encoding.queueID + " to update delivery count");
+                  }
+                  else
+                  {
+                     AddMessageRecord rec = queueMessages.get(messageID);
+
+                     if (rec == null)
+                     {
+                        log.warn("Cannot find message " + messageID + " to update delivery count");
+                     }
+                     else
+                     {
+                        rec.deliveryCount = encoding.count;
+                     }
+                  }
+
+                  break;
                }
-               else
+               case PAGE_TRANSACTION:
                {
-                  PageTransactionInfoImpl pageTransactionInfo = new PageTransactionInfoImpl();
+                  if (record.isUpdate)
+                  {
+                     PageUpdateTXEncoding pageUpdate = new PageUpdateTXEncoding();
 
-                  pageTransactionInfo.decode(buff);
+                     pageUpdate.decode(buff);
 
-                  pageTransactionInfo.setRecordID(record.id);
+                     PageTransactionInfo pageTX = pagingManager.getTransaction(pageUpdate.pageTX);
 
-                  pagingManager.addTransaction(pageTransactionInfo);
-               }
+                     pageTX.onUpdate(pageUpdate.recods, null, null);
 
-               break;
-            }
-            case SET_SCHEDULED_DELIVERY_TIME:
-            {
-               long messageID = record.id;
+                     updatedPageTransactions.add(pageUpdate.pageTX);
+                  }
+                  else
+                  {
+                     PageTransactionInfoImpl pageTransactionInfo = new PageTransactionInfoImpl();
 
-               ScheduledDeliveryEncoding encoding = new ScheduledDeliveryEncoding();
+                     pageTransactionInfo.decode(buff);
 
-               encoding.decode(buff);
+                     pageTransactionInfo.setRecordID(record.id);
 
-               Map<Long, AddMessageRecord> queueMessages = queueMap.get(encoding.queueID);
+                     pagingManager.addTransaction(pageTransactionInfo);
+                  }
 
-               if (queueMessages == null)
-               {
-                  log.error("Cannot find queue messages " + encoding.queueID +
-                            " for message " +
-                            messageID +
-                            " while processing scheduled messages");
+                  break;
                }
-               else
+               case SET_SCHEDULED_DELIVERY_TIME:
                {
+                  long messageID = record.id;
 
-                  AddMessageRecord rec = queueMessages.get(messageID);
+                  ScheduledDeliveryEncoding encoding = new ScheduledDeliveryEncoding();
 
-                  if (rec == null)
+                  encoding.decode(buff);
+
+                  Map<Long, AddMessageRecord> queueMessages = queueMap.get(encoding.queueID);
+
+                  if (queueMessages == null)
                   {
-                     log.error("Cannot find message " + messageID);
+                     log.error("Cannot find queue messages " + encoding.queueID +
+                               " for message " +
+                               messageID +
+                               " while processing scheduled messages");
                   }
                   else
                   {
-                     rec.scheduledDeliveryTime = encoding.scheduledDeliveryTime;
-                  }
-               }
 
-               break;
-            }
-            case DUPLICATE_ID:
-            {
-               DuplicateIDEncoding encoding = new DuplicateIDEncoding();
-
-               encoding.decode(buff);
+                     AddMessageRecord rec = queueMessages.get(messageID);
 
-               List<Pair<byte[], Long>> ids = duplicateIDMap.get(encoding.address);
+                     if (rec == null)
+                     {
+                        log.error("Cannot find message " + messageID);
+                     }
+                     else
+                     {
+                        rec.scheduledDeliveryTime = encoding.scheduledDeliveryTime;
+                     }
+                  }
 
-               if (ids == null)
+                  break;
+               }
+               case DUPLICATE_ID:
                {
-                  ids = new ArrayList<Pair<byte[], Long>>();
+                  DuplicateIDEncoding encoding = new DuplicateIDEncoding();
 
-                  duplicateIDMap.put(encoding.address, ids);
-               }
+                  encoding.decode(buff);
 
-               ids.add(new Pair<byte[], Long>(encoding.duplID, record.id));
+                  List<Pair<byte[], Long>> ids = duplicateIDMap.get(encoding.address);
 
-               break;
-            }
-            case HEURISTIC_COMPLETION:
-            {
-               HeuristicCompletionEncoding encoding = new HeuristicCompletionEncoding();
-               encoding.decode(buff);
-               resourceManager.putHeuristicCompletion(record.id, encoding.xid, encoding.isCommit);
-               break;
-            }
-            case ACKNOWLEDGE_CURSOR:
-            {
-               CursorAckRecordEncoding encoding = new CursorAckRecordEncoding();
-               encoding.decode(buff);
+                  if (ids == null)
+                  {
+                     ids = new ArrayList<Pair<byte[], Long>>();
 
-               encoding.position.setRecordID(record.id);
+                     duplicateIDMap.put(encoding.address, ids);
+                  }
 
-               PageSubscription sub = locateSubscription(encoding.queueID, pageSubscriptions, queueInfos, pagingManager);
+                  ids.add(new Pair<byte[], Long>(encoding.duplID, record.id));
 
-               if (sub != null)
+                  break;
+               }
+               case HEURISTIC_COMPLETION:
                {
-                  sub.reloadACK(encoding.position);
+                  HeuristicCompletionEncoding encoding = new HeuristicCompletionEncoding();
+                  encoding.decode(buff);
+                  resourceManager.putHeuristicCompletion(record.id, encoding.xid, encoding.isCommit);
+                  break;
                }
-               else
+               case ACKNOWLEDGE_CURSOR:
                {
-                  log.info("Can't find queue " + encoding.queueID + " while reloading ACKNOWLEDGE_CURSOR, deleting record now");
-                  messageJournal.appendDeleteRecord(record.id, false);
+                  CursorAckRecordEncoding encoding = new CursorAckRecordEncoding();
+                  encoding.decode(buff);
 
-               }
+                  encoding.position.setRecordID(record.id);
 
-               break;
-            }
-            case PAGE_CURSOR_COUNTER_VALUE:
-            {
-               PageCountRecord encoding = new PageCountRecord();
+                  PageSubscription sub = locateSubscription(encoding.queueID, pageSubscriptions, queueInfos, pagingManager);
 
-               encoding.decode(buff);
+                  if (sub != null)
+                  {
+                     sub.reloadACK(encoding.position);
+                  }
+                  else
+                  {
+                     log.info("Can't find queue " + encoding.queueID + " while reloading ACKNOWLEDGE_CURSOR, deleting record now");
+                     recordsToDelete.add(record.id);
 
-               PageSubscription sub = locateSubscription(encoding.queueID, pageSubscriptions, queueInfos, pagingManager);
+                  }
 
-               // SEE [Feature #95116] [Bug#93230] Paging
-               if (PAGING_CLEANUP)
-               {
-                  log.info("Deleting paging counter for queueID=" + encoding.queueID + " while reloading PAGE_CURSOR_COUNTER_VALUE");
-                  messageJournal.appendDeleteRecord(record.id, false);
-               }
-               else if (sub != null)
-               {
-                  sub.getCounter().loadValue(record.id, encoding.value);
+                  break;
                }
-               else
+               case PAGE_CURSOR_COUNTER_VALUE:
                {
-                  log.info("Can't find queue " + encoding.queueID + " while reloading PAGE_CURSOR_COUNTER_VALUE, deleting record now");
-                  messageJournal.appendDeleteRecord(record.id, false);
-               }
+                  PageCountRecord encoding = new PageCountRecord();
 
-               break;
-            }
-
-            case PAGE_CURSOR_COUNTER_INC:
-            {
-               PageCountRecordInc encoding = new PageCountRecordInc();
+                  encoding.decode(buff);
 
-               encoding.decode(buff);
+                  PageSubscription sub = locateSubscription(encoding.queueID, pageSubscriptions, queueInfos, pagingManager);
 
-               PageSubscription sub = locateSubscription(encoding.queueID, pageSubscriptions, queueInfos, pagingManager);
+                  // SEE [Feature #95116] [Bug#93230] Paging
+                  if (PAGING_CLEANUP)
+                  {
+                     log.info("Deleting paging counter for queueID=" + encoding.queueID + " while reloading PAGE_CURSOR_COUNTER_VALUE");
+                     recordsToDelete.add(record.id);
+                  }
+                  else if (sub != null)
+                  {
+                     sub.getCounter().loadValue(record.id, encoding.value);
+                  }
+                  else
+                  {
+                     log.info("Can't find queue " + encoding.queueID + " while reloading PAGE_CURSOR_COUNTER_VALUE, deleting record now");
+                     recordsToDelete.add(record.id);
+                  }
 
-               // SEE [Feature #95116] [Bug#93230] Paging
-               if (PAGING_CLEANUP)
-               {
-                  log.info("Deleting paging counter for queueID=" + encoding.queueID + " while reloading PAGE_CURSOR_COUNTER_INC");
-                  messageJournal.appendDeleteRecord(record.id, false);
+                  break;
                }
-               else if (sub != null)
+
+               case PAGE_CURSOR_COUNTER_INC:
                {
-                  sub.getCounter().loadInc(record.id, encoding.value);
+                  PageCountRecordInc encoding = new PageCountRecordInc();
+
+                  encoding.decode(buff);
+
+                  PageSubscription sub = locateSubscription(encoding.queueID, pageSubscriptions, queueInfos, pagingManager);
+
+                  // SEE [Feature #95116] [Bug#93230] Paging
+                  if (PAGING_CLEANUP)
+                  {
+                     log.info("Deleting paging counter for queueID=" + encoding.queueID + " while reloading PAGE_CURSOR_COUNTER_INC");
+                     recordsToDelete.add(record.id);
+                  }
+                  else if (sub != null)
+                  {
+                     sub.getCounter().loadInc(record.id, encoding.value);
+                  }
+                  else
+                  {
+                     log.info("Can't find queue " + encoding.queueID + " while reloading PAGE_CURSOR_COUNTER_INC, deleting record now");
+                     recordsToDelete.add(record.id);
+                  }
+
+                  break;
                }
-               else
+
+               case PAGE_CURSOR_COUNTER_SNAPSHOT:
                {
-                  log.info("Can't find queue " + encoding.queueID + " while reloading PAGE_CURSOR_COUNTER_INC, deleting record now");
-                  messageJournal.appendDeleteRecord(record.id, false);
-               }
+                  PageCountSnapshotRecord encoding = new PageCountSnapshotRecord();
 
-               break;
-            }
+                  encoding.decode(buff);
 
-            case PAGE_CURSOR_COMPLETE:
-            {
-               CursorAckRecordEncoding encoding = new CursorAckRecordEncoding();
-               encoding.decode(buff);
+                  // SEE [Feature #95116] [Bug#93230] Paging
+                  if (PAGING_CLEANUP)
+                  {
+                     log.info("Deleting paging counters snapshot while reloading PAGE_CURSOR_COUNTER_SNAPSHOT");
+                     recordsToDelete.add(record.id);
+                     break;
+                  }
 
-               encoding.position.setRecordID(record.id);
+                  PagingStore store = null;
 
-               PageSubscription sub = locateSubscription(encoding.queueID, pageSubscriptions, queueInfos, pagingManager);
+                  for (int i = 0; i < encoding.queueIDs.length; i++)
+                  {
+                     PageSubscription sub = locateSubscription(encoding.queueIDs[i],
+                                                               pageSubscriptions,
+                                                               queueInfos,
+                                                               pagingManager);
 
-               if (sub != null)
-               {
-                  sub.reloadPageCompletion(encoding.position);
+                     // queues deleted after the snapshot are just left out
+                     if (sub != null)
+                     {
+                        sub.getCounter().loadSnapshotValue(encoding.values[i]);
+                        store = sub.getPagingStore();
+                     }
+                  }
+
+                  if (store != null)
+                  {
+                     store.getCursorProvier().loadCounterSnapshot(record.id);
+                  }
+                  else
+                  {
+                     log.info("Can't find any queue while reloading PAGE_CURSOR_COUNTER_SNAPSHOT, deleting record now");
+                     recordsToDelete.add(record.id);
+                  }
+
+                  break;
                }
-               else
+
+               case PAGE_CURSOR_COMPLETE:
                {
-                  log.info("Can't find queue " + encoding.queueID + " while reloading PAGE_CURSOR_COMPLETE, deleting record now");
-                  messageJournal.appendDeleteRecord(record.id, false);
-               }
+                  CursorAckRecordEncoding encoding = new CursorAckRecordEncoding();
+                  encoding.decode(buff);
 
-               break;
-             }
+                  encoding.position.setRecordID(record.id);
 
-            default:
-            {
-               throw new IllegalStateException("Invalid record type " + recordType);
+                  PageSubscription sub = locateSubscription(encoding.queueID, pageSubscriptions, queueInfos, pagingManager);
+
+                  if (sub != null)
+                  {
+                     sub.reloadPageCompletion(encoding.position);
+                  }
+                  else
+                  {
+                     log.info("Can't find queue " + encoding.queueID + " while reloading PAGE_CURSOR_COMPLETE, deleting record now");
+                     recordsToDelete.add(record.id);
+                  }
+
+                  break;
+                }
+
+               default:
+               {
+                  throw new IllegalStateException("Invalid record type " + recordType);
+               }
             }
          }
+      });
 
-         // This will free up memory sooner. The record is not needed any more
-         // and its byte array would consume memory during the load process even though it's not necessary any longer
-         // what would delay processing time during load
-         records.set(reccount, null);
+      for (Long recordID : recordsToDelete)
+      {
+         messageJournal.appendDeleteRecord(recordID, false);
       }
 
-      // Release the memory as soon as not needed any longer
-      records.clear();
-      records = null;
+      // prepared transactions may hold updates to the current records of the page transactions
+      if (pagingManager != null && preparedTransactions.isEmpty() && !updatedPageTransactions.isEmpty())
+      {
+         compactPageTransactions(pagingManager, updatedPageTransactions);
+      }
 
       for (Map.Entry<Long, Map<Long, AddMessageRecord>> entry : queueMap.entrySet())
       {
@@ -1365,7 +1472,7 @@ public class JournalStorageManager implements StorageManager
          }
       }
 
-      for (ServerMessage msg : messages.values())
+      for (ServerMessage msg : messages.valuesSnapshot())
       {
          if (msg.getRefCount() == 0)
          {
@@ -1407,6 +1514,48 @@ public class JournalStorageManager implements StorageManager
       return info;
    }
 
+   /**
+    * Replaces the record and the update records of each page transaction by a single record holding the messages
+    * still to be delivered, so the updates are not read again on the next startup.
+    * This is only safe while loading, as at runtime updates may be in flight to the current records.
+    */
+   private void compactPageTransactions(final PagingManager pagingManager, final Set<Long> transactionIDs) throws Exception
+   {
+      long txCompact = generateUniqueID();
+
+      int compacted = 0;
+
+      for (Long transactionID : transactionIDs)
+      {
+         PageTransactionInfo pageTX = pagingManager.getTransaction(transactionID);
+
+         // the ones fully delivered are deleted by the paging cleanup
+         if (pageTX == null || pageTX.getNumberOfMessages() <= 0)
+         {
+            continue;
+         }
+
+         PageTransactionInfoImpl replacement = new PageTransactionInfoImpl(transactionID);
+
+         replacement.increment(pageTX.getNumberOfMessages(), 0);
+
+         messageJournal.appendDeleteRecordTransactional(txCompact, pageTX.getRecordID());
+
+         storePageTransaction(txCompact, replacement);
+
+         pageTX.setRecordID(replacement.getRecordID());
+
+         compacted++;
+      }
+
+      if (compacted > 0)
+      {
+         messageJournal.appendCommitRecord(txCompact, false);
+
+         log.debug(compacted + " page transactions were compacted while loading the journal");
+      }
+   }
+
    /**
     * @param queueID
     * @param pageSubscriptions
@@ -1514,6 +1663,19 @@ public class JournalStorageManager implements StorageManager
       return recordID;
    }
 
+   /* (non-Javadoc)
+    * @see org.hornetq.core.persistence.StorageManager#storePageCounterSnapshot(long, long[], long[])
+    */
+   public long storePageCounterSnapshot(long txID, long[] queueIDs, long[] values) throws Exception
+   {
+      long recordID = idGenerator.generateID();
+      messageJournal.appendAddRecordTransactional(txID,
+                                                  recordID,
+                                                  JournalStorageManager.PAGE_CURSOR_COUNTER_SNAPSHOT,
+                                                  new PageCountSnapshotRecord(queueIDs, values));
+      return recordID;
+   }
+
    /* (non-Javadoc)
     * @see org.hornetq.core.persistence.StorageManager#deleteIncrementRecord(long, long)
     */
@@ -1745,6 +1907,29 @@ public class JournalStorageManager implements StorageManager
       return bindingsJournal;
    }
 
+   /**
+    * @return the message journal written on this server's disk, even when {@link #getMessageJournal()} is replicated
+    */
+   public JournalImpl getLocalMessageJournal()
+   {
+      return localMessageJournal;
+   }
+
+   /**
+    * @return the buffer of the message journal files, or null if they are not buffered
+    */
+   public TimedBuffer getMessageJournalTimedBuffer()
+   {
+      if (journalFF instanceof AbstractSequentialFileFactory)
+      {
+         return ((AbstractSequentialFileFactory)journalFF).getTimedBuffer();
+      }
+      else
+      {
+         return null;
+      }
+   }
+
    // Package protected ---------------------------------------------
 
    // This should be accessed from this package only
@@ -2965,6 +3150,74 @@ public class JournalStorageManager implements StorageManager
 
    }
 
+   private static final class PageCountSnapshotRecord implements EncodingSupport
+   {
+
+      /* (non-Javadoc)
+       * @see java.lang.Object#toString()
+       */
+      @Override
+      public String toString()
+      {
+         return "PageCountSnapshotRecord [queueIDs=" + Arrays.toString(queueIDs) +
+                ", values=" +
+                Arrays.toString(values) +
+                "]";
+      }
+
+      PageCountSnapshotRecord()
+      {
+
+      }
+
+      PageCountSnapshotRecord(long[] queueIDs, long[] values)
+      {
+         this.queueIDs = queueIDs;
+         this.values = values;
+      }
+
+      long[] queueIDs;
+
+      long[] values;
+
+      /* (non-Javadoc)
+       * @see org.hornetq.core.journal.EncodingSupport#getEncodeSize()
+       */
+      public int getEncodeSize()
+      {
+         return DataConstants.SIZE_INT + DataConstants.SIZE_LONG * 2 * queueIDs.length;
+      }
+
+      /* (non-Javadoc)
+       * @see org.hornetq.core.journal.EncodingSupport#encode(org.hornetq.api.core.HornetQBuffer)
+       */
+      public void encode(HornetQBuffer buffer)
+      {
+         buffer.writeInt(queueIDs.length);
+         for (int i = 0; i < queueIDs.length; i++)
+         {
+            buffer.writeLong(queueIDs[i]);
+            buffer.writeLong(values[i]);
+         }
+      }
+
+      /* (non-Javadoc)
+       * @see org.hornetq.core.journal.EncodingSupport#decode(org.hornetq.api.core.HornetQBuffer)
+       */
+      public void decode(HornetQBuffer buffer)
+      {
+         int size = buffer.readInt();
+         queueIDs = new long[size];
+         values = new long[size];
+         for (int i = 0; i < size; i++)
+         {
+            queueIDs[i] = buffer.readLong();
+            values[i] = buffer.readLong();
+         }
+      }
+
+   }
+
    private static final class PageCountRecordInc implements EncodingSupport
    {
 
@@ -3275,6 +3528,15 @@ public class JournalStorageManager implements StorageManager
             return encoding;
          }
 
+         case PAGE_CURSOR_COUNTER_SNAPSHOT:
+         {
+            PageCountSnapshotRecord encoding = new PageCountSnapshotRecord();
+
+            encoding.decode(buffer);
+
+            return encoding;
+         }
+
          case PAGE_CURSOR_COMPLETE:
          {
             CursorAckRecordEncoding encoding = new CursorAckRecordEncoding();
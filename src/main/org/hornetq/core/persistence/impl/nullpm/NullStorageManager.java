@@ -538,6 +538,11 @@ public class NullStorageManager implements StorageManager
       return 0;
    }
 
+   public long storePageCounterSnapshot(long txID, long[] queueIDs, long[] values) throws Exception
+   {
+      return 0;
+   }
+
    /* (non-Javadoc)
     * @see org.hornetq.core.persistence.StorageManager#deleteIncrementRecord(long, long)
     */
@@ -647,6 +652,13 @@ public class NullStorageManager implements StorageManager
    {
    }
 
+   /* (non-Javadoc)
+    * @see org.hornetq.core.persistence.StorageManager#deletePageCompleteTransactional(long, long)
+    */
+   public void deletePageCompleteTransactional(long txID, long ackID) throws Exception
+   {
+   }
+
    /* (non-Javadoc)
     * @see org.hornetq.core.persistence.StorageManager#deleteCursorAcknowledge(long)
     */
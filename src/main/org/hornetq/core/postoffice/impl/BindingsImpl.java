@@ -64,6 +64,8 @@ public class BindingsImpl implements Bindings
 
    private volatile boolean routeWhenNoConsumers;
 
+   private volatile SelectorIndex selectorIndex;
+
    private final GroupingHandler groupingHandler;
 
    private final PagingStore pageStore;
@@ -82,12 +84,42 @@ public class BindingsImpl implements Bindings
       this.routeWhenNoConsumers = routeWhenNoConsumers;
    }
 
+   /**
+    * Enables or disables the {@link SelectorIndex} for the bindings of this address.
+    */
+   public synchronized void setSelectorIndex(final boolean enabled)
+   {
+      if (!enabled)
+      {
+         selectorIndex = null;
+      }
+      else if (selectorIndex == null)
+      {
+         SelectorIndex index = new SelectorIndex();
+
+         for (List<Binding> bindings : routingNameBindingMap.values())
+         {
+            for (Binding binding : bindings)
+            {
+               index.addBinding(binding);
+            }
+         }
+
+         selectorIndex = index;
+      }
+   }
+
+   public boolean isSelectorIndex()
+   {
+      return selectorIndex != null;
+   }
+
    public Collection<Binding> getBindings()
    {
       return bindingsMap.values();
    }
 
-   public void addBinding(final Binding binding)
+   public synchronized void addBinding(final Binding binding)
    {
       if (isTrace)
       {
@@ -116,6 +148,11 @@ public class BindingsImpl implements Bindings
          }
 
          bindings.add(binding);
+
+         if (selectorIndex != null)
+         {
+            selectorIndex.addBinding(binding);
+         }
       }
 
       bindingsMap.put(binding.getID(), binding);
@@ -127,7 +164,7 @@ public class BindingsImpl implements Bindings
 
    }
 
-   public void removeBinding(final Binding binding)
+   public synchronized void removeBinding(final Binding binding)
    {
       if (binding.isExclusive())
       {
@@ -148,6 +185,11 @@ public class BindingsImpl implements Bindings
                routingNameBindingMap.remove(routingName);
             }
          }
+
+         if (selectorIndex != null)
+         {
+            selectorIndex.removeBinding(binding);
+         }
       }
 
       bindingsMap.remove(binding.getID());
@@ -290,24 +332,33 @@ public class BindingsImpl implements Bindings
             {
                log.trace("Routing message " + message + " on binding=" + this);
             }
-            for (Map.Entry<SimpleString, List<Binding>> entry : routingNameBindingMap.entrySet())
+            SelectorIndex index = selectorIndex;
+
+            if (index != null)
+            {
+               routeUsingIndex(message, context, index);
+            }
+            else
             {
-               SimpleString routingName = entry.getKey();
+               for (Map.Entry<SimpleString, List<Binding>> entry : routingNameBindingMap.entrySet())
+               {
+                  SimpleString routingName = entry.getKey();
 
-               List<Binding> bindings = entry.getValue();
+                  List<Binding> bindings = entry.getValue();
 
-               if (bindings == null)
-               {
-                  // The value can become null if it's concurrently removed while we're iterating - this is expected
-                  // ConcurrentHashMap behaviour!
-                  continue;
-               }
+                  if (bindings == null)
+                  {
+                     // The value can become null if it's concurrently removed while we're iterating - this is expected
+                     // ConcurrentHashMap behaviour!
+                     continue;
+                  }
 
-               Binding theBinding = getNextBinding(message, routingName, bindings);
+                  Binding theBinding = getNextBinding(message, routingName, bindings);
 
-               if (theBinding != null)
-               {
-                  theBinding.route(message, context);
+                  if (theBinding != null)
+                  {
+                     theBinding.route(message, context);
+                  }
                }
             }
          }
@@ -323,6 +374,38 @@ public class BindingsImpl implements Bindings
       return "BindingsImpl [name=" + name + "]";
    }
 
+   /**
+    * Only the routing names selected by the index are evaluated, the filters of the other bindings can't match
+    * the message
+    */
+   private void routeUsingIndex(final ServerMessage message, final RoutingContext context, final SelectorIndex index) throws Exception
+   {
+      for (SimpleString routingName : index.getCandidates(message))
+      {
+         routeToRoutingName(message, context, routingName);
+      }
+   }
+
+   private void routeToRoutingName(final ServerMessage message,
+                                   final RoutingContext context,
+                                   final SimpleString routingName) throws Exception
+   {
+      List<Binding> bindings = routingNameBindingMap.get(routingName);
+
+      if (bindings == null)
+      {
+         // The binding can be concurrently removed
+         return;
+      }
+
+      Binding theBinding = getNextBinding(message, routingName, bindings);
+
+      if (theBinding != null)
+      {
+         theBinding.route(message, context);
+      }
+   }
+
    private Binding getNextBinding(final ServerMessage message,
                                   final SimpleString routingName,
                                   final List<Binding> bindings)
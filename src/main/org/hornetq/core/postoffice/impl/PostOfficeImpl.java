@@ -60,6 +60,7 @@ import org.hornetq.core.server.management.ManagementService;
 import org.hornetq.core.server.management.Notification;
 import org.hornetq.core.server.management.NotificationListener;
 import org.hornetq.core.settings.HierarchicalRepository;
+import org.hornetq.core.settings.HierarchicalRepositoryChangeListener;
 import org.hornetq.core.settings.impl.AddressSettings;
 import org.hornetq.core.transaction.Transaction;
 import org.hornetq.core.transaction.TransactionOperation;
@@ -76,7 +77,7 @@ import org.hornetq.utils.UUIDGenerator;
  * @author <a href="jmesnil@redhat.com">Jeff Mesnil</a>
  * @author <a href="csuconic@redhat.com">Clebert Suconic</a>
  */
-public class PostOfficeImpl implements PostOffice, NotificationListener, BindingsFactory
+public class PostOfficeImpl implements PostOffice, NotificationListener, BindingsFactory, HierarchicalRepositoryChangeListener
 {
    private static final Logger log = Logger.getLogger(PostOfficeImpl.class);
    
@@ -169,6 +170,8 @@ public class PostOfficeImpl implements PostOffice, NotificationListener, Binding
    {
       managementService.addNotificationListener(this);
 
+      addressSettingsRepository.registerListener(this);
+
       if (pagingManager != null)
       {
          pagingManager.setPostOffice(this);
@@ -190,6 +193,8 @@ public class PostOfficeImpl implements PostOffice, NotificationListener, Binding
 
       managementService.removeNotificationListener(this);
 
+      addressSettingsRepository.unRegisterListener(this);
+
       reaperRunnable.stop();
 
       if (reaperThread != null)
@@ -1419,8 +1424,48 @@ public class PostOfficeImpl implements PostOffice, NotificationListener, Binding
       }
    }
 
+   // HierarchicalRepositoryChangeListener implementation -----------
+
+   /**
+    * Applies the selector-index setting to the addresses that already have bindings.
+    */
+   public void onChange()
+   {
+      Set<SimpleString> addresses = new HashSet<SimpleString>();
+
+      for (Binding binding : addressManager.getBindings().values())
+      {
+         addresses.add(binding.getAddress());
+      }
+
+      for (SimpleString address : addresses)
+      {
+         try
+         {
+            Bindings bindings = addressManager.getBindingsForRoutingAddress(address);
+
+            if (bindings instanceof BindingsImpl)
+            {
+               ((BindingsImpl)bindings).setSelectorIndex(addressSettingsRepository.getMatch(address.toString())
+                                                                                 .isSelectorIndex());
+            }
+         }
+         catch (Exception e)
+         {
+            PostOfficeImpl.log.warn("Failed to apply the selector index setting to address " + address, e);
+         }
+      }
+   }
+
    public Bindings createBindings(final SimpleString address) throws Exception
    {
-      return new BindingsImpl(address, server.getGroupingHandler(), pagingManager.getPageStore(address));
+      BindingsImpl bindings = new BindingsImpl(address, server.getGroupingHandler(), pagingManager.getPageStore(address));
+
+      if (addressSettingsRepository.getMatch(address.toString()).isSelectorIndex())
+      {
+         bindings.setSelectorIndex(true);
+      }
+
+      return bindings;
    }
 }
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.postoffice.impl;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.filter.Filter;
+import org.hornetq.core.filter.impl.FilterImpl;
+import org.hornetq.core.filter.impl.IndexablePredicate;
+import org.hornetq.core.postoffice.Binding;
+import org.hornetq.core.server.ServerMessage;
+
+/**
+ * An index of the filters of the bindings of an address.
+ * 
+ * Every filter that has an {@link IndexablePredicate} (equality, IN or a range on a property) is indexed by that
+ * predicate, so routing a message only needs to look at the routing names whose bindings may match it. Bindings
+ * without a filter, or with filters that can't be indexed, are always candidates.
+ * 
+ * The index only selects candidates: the filters of the candidate bindings are still evaluated when routing.
+ * 
+ * Changes are serialized on the index, lookups don't take any lock.
+ */
+public class SelectorIndex
+{
+   // Attributes ----------------------------------------------------
+
+   /** Routing names that always need to be evaluated, with the number of bindings that put them here */
+   private final ConcurrentMap<SimpleString, Integer> unindexed = new ConcurrentHashMap<SimpleString, Integer>();
+
+   private final ConcurrentMap<SimpleString, PropertyIndex> properties = new ConcurrentHashMap<SimpleString, PropertyIndex>();
+
+   /** The predicates used for each binding, so they can be removed */
+   private final Map<Long, IndexablePredicate> predicates = new HashMap<Long, IndexablePredicate>();
+
+   // Public --------------------------------------------------------
+
+   public synchronized void addBinding(final Binding binding)
+   {
+      IndexablePredicate predicate = getPredicate(binding);
+
+      if (predicate == null)
+      {
+         SelectorIndex.increment(unindexed, binding.getRoutingName());
+         return;
+      }
+
+      predicates.put(binding.getID(), predicate);
+
+      PropertyIndex index = properties.get(predicate.getProperty());
+
+      if (index == null)
+      {
+         index = new PropertyIndex();
+         properties.put(predicate.getProperty(), index);
+      }
+
+      index.add(predicate, binding.getRoutingName());
+   }
+
+   public synchronized void removeBinding(final Binding binding)
+   {
+      IndexablePredicate predicate = predicates.remove(binding.getID());
+
+      if (predicate == null)
+      {
+         SelectorIndex.decrement(unindexed, binding.getRoutingName());
+         return;
+      }
+
+      PropertyIndex index = properties.get(predicate.getProperty());
+
+      if (index != null)
+      {
+         index.remove(predicate, binding.getRoutingName());
+
+         if (index.isEmpty())
+         {
+            properties.remove(predicate.getProperty());
+         }
+      }
+   }
+
+   /**
+    * @return the routing names with bindings that may match the message, including the ones that can't be indexed
+    */
+   public Set<SimpleString> getCandidates(final ServerMessage message)
+   {
+      Set<SimpleString> candidates = new HashSet<SimpleString>(unindexed.keySet());
+
+      for (Map.Entry<SimpleString, PropertyIndex> entry : properties.entrySet())
+      {
+         Object key = IndexablePredicate.toIndexKey(message.getObjectProperty(entry.getKey()));
+
+         if (key != null)
+         {
+            entry.getValue().addCandidates(key, candidates);
+         }
+      }
+
+      return candidates;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "SelectorIndex [unindexed=" + unindexed.keySet() + ", properties=" + properties.keySet() + "]";
+   }
+
+   // Private -------------------------------------------------------
+
+   private IndexablePredicate getPredicate(final Binding binding)
+   {
+      Filter filter = binding.getFilter();
+
+      if (filter instanceof FilterImpl)
+      {
+         return ((FilterImpl)filter).getIndexablePredicate();
+      }
+
+      return null;
+   }
+
+   private static void increment(final ConcurrentMap<SimpleString, Integer> counts, final SimpleString routingName)
+   {
+      Integer count = counts.get(routingName);
+
+      counts.put(routingName, count == null ? 1 : count + 1);
+   }
+
+   private static void decrement(final ConcurrentMap<SimpleString, Integer> counts, final SimpleString routingName)
+   {
+      Integer count = counts.get(routingName);
+
+      if (count == null || count <= 1)
+      {
+         counts.remove(routingName);
+      }
+      else
+      {
+         counts.put(routingName, count - 1);
+      }
+   }
+
+   // Inner classes -------------------------------------------------
+
+   private static final class RangeEntry
+   {
+      final IndexablePredicate predicate;
+
+      final SimpleString routingName;
+
+      RangeEntry(final IndexablePredicate predicate, final SimpleString routingName)
+      {
+         this.predicate = predicate;
+         this.routingName = routingName;
+      }
+   }
+
+   /** The predicates on one property */
+   private static final class PropertyIndex
+   {
+      final ConcurrentMap<Object, ConcurrentMap<SimpleString, Integer>> values = new ConcurrentHashMap<Object, ConcurrentMap<SimpleString, Integer>>();
+
+      final CopyOnWriteArrayList<RangeEntry> ranges = new CopyOnWriteArrayList<RangeEntry>();
+
+      void add(final IndexablePredicate predicate, final SimpleString routingName)
+      {
+         if (predicate.isRange())
+         {
+            ranges.add(new RangeEntry(predicate, routingName));
+            return;
+         }
+
+         for (Object value : predicate.getValues())
+         {
+            ConcurrentMap<SimpleString, Integer> routingNames = values.get(value);
+
+            if (routingNames == null)
+            {
+               routingNames = new ConcurrentHashMap<SimpleString, Integer>();
+               values.put(value, routingNames);
+            }
+
+            SelectorIndex.increment(routingNames, routingName);
+         }
+      }
+
+      void remove(final IndexablePredicate predicate, final SimpleString routingName)
+      {
+         if (predicate.isRange())
+         {
+            for (RangeEntry entry : ranges)
+            {
+               if (entry.predicate == predicate && entry.routingName.equals(routingName))
+               {
+                  ranges.remove(entry);
+                  return;
+               }
+            }
+            return;
+         }
+
+         for (Object value : predicate.getValues())
+         {
+            ConcurrentMap<SimpleString, Integer> routingNames = values.get(value);
+
+            if (routingNames != null)
+            {
+               SelectorIndex.decrement(routingNames, routingName);
+
+               if (routingNames.isEmpty())
+               {
+                  values.remove(value);
+               }
+            }
+         }
+      }
+
+      boolean isEmpty()
+      {
+         return values.isEmpty() && ranges.isEmpty();
+      }
+
+      void addCandidates(final Object key, final Set<SimpleString> candidates)
+      {
+         ConcurrentMap<SimpleString, Integer> routingNames = values.get(key);
+
+         if (routingNames != null)
+         {
+            candidates.addAll(routingNames.keySet());
+         }
+
+         if (!ranges.isEmpty() && key instanceof Double)
+         {
+            double value = ((Double)key).doubleValue();
+
+            for (RangeEntry entry : ranges)
+            {
+               if (entry.predicate.isInRange(value))
+               {
+                  candidates.add(entry.routingName);
+               }
+            }
+         }
+      }
+   }
+}
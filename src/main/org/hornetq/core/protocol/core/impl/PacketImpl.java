@@ -34,7 +34,8 @@ public class PacketImpl implements Packet
    public static final int PACKET_HEADERS_SIZE = DataConstants.SIZE_INT + DataConstants.SIZE_BYTE +
                                                  DataConstants.SIZE_LONG;
 
-   private static final int INITIAL_PACKET_SIZE = 1500;
+   // The size of the buffers packets are encoded on, the connections pool buffers of this size
+   public static final int INITIAL_PACKET_SIZE = 1500;
 
    protected long channelID;
 
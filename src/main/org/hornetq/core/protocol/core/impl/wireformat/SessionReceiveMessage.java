@@ -14,6 +14,7 @@
 package org.hornetq.core.protocol.core.impl.wireformat;
 
 import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.HornetQBuffers;
 import org.hornetq.core.client.impl.ClientMessageImpl;
 import org.hornetq.core.logging.Logger;
 import org.hornetq.core.message.impl.MessageInternal;
@@ -31,6 +32,12 @@ public class SessionReceiveMessage extends MessagePacket
 
    private static final Logger log = Logger.getLogger(SessionReceiveMessage.class);
 
+   // consumerID and deliveryCount, written after the message
+   private static final int TRAILER_SIZE = DataConstants.SIZE_LONG + DataConstants.SIZE_INT;
+
+   // encoded messages from this size are shared by the deliveries instead of copied
+   private static final int MIN_SHARED_SIZE = 512;
+
    // Attributes ----------------------------------------------------
 
    private long consumerID;
@@ -67,33 +74,41 @@ public class SessionReceiveMessage extends MessagePacket
 
    // Protected -----------------------------------------------------
 
+   /**
+    * The message is encoded once and its encoding shared by every consumer it's delivered to, only the packet headers
+    * and the consumer and delivery count after the message are written for each delivery.
+    * Small messages are cheaper to copy than to compose, so they are still copied into a single buffer.
+    */
    @Override
    public HornetQBuffer encode(final RemotingConnection connection)
    {
-      HornetQBuffer buffer = message.getEncodedBuffer();
-
-      // Sanity check
-      if (buffer.writerIndex() != message.getEndOfMessagePosition())
-      {
-         throw new IllegalStateException("Wrong encode position");
-      }
+      HornetQBuffer encoded = message.getSharedEncodedBuffer();
 
-      buffer.writeLong(consumerID);
-      buffer.writeInt(deliveryCount);
+      // Taken from the view, as the message may be encoded again by another thread once it's returned
+      size = PacketImpl.PACKET_HEADERS_SIZE + encoded.writerIndex() + SessionReceiveMessage.TRAILER_SIZE;
 
-      size = buffer.writerIndex();
+      if (encoded.writerIndex() < SessionReceiveMessage.MIN_SHARED_SIZE)
+      {
+         // the size of every other packet, so the connection can take it from its pool
+         HornetQBuffer buffer = connection.createBuffer(PacketImpl.INITIAL_PACKET_SIZE);
 
-      // Write standard headers
+         writeHeaders(buffer);
+         buffer.writeBytes(encoded, 0, encoded.writerIndex());
+         writeTrailer(buffer);
 
-      int len = size - DataConstants.SIZE_INT;
-      buffer.setInt(0, len);
-      buffer.setByte(DataConstants.SIZE_INT, type);
-      buffer.setLong(DataConstants.SIZE_INT + DataConstants.SIZE_BYTE, channelID);
+         return buffer;
+      }
+      else
+      {
+         // Not taken from the connection, its pooled buffers are only released when written as they are
+         HornetQBuffer headers = HornetQBuffers.fixedBuffer(PacketImpl.PACKET_HEADERS_SIZE);
+         writeHeaders(headers);
 
-      // Position reader for reading by Netty
-      buffer.setIndex(0, size);
+         HornetQBuffer trailer = HornetQBuffers.fixedBuffer(SessionReceiveMessage.TRAILER_SIZE);
+         writeTrailer(trailer);
 
-      return buffer;
+         return HornetQBuffers.wrappedBuffer(headers, encoded, trailer);
+      }
    }
 
    @Override
@@ -116,5 +131,18 @@ public class SessionReceiveMessage extends MessagePacket
 
    // Private -------------------------------------------------------
 
+   private void writeHeaders(final HornetQBuffer buffer)
+   {
+      buffer.writeInt(size - DataConstants.SIZE_INT);
+      buffer.writeByte(type);
+      buffer.writeLong(channelID);
+   }
+
+   private void writeTrailer(final HornetQBuffer buffer)
+   {
+      buffer.writeLong(consumerID);
+      buffer.writeInt(deliveryCount);
+   }
+
    // Inner classes -------------------------------------------------
 }
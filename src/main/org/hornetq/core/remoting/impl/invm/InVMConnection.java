@@ -18,8 +18,9 @@ import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import org.hornetq.api.core.HornetQBuffer;
-import org.hornetq.api.core.HornetQBuffers;
+import org.hornetq.core.buffers.impl.BufferPool;
 import org.hornetq.core.logging.Logger;
+import org.hornetq.core.protocol.core.impl.PacketImpl;
 import org.hornetq.core.security.HornetQPrincipal;
 import org.hornetq.spi.core.protocol.ProtocolType;
 import org.hornetq.spi.core.remoting.Acceptor;
@@ -42,6 +43,8 @@ public class InVMConnection implements Connection
    
    private static final boolean isTrace = log.isTraceEnabled();
 
+   private static final BufferPool packetPool = new BufferPool(PacketImpl.INITIAL_PACKET_SIZE, 1024);
+
    private final BufferHandler handler;
 
    private final ConnectionLifeCycleListener listener;
@@ -125,7 +128,13 @@ public class InVMConnection implements Connection
 
    public HornetQBuffer createBuffer(final int size)
    {
-      return HornetQBuffers.dynamicBuffer(size);
+      return InVMConnection.packetPool.acquire(size);
+   }
+
+   /** The pool of the buffers the packets are encoded on, shared by every in-vm connection */
+   public static BufferPool getPacketPool()
+   {
+      return InVMConnection.packetPool;
    }
 
    public Object getID()
@@ -144,10 +153,13 @@ public class InVMConnection implements Connection
    
    public void write(final HornetQBuffer buffer, final boolean flush, final boolean batch)
    {
-      final HornetQBuffer copied = buffer.copy(0, buffer.capacity());
+      final HornetQBuffer copied = buffer.copy(0, buffer.writerIndex());
 
       copied.setIndex(buffer.readerIndex(), buffer.writerIndex());
 
+      // the packet was copied, its buffer can be reused
+      BufferPool.release(buffer);
+
       try
       {
          executor.execute(new Runnable()
@@ -31,8 +31,28 @@ import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
  */
 public class HornetQFrameDecoder2 extends SimpleChannelUpstreamHandler
 {
+   // A frame sliced out of the received buffer keeps all of it alive while the frame is used, e.g. a message sitting
+   // in a queue, so only frames taking at least this fraction of the received buffer are sliced
+   private static final int MIN_SLICED_FRACTION = 4;
+
+   private final boolean sliceFrames;
+
    private ChannelBuffer previousData = ChannelBuffers.EMPTY_BUFFER;
 
+   public HornetQFrameDecoder2()
+   {
+      this(false);
+   }
+
+   /**
+    * @param sliceFrames whether the frames may be slices of the received buffers instead of copies. Only safe when
+    * the decoded packets never write past the end of their frame, as with the packets the server receives
+    */
+   public HornetQFrameDecoder2(final boolean sliceFrames)
+   {
+      this.sliceFrames = sliceFrames;
+   }
+
    // SimpleChannelUpstreamHandler overrides
    // -------------------------------------------------------------------------------------
 
@@ -160,16 +180,34 @@ public class HornetQFrameDecoder2 extends SimpleChannelUpstreamHandler
             break;
          }
 
-         // Convert to dynamic buffer (this requires copy)
-         // XXX Tune this value: Increasing the initial capacity of the dynamic
-         // buffer might reduce the chance of additional memory copy.
-         ChannelBuffer frame = ChannelBuffers.dynamicBuffer(length + DataConstants.SIZE_INT);
-         frame.writeBytes(in, length + DataConstants.SIZE_INT);
+         ChannelBuffer frame;
+
+         if (isSliced(in, length + DataConstants.SIZE_INT))
+         {
+            frame = in.slice(in.readerIndex(), length + DataConstants.SIZE_INT);
+            in.skipBytes(length + DataConstants.SIZE_INT);
+         }
+         else
+         {
+            // Convert to dynamic buffer (this requires copy)
+            // XXX Tune this value: Increasing the initial capacity of the dynamic
+            // buffer might reduce the chance of additional memory copy.
+            frame = ChannelBuffers.dynamicBuffer(length + DataConstants.SIZE_INT);
+            frame.writeBytes(in, length + DataConstants.SIZE_INT);
+         }
+
          frame.skipBytes(DataConstants.SIZE_INT);
          Channels.fireMessageReceived(ctx, frame);
       }
    }
 
+   private boolean isSliced(final ChannelBuffer in, final int frameLength)
+   {
+      // A dynamic buffer may be kept as previousData and appended to, moving the bytes of the slices
+      return sliceFrames && !(in instanceof DynamicChannelBuffer) &&
+             frameLength >= in.capacity() / HornetQFrameDecoder2.MIN_SLICED_FRACTION;
+   }
+
    private void append(final ChannelBuffer in, final int length)
    {
       // Need more data to decode the first message. This can happen when
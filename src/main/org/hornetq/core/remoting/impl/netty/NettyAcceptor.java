@@ -383,7 +383,7 @@ public class NettyAcceptor implements Acceptor
             {
                // Core protocol uses its own optimised decoder
 
-               handlers.put("hornetq-decoder", new HornetQFrameDecoder2());
+               handlers.put("hornetq-decoder", new HornetQFrameDecoder2(true));
             }
             else if (protocol == ProtocolType.STOMP_WS)
             {
@@ -13,13 +13,15 @@
 
 package org.hornetq.core.remoting.impl.netty;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Semaphore;
 
 import org.hornetq.api.core.HornetQBuffer;
-import org.hornetq.api.core.HornetQBuffers;
-import org.hornetq.core.buffers.impl.ChannelBufferWrapper;
+import org.hornetq.core.buffers.impl.BufferPool;
 import org.hornetq.core.logging.Logger;
+import org.hornetq.core.protocol.core.impl.PacketImpl;
 import org.hornetq.core.security.HornetQPrincipal;
 import org.hornetq.spi.core.protocol.ProtocolType;
 import org.hornetq.spi.core.remoting.Acceptor;
@@ -27,9 +29,11 @@ import org.hornetq.spi.core.remoting.Connection;
 import org.hornetq.spi.core.remoting.ConnectionLifeCycleListener;
 import org.hornetq.spi.core.remoting.ReadyListener;
 import org.hornetq.utils.ConcurrentHashSet;
+import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.handler.ssl.SslHandler;
 
 /**
@@ -47,6 +51,13 @@ public class NettyConnection implements Connection
 
    private static final int BATCHING_BUFFER_SIZE = 8192;
 
+   // packets from this size are gathered in the batch as they are, smaller ones are copied
+   private static final int MIN_GATHERED_SIZE = 1024;
+
+   private static final BufferPool packetPool = new BufferPool(PacketImpl.INITIAL_PACKET_SIZE, 1024);
+
+   private static final BufferPool batchPool = new BufferPool(NettyConnection.BATCHING_BUFFER_SIZE, 64);
+
    // Attributes ----------------------------------------------------
 
    private final Channel channel;
@@ -59,7 +70,13 @@ public class NettyConnection implements Connection
 
    private final boolean directDeliver;
 
-   private volatile HornetQBuffer batchBuffer;
+   // The buffers batched so far, written together with a single gathering write. Guarded by the writeLock
+   private final List<HornetQBuffer> batch = new ArrayList<HornetQBuffer>();
+
+   // The last buffer of the batch while small packets are copied into it
+   private HornetQBuffer batchBuffer;
+
+   private int batchSize;
 
    private final Semaphore writeLock = new Semaphore(1);
 
@@ -67,6 +84,12 @@ public class NettyConnection implements Connection
 
    // Static --------------------------------------------------------
 
+   /** The pool of the buffers the packets are encoded on, shared by every netty connection */
+   public static BufferPool getPacketPool()
+   {
+      return NettyConnection.packetPool;
+   }
+
    // Constructors --------------------------------------------------
 
    public NettyConnection(final Channel channel,
@@ -137,7 +160,7 @@ public class NettyConnection implements Connection
 
    public HornetQBuffer createBuffer(final int size)
    {
-      return new ChannelBufferWrapper(ChannelBuffers.dynamicBuffer(size));
+      return NettyConnection.packetPool.acquire(size);
    }
 
    public Object getID()
@@ -157,11 +180,9 @@ public class NettyConnection implements Connection
       {
          try
          {
-            if (batchBuffer != null && batchBuffer.readable())
+            if (!batch.isEmpty())
             {
-               channel.write(batchBuffer.channelBuffer());
-
-               batchBuffer = HornetQBuffers.dynamicBuffer(NettyConnection.BATCHING_BUFFER_SIZE);
+               writeBatch();
             }
          }
          finally
@@ -185,41 +206,27 @@ public class NettyConnection implements Connection
 
          try
          {
-            if (batchBuffer == null && batchingEnabled && batched && !flush)
-            {
-               // Lazily create batch buffer
-
-               batchBuffer = HornetQBuffers.dynamicBuffer(NettyConnection.BATCHING_BUFFER_SIZE);
-            }
+            ChannelFuture future;
 
-            if (batchBuffer != null)
+            if (batchingEnabled && batched && !flush || !batch.isEmpty())
             {
-               batchBuffer.writeBytes(buffer, 0, buffer.writerIndex());
+               addToBatch(buffer);
 
-               if (batchBuffer.writerIndex() >= NettyConnection.BATCHING_BUFFER_SIZE || !batched || flush)
+               if (batchSize >= NettyConnection.BATCHING_BUFFER_SIZE || !batched || flush)
                {
-                  // If the batch buffer is full or it's flush param or not batched then flush the buffer
+                  // If the batch is full or it's flush param or not batched then write the batch
 
-                  buffer = batchBuffer;
+                  future = writeBatch();
                }
                else
                {
                   return;
                }
-
-               if (!batched || flush)
-               {
-                  batchBuffer = null;
-               }
-               else
-               {
-                  // Create a new buffer
-
-                  batchBuffer = HornetQBuffers.dynamicBuffer(NettyConnection.BATCHING_BUFFER_SIZE);
-               }
             }
-
-            ChannelFuture future = channel.write(buffer.channelBuffer());
+            else
+            {
+               future = writeToChannel(buffer);
+            }
 
             if (flush)
             {
@@ -301,6 +308,95 @@ public class NettyConnection implements Connection
 
    // Private -------------------------------------------------------
 
+   /** Writes the buffer on the channel, a pooled buffer is released once the write completes */
+   private ChannelFuture writeToChannel(final HornetQBuffer buffer)
+   {
+      ChannelFuture future = channel.write(buffer.channelBuffer());
+
+      if (BufferPool.isPooled(buffer))
+      {
+         future.addListener(new ChannelFutureListener()
+         {
+            public void operationComplete(final ChannelFuture future) throws Exception
+            {
+               BufferPool.release(buffer);
+            }
+         });
+      }
+
+      return future;
+   }
+
+   /**
+    * Large packets are batched as they are, a copy would cost more than gathering them on the write.
+    * Small ones are cheaper to copy, they are copied into a batch buffer.
+    */
+   private void addToBatch(final HornetQBuffer buffer)
+   {
+      int size = buffer.readableBytes();
+
+      if (size >= NettyConnection.MIN_GATHERED_SIZE)
+      {
+         batch.add(buffer);
+
+         // the next small packets go after this one
+         batchBuffer = null;
+      }
+      else
+      {
+         if (batchBuffer == null)
+         {
+            batchBuffer = NettyConnection.batchPool.acquire(NettyConnection.BATCHING_BUFFER_SIZE);
+
+            batch.add(batchBuffer);
+         }
+
+         batchBuffer.writeBytes(buffer, buffer.readerIndex(), size);
+
+         // the packet was copied to the batch
+         BufferPool.release(buffer);
+      }
+
+      batchSize += size;
+   }
+
+   /**
+    * Writes the batched buffers in a single gathering write.
+    * Their pooled buffers are released once the write completes.
+    */
+   private ChannelFuture writeBatch()
+   {
+      final HornetQBuffer[] buffers = batch.toArray(new HornetQBuffer[batch.size()]);
+
+      batch.clear();
+
+      batchBuffer = null;
+
+      batchSize = 0;
+
+      ChannelBuffer[] channelBuffers = new ChannelBuffer[buffers.length];
+
+      for (int i = 0; i < buffers.length; i++)
+      {
+         channelBuffers[i] = buffers[i].channelBuffer();
+      }
+
+      ChannelFuture future = channel.write(ChannelBuffers.wrappedBuffer(true, channelBuffers));
+
+      future.addListener(new ChannelFutureListener()
+      {
+         public void operationComplete(final ChannelFuture future) throws Exception
+         {
+            for (HornetQBuffer buffer : buffers)
+            {
+               BufferPool.release(buffer);
+            }
+         }
+      });
+
+      return future;
+   }
+
    // Inner classes -------------------------------------------------
 
 }
@@ -487,6 +487,17 @@ public class ReplicatedJournal implements Journal
       return localJournal.load(reloadManager);
    }
 
+   /**
+    * @param reloadManager
+    *
+    * @throws Exception
+    * @see org.hornetq.core.journal.Journal#loadStreaming(org.hornetq.core.journal.LoaderCallback)
+    */
+   public JournalLoadInformation loadStreaming(final LoaderCallback reloadManager) throws Exception
+   {
+      return localJournal.loadStreaming(reloadManager);
+   }
+
    /**
     * @param pages
     * @throws Exception
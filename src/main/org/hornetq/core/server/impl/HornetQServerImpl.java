@@ -1218,9 +1218,11 @@ public class HornetQServerImpl implements HornetQServer
                                                              scheduledPool,
                                                              executorFactory,
                                                              configuration.isJournalSyncNonTransactional(),
-                                                             shutdownOnCriticalIO),
+                                                             shutdownOnCriticalIO,
+                                                             configuration.isPageMappedRead()),
                                    storageManager,
-                                   addressSettingsRepository);
+                                   addressSettingsRepository,
+                                   configuration.getGlobalMaxSize());
    }
 
    /**
@@ -1328,7 +1330,11 @@ public class HornetQServerImpl implements HornetQServer
                                             configuration.getClusterPassword(),
                                             managementService);
 
-      queueFactory = new QueueFactoryImpl(executorFactory, scheduledPool, addressSettingsRepository, storageManager);
+      queueFactory = new QueueFactoryImpl(executorFactory,
+                                          scheduledPool,
+                                          addressSettingsRepository,
+                                          storageManager,
+                                          configuration.getScheduledDeliveryTick());
 
       pagingManager = createPagingManager();
 
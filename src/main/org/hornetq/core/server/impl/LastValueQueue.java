@@ -58,7 +58,8 @@ public class LastValueQueue extends QueueImpl
                          final PostOffice postOffice,
                          final StorageManager storageManager,
                          final HierarchicalRepository<AddressSettings> addressSettingsRepository,
-                         final Executor executor)
+                         final Executor executor,
+                         final long scheduledDeliveryTick)
    {
       super(persistenceID,
             address,
@@ -71,7 +72,8 @@ public class LastValueQueue extends QueueImpl
             postOffice,
             storageManager,
             addressSettingsRepository,
-            executor);
+            executor,
+            scheduledDeliveryTick);
    }
 
    @Override
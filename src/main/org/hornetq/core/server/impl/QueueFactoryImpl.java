@@ -47,10 +47,13 @@ public class QueueFactoryImpl implements QueueFactory
    
    private final ExecutorFactory executorFactory;
 
+   private final long scheduledDeliveryTick;
+
    public QueueFactoryImpl(final ExecutorFactory executorFactory,
                            final ScheduledExecutorService scheduledExecutor,
                            final HierarchicalRepository<AddressSettings> addressSettingsRepository,
-                           final StorageManager storageManager)
+                           final StorageManager storageManager,
+                           final long scheduledDeliveryTick)
    {
       this.addressSettingsRepository = addressSettingsRepository;
 
@@ -59,6 +62,8 @@ public class QueueFactoryImpl implements QueueFactory
       this.storageManager = storageManager;
       
       this.executorFactory = executorFactory;
+
+      this.scheduledDeliveryTick = scheduledDeliveryTick;
    }
 
    public void setPostOffice(final PostOffice postOffice)
@@ -90,7 +95,8 @@ public class QueueFactoryImpl implements QueueFactory
                                     postOffice,
                                     storageManager,
                                     addressSettingsRepository,
-                                    executorFactory.getExecutor());
+                                    executorFactory.getExecutor(),
+                                    scheduledDeliveryTick);
       }
       else
       {
@@ -105,7 +111,8 @@ public class QueueFactoryImpl implements QueueFactory
                                postOffice,
                                storageManager,
                                addressSettingsRepository,
-                               executorFactory.getExecutor());
+                               executorFactory.getExecutor(),
+                               scheduledDeliveryTick);
       }
 
       return queue;
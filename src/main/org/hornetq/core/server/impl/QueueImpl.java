@@ -17,19 +17,20 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -59,6 +60,7 @@ import org.hornetq.core.transaction.TransactionPropertyIndexes;
 import org.hornetq.core.transaction.impl.TransactionImpl;
 import org.hornetq.utils.ConcurrentHashSet;
 import org.hornetq.utils.Future;
+import org.hornetq.utils.IDExtractor;
 import org.hornetq.utils.LinkedListIterator;
 import org.hornetq.utils.PriorityLinkedList;
 import org.hornetq.utils.PriorityLinkedListImpl;
@@ -93,6 +95,28 @@ public class QueueImpl implements Queue
    */
    private static final int DELIVERY_TIMEOUT = 1000;
 
+   private static final IDExtractor<MessageReference> MESSAGE_ID_EXTRACTOR = new IDExtractor<MessageReference>()
+   {
+      public long getID(final MessageReference ref)
+      {
+         return ref.getMessage().getMessageID();
+      }
+   };
+
+   // Used by the expiry reaper
+   private static final Filter EXPIRED_FILTER = new Filter()
+   {
+      public boolean match(final ServerMessage message)
+      {
+         return message.isExpired();
+      }
+
+      public SimpleString getFilterString()
+      {
+         return null;
+      }
+   };
+
    private final long id;
 
    private final SimpleString name;
@@ -114,8 +138,12 @@ public class QueueImpl implements Queue
    // This is to avoid locking the queue on the producer
    private final ConcurrentLinkedQueue<MessageReference> intermediateMessageReferences = new ConcurrentLinkedQueue<MessageReference>();
 
-   // This is where messages are stored
-   private final PriorityLinkedList<MessageReference> messageReferences = new PriorityLinkedListImpl<MessageReference>(QueueImpl.NUM_PRIORITIES);
+   // Set while a ConcurrentPoller is pending on the executor, so producers don't submit one task per message
+   private final AtomicBoolean pollerScheduled = new AtomicBoolean(false);
+
+   // This is where messages are stored, indexed by message ID once a management operation looks up a single message
+   private final PriorityLinkedList<MessageReference> messageReferences = new PriorityLinkedListImpl<MessageReference>(QueueImpl.NUM_PRIORITIES,
+                                                                                                                     QueueImpl.MESSAGE_ID_EXTRACTOR);
 
    // The quantity of pagedReferences on messageReferences priority list
    private final AtomicInteger pagedReferences = new AtomicInteger(0);
@@ -127,7 +155,7 @@ public class QueueImpl implements Queue
 
    private final ScheduledDeliveryHandler scheduledDeliveryHandler;
 
-   private long messagesAdded;
+   private final AtomicLong messagesAdded = new AtomicLong(0);
 
    protected final AtomicInteger deliveringCount = new AtomicInteger(0);
 
@@ -154,8 +182,9 @@ public class QueueImpl implements Queue
    private ScheduledFuture<?> checkQueueSizeFuture;
 
    // We cache the consumers here since we don't want to include the redistributor
+   // This is a copy on write set, so it can be read without locking the queue
 
-   private final Set<Consumer> consumerSet = new HashSet<Consumer>();
+   private final Set<Consumer> consumerSet = new CopyOnWriteArraySet<Consumer>();
 
    private final Map<SimpleString, Consumer> groups = new HashMap<SimpleString, Consumer>();
 
@@ -255,6 +284,35 @@ public class QueueImpl implements Queue
                     final StorageManager storageManager,
                     final HierarchicalRepository<AddressSettings> addressSettingsRepository,
                     final Executor executor)
+   {
+      this(id,
+           address,
+           name,
+           filter,
+           pageSubscription,
+           durable,
+           temporary,
+           scheduledExecutor,
+           postOffice,
+           storageManager,
+           addressSettingsRepository,
+           executor,
+           ScheduledDeliveryHandlerImpl.DEFAULT_TICK);
+   }
+
+   public QueueImpl(final long id,
+                    final SimpleString address,
+                    final SimpleString name,
+                    final Filter filter,
+                    final PageSubscription pageSubscription,
+                    final boolean durable,
+                    final boolean temporary,
+                    final ScheduledExecutorService scheduledExecutor,
+                    final PostOffice postOffice,
+                    final StorageManager storageManager,
+                    final HierarchicalRepository<AddressSettings> addressSettingsRepository,
+                    final Executor executor,
+                    final long scheduledDeliveryTick)
    {
       this.id = id;
 
@@ -278,7 +336,7 @@ public class QueueImpl implements Queue
 
       this.scheduledExecutor = scheduledExecutor;
 
-      scheduledDeliveryHandler = new ScheduledDeliveryHandlerImpl(scheduledExecutor);
+      scheduledDeliveryHandler = new ScheduledDeliveryHandlerImpl(scheduledExecutor, scheduledDeliveryTick);
 
       if (addressSettingsRepository != null)
       {
@@ -403,7 +461,7 @@ public class QueueImpl implements Queue
 
       directDeliver = false;
 
-      messagesAdded++;
+      messagesAdded.incrementAndGet();
    }
 
    public void addTail(final MessageReference ref)
@@ -415,10 +473,7 @@ public class QueueImpl implements Queue
    {
       if (scheduledDeliveryHandler.checkAndSchedule(ref, true))
       {
-         synchronized (this)
-         {
-            messagesAdded++;
-         }
+         messagesAdded.incrementAndGet();
 
          return;
       }
@@ -457,7 +512,7 @@ public class QueueImpl implements Queue
 
       directDeliver = false;
 
-      getExecutor().execute(concurrentPoller);
+      schedulePoller();
    }
 
    public void forceDelivery()
@@ -699,27 +754,21 @@ public class QueueImpl implements Queue
       super.finalize();
    }
 
-   public synchronized int getConsumerCount()
+   public int getConsumerCount()
    {
       return consumerSet.size();
    }
 
-   public synchronized Set<Consumer> getConsumers()
+   public Set<Consumer> getConsumers()
    {
       return consumerSet;
    }
 
-   public synchronized boolean hasMatchingConsumer(final ServerMessage message)
+   /* Called on routing, so it doesn't lock the queue. The redistributor is not on consumerSet */
+   public boolean hasMatchingConsumer(final ServerMessage message)
    {
-      for (ConsumerHolder holder : consumerList)
+      for (Consumer consumer : consumerSet)
       {
-         Consumer consumer = holder.consumer;
-
-         if (consumer instanceof Redistributor)
-         {
-            continue;
-         }
-
          Filter filter = consumer.getFilter();
 
          if (filter == null)
@@ -744,65 +793,24 @@ public class QueueImpl implements Queue
 
    public synchronized MessageReference removeReferenceWithID(final long id) throws Exception
    {
-      LinkedListIterator<MessageReference> iterator = iterator();
+      MessageReference removed = messageReferences.removeWithID(id);
 
-      try
+      if (removed != null)
       {
-
-         MessageReference removed = null;
-
-         while (iterator.hasNext())
-         {
-            MessageReference ref = iterator.next();
-
-            if (ref.getMessage().getMessageID() == id)
-            {
-               iterator.remove();
-               refRemoved(ref);
-
-               removed = ref;
-
-               break;
-            }
-         }
-
-         if (removed == null)
-         {
-            // Look in scheduled deliveries
-            removed = scheduledDeliveryHandler.removeReferenceWithID(id);
-         }
-
-         return removed;
+         refRemoved(removed);
       }
-      finally
+      else
       {
-         iterator.close();
+         // Look in scheduled deliveries
+         removed = scheduledDeliveryHandler.removeReferenceWithID(id);
       }
+
+      return removed;
    }
 
    public synchronized MessageReference getReference(final long id)
    {
-      LinkedListIterator<MessageReference> iterator = iterator();
-
-      try
-      {
-
-         while (iterator.hasNext())
-         {
-            MessageReference ref = iterator.next();
-
-            if (ref.getMessage().getMessageID() == id)
-            {
-               return ref;
-            }
-         }
-
-         return null;
-      }
-      finally
-      {
-         iterator.close();
-      }
+      return messageReferences.getWithID(id);
    }
 
    public long getMessageCount()
@@ -869,12 +877,12 @@ public class QueueImpl implements Queue
       }
    }
 
-   public synchronized int getScheduledCount()
+   public int getScheduledCount()
    {
       return scheduledDeliveryHandler.getScheduledCount();
    }
 
-   public synchronized List<MessageReference> getScheduledMessages()
+   public List<MessageReference> getScheduledMessages()
    {
       return scheduledDeliveryHandler.getScheduledReferences();
    }
@@ -1049,11 +1057,11 @@ public class QueueImpl implements Queue
       {
          if (pageSubscription != null)
          {
-            return messagesAdded + pageSubscription.getCounter().getValue() - pagedReferences.get();
+            return messagesAdded.get() + pageSubscription.getCounter().getValue() - pagedReferences.get();
          }
          else
          {
-            return messagesAdded;
+            return messagesAdded.get();
          }
       }
     }
@@ -1063,37 +1071,32 @@ public class QueueImpl implements Queue
       return deleteMatchingReferences(null);
    }
 
-   public synchronized int deleteMatchingReferences(final Filter filter) throws Exception
+   public int deleteMatchingReferences(final Filter filter) throws Exception
    {
       int count = 0;
 
       Transaction tx = new TransactionImpl(storageManager);
 
+      List<MessageReference> removed = new ArrayList<MessageReference>();
+
       LinkedListIterator<MessageReference> iter = iterator();
       try
       {
+         boolean hasMore;
 
-         while (iter.hasNext())
+         do
          {
-            MessageReference ref = iter.next();
-
-            if (ref.isPaged() && pageIterator == null)
-            {
-               // this means the queue is being removed
-               // hence paged references are just going away through
-               // page cleanup
-               continue;
-            }
+            hasMore = removeReferences(iter, filter, true, removed) == QueueImpl.MAX_DELIVERIES_IN_LOOP;
 
-            if (filter == null || filter.match(ref.getMessage()))
+            for (MessageReference ref : removed)
             {
-               deliveringCount.incrementAndGet();
                acknowledge(tx, ref);
-               iter.remove();
-               refRemoved(ref);
                count++;
             }
+
+            removed.clear();
          }
+         while (hasMore);
 
          List<MessageReference> cancelled = scheduledDeliveryHandler.cancel(filter);
          for (MessageReference messageReference : cancelled)
@@ -1103,30 +1106,30 @@ public class QueueImpl implements Queue
             count++;
          }
 
-
-         if (pageIterator != null)
+         synchronized (this)
          {
-            // System.out.println("QueueMemorySize before depage = " + queueMemorySize.get());
-            while (pageIterator.hasNext())
+            if (pageIterator != null)
             {
-               PagedReference reference = pageIterator.next();
-               pageIterator.remove();
-
-               if (filter == null || filter.match(reference.getMessage()))
+               while (pageIterator.hasNext())
                {
-                  count++;
-                  pageSubscription.ack(reference);
-               }
-               else
-               {
-                  addTail(reference, false);
+                  PagedReference reference = pageIterator.next();
+                  pageIterator.remove();
+
+                  if (filter == null || filter.match(reference.getMessage()))
+                  {
+                     count++;
+                     pageSubscription.ack(reference);
+                  }
+                  else
+                  {
+                     addTail(reference, false);
+                  }
                }
             }
          }
 
          tx.commit();
 
-
          if (filter != null && pageIterator != null)
          {
             scheduleDepage(false);
@@ -1201,82 +1204,65 @@ public class QueueImpl implements Queue
 
       Transaction tx = new TransactionImpl(storageManager);
 
-      LinkedListIterator<MessageReference> iter = iterator();
-      try
-      {
-
-         while (iter.hasNext())
-         {
-            MessageReference ref = iter.next();
-            if (ref.getMessage().getMessageID() == messageID)
-            {
-               deliveringCount.incrementAndGet();
-               acknowledge(tx, ref);
-               iter.remove();
-               refRemoved(ref);
-               deleted = true;
-               break;
-            }
-         }
+      MessageReference ref = messageReferences.getWithID(messageID);
 
-         tx.commit();
-
-         return deleted;
-      }
-      finally
+      if (ref != null)
       {
-         iter.close();
+         deliveringCount.incrementAndGet();
+         acknowledge(tx, ref);
+         messageReferences.removeWithID(messageID);
+         refRemoved(ref);
+         deleted = true;
       }
+
+      tx.commit();
+
+      return deleted;
    }
 
    public synchronized boolean expireReference(final long messageID) throws Exception
    {
-      LinkedListIterator<MessageReference> iter = iterator();
-      try
-      {
+      MessageReference ref = messageReferences.getWithID(messageID);
 
-         while (iter.hasNext())
-         {
-            MessageReference ref = iter.next();
-            if (ref.getMessage().getMessageID() == messageID)
-            {
-               deliveringCount.incrementAndGet();
-               expire(ref);
-               iter.remove();
-               refRemoved(ref);
-               return true;
-            }
-         }
-         return false;
-      }
-      finally
+      if (ref != null)
       {
-         iter.close();
+         deliveringCount.incrementAndGet();
+         expire(ref);
+         messageReferences.removeWithID(messageID);
+         refRemoved(ref);
+         return true;
       }
+
+      return false;
    }
 
-   public synchronized int expireReferences(final Filter filter) throws Exception
+   public int expireReferences(final Filter filter) throws Exception
    {
       Transaction tx = new TransactionImpl(storageManager);
 
       int count = 0;
+
+      List<MessageReference> removed = new ArrayList<MessageReference>();
+
       LinkedListIterator<MessageReference> iter = iterator();
 
       try
       {
+         boolean hasMore;
 
-         while (iter.hasNext())
+         do
          {
-            MessageReference ref = iter.next();
-            if (filter == null || filter.match(ref.getMessage()))
+            hasMore = removeReferences(iter, filter, true, removed) == QueueImpl.MAX_DELIVERIES_IN_LOOP;
+
+            for (MessageReference ref : removed)
             {
-               deliveringCount.incrementAndGet();
                expire(tx, ref);
-               iter.remove();
-               refRemoved(ref);
                count++;
             }
+
+            removed.clear();
          }
+         while (hasMore);
 
          tx.commit();
 
@@ -1293,28 +1279,28 @@ public class QueueImpl implements Queue
       getExecutor().execute(new Runnable(){
          public void run()
          {
-            synchronized (QueueImpl.this)
+            List<MessageReference> removed = new ArrayList<MessageReference>();
+
+            LinkedListIterator<MessageReference> iter = iterator();
+
+            try
             {
-               LinkedListIterator<MessageReference> iter = iterator();
+               boolean expired = false;
+               boolean hasElements = false;
+               int scanned;
 
-               try
+               do
                {
-                  boolean expired = false;
-                  boolean hasElements = false;
-                  while (iter.hasNext())
+                  scanned = removeReferences(iter, QueueImpl.EXPIRED_FILTER, true, removed);
+
+                  hasElements |= scanned > 0;
+
+                  for (MessageReference ref : removed)
                   {
-                     hasElements = true;
-                     MessageReference ref = iter.next();
                      try
                      {
-                        if (ref.getMessage().isExpired())
-                        {
-                           deliveringCount.incrementAndGet();
-                           expired = true;
-                           expire(ref);
-                           iter.remove();
-                           refRemoved(ref);
-                        }
+                        expired = true;
+                        expire(ref);
                      }
                      catch (Exception e)
                      {
@@ -1322,16 +1308,22 @@ public class QueueImpl implements Queue
                      }
                   }
 
+                  removed.clear();
+               }
+               while (scanned == QueueImpl.MAX_DELIVERIES_IN_LOOP);
+
+               synchronized (QueueImpl.this)
+               {
                   // If empty we need to schedule depaging to make sure we would depage expired messages as well
                   if ((!hasElements || expired) && pageIterator != null && pageIterator.hasNext())
                   {
                      scheduleDepage(true);
                   }
                }
-               finally
-               {
-                  iter.close();
-               }
+            }
+            finally
+            {
+               iter.close();
             }
          }
       });
@@ -1339,49 +1331,46 @@ public class QueueImpl implements Queue
 
    public synchronized boolean sendMessageToDeadLetterAddress(final long messageID) throws Exception
    {
-      LinkedListIterator<MessageReference> iter = iterator();
+      MessageReference ref = messageReferences.getWithID(messageID);
 
-      try
-      {
-         while (iter.hasNext())
-         {
-            MessageReference ref = iter.next();
-            if (ref.getMessage().getMessageID() == messageID)
-            {
-               deliveringCount.incrementAndGet();
-               sendToDeadLetterAddress(ref);
-               iter.remove();
-               refRemoved(ref);
-               return true;
-            }
-         }
-         return false;
-      }
-      finally
+      if (ref != null)
       {
-         iter.close();
+         deliveringCount.incrementAndGet();
+         sendToDeadLetterAddress(ref);
+         messageReferences.removeWithID(messageID);
+         refRemoved(ref);
+         return true;
       }
+
+      return false;
    }
 
-   public synchronized int sendMessagesToDeadLetterAddress(Filter filter) throws Exception
+   public int sendMessagesToDeadLetterAddress(Filter filter) throws Exception
    {
       int count = 0;
+
+      List<MessageReference> removed = new ArrayList<MessageReference>();
+
       LinkedListIterator<MessageReference> iter = iterator();
 
       try
       {
-         while (iter.hasNext())
+         boolean hasMore;
+
+         do
          {
-            MessageReference ref = iter.next();
-            if (filter == null || filter.match(ref.getMessage()))
+            hasMore = removeReferences(iter, filter, true, removed) == QueueImpl.MAX_DELIVERIES_IN_LOOP;
+
+            for (MessageReference ref : removed)
             {
-               deliveringCount.incrementAndGet();
                sendToDeadLetterAddress(ref);
-               iter.remove();
-               refRemoved(ref);
                count++;
             }
+
+            removed.clear();
          }
+         while (hasMore);
+
          return count;
       }
       finally
@@ -1399,36 +1388,25 @@ public class QueueImpl implements Queue
                                              final SimpleString toAddress,
                                              final boolean rejectDuplicate) throws Exception
    {
-      LinkedListIterator<MessageReference> iter = iterator();
+      MessageReference ref = messageReferences.removeWithID(messageID);
 
-      try
+      if (ref != null)
       {
-         while (iter.hasNext())
+         refRemoved(ref);
+         deliveringCount.incrementAndGet();
+         try
          {
-            MessageReference ref = iter.next();
-            if (ref.getMessage().getMessageID() == messageID)
-            {
-               iter.remove();
-               refRemoved(ref);
-               deliveringCount.incrementAndGet();
-               try
-               {
-                  move(toAddress, ref, false, rejectDuplicate);
-               }
-               catch (Exception e)
-               {
-                  deliveringCount.decrementAndGet();
-                  throw e;
-               }
-               return true;
-            }
+            move(toAddress, ref, false, rejectDuplicate);
          }
-         return false;
-      }
-      finally
-      {
-         iter.close();
+         catch (Exception e)
+         {
+            deliveringCount.decrementAndGet();
+            throw e;
+         }
+         return true;
       }
+
+      return false;
    }
 
    public int moveReferences(final Filter filter, final SimpleString toAddress) throws Exception
@@ -1436,9 +1414,9 @@ public class QueueImpl implements Queue
       return moveReferences(filter, toAddress, false);
    }
 
-   public synchronized int moveReferences(final Filter filter,
-                                          final SimpleString toAddress,
-                                          final boolean rejectDuplicates) throws Exception
+   public int moveReferences(final Filter filter,
+                             final SimpleString toAddress,
+                             final boolean rejectDuplicates) throws Exception
    {
       Transaction tx = new TransactionImpl(storageManager);
 
@@ -1446,6 +1424,8 @@ public class QueueImpl implements Queue
 
       try
       {
+         List<MessageReference> removed = new ArrayList<MessageReference>();
+
          LinkedListIterator<MessageReference> iter = iterator();
 
          try
@@ -1453,16 +1433,18 @@ public class QueueImpl implements Queue
 
             DuplicateIDCache targetDuplicateCache = postOffice.getDuplicateIDCache(toAddress);
 
-            while (iter.hasNext())
+            boolean hasMore;
+
+            do
             {
-               MessageReference ref = iter.next();
-               if (filter == null || filter.match(ref.getMessage()))
+               hasMore = removeReferences(iter, filter, true, removed) == QueueImpl.MAX_DELIVERIES_IN_LOOP;
+
+               count += removed.size();
+
+               for (MessageReference ref : removed)
                {
                   boolean ignored = false;
 
-                  deliveringCount.incrementAndGet();
-                  count++;
-
                   if (rejectDuplicates)
                   {
                      byte[] duplicateBytes = ref.getMessage().getDuplicateIDBytes();
@@ -1487,9 +1469,11 @@ public class QueueImpl implements Queue
                   {
                      move(toAddress, tx, ref, false, rejectDuplicates);
                   }
-                  iter.remove();
                }
+
+               removed.clear();
             }
+            while (hasMore);
 
             List<MessageReference> cancelled = scheduledDeliveryHandler.cancel(filter);
             for (MessageReference ref : cancelled)
@@ -1533,51 +1517,44 @@ public class QueueImpl implements Queue
 
    public synchronized boolean changeReferencePriority(final long messageID, final byte newPriority) throws Exception
    {
-      LinkedListIterator<MessageReference> iter = iterator();
-
-      try
-      {
-
-         while (iter.hasNext())
-         {
-            MessageReference ref = iter.next();
-            if (ref.getMessage().getMessageID() == messageID)
-            {
-               iter.remove();
-               refRemoved(ref);
-               ref.getMessage().setPriority(newPriority);
-               addTail(ref, false);
-               return true;
-            }
-         }
+      MessageReference ref = messageReferences.removeWithID(messageID);
 
-         return false;
-      }
-      finally
+      if (ref != null)
       {
-         iter.close();
+         refRemoved(ref);
+         ref.getMessage().setPriority(newPriority);
+         addTail(ref, false);
+         return true;
       }
+
+      return false;
    }
 
-   public synchronized int changeReferencesPriority(final Filter filter, final byte newPriority) throws Exception
+   public int changeReferencesPriority(final Filter filter, final byte newPriority) throws Exception
    {
+      List<MessageReference> removed = new ArrayList<MessageReference>();
+
       LinkedListIterator<MessageReference> iter = iterator();
 
       try
       {
-         int count = 0;
-         while (iter.hasNext())
+         boolean hasMore;
+
+         do
          {
-            MessageReference ref = iter.next();
-            if (filter == null || filter.match(ref.getMessage()))
-            {
-               count++;
-               iter.remove();
-               refRemoved(ref);
-               ref.getMessage().setPriority(newPriority);
-               addTail(ref, false);
-            }
+            hasMore = removeReferences(iter, filter, false, removed) == QueueImpl.MAX_DELIVERIES_IN_LOOP;
+         }
+         while (hasMore);
+
+         int count = removed.size();
+
+         // Added back once the scan is done, or the iterator would find them again at the tail
+         for (MessageReference ref : removed)
+         {
+            ref.getMessage().setPriority(newPriority);
+            addTail(ref, false);
          }
+
          return count;
       }
       finally
@@ -1687,21 +1664,71 @@ public class QueueImpl implements Queue
       messageReferences.addHead(ref, ref.getMessage().getPriority());
    }
 
-   private synchronized void doPoll()
+   private void schedulePoller()
    {
-      MessageReference ref = intermediateMessageReferences.poll();
+      if (pollerScheduled.compareAndSet(false, true))
+      {
+         try
+         {
+            getExecutor().execute(concurrentPoller);
+         }
+         catch (RejectedExecutionException e)
+         {
+            pollerScheduled.set(false);
 
-      if (ref != null)
+            throw e;
+         }
+      }
+   }
+
+   /*
+    * Moves the messages added by the producers to messageReferences.
+    * Everything on intermediateMessageReferences is drained by this same task, taking the lock once for up to
+    * MAX_DELIVERIES_IN_LOOP messages. Tasks submitted on the executor after addTail (such as flushExecutor) will then
+    * find the messages on the queue, as they did when there was one poller per message.
+    */
+   private void doPoll()
+   {
+      // Cleared before polling, so a message added after this point will schedule another poller
+      pollerScheduled.set(false);
+
+      while (pollBatch())
+      {
+         // the lock is released between batches, so consumers and acks are not held for too long
+      }
+   }
+
+   /**
+    * @return true if a full batch was polled, as there may be more messages waiting
+    */
+   private synchronized boolean pollBatch()
+   {
+      boolean wasEmpty = messageReferences.isEmpty();
+
+      int polled = 0;
+
+      MessageReference ref;
+
+      while (polled < QueueImpl.MAX_DELIVERIES_IN_LOOP && (ref = intermediateMessageReferences.poll()) != null)
       {
          internalAddTail(ref);
 
-         messagesAdded++;
+         polled++;
+      }
 
-         if (consumerWithFilterCount > 0 || messageReferences.size() == 1)
-         {
-            deliver();
-         }
+      if (polled == 0)
+      {
+         return false;
+      }
+
+      messagesAdded.addAndGet(polled);
+
+      if (consumerWithFilterCount > 0 || wasEmpty)
+      {
+         deliver();
       }
+
+      return polled == QueueImpl.MAX_DELIVERIES_IN_LOOP;
    }
 
    // This method will deliver as many messages as possible until all consumers are busy or there are no more matching
@@ -1880,6 +1907,52 @@ public class QueueImpl implements Queue
    /**
     * @param ref
     */
+   /**
+    * Removes the references matching the filter from the next MAX_DELIVERIES_IN_LOOP references of the iterator.
+    * <p>
+    * Management operations scan the queue calling this until the iterator is exhausted, and do the rest of their work
+    * (acks, routing to other addresses) on the removed references without holding the queue lock. Deliveries are then
+    * blocked for one batch at most, not for the whole scan.
+    * </p>
+    * @param delivering true if the removed references are accounted as being delivered until they are acked
+    * @return the number of references scanned, less than MAX_DELIVERIES_IN_LOOP when there are no more
+    */
+   private synchronized int removeReferences(final LinkedListIterator<MessageReference> iter,
+                                             final Filter filter,
+                                             final boolean delivering,
+                                             final List<MessageReference> removed)
+   {
+      int scanned = 0;
+
+      while (scanned < QueueImpl.MAX_DELIVERIES_IN_LOOP && iter.hasNext())
+      {
+         MessageReference ref = iter.next();
+
+         scanned++;
+
+         if (ref.isPaged() && pageIterator == null)
+         {
+            // this means the queue is being removed
+            // hence paged references are just going away through
+            // page cleanup
+            continue;
+         }
+
+         if (filter == null || filter.match(ref.getMessage()))
+         {
+            if (delivering)
+            {
+               deliveringCount.incrementAndGet();
+            }
+            iter.remove();
+            refRemoved(ref);
+            removed.add(ref);
+         }
+      }
+
+      return scanned;
+   }
+
    private void refRemoved(MessageReference ref)
    {
       queueMemorySize.addAndGet(-ref.getMessageMemoryEstimate());
@@ -2229,7 +2302,7 @@ public class QueueImpl implements Queue
                groups.put(groupID, consumer);
             }
 
-            messagesAdded++;
+            messagesAdded.incrementAndGet();
 
             return true;
          }
@@ -13,11 +13,13 @@
 package org.hornetq.core.server.impl;
 
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import org.hornetq.core.filter.Filter;
@@ -29,6 +31,17 @@ import org.hornetq.core.server.ScheduledDeliveryHandler;
 /**
  * Handles scheduling deliveries to a queue at the correct time.
  * 
+ * The scheduled references are kept on a hashed timing wheel: a fixed array of {@link #WHEEL_SIZE} buckets, one per
+ * tick. Delivery times are rounded up to a tick and a reference goes to the bucket of its tick modulo the wheel size,
+ * so references due more than one turn of the wheel ahead share the bucket with earlier ones and stay there until
+ * their turn comes. Adding and removing a reference are O(1).
+ * 
+ * While there are scheduled references a single task runs on the scheduled executor once per tick. It goes through
+ * the buckets of the ticks elapsed since it last ran and delivers the references which are due to the queue in one
+ * batch. The task is cancelled once nothing is scheduled, so idle queues cost nothing.
+ * 
+ * The tick is configured with scheduled-delivery-tick (in milliseconds).
+ * 
  * @author <a href="mailto:tim.fox@jboss.com">Tim Fox</a>
  * @author <a href="ataylor@redhat.com">Andy Taylor</a>
  * @author <a href="jmesnil@redhat.com">Jeff Mesnil</a>
@@ -40,15 +53,60 @@ public class ScheduledDeliveryHandlerImpl implements ScheduledDeliveryHandler
 
    private static final boolean trace = ScheduledDeliveryHandlerImpl.log.isTraceEnabled();
 
+   public static final long DEFAULT_TICK = 10;
+
+   // Must be a power of 2
+   public static final int WHEEL_SIZE = 1024;
+
+   private static final int WHEEL_MASK = ScheduledDeliveryHandlerImpl.WHEEL_SIZE - 1;
+
+   private static final Comparator<ScheduledEntry> DEADLINE_COMPARATOR = new Comparator<ScheduledEntry>()
+   {
+      public int compare(final ScheduledEntry e1, final ScheduledEntry e2)
+      {
+         return e1.deadline < e2.deadline ? -1 : e1.deadline == e2.deadline ? 0 : 1;
+      }
+   };
+
    private final ScheduledExecutorService scheduledExecutor;
-   
+
+   private final long tick;
+
    private final Object lockDelivery = new Object();
-   
-   private LinkedList<MessageReference> scheduledReferences = new LinkedList<MessageReference>();
+
+   // Every access to the wheel, the tick task, the index and the scheduled count is guarded by the lock monitor
+   private final Object lock = new Object();
+
+   // The first and last entries of each bucket, created with the first scheduled reference
+   private ScheduledEntry[] firsts;
+
+   private ScheduledEntry[] lasts;
+
+   // The last tick whose bucket was gone through
+   private long processedTick;
+
+   private ScheduledFuture<?> tickFuture;
+
+   // null until a reference is removed by ID, see LinkedListImpl
+   private Map<Long, ScheduledEntry> entriesByID;
+
+   private int scheduledCount;
 
    public ScheduledDeliveryHandlerImpl(final ScheduledExecutorService scheduledExecutor)
    {
+      this(scheduledExecutor, ScheduledDeliveryHandlerImpl.DEFAULT_TICK);
+   }
+
+   public ScheduledDeliveryHandlerImpl(final ScheduledExecutorService scheduledExecutor, final long tick)
+   {
+      if (tick <= 0)
+      {
+         throw new IllegalArgumentException("tick must be > 0");
+      }
+
       this.scheduledExecutor = scheduledExecutor;
+
+      this.tick = tick;
    }
 
    public boolean checkAndSchedule(final MessageReference ref, final boolean tail)
@@ -62,23 +120,41 @@ public class ScheduledDeliveryHandlerImpl implements ScheduledDeliveryHandler
             ScheduledDeliveryHandlerImpl.log.trace("Scheduling delivery for " + ref + " to occur at " + deliveryTime);
          }
 
-         ScheduledDeliveryRunnable runnable = new ScheduledDeliveryRunnable(ref.getScheduledDeliveryTime());
+         // We round up, so a reference is never delivered before its scheduled time
+         long deadline = (deliveryTime + tick - 1) / tick;
 
-         synchronized (scheduledReferences)
+         synchronized (lock)
          {
+            if (tickFuture == null)
+            {
+               start();
+            }
+
+            // A reference already due goes on the next bucket to be gone through
+            long bucketTick = Math.max(deadline, processedTick + 1);
+
+            ScheduledEntry entry = new ScheduledEntry(ref,
+                                                      deadline,
+                                                      (int)(bucketTick & ScheduledDeliveryHandlerImpl.WHEEL_MASK));
+
             if (tail)
             {
-               // We do the opposite what the parameter says as the Runnable will always add it to the head
-               scheduledReferences.addFirst(ref);
+               // We do the opposite what the parameter says as the bucket will always be added to the head
+               addFirst(entry);
             }
             else
             {
-               // We do the opposite what the parameter says as the Runnable will always add it to the head
-               scheduledReferences.add(ref);
+               // We do the opposite what the parameter says as the bucket will always be added to the head
+               addLast(entry);
             }
-         }
 
-         scheduleDelivery(runnable, deliveryTime);
+            if (entriesByID != null)
+            {
+               entriesByID.put(ref.getMessage().getMessageID(), entry);
+            }
+
+            scheduledCount++;
+         }
 
          return true;
       }
@@ -87,9 +163,9 @@ public class ScheduledDeliveryHandlerImpl implements ScheduledDeliveryHandler
 
    public int getScheduledCount()
    {
-      synchronized (scheduledReferences)
+      synchronized (lock)
       {
-         return scheduledReferences.size();
+         return scheduledCount;
       }
    }
 
@@ -97,9 +173,12 @@ public class ScheduledDeliveryHandlerImpl implements ScheduledDeliveryHandler
    {
       List<MessageReference> refs = new ArrayList<MessageReference>();
 
-      synchronized (scheduledReferences)
+      synchronized (lock)
       {
-         refs.addAll(scheduledReferences);
+         for (ScheduledEntry entry : sortedEntries())
+         {
+            refs.add(entry.ref);
+         }
       }
       return refs;
    }
@@ -108,17 +187,14 @@ public class ScheduledDeliveryHandlerImpl implements ScheduledDeliveryHandler
    {
       List<MessageReference> refs = new ArrayList<MessageReference>();
 
-      synchronized (scheduledReferences)
+      synchronized (lock)
       {
-         Iterator<MessageReference> iter = scheduledReferences.iterator();
-         
-         while (iter.hasNext())
+         for (ScheduledEntry entry : sortedEntries())
          {
-            MessageReference ref = iter.next();
-            if (filter == null || filter.match(ref.getMessage()))
+            if (filter == null || filter.match(entry.ref.getMessage()))
             {
-               iter.remove();
-               refs.add(ref);
+               remove(entry);
+               refs.add(entry.ref);
             }
          }
       }
@@ -127,93 +203,269 @@ public class ScheduledDeliveryHandlerImpl implements ScheduledDeliveryHandler
 
    public MessageReference removeReferenceWithID(final long id)
    {
-      synchronized (scheduledReferences)
+      synchronized (lock)
       {
-         Iterator<MessageReference> iter = scheduledReferences.iterator();
-         while (iter.hasNext())
+         if (scheduledCount == 0)
          {
-            MessageReference ref = iter.next();
-            if (ref.getMessage().getMessageID() == id)
+            return null;
+         }
+
+         if (entriesByID == null)
+         {
+            entriesByID = new HashMap<Long, ScheduledEntry>(scheduledCount * 4 / 3 + 1);
+
+            for (ScheduledEntry first : firsts)
             {
-               iter.remove();
-               return ref;
+               for (ScheduledEntry entry = first; entry != null; entry = entry.next)
+               {
+                  entriesByID.put(entry.ref.getMessage().getMessageID(), entry);
+               }
             }
          }
+
+         ScheduledEntry entry = entriesByID.get(id);
+
+         if (entry != null)
+         {
+            remove(entry);
+
+            return entry.ref;
+         }
       }
-      
+
       return null;
    }
 
-   private void scheduleDelivery(final ScheduledDeliveryRunnable runnable, final long deliveryTime)
+   /** Needs to be called with the lock monitor held */
+   private void start()
+   {
+      if (firsts == null)
+      {
+         firsts = new ScheduledEntry[ScheduledDeliveryHandlerImpl.WHEEL_SIZE];
+
+         lasts = new ScheduledEntry[ScheduledDeliveryHandlerImpl.WHEEL_SIZE];
+      }
+
+      // The buckets are empty, the wheel starts turning from now
+      processedTick = System.currentTimeMillis() / tick;
+
+      tickFuture = scheduledExecutor.scheduleAtFixedRate(new TickRunnable(), tick, tick, TimeUnit.MILLISECONDS);
+   }
+
+   /** Needs to be called with the lock monitor held */
+   private void remove(final ScheduledEntry entry)
+   {
+      unlink(entry);
+
+      if (entriesByID != null)
+      {
+         entriesByID.remove(entry.ref.getMessage().getMessageID());
+      }
+
+      scheduledCount--;
+
+      if (scheduledCount == 0)
+      {
+         // The tick task is cancelled the next time it runs
+         entriesByID = null;
+      }
+   }
+
+   /** Needs to be called with the lock monitor held */
+   private List<ScheduledEntry> sortedEntries()
+   {
+      List<ScheduledEntry> sorted = new ArrayList<ScheduledEntry>(scheduledCount);
+
+      if (scheduledCount > 0)
+      {
+         // Going through the buckets in the order they are due keeps the order of the references due on the same tick
+         for (int i = 1; i <= ScheduledDeliveryHandlerImpl.WHEEL_SIZE; i++)
+         {
+            int bucket = (int)((processedTick + i) & ScheduledDeliveryHandlerImpl.WHEEL_MASK);
+
+            for (ScheduledEntry entry = firsts[bucket]; entry != null; entry = entry.next)
+            {
+               sorted.add(entry);
+            }
+         }
+
+         // The sort is stable
+         Collections.sort(sorted, ScheduledDeliveryHandlerImpl.DEADLINE_COMPARATOR);
+      }
+
+      return sorted;
+   }
+
+   /**
+    * Takes the due references out of the buckets of the ticks elapsed since the last call, stopping the tick task if
+    * nothing is left. Needs to be called with the lock monitor held.
+    */
+   private void collectDueReferences(final List<MessageReference> references)
    {
-      long now = System.currentTimeMillis();
+      long currentTick = System.currentTimeMillis() / tick;
+
+      // After a full turn of the wheel every bucket has been gone through
+      long lastTick = Math.min(currentTick, processedTick + ScheduledDeliveryHandlerImpl.WHEEL_SIZE);
 
-      long delay = deliveryTime - now;
-      
-      if (delay < 0)
+      for (long t = processedTick + 1; t <= lastTick; t++)
       {
-         delay = 0;
+         ScheduledEntry entry = firsts[(int)(t & ScheduledDeliveryHandlerImpl.WHEEL_MASK)];
+
+         while (entry != null)
+         {
+            ScheduledEntry next = entry.next;
+
+            if (entry.deadline <= currentTick)
+            {
+               remove(entry);
+
+               MessageReference reference = entry.ref;
+
+               reference.setScheduledDeliveryTime(0);
+
+               references.add(reference);
+            }
+
+            entry = next;
+         }
       }
 
-      scheduledExecutor.schedule(runnable, delay, TimeUnit.MILLISECONDS);
+      processedTick = Math.max(processedTick, currentTick);
+
+      if (scheduledCount == 0 && tickFuture != null)
+      {
+         tickFuture.cancel(false);
+
+         tickFuture = null;
+      }
    }
 
-   private class ScheduledDeliveryRunnable implements Runnable
+   /** Needs to be called with the lock monitor held */
+   private void addFirst(final ScheduledEntry entry)
    {
-      private final long scheduledTime;
+      int bucket = entry.bucket;
+
+      entry.next = firsts[bucket];
 
-      public ScheduledDeliveryRunnable(final long scheduledTime)
+      if (firsts[bucket] == null)
       {
-         this.scheduledTime = scheduledTime;
+         lasts[bucket] = entry;
       }
+      else
+      {
+         firsts[bucket].prev = entry;
+      }
+
+      firsts[bucket] = entry;
+   }
+
+   /** Needs to be called with the lock monitor held */
+   private void addLast(final ScheduledEntry entry)
+   {
+      int bucket = entry.bucket;
+
+      entry.prev = lasts[bucket];
 
+      if (lasts[bucket] == null)
+      {
+         firsts[bucket] = entry;
+      }
+      else
+      {
+         lasts[bucket].next = entry;
+      }
+
+      lasts[bucket] = entry;
+   }
+
+   /** Needs to be called with the lock monitor held */
+   private void unlink(final ScheduledEntry entry)
+   {
+      int bucket = entry.bucket;
+
+      if (entry.prev == null)
+      {
+         firsts[bucket] = entry.next;
+      }
+      else
+      {
+         entry.prev.next = entry.next;
+      }
+
+      if (entry.next == null)
+      {
+         lasts[bucket] = entry.prev;
+      }
+      else
+      {
+         entry.next.prev = entry.prev;
+      }
+
+      entry.prev = null;
+      entry.next = null;
+   }
+
+   private static final class ScheduledEntry
+   {
+      final MessageReference ref;
+
+      // The tick the reference is due on
+      final long deadline;
+
+      final int bucket;
+
+      ScheduledEntry prev;
+
+      ScheduledEntry next;
+
+      ScheduledEntry(final MessageReference ref, final long deadline, final int bucket)
+      {
+         this.ref = ref;
+         this.deadline = deadline;
+         this.bucket = bucket;
+      }
+   }
+
+   private class TickRunnable implements Runnable
+   {
       public void run()
       {
-         HashSet<Queue> queues = new HashSet<Queue>();
-         LinkedList<MessageReference> references = new LinkedList<MessageReference>();
+         List<MessageReference> references = new ArrayList<MessageReference>();
 
          synchronized (lockDelivery)
          {
-            synchronized (scheduledReferences)
+            synchronized (lock)
             {
-               
-               Iterator<MessageReference> iter = scheduledReferences.iterator();
-               while (iter.hasNext())
-               {
-                  MessageReference reference = iter.next();
-                  if (reference.getScheduledDeliveryTime() <= this.scheduledTime)
-                  {
-                     iter.remove();
-   
-                     reference.setScheduledDeliveryTime(0);
-                     
-                     references.add(reference);
-                     
-                     queues.add(reference.getQueue());
-                  }
-               }
+               collectDueReferences(references);
             }
-            
-            for (MessageReference reference : references)
+
+            if (references.isEmpty())
             {
-               Queue queue = reference.getQueue();
-               synchronized (queue)
-               {
-                  queue.resetAllIterators();
-                  queue.addHead(reference);
-               }
+               return;
             }
-            
-            // Just to speed up GC
-            references.clear();
-            
-            for (Queue queue : queues)
+
+            // A handler belongs to a single queue, the references are delivered holding its lock only once
+            Queue queue = references.get(0).getQueue();
+
+            try
             {
                synchronized (queue)
                {
+                  queue.resetAllIterators();
+
+                  for (MessageReference reference : references)
+                  {
+                     queue.addHead(reference);
+                  }
+
                   queue.deliverAsync();
                }
             }
+            catch (Throwable e)
+            {
+               // An exception would stop the tick task for good
+               ScheduledDeliveryHandlerImpl.log.warn("Failed to deliver scheduled references to " + queue, e);
+            }
          }
       }
    }
@@ -57,6 +57,21 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
 
    public static final boolean DEFAULT_SEND_TO_DLA_ON_NO_ROUTE = false;
 
+   public static final boolean DEFAULT_SELECTOR_INDEX = false;
+
+   // the cached pages are strongly referenced, so they are bounded even when page-max-cache-size is large
+   public static final long DEFAULT_PAGE_CACHE_MAX_BYTES = 2 * AddressSettings.DEFAULT_PAGE_SIZE;
+
+   public static final PageCacheEvictionPolicy DEFAULT_PAGE_CACHE_EVICTION_POLICY = PageCacheEvictionPolicy.LRU;
+
+   public static final int DEFAULT_PAGE_READ_AHEAD = 0;
+
+   public static final double DEFAULT_PAGE_READ_AHEAD_THRESHOLD = 0.5;
+
+   public static final boolean DEFAULT_PAGE_INDEX = false;
+
+   public static final boolean DEFAULT_PAGE_COMPRESS = false;
+
    private AddressFullMessagePolicy addressFullMessagePolicy = null;
 
    private Long maxSizeBytes = null;
@@ -83,6 +98,20 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
 
    private Boolean sendToDLAOnNoRoute = null;
 
+   private Boolean selectorIndex = null;
+
+   private Long pageCacheMaxBytes = null;
+
+   private PageCacheEvictionPolicy pageCacheEvictionPolicy = null;
+
+   private Integer pageReadAhead = null;
+
+   private Double pageReadAheadThreshold = null;
+
+   private Boolean pageIndex = null;
+
+   private Boolean pageCompress = null;
+
    public boolean isLastValueQueue()
    {
       return lastValueQueue != null ? lastValueQueue : AddressSettings.DEFAULT_LAST_VALUE_QUEUE;
@@ -124,6 +153,68 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       this.pageMaxCache = pageMaxCache;
    }
 
+   public long getPageCacheMaxBytes()
+   {
+      return pageCacheMaxBytes != null ? pageCacheMaxBytes : AddressSettings.DEFAULT_PAGE_CACHE_MAX_BYTES;
+   }
+
+   public void setPageCacheMaxBytes(final long pageCacheMaxBytes)
+   {
+      this.pageCacheMaxBytes = pageCacheMaxBytes;
+   }
+
+   public PageCacheEvictionPolicy getPageCacheEvictionPolicy()
+   {
+      return pageCacheEvictionPolicy != null ? pageCacheEvictionPolicy
+                                            : AddressSettings.DEFAULT_PAGE_CACHE_EVICTION_POLICY;
+   }
+
+   public void setPageCacheEvictionPolicy(final PageCacheEvictionPolicy pageCacheEvictionPolicy)
+   {
+      this.pageCacheEvictionPolicy = pageCacheEvictionPolicy;
+   }
+
+   public int getPageReadAhead()
+   {
+      return pageReadAhead != null ? pageReadAhead : AddressSettings.DEFAULT_PAGE_READ_AHEAD;
+   }
+
+   public void setPageReadAhead(final int pageReadAhead)
+   {
+      this.pageReadAhead = pageReadAhead;
+   }
+
+   public double getPageReadAheadThreshold()
+   {
+      return pageReadAheadThreshold != null ? pageReadAheadThreshold
+                                           : AddressSettings.DEFAULT_PAGE_READ_AHEAD_THRESHOLD;
+   }
+
+   public void setPageReadAheadThreshold(final double pageReadAheadThreshold)
+   {
+      this.pageReadAheadThreshold = pageReadAheadThreshold;
+   }
+
+   public boolean isPageIndex()
+   {
+      return pageIndex != null ? pageIndex : AddressSettings.DEFAULT_PAGE_INDEX;
+   }
+
+   public void setPageIndex(final boolean pageIndex)
+   {
+      this.pageIndex = pageIndex;
+   }
+
+   public boolean isPageCompress()
+   {
+      return pageCompress != null ? pageCompress : AddressSettings.DEFAULT_PAGE_COMPRESS;
+   }
+
+   public void setPageCompress(final boolean pageCompress)
+   {
+      this.pageCompress = pageCompress;
+   }
+
    public long getMaxSizeBytes()
    {
       return maxSizeBytes != null ? maxSizeBytes : AddressSettings.DEFAULT_MAX_SIZE_BYTES;
@@ -205,6 +296,16 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       this.redistributionDelay = redistributionDelay;
    }
 
+   public boolean isSelectorIndex()
+   {
+      return selectorIndex != null ? selectorIndex : AddressSettings.DEFAULT_SELECTOR_INDEX;
+   }
+
+   public void setSelectorIndex(final boolean selectorIndex)
+   {
+      this.selectorIndex = selectorIndex;
+   }
+
    /**
     * merge 2 objects in to 1
     * @param merged
@@ -259,6 +360,34 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       {
          addressFullMessagePolicy = merged.addressFullMessagePolicy;
       }
+      if (selectorIndex == null)
+      {
+         selectorIndex = merged.selectorIndex;
+      }
+      if (pageCacheMaxBytes == null)
+      {
+         pageCacheMaxBytes = merged.pageCacheMaxBytes;
+      }
+      if (pageCacheEvictionPolicy == null)
+      {
+         pageCacheEvictionPolicy = merged.pageCacheEvictionPolicy;
+      }
+      if (pageReadAhead == null)
+      {
+         pageReadAhead = merged.pageReadAhead;
+      }
+      if (pageReadAheadThreshold == null)
+      {
+         pageReadAheadThreshold = merged.pageReadAheadThreshold;
+      }
+      if (pageIndex == null)
+      {
+         pageIndex = merged.pageIndex;
+      }
+      if (pageCompress == null)
+      {
+         pageCompress = merged.pageCompress;
+      }
    }
 
    /* (non-Javadoc)
@@ -300,6 +429,45 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       redistributionDelay = BufferHelper.readNullableLong(buffer);
 
       sendToDLAOnNoRoute = BufferHelper.readNullableBoolean(buffer);
+
+      // settings persisted by older versions end here
+      if (buffer.readableBytes() > 0)
+      {
+         selectorIndex = BufferHelper.readNullableBoolean(buffer);
+      }
+
+      if (buffer.readableBytes() > 0)
+      {
+         pageCacheMaxBytes = BufferHelper.readNullableLong(buffer);
+
+         SimpleString evictionPolicyStr = buffer.readNullableSimpleString();
+
+         if (evictionPolicyStr != null)
+         {
+            pageCacheEvictionPolicy = PageCacheEvictionPolicy.valueOf(evictionPolicyStr.toString());
+         }
+         else
+         {
+            pageCacheEvictionPolicy = null;
+         }
+      }
+
+      if (buffer.readableBytes() > 0)
+      {
+         pageReadAhead = BufferHelper.readNullableInteger(buffer);
+
+         pageReadAheadThreshold = BufferHelper.readNullableDouble(buffer);
+      }
+
+      if (buffer.readableBytes() > 0)
+      {
+         pageIndex = BufferHelper.readNullableBoolean(buffer);
+      }
+
+      if (buffer.readableBytes() > 0)
+      {
+         pageCompress = BufferHelper.readNullableBoolean(buffer);
+      }
    }
 
    /* (non-Javadoc)
@@ -320,7 +488,15 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
              SimpleString.sizeofNullableString(expiryAddress) +
              BufferHelper.sizeOfNullableBoolean(lastValueQueue) +
              BufferHelper.sizeOfNullableLong(redistributionDelay) +
-             BufferHelper.sizeOfNullableBoolean(sendToDLAOnNoRoute);
+             BufferHelper.sizeOfNullableBoolean(sendToDLAOnNoRoute) +
+             BufferHelper.sizeOfNullableBoolean(selectorIndex) +
+             BufferHelper.sizeOfNullableLong(pageCacheMaxBytes) +
+             BufferHelper.sizeOfNullableSimpleString(pageCacheEvictionPolicy != null ? pageCacheEvictionPolicy.toString()
+                                                                                    : null) +
+             BufferHelper.sizeOfNullableInteger(pageReadAhead) +
+             BufferHelper.sizeOfNullableDouble(pageReadAheadThreshold) +
+             BufferHelper.sizeOfNullableBoolean(pageIndex) +
+             BufferHelper.sizeOfNullableBoolean(pageCompress);
    }
 
    /* (non-Javadoc)
@@ -354,6 +530,21 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       BufferHelper.writeNullableLong(buffer, redistributionDelay);
 
       BufferHelper.writeNullableBoolean(buffer, sendToDLAOnNoRoute);
+
+      BufferHelper.writeNullableBoolean(buffer, selectorIndex);
+
+      BufferHelper.writeNullableLong(buffer, pageCacheMaxBytes);
+
+      buffer.writeNullableSimpleString(pageCacheEvictionPolicy != null ? new SimpleString(pageCacheEvictionPolicy.toString())
+                                                                      : null);
+
+      BufferHelper.writeNullableInteger(buffer, pageReadAhead);
+
+      BufferHelper.writeNullableDouble(buffer, pageReadAheadThreshold);
+
+      BufferHelper.writeNullableBoolean(buffer, pageIndex);
+
+      BufferHelper.writeNullableBoolean(buffer, pageCompress);
    }
 
    /* (non-Javadoc)
@@ -378,6 +569,13 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       result = prime * result + ((redeliveryDelay == null) ? 0 : redeliveryDelay.hashCode());
       result = prime * result + ((redistributionDelay == null) ? 0 : redistributionDelay.hashCode());
       result = prime * result + ((sendToDLAOnNoRoute == null) ? 0 : sendToDLAOnNoRoute.hashCode());
+      result = prime * result + ((selectorIndex == null) ? 0 : selectorIndex.hashCode());
+      result = prime * result + ((pageCacheMaxBytes == null) ? 0 : pageCacheMaxBytes.hashCode());
+      result = prime * result + ((pageCacheEvictionPolicy == null) ? 0 : pageCacheEvictionPolicy.hashCode());
+      result = prime * result + ((pageReadAhead == null) ? 0 : pageReadAhead.hashCode());
+      result = prime * result + ((pageReadAheadThreshold == null) ? 0 : pageReadAheadThreshold.hashCode());
+      result = prime * result + ((pageIndex == null) ? 0 : pageIndex.hashCode());
+      result = prime * result + ((pageCompress == null) ? 0 : pageCompress.hashCode());
       return result;
    }
 
@@ -485,6 +683,55 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       }
       else if (!sendToDLAOnNoRoute.equals(other.sendToDLAOnNoRoute))
          return false;
+      if (selectorIndex == null)
+      {
+         if (other.selectorIndex != null)
+            return false;
+      }
+      else if (!selectorIndex.equals(other.selectorIndex))
+         return false;
+      if (pageCacheMaxBytes == null)
+      {
+         if (other.pageCacheMaxBytes != null)
+            return false;
+      }
+      else if (!pageCacheMaxBytes.equals(other.pageCacheMaxBytes))
+         return false;
+      if (pageCacheEvictionPolicy == null)
+      {
+         if (other.pageCacheEvictionPolicy != null)
+            return false;
+      }
+      else if (!pageCacheEvictionPolicy.equals(other.pageCacheEvictionPolicy))
+         return false;
+      if (pageReadAhead == null)
+      {
+         if (other.pageReadAhead != null)
+            return false;
+      }
+      else if (!pageReadAhead.equals(other.pageReadAhead))
+         return false;
+      if (pageReadAheadThreshold == null)
+      {
+         if (other.pageReadAheadThreshold != null)
+            return false;
+      }
+      else if (!pageReadAheadThreshold.equals(other.pageReadAheadThreshold))
+         return false;
+      if (pageIndex == null)
+      {
+         if (other.pageIndex != null)
+            return false;
+      }
+      else if (!pageIndex.equals(other.pageIndex))
+         return false;
+      if (pageCompress == null)
+      {
+         if (other.pageCompress != null)
+            return false;
+      }
+      else if (!pageCompress.equals(other.pageCompress))
+         return false;
       return true;
    }
 
@@ -519,6 +766,20 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
              redistributionDelay +
              ", sendToDLAOnNoRoute=" +
              sendToDLAOnNoRoute +
+             ", selectorIndex=" +
+             selectorIndex +
+             ", pageCacheMaxBytes=" +
+             pageCacheMaxBytes +
+             ", pageCacheEvictionPolicy=" +
+             pageCacheEvictionPolicy +
+             ", pageReadAhead=" +
+             pageReadAhead +
+             ", pageReadAheadThreshold=" +
+             pageReadAheadThreshold +
+             ", pageIndex=" +
+             pageIndex +
+             ", pageCompress=" +
+             pageCompress +
              "]";
    }
 
@@ -0,0 +1,27 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.settings.impl;
+
+/**
+ * Which pages are evicted first from the page cache of an address once it's over its limits.
+ * <ul>
+ * <li>LRU: the page used least recently</li>
+ * <li>LFU: the page used least often while cached</li>
+ * <li>FURTHEST_NEXT_USE: pages no subscription will read again, then the page furthest ahead of the subscriptions</li>
+ * </ul>
+ */
+public enum PageCacheEvictionPolicy
+{
+   LRU, LFU, FURTHEST_NEXT_USE;
+}
@@ -157,4 +157,33 @@ public class BufferHelper
       }
    }
 
+   public static void writeNullableDouble(HornetQBuffer buffer, Double value)
+   {
+      buffer.writeBoolean(value != null);
+
+      if (value != null)
+      {
+         buffer.writeDouble(value.doubleValue());
+      }
+   }
+
+   public static int sizeOfNullableDouble(Double value)
+   {
+      return DataConstants.SIZE_BOOLEAN + (value != null ? DataConstants.SIZE_DOUBLE : 0);
+   }
+
+   public static Double readNullableDouble(HornetQBuffer buffer)
+   {
+      boolean isNotNull = buffer.readBoolean();
+
+      if (isNotNull)
+      {
+         return buffer.readDouble();
+      }
+      else
+      {
+         return null;
+      }
+   }
+
 }
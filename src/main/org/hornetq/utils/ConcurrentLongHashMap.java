@@ -0,0 +1,761 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.utils;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A concurrent map with primitive long keys.
+ * 
+ * Mappings are kept on chained entries holding the key as a primitive long, so there is no boxed key per mapping.
+ * This is meant for maps with millions of entries such as the records of the journal, where a
+ * ConcurrentHashMap<Long, V> spends a good part of its memory on the boxed keys.
+ * 
+ * The map is split in segments, and is organized as the segments of {@link java.util.concurrent.ConcurrentHashMap}:
+ * writes take the lock of their segment, while reads don't take any lock. The entries have final keys and volatile
+ * values and the tables are volatile, so a reader always sees a consistent chain. Null values are not supported.
+ * 
+ * The {@link Map} methods box the keys; use the methods taking a primitive long and {@link #entryCursor()} on hot
+ * paths. Iterators work on a snapshot of one segment at a time and never throw ConcurrentModificationException.
+ */
+public class ConcurrentLongHashMap<V> extends AbstractMap<Long, V>
+{
+   // Constants -----------------------------------------------------
+
+   private static final int DEFAULT_INITIAL_CAPACITY = 256;
+
+   private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+   private static final float LOAD_FACTOR = 0.75f;
+
+   // Attributes ----------------------------------------------------
+
+   private final Segment<V>[] segments;
+
+   private final int segmentShift;
+
+   private Set<Map.Entry<Long, V>> entrySet;
+
+   // Constructors --------------------------------------------------
+
+   public ConcurrentLongHashMap()
+   {
+      this(DEFAULT_INITIAL_CAPACITY, DEFAULT_CONCURRENCY_LEVEL);
+   }
+
+   public ConcurrentLongHashMap(final int initialCapacity)
+   {
+      this(initialCapacity, DEFAULT_CONCURRENCY_LEVEL);
+   }
+
+   @SuppressWarnings("unchecked")
+   public ConcurrentLongHashMap(final int initialCapacity, final int concurrencyLevel)
+   {
+      if (initialCapacity < 0 || concurrencyLevel <= 0)
+      {
+         throw new IllegalArgumentException("initialCapacity=" + initialCapacity +
+                                            ", concurrencyLevel=" +
+                                            concurrencyLevel);
+      }
+
+      int numberOfSegments = 1;
+      int shift = 32;
+
+      while (numberOfSegments < concurrencyLevel)
+      {
+         numberOfSegments <<= 1;
+         shift--;
+      }
+
+      segmentShift = shift;
+
+      segments = new Segment[numberOfSegments];
+
+      int segmentCapacity = ConcurrentLongHashMap.tableSizeFor(initialCapacity / numberOfSegments);
+
+      for (int i = 0; i < numberOfSegments; i++)
+      {
+         segments[i] = new Segment<V>(segmentCapacity);
+      }
+   }
+
+   // Public --------------------------------------------------------
+
+   public V get(final long key)
+   {
+      int hash = ConcurrentLongHashMap.hash(key);
+      return segmentFor(hash).get(key, hash);
+   }
+
+   public boolean containsKey(final long key)
+   {
+      return get(key) != null;
+   }
+
+   public V put(final long key, final V value)
+   {
+      int hash = ConcurrentLongHashMap.hash(key);
+      return segmentFor(hash).put(key, ConcurrentLongHashMap.checkValue(value), hash, false);
+   }
+
+   public V putIfAbsent(final long key, final V value)
+   {
+      int hash = ConcurrentLongHashMap.hash(key);
+      return segmentFor(hash).put(key, ConcurrentLongHashMap.checkValue(value), hash, true);
+   }
+
+   public V remove(final long key)
+   {
+      int hash = ConcurrentLongHashMap.hash(key);
+      return segmentFor(hash).remove(key, null, hash);
+   }
+
+   /**
+    * Removes the key only if it is mapped to the given value (compared by identity).
+    */
+   public boolean remove(final long key, final V value)
+   {
+      int hash = ConcurrentLongHashMap.hash(key);
+      return segmentFor(hash).remove(key, ConcurrentLongHashMap.checkValue(value), hash) != null;
+   }
+
+   /**
+    * Copies all the mappings of another map, without boxing the keys
+    */
+   public void putAll(final ConcurrentLongHashMap<? extends V> other)
+   {
+      EntryCursor<? extends V> cursor = other.entryCursor();
+
+      while (cursor.next())
+      {
+         put(cursor.getKey(), cursor.getValue());
+      }
+   }
+
+   /**
+    * @return a cursor over the mappings that doesn't box the keys, working on a snapshot of one segment at a time
+    */
+   public EntryCursor<V> entryCursor()
+   {
+      return new EntryCursor<V>(this);
+   }
+
+   /**
+    * @return a snapshot of the keys, with no particular order
+    */
+   public long[] keys()
+   {
+      long[] keys = new long[size()];
+
+      int pos = 0;
+
+      EntryCursor<V> cursor = entryCursor();
+
+      while (cursor.next())
+      {
+         if (pos == keys.length)
+         {
+            long[] newKeys = new long[keys.length * 2 + 1];
+            System.arraycopy(keys, 0, newKeys, 0, keys.length);
+            keys = newKeys;
+         }
+         keys[pos++] = cursor.getKey();
+      }
+
+      if (pos < keys.length)
+      {
+         long[] newKeys = new long[pos];
+         System.arraycopy(keys, 0, newKeys, 0, pos);
+         keys = newKeys;
+      }
+
+      return keys;
+   }
+
+   /**
+    * @return a snapshot of the values, with no particular order
+    */
+   public List<V> valuesSnapshot()
+   {
+      List<V> values = new ArrayList<V>(size());
+
+      EntryCursor<V> cursor = entryCursor();
+
+      while (cursor.next())
+      {
+         values.add(cursor.getValue());
+      }
+
+      return values;
+   }
+
+   @Override
+   public int size()
+   {
+      long size = 0;
+
+      for (Segment<V> segment : segments)
+      {
+         size += segment.count;
+      }
+
+      return (int)Math.min(size, Integer.MAX_VALUE);
+   }
+
+   @Override
+   public boolean isEmpty()
+   {
+      for (Segment<V> segment : segments)
+      {
+         if (segment.count != 0)
+         {
+            return false;
+         }
+      }
+
+      return true;
+   }
+
+   @Override
+   public void clear()
+   {
+      for (Segment<V> segment : segments)
+      {
+         segment.clear();
+      }
+   }
+
+   // Map implementation (boxing) -----------------------------------
+
+   @Override
+   public V get(final Object key)
+   {
+      return key instanceof Long ? get(((Long)key).longValue()) : null;
+   }
+
+   @Override
+   public boolean containsKey(final Object key)
+   {
+      return get(key) != null;
+   }
+
+   @Override
+   public V put(final Long key, final V value)
+   {
+      return put(key.longValue(), value);
+   }
+
+   @Override
+   public V remove(final Object key)
+   {
+      return key instanceof Long ? remove(((Long)key).longValue()) : null;
+   }
+
+   @Override
+   public Set<Map.Entry<Long, V>> entrySet()
+   {
+      if (entrySet == null)
+      {
+         entrySet = new EntrySet();
+      }
+
+      return entrySet;
+   }
+
+   // Private -------------------------------------------------------
+
+   private Segment<V> segmentFor(final int hash)
+   {
+      // The high bits select the segment, the low bits the bucket inside the segment
+      return segments[segmentShift == 32 ? 0 : hash >>> segmentShift];
+   }
+
+   private static int hash(final long key)
+   {
+      // Finalizer of MurmurHash3, IDs are usually sequential so we need to spread them
+      long h = key;
+      h ^= h >>> 33;
+      h *= 0xff51afd7ed558ccdL;
+      h ^= h >>> 33;
+      h *= 0xc4ceb9fe1a85ec53L;
+      h ^= h >>> 33;
+      return (int)h;
+   }
+
+   private static int tableSizeFor(final int capacity)
+   {
+      int size = 16;
+
+      while (size * LOAD_FACTOR < capacity)
+      {
+         size <<= 1;
+      }
+
+      return size;
+   }
+
+   private static <V> V checkValue(final V value)
+   {
+      if (value == null)
+      {
+         throw new NullPointerException("null values are not supported");
+      }
+
+      return value;
+   }
+
+   @SuppressWarnings("unchecked")
+   private static <V> V cast(final Object value)
+   {
+      return (V)value;
+   }
+
+   // Inner classes -------------------------------------------------
+
+   /**
+    * A cursor over the mappings of the map that doesn't box the keys:
+    * <pre>
+    * while (cursor.next())
+    * {
+    *    use(cursor.getKey(), cursor.getValue());
+    * }
+    * </pre>
+    * It works on a snapshot of one segment at a time, so it never throws ConcurrentModificationException.
+    */
+   public static final class EntryCursor<V>
+   {
+      private final ConcurrentLongHashMap<? extends V> map;
+
+      private int segment = -1;
+
+      private long[] keysCopy = new long[0];
+
+      private Object[] valuesCopy = new Object[0];
+
+      private int count;
+
+      private int pos = -1;
+
+      EntryCursor(final ConcurrentLongHashMap<? extends V> map)
+      {
+         this.map = map;
+      }
+
+      /**
+       * Moves to the next mapping.
+       * @return false if there are no more mappings
+       */
+      public boolean next()
+      {
+         if (pos >= 0 && pos < count)
+         {
+            // don't hold the values of the snapshot longer than needed
+            valuesCopy[pos] = null;
+         }
+
+         pos++;
+
+         while (pos >= count)
+         {
+            if (segment + 1 == map.segments.length)
+            {
+               return false;
+            }
+
+            map.segments[++segment].copyEntries(this);
+
+            pos = 0;
+         }
+
+         return true;
+      }
+
+      public long getKey()
+      {
+         return keysCopy[pos];
+      }
+
+      public V getValue()
+      {
+         return ConcurrentLongHashMap.<V> cast(valuesCopy[pos]);
+      }
+
+      boolean hasNext()
+      {
+         while (pos + 1 >= count)
+         {
+            if (segment + 1 == map.segments.length)
+            {
+               return false;
+            }
+
+            map.segments[++segment].copyEntries(this);
+
+            pos = -1;
+         }
+
+         return true;
+      }
+   }
+
+   private static final class HashEntry<V>
+   {
+      final long key;
+
+      final int hash;
+
+      volatile V value;
+
+      final HashEntry<V> next;
+
+      HashEntry(final long key, final int hash, final HashEntry<V> next, final V value)
+      {
+         this.key = key;
+         this.hash = hash;
+         this.next = next;
+         this.value = value;
+      }
+   }
+
+   /**
+    * A hash table with chained entries. Writes are done under the lock of the segment, and publish the changes by
+    * writing the volatile count. Reads don't lock: they read the count first, and the entry chains are never changed
+    * in place other than their values, so a reader sees a consistent chain even during a write.
+    */
+   private static final class Segment<V>
+   {
+      volatile int count;
+
+      volatile HashEntry<V>[] table;
+
+      int threshold;
+
+      Segment(final int capacity)
+      {
+         setTable(Segment.<V> newTable(capacity));
+      }
+
+      V get(final long key, final int hash)
+      {
+         // read-volatile
+         if (count != 0)
+         {
+            HashEntry<V>[] tab = table;
+
+            HashEntry<V> e = tab[hash & tab.length - 1];
+
+            while (e != null)
+            {
+               if (e.key == key)
+               {
+                  V value = e.value;
+
+                  if (value != null)
+                  {
+                     return value;
+                  }
+
+                  // the entry may have been seen before its constructor finished
+                  return readValueUnderLock(e);
+               }
+
+               e = e.next;
+            }
+         }
+
+         return null;
+      }
+
+      synchronized V readValueUnderLock(final HashEntry<V> e)
+      {
+         return e.value;
+      }
+
+      synchronized V put(final long key, final V value, final int hash, final boolean onlyIfAbsent)
+      {
+         int c = count;
+
+         if (c++ > threshold)
+         {
+            rehash();
+         }
+
+         HashEntry<V>[] tab = table;
+
+         int index = hash & tab.length - 1;
+
+         HashEntry<V> first = tab[index];
+
+         HashEntry<V> e = first;
+
+         while (e != null && e.key != key)
+         {
+            e = e.next;
+         }
+
+         V oldValue;
+
+         if (e != null)
+         {
+            oldValue = e.value;
+
+            if (!onlyIfAbsent)
+            {
+               e.value = value;
+            }
+         }
+         else
+         {
+            oldValue = null;
+
+            tab[index] = new HashEntry<V>(key, hash, first, value);
+
+            // write-volatile
+            count = c;
+         }
+
+         return oldValue;
+      }
+
+      /** If expected is not null, the key is only removed if it's mapped to it */
+      synchronized V remove(final long key, final V expected, final int hash)
+      {
+         HashEntry<V>[] tab = table;
+
+         int index = hash & tab.length - 1;
+
+         HashEntry<V> first = tab[index];
+
+         HashEntry<V> e = first;
+
+         while (e != null && e.key != key)
+         {
+            e = e.next;
+         }
+
+         if (e == null)
+         {
+            return null;
+         }
+
+         V oldValue = e.value;
+
+         if (expected != null && expected != oldValue)
+         {
+            return null;
+         }
+
+         // The entries before the removed one are cloned, as the chains are never changed in place
+         HashEntry<V> newFirst = e.next;
+
+         for (HashEntry<V> p = first; p != e; p = p.next)
+         {
+            newFirst = new HashEntry<V>(p.key, p.hash, newFirst, p.value);
+         }
+
+         tab[index] = newFirst;
+
+         // write-volatile
+         count = count - 1;
+
+         return oldValue;
+      }
+
+      synchronized void clear()
+      {
+         if (count != 0)
+         {
+            setTable(Segment.<V> newTable(16));
+
+            // write-volatile
+            count = 0;
+         }
+      }
+
+      synchronized void copyEntries(final EntryCursor<?> cursor)
+      {
+         if (cursor.keysCopy.length < count)
+         {
+            cursor.keysCopy = new long[count];
+            cursor.valuesCopy = new Object[count];
+         }
+
+         int pos = 0;
+
+         for (HashEntry<V> e : table)
+         {
+            for (; e != null; e = e.next)
+            {
+               cursor.keysCopy[pos] = e.key;
+               cursor.valuesCopy[pos] = e.value;
+               pos++;
+            }
+         }
+
+         cursor.count = pos;
+      }
+
+      private void rehash()
+      {
+         HashEntry<V>[] oldTable = table;
+
+         HashEntry<V>[] newTable = Segment.<V> newTable(oldTable.length << 1);
+
+         int mask = newTable.length - 1;
+
+         for (HashEntry<V> e : oldTable)
+         {
+            if (e == null)
+            {
+               continue;
+            }
+
+            // The trailing entries going to the same bucket are reused, the others are cloned so the chains the
+            // readers may be going through are not changed
+            HashEntry<V> lastRun = e;
+
+            int lastIndex = e.hash & mask;
+
+            for (HashEntry<V> last = e.next; last != null; last = last.next)
+            {
+               int k = last.hash & mask;
+
+               if (k != lastIndex)
+               {
+                  lastIndex = k;
+                  lastRun = last;
+               }
+            }
+
+            newTable[lastIndex] = lastRun;
+
+            for (HashEntry<V> p = e; p != lastRun; p = p.next)
+            {
+               int k = p.hash & mask;
+
+               newTable[k] = new HashEntry<V>(p.key, p.hash, newTable[k], p.value);
+            }
+         }
+
+         setTable(newTable);
+      }
+
+      private void setTable(final HashEntry<V>[] newTable)
+      {
+         threshold = (int)(newTable.length * LOAD_FACTOR);
+         table = newTable;
+      }
+
+      @SuppressWarnings("unchecked")
+      private static <V> HashEntry<V>[] newTable(final int capacity)
+      {
+         return new HashEntry[capacity];
+      }
+   }
+
+   private final class EntrySet extends AbstractSet<Map.Entry<Long, V>>
+   {
+      @Override
+      public Iterator<Map.Entry<Long, V>> iterator()
+      {
+         return new EntryIterator<V>(ConcurrentLongHashMap.this);
+      }
+
+      @Override
+      public int size()
+      {
+         return ConcurrentLongHashMap.this.size();
+      }
+
+      @Override
+      public boolean contains(final Object o)
+      {
+         if (!(o instanceof Map.Entry))
+         {
+            return false;
+         }
+         Map.Entry<?, ?> entry = (Map.Entry<?, ?>)o;
+         V value = get(entry.getKey());
+         return value != null && value.equals(entry.getValue());
+      }
+
+      @Override
+      public boolean remove(final Object o)
+      {
+         if (!contains(o))
+         {
+            return false;
+         }
+         return ConcurrentLongHashMap.this.remove(((Map.Entry<?, ?>)o).getKey()) != null;
+      }
+
+      @Override
+      public void clear()
+      {
+         ConcurrentLongHashMap.this.clear();
+      }
+   }
+
+   /** Iterates over a snapshot of each segment, boxing the keys */
+   private static final class EntryIterator<V> implements Iterator<Map.Entry<Long, V>>
+   {
+      private final ConcurrentLongHashMap<? extends V> map;
+
+      private final EntryCursor<? extends V> cursor;
+
+      private Map.Entry<Long, V> last;
+
+      EntryIterator(final ConcurrentLongHashMap<? extends V> map)
+      {
+         this.map = map;
+         cursor = map.entryCursor();
+      }
+
+      public boolean hasNext()
+      {
+         return cursor.hasNext();
+      }
+
+      public Map.Entry<Long, V> next()
+      {
+         if (!cursor.next())
+         {
+            throw new NoSuchElementException();
+         }
+
+         last = new SimpleImmutableEntry<Long, V>(cursor.getKey(), cursor.getValue());
+
+         return last;
+      }
+
+      public void remove()
+      {
+         if (last == null)
+         {
+            throw new IllegalStateException();
+         }
+
+         map.remove(last.getKey().longValue());
+
+         last = null;
+      }
+   }
+}
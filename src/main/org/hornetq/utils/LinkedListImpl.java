@@ -14,6 +14,8 @@
 package org.hornetq.utils;
 
 import java.lang.reflect.Array;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
 import org.hornetq.core.logging.Logger;
@@ -22,6 +24,10 @@ import org.hornetq.core.logging.Logger;
  * A linked list implementation which allows multiple iterators to exist at the same time on the queue, and which see any
  * elements added or removed from the queue either directly or via iterators.
  *
+ * When created with an {@link IDExtractor} elements can be found or removed by ID. The index of the nodes by ID is
+ * built on the first of those calls and kept up to date from then on, so it costs nothing (one map entry per element
+ * otherwise) on lists that are never looked up by ID. It's dropped again once the list is empty.
+ *
  * This class is not thread safe.
  *
  * @author Tim Fox
@@ -47,15 +53,29 @@ public class LinkedListImpl<E> implements LinkedList<E>
 
    private int nextIndex;
 
+   private final IDExtractor<E> idExtractor;
+
+   // null until the list is looked up by ID
+   private Map<Long, Node<E>> nodesByID;
+
    public LinkedListImpl()
+   {
+      this(null);
+   }
+
+   public LinkedListImpl(final IDExtractor<E> idExtractor)
    {
       iters = createIteratorArray(INITIAL_ITERATOR_ARRAY_SIZE);
+
+      this.idExtractor = idExtractor;
    }
 
    public void addHead(E e)
    {
       Node<E> node = new Node<E>(e);
-      
+
+      indexNode(node);
+
       node.next = head.next;
 
       node.prev = head;
@@ -85,6 +105,8 @@ public class LinkedListImpl<E> implements LinkedList<E>
       {
          Node<E> node = new Node<E>(e);
 
+         indexNode(node);
+
          node.prev = tail;
 
          tail.next = node;
@@ -116,6 +138,39 @@ public class LinkedListImpl<E> implements LinkedList<E>
       tail = head.next = null;
 
       size = 0;
+
+      nodesByID = null;
+   }
+
+   /**
+    * @return the element with the given ID, or null if there is none
+    * @throws IllegalStateException if the list was not created with an {@link IDExtractor}
+    */
+   public E getWithID(final long id)
+   {
+      Node<E> node = getIndex().get(id);
+
+      return node == null ? null : node.val;
+   }
+
+   /**
+    * Removes the element with the given ID, iterators are updated as if it was removed through an iterator.
+    * 
+    * @return the removed element, or null if there is none
+    * @throws IllegalStateException if the list was not created with an {@link IDExtractor}
+    */
+   public E removeWithID(final long id)
+   {
+      Node<E> node = getIndex().get(id);
+
+      if (node == null)
+      {
+         return null;
+      }
+
+      removeAfter(node.prev);
+
+      return node.val;
    }
 
    public int size()
@@ -159,10 +214,49 @@ public class LinkedListImpl<E> implements LinkedList<E>
       return (Iterator[])Array.newInstance(Iterator.class, size);
    }
 
+   private Map<Long, Node<E>> getIndex()
+   {
+      if (idExtractor == null)
+      {
+         throw new IllegalStateException("This list is not indexed by ID");
+      }
+
+      if (nodesByID == null)
+      {
+         nodesByID = new HashMap<Long, Node<E>>();
+
+         for (Node<E> node = head.next; node != null; node = node.next)
+         {
+            indexNode(node);
+         }
+      }
+
+      return nodesByID;
+   }
+
+   private void indexNode(final Node<E> node)
+   {
+      if (nodesByID != null)
+      {
+         nodesByID.put(idExtractor.getID(node.val), node);
+      }
+   }
+
    private void removeAfter(Node<E> node)
    {
       Node<E> toRemove = node.next;
 
+      if (nodesByID != null)
+      {
+         long id = idExtractor.getID(toRemove.val);
+
+         // Only if it's the indexed node, in case the ID was reused
+         if (nodesByID.get(id) == toRemove)
+         {
+            nodesByID.remove(id);
+         }
+      }
+
       node.next = toRemove.next;
 
       if (toRemove.next != null)
@@ -177,6 +271,11 @@ public class LinkedListImpl<E> implements LinkedList<E>
 
       size--;
 
+      if (size == 0)
+      {
+         nodesByID = null;
+      }
+
       if (toRemove.iterCount != 0)
       {
          LinkedListImpl.this.nudgeIterators(toRemove);
@@ -37,5 +37,15 @@ public interface PriorityLinkedList<T>
 
    LinkedListIterator<T> iterator();
 
+   /**
+    * Only supported by lists created with an {@link IDExtractor}
+    */
+   T getWithID(long id);
+
+   /**
+    * Only supported by lists created with an {@link IDExtractor}
+    */
+   T removeWithID(long id);
+
    boolean isEmpty();
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter updated by many threads at once, as the memory used by all the addresses of a server.
+ * <p>
+ * Each thread adds to one of several stripes, picked by its id, and a stripe is folded into the base value once it
+ * holds more than the slack in either direction. Threads on different stripes don't contend, and the base value is
+ * only written once every slack bytes per stripe.
+ * </p>
+ * <p>
+ * {@link #getApproximate()} only reads the base value, so it may differ from the real value by up to the number of
+ * stripes times the slack. {@link #sum()} adds up the stripes as well.
+ * </p>
+ */
+public class StripedCounter
+{
+   // Constants -----------------------------------------------------
+
+   // the longs between two stripes, so stripes used by different threads are not on the same cache line
+   private static final int PADDING = 16;
+
+   // Attributes ----------------------------------------------------
+
+   private final AtomicLong base = new AtomicLong(0);
+
+   private final AtomicLongArray stripes;
+
+   private final int mask;
+
+   private final long slack;
+
+   // Constructors --------------------------------------------------
+
+   /**
+    * @param stripes number of stripes, rounded up to a power of two
+    * @param slack how much a stripe can hold before it's folded into the base value
+    */
+   public StripedCounter(final int stripes, final long slack)
+   {
+      int size = 1;
+      while (size < stripes)
+      {
+         size <<= 1;
+      }
+
+      this.stripes = new AtomicLongArray(size * StripedCounter.PADDING);
+      mask = size - 1;
+      this.slack = Math.max(1, slack);
+   }
+
+   // Public --------------------------------------------------------
+
+   /**
+    * @return the value after the add, as given by {@link #getApproximate()}
+    */
+   public long add(final long delta)
+   {
+      int index = ((int)Thread.currentThread().getId() & mask) * StripedCounter.PADDING;
+
+      long value = stripes.addAndGet(index, delta);
+
+      if (value >= slack || value <= -slack)
+      {
+         // other threads on the same stripe may add in between, whatever is there is moved to the base
+         return base.addAndGet(stripes.getAndSet(index, 0));
+      }
+
+      return base.get();
+   }
+
+   public long getApproximate()
+   {
+      return base.get();
+   }
+
+   /**
+    * The value including the stripes. It's not a snapshot, values being folded while it's calculated are missed so
+    * it may be lower than the real value while the counter is updated.
+    */
+   public long sum()
+   {
+      long sum = base.get();
+
+      for (int i = 0; i < stripes.length(); i += StripedCounter.PADDING)
+      {
+         sum += stripes.get(i);
+      }
+
+      return sum;
+   }
+
+   public int getStripes()
+   {
+      return mask + 1;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "StripedCounter(base=" + base.get() + ", stripes=" + getStripes() + ", slack=" + slack + ")";
+   }
+}
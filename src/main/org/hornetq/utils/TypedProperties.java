@@ -32,6 +32,7 @@ import java.util.Set;
 import java.util.Map.Entry;
 
 import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.HornetQBuffers;
 import org.hornetq.api.core.PropertyConversionException;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.logging.Logger;
@@ -55,8 +56,18 @@ public class TypedProperties
 
    private static final SimpleString HQ_PROPNAME = new SimpleString("_HQ_");
 
+   // Properties are looked up on their encoding while there are up to this many of them, or until they were looked
+   // up this many times. After that they are decoded into the map
+   private static final int MAX_ENCODED_LOOKUPS = 8;
+
    private Map<SimpleString, PropertyValue> properties;
 
+   // The number of properties followed by the properties as they were decoded, kept until they are needed as a map.
+   // The array is never changed so it can be shared by copies
+   private byte[] encodedProperties;
+
+   private byte encodedLookups;
+
    private volatile int size;
 
    private boolean internalProperties;
@@ -65,19 +76,28 @@ public class TypedProperties
    {
    }
 
-   public int getMemoryOffset()
+   public synchronized int getMemoryOffset()
    {
       // The estimate is basically the encode size + 2 object references for each entry in the map
       // Note we don't include the attributes or anything else since they already included in the memory estimate
       // of the ServerMessage
 
+      if (encodedProperties != null)
+      {
+         return size + 2 * DataConstants.SIZE_INT * TypedProperties.readInt(encodedProperties, 0);
+      }
+
       return properties == null ? 0 : size + 2 * DataConstants.SIZE_INT * properties.size();
    }
 
    public TypedProperties(final TypedProperties other)
    {
-      properties = other.properties == null ? null : new HashMap<SimpleString, PropertyValue>(other.properties);
-      size = other.size;
+      synchronized (other)
+      {
+         properties = other.properties == null ? null : new HashMap<SimpleString, PropertyValue>(other.properties);
+         encodedProperties = other.encodedProperties;
+         size = other.size;
+      }
    }
 
    public boolean hasInternalProperties()
@@ -153,7 +173,14 @@ public class TypedProperties
 
    public void putTypedProperties(final TypedProperties otherProps)
    {
-      if (otherProps == null || otherProps.properties == null)
+      if (otherProps == null)
+      {
+         return;
+      }
+
+      otherProps.decodeEncoded();
+
+      if (otherProps.properties == null)
       {
          return;
       }
@@ -429,15 +456,20 @@ public class TypedProperties
       return doRemoveProperty(key);
    }
 
-   public boolean containsProperty(final SimpleString key)
+   public synchronized boolean containsProperty(final SimpleString key)
    {
       if (size == 0)
       {
          return false;
 
       }
+      else if (lookupOnEncoding())
+      {
+         return findEncodedValue(key) >= 0;
+      }
       else
       {
+         decodeEncoded();
          return properties.containsKey(key);
       }
    }
@@ -450,116 +482,44 @@ public class TypedProperties
       }
       else
       {
+         decodeEncoded();
          return properties.keySet();
       }
    }
 
+   /**
+    * The properties are only copied as they are encoded, and read from that copy until they are changed or iterated.
+    * Messages being routed, paged or delivered then only decode the few properties used on the way, if any.
+    */
    public synchronized void decode(final HornetQBuffer buffer)
    {
       byte b = buffer.readByte();
 
+      encodedProperties = null;
+
       if (b == DataConstants.NULL)
       {
          properties = null;
       }
       else
       {
-         int numHeaders = buffer.readInt();
-
-         properties = new HashMap<SimpleString, PropertyValue>(numHeaders);
-         size = 0;
+         encodedProperties = new byte[encodedLength(buffer)];
+         buffer.readBytes(encodedProperties);
+         encodedLookups = 0;
 
-         for (int i = 0; i < numHeaders; i++)
-         {
-            int len = buffer.readInt();
-            byte[] data = new byte[len];
-            buffer.readBytes(data);
-            SimpleString key = new SimpleString(data);
-
-            byte type = buffer.readByte();
-
-            PropertyValue val;
-
-            switch (type)
-            {
-               case NULL:
-               {
-                  val = new NullValue();
-                  doPutValue(key, val);
-                  break;
-               }
-               case CHAR:
-               {
-                  val = new CharValue(buffer);
-                  doPutValue(key, val);
-                  break;
-               }
-               case BOOLEAN:
-               {
-                  val = new BooleanValue(buffer);
-                  doPutValue(key, val);
-                  break;
-               }
-               case BYTE:
-               {
-                  val = new ByteValue(buffer);
-                  doPutValue(key, val);
-                  break;
-               }
-               case BYTES:
-               {
-                  val = new BytesValue(buffer);
-                  doPutValue(key, val);
-                  break;
-               }
-               case SHORT:
-               {
-                  val = new ShortValue(buffer);
-                  doPutValue(key, val);
-                  break;
-               }
-               case INT:
-               {
-                  val = new IntValue(buffer);
-                  doPutValue(key, val);
-                  break;
-               }
-               case LONG:
-               {
-                  val = new LongValue(buffer);
-                  doPutValue(key, val);
-                  break;
-               }
-               case FLOAT:
-               {
-                  val = new FloatValue(buffer);
-                  doPutValue(key, val);
-                  break;
-               }
-               case DOUBLE:
-               {
-                  val = new DoubleValue(buffer);
-                  doPutValue(key, val);
-                  break;
-               }
-               case STRING:
-               {
-                  val = new StringValue(buffer);
-                  doPutValue(key, val);
-                  break;
-               }
-               default:
-               {
-                  throw new IllegalArgumentException("Invalid type: " + type);
-               }
-            }
-         }
+         properties = null;
+         size = encodedProperties.length - DataConstants.SIZE_INT;
       }
    }
 
    public synchronized void encode(final HornetQBuffer buffer)
    {
-      if (properties == null)
+      if (encodedProperties != null)
+      {
+         buffer.writeByte(DataConstants.NOT_NULL);
+         buffer.writeBytes(encodedProperties);
+      }
+      else if (properties == null)
       {
          buffer.writeByte(DataConstants.NULL);
       }
@@ -583,7 +543,7 @@ public class TypedProperties
 
    public int getEncodeSize()
    {
-      if (properties == null)
+      if (properties == null && encodedProperties == null)
       {
          return DataConstants.SIZE_BYTE;
       }
@@ -595,6 +555,8 @@ public class TypedProperties
 
    public void clear()
    {
+      decodeEncoded();
+
       if (properties != null)
       {
          properties.clear();
@@ -604,6 +566,8 @@ public class TypedProperties
    @Override
    public String toString()
    {
+      decodeEncoded();
+
       return "TypedProperties[" + properties + "]";
    }
 
@@ -611,6 +575,8 @@ public class TypedProperties
 
    private void checkCreateProperties()
    {
+      decodeEncoded();
+
       if (properties == null)
       {
          properties = new HashMap<SimpleString, PropertyValue>();
@@ -637,6 +603,8 @@ public class TypedProperties
 
    private synchronized Object doRemoveProperty(final SimpleString key)
    {
+      decodeEncoded();
+
       if (properties == null)
       {
          return null;
@@ -663,6 +631,11 @@ public class TypedProperties
          return null;
       }
 
+      if (encodedProperties != null)
+      {
+         return getEncodedProperty(key);
+      }
+
       PropertyValue val = properties.get(key);
 
       if (val == null)
@@ -675,6 +648,295 @@ public class TypedProperties
       }
    }
 
+   private Object getEncodedProperty(final Object key)
+   {
+      if (key instanceof SimpleString && lookupOnEncoding())
+      {
+         int index = findEncodedValue((SimpleString)key);
+
+         if (index < 0)
+         {
+            return null;
+         }
+
+         HornetQBuffer buffer = HornetQBuffers.wrappedBuffer(encodedProperties);
+
+         buffer.readerIndex(index);
+
+         return readValue(buffer).getValue();
+      }
+
+      decodeEncoded();
+
+      PropertyValue val = properties.get(key);
+
+      return val == null ? null : val.getValue();
+   }
+
+   /**
+    * Replaces the encoded properties by the map they hold, before the properties are changed or iterated.
+    */
+   private synchronized void decodeEncoded()
+   {
+      if (encodedProperties == null)
+      {
+         return;
+      }
+
+      HornetQBuffer buffer = HornetQBuffers.wrappedBuffer(encodedProperties);
+
+      // copies don't inherit the flag, and decode has already set it
+      boolean internal = internalProperties;
+
+      int numHeaders = buffer.readInt();
+
+      properties = new HashMap<SimpleString, PropertyValue>(numHeaders);
+      size = 0;
+
+      for (int i = 0; i < numHeaders; i++)
+      {
+         int len = buffer.readInt();
+         byte[] data = new byte[len];
+         buffer.readBytes(data);
+         SimpleString key = new SimpleString(data);
+
+         doPutValue(key, readValue(buffer));
+      }
+
+      internalProperties = internal;
+
+      encodedProperties = null;
+   }
+
+   /**
+    * @return the length of the number of properties and the properties encoded from the reader index of the buffer
+    */
+   private int encodedLength(final HornetQBuffer buffer)
+   {
+      int start = buffer.readerIndex();
+
+      int numHeaders = buffer.getInt(start);
+
+      int index = start + DataConstants.SIZE_INT;
+
+      for (int i = 0; i < numHeaders; i++)
+      {
+         int len = buffer.getInt(index);
+
+         index += DataConstants.SIZE_INT;
+
+         if (!internalProperties && TypedProperties.isInternalName(buffer, index, len))
+         {
+            internalProperties = true;
+         }
+
+         index += len;
+
+         int valueSize = TypedProperties.fixedValueSize(buffer.getByte(index));
+
+         index += DataConstants.SIZE_BYTE +
+                  (valueSize >= 0 ? valueSize : DataConstants.SIZE_INT + buffer.getInt(index + DataConstants.SIZE_BYTE));
+      }
+
+      return index - start;
+   }
+
+   private boolean lookupOnEncoding()
+   {
+      if (encodedProperties == null)
+      {
+         return false;
+      }
+
+      return TypedProperties.readInt(encodedProperties, 0) <= TypedProperties.MAX_ENCODED_LOOKUPS ||
+             encodedLookups++ < TypedProperties.MAX_ENCODED_LOOKUPS;
+   }
+
+   /**
+    * @return the position of the type of the value for key on the encoded properties, -1 if it's not there
+    */
+   private int findEncodedValue(final SimpleString key)
+   {
+      byte[] keyData = key.getData();
+
+      int index = DataConstants.SIZE_INT;
+
+      while (index < encodedProperties.length)
+      {
+         int len = TypedProperties.readInt(encodedProperties, index);
+
+         index += DataConstants.SIZE_INT;
+
+         if (len == keyData.length && TypedProperties.sameBytes(encodedProperties, index, keyData))
+         {
+            return index + len;
+         }
+
+         index += len;
+
+         int valueSize = TypedProperties.fixedValueSize(encodedProperties[index]);
+
+         index += DataConstants.SIZE_BYTE +
+                  (valueSize >= 0 ? valueSize
+                                 : DataConstants.SIZE_INT + TypedProperties.readInt(encodedProperties,
+                                                                                    index + DataConstants.SIZE_BYTE));
+      }
+
+      return -1;
+   }
+
+   private static int readInt(final byte[] data, final int index)
+   {
+      return (data[index] & 0xff) << 24 | (data[index + 1] & 0xff) << 16 |
+             (data[index + 2] & 0xff) << 8 |
+             data[index + 3] & 0xff;
+   }
+
+   private static boolean sameBytes(final byte[] encoded, final int index, final byte[] data)
+   {
+      for (int i = 0; i < data.length; i++)
+      {
+         if (encoded[index + i] != data[i])
+         {
+            return false;
+         }
+      }
+
+      return true;
+   }
+
+   private static boolean isInternalName(final HornetQBuffer buffer, final int index, final int len)
+   {
+      byte[] prefix = TypedProperties.HQ_PROPNAME.getData();
+
+      if (len < prefix.length)
+      {
+         return false;
+      }
+
+      for (int i = 0; i < prefix.length; i++)
+      {
+         if (buffer.getByte(index + i) != prefix[i])
+         {
+            return false;
+         }
+      }
+
+      return true;
+   }
+
+   /**
+    * @return the size of a value of the type after its type byte, -1 for the ones starting with their size
+    */
+   private static int fixedValueSize(final byte type)
+   {
+      switch (type)
+      {
+         case NULL:
+         {
+            return 0;
+         }
+         case BOOLEAN:
+         {
+            return DataConstants.SIZE_BOOLEAN;
+         }
+         case BYTE:
+         {
+            return DataConstants.SIZE_BYTE;
+         }
+         case CHAR:
+         {
+            return DataConstants.SIZE_CHAR;
+         }
+         case SHORT:
+         {
+            return DataConstants.SIZE_SHORT;
+         }
+         case INT:
+         {
+            return DataConstants.SIZE_INT;
+         }
+         case FLOAT:
+         {
+            return DataConstants.SIZE_FLOAT;
+         }
+         case LONG:
+         {
+            return DataConstants.SIZE_LONG;
+         }
+         case DOUBLE:
+         {
+            return DataConstants.SIZE_DOUBLE;
+         }
+         case BYTES:
+         case STRING:
+         {
+            return -1;
+         }
+         default:
+         {
+            throw new IllegalArgumentException("Invalid type: " + type);
+         }
+      }
+   }
+
+   private static PropertyValue readValue(final HornetQBuffer buffer)
+   {
+      byte type = buffer.readByte();
+
+      switch (type)
+      {
+         case NULL:
+         {
+            return new NullValue();
+         }
+         case CHAR:
+         {
+            return new CharValue(buffer);
+         }
+         case BOOLEAN:
+         {
+            return new BooleanValue(buffer);
+         }
+         case BYTE:
+         {
+            return new ByteValue(buffer);
+         }
+         case BYTES:
+         {
+            return new BytesValue(buffer);
+         }
+         case SHORT:
+         {
+            return new ShortValue(buffer);
+         }
+         case INT:
+         {
+            return new IntValue(buffer);
+         }
+         case LONG:
+         {
+            return new LongValue(buffer);
+         }
+         case FLOAT:
+         {
+            return new FloatValue(buffer);
+         }
+         case DOUBLE:
+         {
+            return new DoubleValue(buffer);
+         }
+         case STRING:
+         {
+            return new StringValue(buffer);
+         }
+         default:
+         {
+            throw new IllegalArgumentException("Invalid type: " + type);
+         }
+      }
+   }
+
    // Inner classes ------------------------------------------------------------------------------
 
    private static abstract class PropertyValue
@@ -492,4 +492,52 @@ public class ConsumerTest extends ServiceTestBase
       session.close();
    }
 
+   public void testReceiveModifyAndResend() throws Exception
+   {
+      SimpleString forwardQueue = new SimpleString("ConsumerTestForwardQueue");
+
+      ClientSessionFactory sf = locator.createSessionFactory();
+
+      ClientSession session = sf.createSession(false, true, true);
+
+      session.createQueue(QUEUE, QUEUE, null, false);
+      session.createQueue(forwardQueue, forwardQueue, null, false);
+
+      ClientProducer producer = session.createProducer(QUEUE);
+
+      // large enough for the delivery to share the encoded message
+      ClientMessage message = session.createMessage(false);
+      message.getBodyBuffer().writeBytes(new byte[2048]);
+      producer.send(message);
+
+      ClientConsumer consumer = session.createConsumer(QUEUE);
+      session.start();
+
+      ClientMessage received = consumer.receive(5000);
+      Assert.assertNotNull(received);
+      received.acknowledge();
+
+      // the new properties don't fit on the buffer the message was received on
+      for (int i = 0; i < 10; i++)
+      {
+         received.putStringProperty("prop" + i, "value of the forwarded property " + i);
+      }
+
+      session.createProducer(forwardQueue).send(received);
+
+      ClientConsumer forwardConsumer = session.createConsumer(forwardQueue);
+
+      ClientMessage forwarded = forwardConsumer.receive(5000);
+      Assert.assertNotNull(forwarded);
+      forwarded.acknowledge();
+
+      Assert.assertEquals(2048, forwarded.getBodySize());
+      for (int i = 0; i < 10; i++)
+      {
+         Assert.assertEquals("value of the forwarded property " + i, forwarded.getStringProperty("prop" + i));
+      }
+
+      session.close();
+   }
+
 }
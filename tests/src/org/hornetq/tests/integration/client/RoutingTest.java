@@ -16,7 +16,9 @@ import junit.framework.Assert;
 
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.api.core.client.*;
+import org.hornetq.core.postoffice.impl.BindingsImpl;
 import org.hornetq.core.server.HornetQServer;
+import org.hornetq.core.settings.impl.AddressSettings;
 import org.hornetq.tests.util.ServiceTestBase;
 
 /**
@@ -317,4 +319,52 @@ public class RoutingTest extends ServiceTestBase
       }
    }
 
+   public void testSelectorIndexFollowsAddressSettings() throws Exception
+   {
+      HornetQServer server = createServer(false);
+
+      try
+      {
+         server.start();
+         ClientSessionFactory cf = locator.createSessionFactory();
+         ClientSession session = cf.createSession(false, true, true);
+         session.createQueue(addressA, queueA, new SimpleString("region = 'EU'"), false);
+         session.createQueue(addressA, queueB, new SimpleString("region = 'US'"), false);
+
+         BindingsImpl bindings = (BindingsImpl)server.getPostOffice().getBindingsForAddress(addressA);
+         Assert.assertFalse(bindings.isSelectorIndex());
+
+         // the bindings already exist, the new setting is applied to them
+         AddressSettings settings = new AddressSettings();
+         settings.setSelectorIndex(true);
+         server.getAddressSettingsRepository().addMatch(addressA.toString(), settings);
+         Assert.assertTrue(bindings.isSelectorIndex());
+
+         ClientProducer p = session.createProducer(addressA);
+         ClientMessage message = session.createMessage(false);
+         message.putStringProperty("region", "EU");
+         p.send(message);
+
+         ClientConsumer c1 = session.createConsumer(queueA);
+         ClientConsumer c2 = session.createConsumer(queueB);
+         session.start();
+         ClientMessage m = c1.receive(5000);
+         Assert.assertNotNull(m);
+         m.acknowledge();
+         Assert.assertNull(c2.receiveImmediate());
+
+         server.getAddressSettingsRepository().removeMatch(addressA.toString());
+         Assert.assertFalse(bindings.isSelectorIndex());
+
+         session.close();
+      }
+      finally
+      {
+         if (server.isStarted())
+         {
+            server.stop();
+         }
+      }
+   }
+
 }
@@ -1240,6 +1240,374 @@ public class NIOJournalCompactTest extends JournalImplTestBase
 
    }
 
+   public void testCompactMaxRate() throws Exception
+   {
+      setup(2, 60 * 1024, false);
+
+      createJournal();
+      startJournal();
+      load();
+
+      for (int i = 0; i < 1000; i++)
+      {
+         add(i);
+         if (i % 50 == 0 && i > 0)
+         {
+            journal.forceMoveNextFile();
+         }
+      }
+
+      for (int i = 0; i < 1000; i++)
+      {
+         if (i % 100 != 0)
+         {
+            delete(i);
+         }
+      }
+
+      journal.forceMoveNextFile();
+
+      JournalImpl journalImpl = (JournalImpl)journal;
+
+      int filesBefore = journal.getDataFilesCount();
+
+      // 20 files of 60KiB at 512KiB per second should take more than two seconds to read.
+      // The token bucket is coarse (it may grant a second worth of tokens when its window rolls), so only half of
+      // that time is verified
+      journalImpl.setCompactMaxRate(512 * 1024);
+
+      assertEquals(512 * 1024, journalImpl.getCompactMaxRate());
+
+      assertTrue("there should be at least 20 files, there are " + filesBefore, filesBefore >= 20);
+
+      long minimumTime = (long)filesBefore * fileSize * 1000 / (512 * 1024);
+
+      long start = System.currentTimeMillis();
+
+      journal.testCompact();
+
+      long elapsed = System.currentTimeMillis() - start;
+
+      assertTrue("compacting took " + elapsed + " ms, expected at least " + minimumTime, elapsed >= minimumTime / 2);
+
+      assertEquals(1, journalImpl.getCompactCount());
+      assertEquals(journalImpl.getCompactFilesToProcess(), journalImpl.getCompactFilesProcessed());
+      assertTrue(journalImpl.getCompactFilesProcessed() >= filesBefore);
+      assertTrue(journalImpl.getCompactReclaimedBytes() > 0);
+      assertTrue(journalImpl.getLastCompactDuration() >= minimumTime / 2);
+
+      journalImpl.setCompactMaxRate(-1);
+
+      assertEquals(-1, journalImpl.getCompactMaxRate());
+
+      stopJournal();
+      createJournal();
+      startJournal();
+      loadAndCheck();
+   }
+
+   public void testCompactMaxRateStopsWithPendingCommands() throws Exception
+   {
+      setup(2, 60 * 1024, false);
+
+      createJournal();
+      startJournal();
+      load();
+
+      for (int i = 0; i < 1000; i++)
+      {
+         add(i);
+         if (i % 50 == 0 && i > 0)
+         {
+            journal.forceMoveNextFile();
+         }
+      }
+
+      journal.forceMoveNextFile();
+
+      final JournalImpl journalImpl = (JournalImpl)journal;
+
+      // about a minute worth of compacting if the limiter was always respected
+      journalImpl.setCompactMaxRate(64 * 1024);
+      journalImpl.setCompactThrottleMaxPendingCommands(10);
+
+      long throttledTime = (long)journal.getDataFilesCount() * fileSize * 1000 / (64 * 1024);
+
+      final CountDownLatch compactDone = new CountDownLatch(1);
+
+      long start = System.currentTimeMillis();
+
+      Thread compacting = new Thread()
+      {
+         @Override
+         public void run()
+         {
+            try
+            {
+               journalImpl.testCompact();
+            }
+            catch (Exception e)
+            {
+               e.printStackTrace();
+            }
+            compactDone.countDown();
+         }
+      };
+
+      compacting.start();
+
+      while (journalImpl.getCompactor() == null)
+      {
+         Thread.sleep(10);
+      }
+
+      // these are queued on the compactor until it is done
+      for (int i = 0; i < 20; i++)
+      {
+         delete(i);
+      }
+
+      assertTrue(compactDone.await(throttledTime / 2, TimeUnit.MILLISECONDS));
+
+      long elapsed = System.currentTimeMillis() - start;
+
+      assertTrue("compacting took " + elapsed + " ms, it should stop throttling once commands were queued",
+                 elapsed < throttledTime / 2);
+
+      assertEquals(1, journalImpl.getCompactCount());
+
+      compacting.join();
+
+      stopJournal();
+      createJournal();
+      startJournal();
+      loadAndCheck();
+   }
+
+   public void testIncrementalCompact() throws Exception
+   {
+      setup(2, 60 * 1024, false);
+
+      createJournal();
+      startJournal();
+      load();
+
+      // 10 files of 10 records, keeping one record per file
+      for (int i = 0; i < 100; i++)
+      {
+         add(i);
+         if (i % 10 == 9)
+         {
+            journal.forceMoveNextFile();
+         }
+      }
+
+      for (int i = 0; i < 100; i++)
+      {
+         if (i % 10 != 0)
+         {
+            delete(i);
+         }
+      }
+
+      // an update of a compacted record on a file that is not compacted
+      update(0);
+
+      journal.forceMoveNextFile();
+
+      JournalImpl journalImpl = (JournalImpl)journal;
+
+      journalImpl.setCompactMaxFiles(4);
+
+      assertEquals(4, journalImpl.getCompactMaxFiles());
+
+      JournalFile[] filesBefore = journal.getDataFiles();
+
+      journal.testCompact();
+
+      assertEquals(4, journalImpl.getCompactFilesProcessed());
+
+      JournalFile[] filesAfter = journal.getDataFiles();
+
+      // the 4 records left on the oldest files fit on a single file, the other files are untouched.
+      // Compacting also moves the journal to the next file, adding one more data file
+      assertEquals(filesBefore.length - 2, filesAfter.length);
+
+      assertTrue(filesAfter[0].getFileID() < filesBefore[4].getFileID());
+
+      for (int i = 4; i < filesBefore.length; i++)
+      {
+         assertSame(filesBefore[i], filesAfter[i - 3]);
+      }
+
+      assertEquals(3L * fileSize, journalImpl.getCompactReclaimedBytes());
+
+      stopJournal();
+      createJournal();
+      startJournal();
+      loadAndCheck();
+
+      ((JournalImpl)journal).setCompactMaxFiles(4);
+
+      // the update left behind goes with the record
+      delete(0);
+
+      journal.forceMoveNextFile();
+
+      journal.testCompact();
+
+      checkAndReclaimFiles();
+
+      stopJournal();
+      createJournal();
+      startJournal();
+      loadAndCheck();
+   }
+
+   public void testIncrementalCompactWithConcurrentCommands() throws Exception
+   {
+      setup(2, 60 * 1024, false);
+
+      createJournal();
+      startJournal();
+      load();
+
+      for (int i = 0; i < 100; i++)
+      {
+         add(i);
+         if (i % 10 == 9)
+         {
+            journal.forceMoveNextFile();
+         }
+      }
+
+      for (int i = 0; i < 100; i++)
+      {
+         if (i % 10 > 1)
+         {
+            delete(i);
+         }
+      }
+
+      journal.forceMoveNextFile();
+
+      ((JournalImpl)journal).setCompactMaxFiles(5);
+
+      startCompact();
+
+      // records on the compacted files and on the files left behind
+      update(0, 90);
+      delete(10, 91);
+      updateTx(1, 20, 80);
+      deleteTx(1, 21, 81);
+      addTx(1, 100);
+      commit(1);
+      add(101);
+
+      finishCompact();
+
+      assertEquals(5, ((JournalImpl)journal).getCompactFilesProcessed());
+
+      stopJournal();
+      createJournal();
+      startJournal();
+      loadAndCheck();
+
+      for (int i = 0; i < 100; i += 10)
+      {
+         if (i != 10)
+         {
+            delete(i);
+         }
+      }
+
+      journal.forceMoveNextFile();
+
+      checkAndReclaimFiles();
+
+      stopJournal();
+      createJournal();
+      startJournal();
+      loadAndCheck();
+   }
+
+   public void testIncrementalCompactDoesNotSplitTransactions() throws Exception
+   {
+      setup(2, 60 * 1024, false);
+
+      createJournal();
+      startJournal();
+      load();
+
+      // completed three files later
+      add(1);
+      addTx(1, 2);
+      journal.forceMoveNextFile();
+      add(3);
+      journal.forceMoveNextFile();
+      add(4);
+      journal.forceMoveNextFile();
+      commit(1);
+      add(5);
+      journal.forceMoveNextFile();
+
+      for (int i = 6; i < 10; i++)
+      {
+         add(i);
+         journal.forceMoveNextFile();
+      }
+
+      JournalImpl journalImpl = (JournalImpl)journal;
+
+      journalImpl.setCompactMaxFiles(2);
+
+      journal.testCompact();
+
+      // the files up to the commit are compacted
+      assertEquals(4, journalImpl.getCompactFilesProcessed());
+
+      stopJournal();
+      createJournal();
+      startJournal();
+      loadAndCheck();
+   }
+
+   public void testIncrementalCompactWithPendingTransaction() throws Exception
+   {
+      setup(2, 60 * 1024, false);
+
+      createJournal();
+      startJournal();
+      load();
+
+      addTx(1, 1);
+
+      for (int i = 2; i < 10; i++)
+      {
+         add(i);
+         journal.forceMoveNextFile();
+      }
+
+      JournalImpl journalImpl = (JournalImpl)journal;
+
+      journalImpl.setCompactMaxFiles(2);
+
+      int files = journal.getDataFilesCount();
+
+      journal.testCompact();
+
+      // a pending transaction on the oldest file means every file is compacted, including the one compacting moved
+      // the journal from
+      assertEquals(files + 1, journalImpl.getCompactFilesProcessed());
+
+      commit(1);
+
+      stopJournal();
+      createJournal();
+      startJournal();
+      loadAndCheck();
+   }
+
    public void testLiveSize() throws Exception
    {
       setup(2, 60 * 1024, true);
@@ -22,6 +22,7 @@ import junit.framework.Assert;
 
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.api.core.TransportConfiguration;
+import org.hornetq.api.core.client.ClientConsumer;
 import org.hornetq.api.core.client.ClientMessage;
 import org.hornetq.api.core.client.ClientProducer;
 import org.hornetq.api.core.client.ClientSession;
@@ -289,6 +290,64 @@ public class AddressControlTest extends ManagementTestBase
       Assert.assertEquals(1024, addressControl.getNumberOfBytesPerPage());
    }
 
+   public void testGetPageCacheStatistics() throws Exception
+   {
+      session.close();
+      server.stop();
+
+      SimpleString address = RandomUtil.randomSimpleString();
+
+      AddressSettings addressSettings = new AddressSettings();
+      addressSettings.setPageSizeBytes(1024);
+      addressSettings.setMaxSizeBytes(10 * 1024);
+      addressSettings.setPageCacheMaxSize(1);
+
+      server.getAddressSettingsRepository().addMatch(address.toString(), addressSettings);
+      server.start();
+
+      ServerLocator locator = HornetQClient.createServerLocatorWithoutHA(new TransportConfiguration(UnitTestCase.INVM_CONNECTOR_FACTORY));
+      ClientSessionFactory sf = locator.createSessionFactory();
+      session = sf.createSession(false, true, false);
+      session.start();
+      session.createQueue(address, address, true);
+
+      AddressControl addressControl = createManagementControl(address);
+      Assert.assertEquals(0, addressControl.getPageCacheHits());
+      Assert.assertEquals(0, addressControl.getPageCacheMisses());
+      Assert.assertEquals(0, addressControl.getPageCacheEvictions());
+      Assert.assertEquals(0, addressControl.getPageCacheSizeBytes());
+
+      ClientProducer producer = session.createProducer(address);
+
+      int numberOfMessages = 50;
+
+      for (int i = 0; i < numberOfMessages; i++)
+      {
+         ClientMessage msg = session.createMessage(true);
+         msg.getBodyBuffer().writeBytes(new byte[512]);
+         producer.send(msg);
+      }
+      session.commit();
+
+      Assert.assertTrue(addressControl.getNumberOfPages() > 2);
+
+      ClientConsumer consumer = session.createConsumer(address);
+
+      for (int i = 0; i < numberOfMessages; i++)
+      {
+         ClientMessage msg = consumer.receive(5000);
+         Assert.assertNotNull(msg);
+         msg.acknowledge();
+      }
+      session.commit();
+
+      consumer.close();
+
+      Assert.assertTrue(addressControl.getPageCacheHits() > 0);
+      Assert.assertTrue(addressControl.getPageCacheMisses() > 0);
+      Assert.assertTrue(addressControl.getPageCacheEvictions() > 0);
+   }
+
    // Package protected ---------------------------------------------
 
    // Protected -----------------------------------------------------
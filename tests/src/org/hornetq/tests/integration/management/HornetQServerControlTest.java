@@ -40,6 +40,7 @@ import org.hornetq.api.core.management.RoleInfo;
 import org.hornetq.core.asyncio.impl.AsynchronousFileImpl;
 import org.hornetq.core.config.Configuration;
 import org.hornetq.core.messagecounter.impl.MessageCounterManagerImpl;
+import org.hornetq.core.persistence.impl.journal.JournalStorageManager;
 import org.hornetq.core.remoting.impl.invm.InVMAcceptorFactory;
 import org.hornetq.core.remoting.impl.invm.InVMConnectorFactory;
 import org.hornetq.core.server.HornetQServer;
@@ -142,10 +143,32 @@ public class HornetQServerControlTest extends ManagementTestBase
       Assert.assertEquals(conf.getMessageExpiryThreadPriority(), serverControl.getMessageExpiryThreadPriority());
       Assert.assertEquals(conf.getJournalCompactMinFiles(), serverControl.getJournalCompactMinFiles());
       Assert.assertEquals(conf.getJournalCompactPercentage(), serverControl.getJournalCompactPercentage());
+      Assert.assertEquals(conf.getJournalCompactMaxRate(), serverControl.getJournalCompactMaxRate());
+      Assert.assertEquals(conf.getJournalCompactMaxFiles(), serverControl.getJournalCompactMaxFiles());
+      // the sync latency is only measured on an adaptive journal buffer
+      Assert.assertFalse(conf.isJournalBufferAdaptive());
+      Assert.assertEquals(0, serverControl.getJournalAverageSyncLatency());
+      Assert.assertTrue(serverControl.getJournalCurrentBufferTimeout() > 0);
       Assert.assertEquals(conf.isPersistenceEnabled(), serverControl.isPersistenceEnabled());
       Assert.assertEquals(conf.isFailoverOnServerShutdown(), serverControl.isFailoverOnServerShutdown());
    }
 
+   public void testJournalCompactStatistics() throws Exception
+   {
+      HornetQServerControl serverControl = createManagementControl();
+
+      Assert.assertEquals(0, serverControl.getJournalCompactCount());
+
+      ((JournalStorageManager)server.getStorageManager()).getLocalMessageJournal().testCompact();
+
+      Assert.assertEquals(1, serverControl.getJournalCompactCount());
+      Assert.assertTrue(serverControl.getJournalCompactFilesToProcess() > 0);
+      Assert.assertEquals(serverControl.getJournalCompactFilesToProcess(),
+                          serverControl.getJournalCompactFilesProcessed());
+      Assert.assertTrue(serverControl.getJournalCompactReclaimedBytes() >= 0);
+      Assert.assertTrue(serverControl.getLastJournalCompactDuration() >= 0);
+   }
+
    public void testGetConnectors() throws Exception
    {
       HornetQServerControl serverControl = createManagementControl();
@@ -455,6 +455,16 @@ public class HornetQServerControlUsingCoreTest extends HornetQServerControlTest
             return (Integer)proxy.retrieveAttributeValue("JournalBufferTimeout");
          }
 
+         public int getJournalCurrentBufferTimeout()
+         {
+            return (Integer)proxy.retrieveAttributeValue("JournalCurrentBufferTimeout");
+         }
+
+         public long getJournalAverageSyncLatency()
+         {
+            return (Long)proxy.retrieveAttributeValue("JournalAverageSyncLatency", Long.class);
+         }
+
          public int getJournalCompactMinFiles()
          {
             return (Integer)proxy.retrieveAttributeValue("JournalCompactMinFiles");
@@ -465,6 +475,41 @@ public class HornetQServerControlUsingCoreTest extends HornetQServerControlTest
             return (Integer)proxy.retrieveAttributeValue("JournalCompactPercentage");
          }
 
+         public int getJournalCompactMaxRate()
+         {
+            return (Integer)proxy.retrieveAttributeValue("JournalCompactMaxRate");
+         }
+
+         public int getJournalCompactMaxFiles()
+         {
+            return (Integer)proxy.retrieveAttributeValue("JournalCompactMaxFiles");
+         }
+
+         public long getJournalCompactCount()
+         {
+            return (Long)proxy.retrieveAttributeValue("JournalCompactCount", Long.class);
+         }
+
+         public long getJournalCompactReclaimedBytes()
+         {
+            return (Long)proxy.retrieveAttributeValue("JournalCompactReclaimedBytes", Long.class);
+         }
+
+         public long getLastJournalCompactDuration()
+         {
+            return (Long)proxy.retrieveAttributeValue("LastJournalCompactDuration", Long.class);
+         }
+
+         public int getJournalCompactFilesToProcess()
+         {
+            return (Integer)proxy.retrieveAttributeValue("JournalCompactFilesToProcess");
+         }
+
+         public int getJournalCompactFilesProcessed()
+         {
+            return (Integer)proxy.retrieveAttributeValue("JournalCompactFilesProcessed");
+         }
+
          public boolean isPersistenceEnabled()
          {
             return (Boolean)proxy.retrieveAttributeValue("PersistenceEnabled");
@@ -210,6 +210,56 @@ public class PagingCounterTest extends ServiceTestBase
       }
    }
 
+   public void testSnapshotCounters() throws Exception
+   {
+      Queue queue1 = server.createQueue(new SimpleString("A1"), new SimpleString("A1"), null, true, false);
+      Queue queue2 = server.createQueue(new SimpleString("A1"), new SimpleString("A2"), null, true, false);
+
+      PageSubscriptionCounter counter1 = locateCounter(queue1);
+      PageSubscriptionCounter counter2 = locateCounter(queue2);
+
+      StorageManager storage = server.getStorageManager();
+
+      // every time counter1 goes over the flush both counters are replaced by a snapshot
+      for (int round = 1; round <= 2; round++)
+      {
+         for (int i = 0; i < 1500; i++)
+         {
+            Transaction tx = new TransactionImpl(storage);
+            counter1.increment(tx, 1);
+            if (i % 30 == 0)
+            {
+               counter2.increment(tx, 1);
+            }
+            tx.commit();
+         }
+
+         storage.waitOnOperations();
+
+         server.getPagingManager().getPageStore(new SimpleString("A1")).getCursorProvier().flushExecutors();
+
+         assertEquals(1500 * round, counter1.getValue());
+         assertEquals(50 * round, counter2.getValue());
+
+         server.stop();
+
+         server = newHornetQServer();
+
+         server.start();
+
+         storage = server.getStorageManager();
+
+         queue1 = server.locateQueue(new SimpleString("A1"));
+         queue2 = server.locateQueue(new SimpleString("A2"));
+
+         counter1 = locateCounter(queue1);
+         counter2 = locateCounter(queue2);
+
+         assertEquals(1500 * round, counter1.getValue());
+         assertEquals(50 * round, counter2.getValue());
+      }
+   }
+
    public void testRestartCounter() throws Exception
    {
       Queue queue = server.createQueue(new SimpleString("A1"), new SimpleString("A1"), null, true, false);
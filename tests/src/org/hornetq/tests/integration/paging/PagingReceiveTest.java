@@ -51,6 +51,43 @@ public class PagingReceiveTest extends ServiceTestBase
       Assert.assertNotNull("Message not found.", message);
    }
 
+   public void testReceiveAcrossRestarts() throws Exception
+   {
+      final ClientSessionFactory sf = locator.createSessionFactory();
+      ClientSession session = sf.createSession(null, null, false, false, true, false, 0);
+      ClientProducer prod = session.createProducer(ADDRESS);
+
+      // paged on transactions, so the acks update the page transactions
+      for (int i = 500; i < 700; i++)
+      {
+         ClientMessage msg = session.createMessage(true);
+         msg.putIntProperty("key", i);
+         prod.send(msg);
+         if (i % 20 == 19)
+         {
+            session.commit();
+         }
+      }
+
+      session.close();
+      sf.close();
+
+      receiveMessages(0, 605);
+
+      // the updated page transactions are rewritten on each restart
+      server.stop();
+      server = internalCreateServer();
+
+      receiveMessages(605, 5);
+
+      server.stop();
+      server = internalCreateServer();
+
+      receiveMessages(610, 90);
+
+      Assert.assertNull(receiveMessage());
+   }
+
    protected void setUp() throws Exception
    {
       super.setUp();
@@ -136,6 +173,29 @@ public class PagingReceiveTest extends ServiceTestBase
       return message;
    }
 
+   private void receiveMessages(final int first, final int count) throws Exception
+   {
+      final ClientSessionFactory sf = locator.createSessionFactory();
+      ClientSession session = sf.createSession(null, null, false, true, true, false, 0);
+
+      session.start();
+      ClientConsumer consumer = session.createConsumer(ADDRESS);
+
+      for (int i = first; i < first + count; i++)
+      {
+         ClientMessage message = consumer.receive(5000);
+         Assert.assertNotNull("Message " + i + " not found.", message);
+         Assert.assertEquals(i, message.getIntProperty("key").intValue());
+         message.acknowledge();
+      }
+
+      consumer.close();
+
+      session.close();
+
+      sf.close();
+   }
+
    private HornetQServer newHornetQServer() throws Exception
    {
       final HornetQServer server = createServer(true, isNetty());
@@ -134,6 +134,58 @@ public class BatchDelayTest extends ServiceTestBase
       sf.close();
    }
 
+   public void testSendReceiveBodies() throws Exception
+   {
+      ClientSessionFactory sf = createSessionFactory();
+
+      ClientSession session = sf.createSession();
+
+      final String foo = "foo";
+
+      session.createQueue(foo, foo);
+
+      ClientProducer prod = session.createProducer(foo);
+
+      ClientConsumer cons = session.createConsumer(foo);
+
+      session.start();
+
+      // small and bigger than the batch, so the batches mix both
+      final int[] sizes = new int[] { 10, 100, 20 * 1024, 1, 64 * 1024 };
+
+      final int numMessages = 200;
+
+      for (int i = 0; i < numMessages; i++)
+      {
+         ClientMessage msg = session.createMessage(false);
+
+         msg.getBodyBuffer().writeBytes(body(i, sizes[i % sizes.length]));
+
+         prod.send(msg);
+      }
+
+      for (int i = 0; i < numMessages; i++)
+      {
+         ClientMessage msg = cons.receive(10000);
+
+         assertNotNull(msg);
+
+         byte[] expected = body(i, sizes[i % sizes.length]);
+
+         assertEquals(expected.length, msg.getBodySize());
+
+         byte[] received = new byte[expected.length];
+
+         msg.getBodyBuffer().readBytes(received);
+
+         assertEqualsByteArrays(expected, received);
+
+         msg.acknowledge();
+      }
+
+      sf.close();
+   }
+
    public void testSendReceiveOne() throws Exception
    {
       ClientSessionFactory sf = createSessionFactory();
@@ -165,6 +217,18 @@ public class BatchDelayTest extends ServiceTestBase
 
    // Private -------------------------------------------------------
 
+   private byte[] body(final int message, final int size)
+   {
+      byte[] body = new byte[size];
+
+      for (int i = 0; i < size; i++)
+      {
+         body[i] = getSamplebyte(message + i);
+      }
+
+      return body;
+   }
+
    // Inner classes -------------------------------------------------
 
 }
@@ -895,6 +895,15 @@ public class ReplicationTest extends ServiceTestBase
          return new JournalLoadInformation();
       }
 
+      /* (non-Javadoc)
+       * @see org.hornetq.core.journal.Journal#loadStreaming(org.hornetq.core.journal.LoaderCallback)
+       */
+      public JournalLoadInformation loadStreaming(final LoaderCallback reloadManager) throws Exception
+      {
+
+         return new JournalLoadInformation();
+      }
+
       /* (non-Javadoc)
        * @see org.hornetq.core.journal.Journal#load(java.util.List, java.util.List, org.hornetq.core.journal.TransactionFailureCallback)
        */
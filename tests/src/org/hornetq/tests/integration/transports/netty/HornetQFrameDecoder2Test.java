@@ -87,6 +87,75 @@ public class HornetQFrameDecoder2Test extends UnitTestCase
       Assert.assertEquals(HornetQFrameDecoder2Test.MSG_CNT, cnt);
    }
 
+   public void testSlicedFrames() throws Exception
+   {
+      final DecoderEmbedder<ChannelBuffer> decoder = new DecoderEmbedder<ChannelBuffer>(new HornetQFrameDecoder2(true));
+
+      ChannelBuffer src = ChannelBuffers.buffer(HornetQFrameDecoder2Test.MSG_CNT * (HornetQFrameDecoder2Test.MSG_LEN + 4));
+      while (src.writerIndex() < src.capacity())
+      {
+         src.writeInt(HornetQFrameDecoder2Test.MSG_LEN);
+         byte[] data = new byte[HornetQFrameDecoder2Test.MSG_LEN];
+         HornetQFrameDecoder2Test.rand.nextBytes(data);
+         src.writeBytes(data);
+      }
+
+      // reads of whole frames and fragments, as the socket delivers them
+      int cnt = 0;
+      int sliced = 0;
+      for (int i = 0; i < src.capacity();)
+      {
+         int length = Math.min(HornetQFrameDecoder2Test.rand.nextInt(4 * HornetQFrameDecoder2Test.FRAGMENT_MAX_LEN),
+                               src.capacity() - i);
+         decoder.offer(src.copy(i, length));
+         i += length;
+         for (;;)
+         {
+            ChannelBuffer frame = decoder.poll();
+            if (frame == null)
+            {
+               break;
+            }
+            if (!(frame instanceof DynamicChannelBuffer))
+            {
+               sliced++;
+            }
+            Assert.assertEquals(4, frame.readerIndex());
+            Assert.assertEquals(HornetQFrameDecoder2Test.MSG_LEN, frame.readableBytes());
+            Assert.assertEquals(src.slice(cnt * (HornetQFrameDecoder2Test.MSG_LEN + 4) + 4,
+                                          HornetQFrameDecoder2Test.MSG_LEN), frame);
+            cnt++;
+         }
+      }
+      Assert.assertEquals(HornetQFrameDecoder2Test.MSG_CNT, cnt);
+      Assert.assertTrue(sliced > 0);
+   }
+
+   public void testSmallFramesCopied() throws Exception
+   {
+      final DecoderEmbedder<ChannelBuffer> decoder = new DecoderEmbedder<ChannelBuffer>(new HornetQFrameDecoder2(true));
+
+      ChannelBuffer read = ChannelBuffers.buffer(1012);
+      read.writeInt(4);
+      read.writeInt(1234);
+      read.writeInt(1000);
+      read.writeInt(5678);
+      read.writerIndex(read.capacity());
+      decoder.offer(read);
+
+      // a small frame would keep the whole read alive
+      ChannelBuffer frame = decoder.poll();
+      Assert.assertTrue("Small frame must be a dynamic buffer", frame instanceof DynamicChannelBuffer);
+      Assert.assertEquals(1234, frame.getInt(4));
+
+      // a frame taking most of the read is sliced
+      frame = decoder.poll();
+      Assert.assertFalse("Large frame must be a slice", frame instanceof DynamicChannelBuffer);
+      Assert.assertEquals(4, frame.readerIndex());
+      Assert.assertEquals(1000, frame.readableBytes());
+      Assert.assertEquals(5678, frame.getInt(4));
+   }
+
    public void testExtremeFragmentation() throws Exception
    {
       final DecoderEmbedder<ChannelBuffer> decoder = new DecoderEmbedder<ChannelBuffer>(new HornetQFrameDecoder2());
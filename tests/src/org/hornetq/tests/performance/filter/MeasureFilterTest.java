@@ -0,0 +1,174 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.tests.performance.filter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.filter.Filter;
+import org.hornetq.core.filter.impl.FilterImpl;
+import org.hornetq.core.filter.impl.FilterParser;
+import org.hornetq.core.filter.impl.Identifier;
+import org.hornetq.core.filter.impl.Operator;
+import org.hornetq.core.server.ServerMessage;
+import org.hornetq.core.server.impl.ServerMessageImpl;
+import org.hornetq.tests.util.UnitTestCase;
+
+/**
+ * Compares the compiled filters used by FilterImpl with the interpreted Operator tree built by FilterParser.
+ */
+public class MeasureFilterTest extends UnitTestCase
+{
+
+   // Constants -----------------------------------------------------
+
+   private static final int NUMBER_OF_MESSAGES = 1000;
+
+   private static final int WARMUP_LOOPS = 1000;
+
+   private static final int LOOPS = 5000;
+
+   // Attributes ----------------------------------------------------
+
+   private ServerMessage[] messages;
+
+   // Public --------------------------------------------------------
+
+   @Override
+   protected void setUp() throws Exception
+   {
+      super.setUp();
+
+      messages = new ServerMessage[NUMBER_OF_MESSAGES];
+
+      for (int i = 0; i < messages.length; i++)
+      {
+         messages[i] = new ServerMessageImpl(i, 1000);
+         messages[i].putStringProperty(new SimpleString("region"), new SimpleString(i % 3 == 0 ? "EU" : "US"));
+         messages[i].putIntProperty(new SimpleString("amount"), i);
+         messages[i].putLongProperty(new SimpleString("customer"), i * 31l);
+         messages[i].putStringProperty(new SimpleString("product"), new SimpleString("product-" + i % 10));
+      }
+   }
+
+   public void testStringEquality() throws Exception
+   {
+      measure("region = 'EU'");
+   }
+
+   public void testNumericComparison() throws Exception
+   {
+      measure("amount > 500 AND customer < 20000");
+   }
+
+   public void testBetweenAndIn() throws Exception
+   {
+      measure("amount BETWEEN 100 AND 900 AND product IN ('product-1', 'product-2', 'product-3')");
+   }
+
+   public void testLike() throws Exception
+   {
+      measure("region = 'EU' OR product LIKE '%-7'");
+   }
+
+   // Private -------------------------------------------------------
+
+   private void measure(final String filterString) throws Exception
+   {
+      Filter compiled = FilterImpl.createFilter(filterString);
+
+      Map<SimpleString, Identifier> identifiers = new HashMap<SimpleString, Identifier>();
+
+      Operator interpreted = (Operator)new FilterParser().parse(new SimpleString(filterString), identifiers);
+
+      for (ServerMessage message : messages)
+      {
+         Assert.assertEquals(interpret(interpreted, identifiers, message), compiled.match(message));
+      }
+
+      runCompiled(compiled, WARMUP_LOOPS);
+      runInterpreted(interpreted, identifiers, WARMUP_LOOPS);
+
+      long start = System.nanoTime();
+      int matches = runCompiled(compiled, LOOPS);
+      long compiledTime = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      int interpretedMatches = runInterpreted(interpreted, identifiers, LOOPS);
+      long interpretedTime = System.nanoTime() - start;
+
+      Assert.assertEquals(interpretedMatches, matches);
+
+      long evaluations = (long)LOOPS * NUMBER_OF_MESSAGES;
+
+      System.out.println(filterString + ": compiled = " +
+                         compiledTime / evaluations +
+                         " ns/match, interpreted = " +
+                         interpretedTime / evaluations +
+                         " ns/match");
+   }
+
+   private int runCompiled(final Filter filter, final int loops)
+   {
+      int matches = 0;
+
+      for (int i = 0; i < loops; i++)
+      {
+         for (ServerMessage message : messages)
+         {
+            if (filter.match(message))
+            {
+               matches++;
+            }
+         }
+      }
+
+      return matches;
+   }
+
+   private int runInterpreted(final Operator operator, final Map<SimpleString, Identifier> identifiers, final int loops) throws Exception
+   {
+      int matches = 0;
+
+      for (int i = 0; i < loops; i++)
+      {
+         for (ServerMessage message : messages)
+         {
+            if (interpret(operator, identifiers, message))
+            {
+               matches++;
+            }
+         }
+      }
+
+      return matches;
+   }
+
+   /** This is how FilterImpl used to evaluate the filters, before they were compiled */
+   private boolean interpret(final Operator operator,
+                             final Map<SimpleString, Identifier> identifiers,
+                             final ServerMessage message) throws Exception
+   {
+      for (Identifier id : identifiers.values())
+      {
+         id.setValue(message.getObjectProperty(id.getName()));
+      }
+
+      Boolean result = (Boolean)operator.apply();
+
+      return result != null && result.booleanValue();
+   }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.performance.journal;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hornetq.core.config.impl.ConfigurationImpl;
+import org.hornetq.core.journal.impl.JournalImpl;
+import org.hornetq.core.journal.impl.NIOSequentialFileFactory;
+import org.hornetq.tests.util.UnitTestCase;
+
+/**
+ * Compares the fixed and the adaptive timeout of the TimedBuffer with 1, 10 and 100 threads appending durable records.
+ *
+ * Each thread appends a record with sync=true and waits for it before sending the next one, as a durable producer would.
+ * Results depend heavily on the sync latency of the device holding the test directory.
+ */
+public class MeasureGroupCommitTest extends UnitTestCase
+{
+   // Constants -----------------------------------------------------
+
+   private static final int FILE_SIZE = 10 * 1024 * 1024;
+
+   private static final int RECORD_SIZE = 1024;
+
+   private static final long RUN_TIME = 5000;
+
+   // Attributes ----------------------------------------------------
+
+   private NIOSequentialFileFactory factory;
+
+   // Public --------------------------------------------------------
+
+   public void testGroupCommit() throws Exception
+   {
+      for (int senders : new int[] { 1, 10, 100 })
+      {
+         measure(senders, false);
+         measure(senders, true);
+      }
+   }
+
+   // Protected -----------------------------------------------------
+
+   @Override
+   protected void setUp() throws Exception
+   {
+      super.setUp();
+
+      File file = new File(getTestDir());
+
+      deleteDirectory(file);
+
+      file.mkdir();
+   }
+
+   @Override
+   protected void tearDown() throws Exception
+   {
+      factory = null;
+
+      super.tearDown();
+   }
+
+   // Private -------------------------------------------------------
+
+   private void measure(final int senders, final boolean adaptive) throws Exception
+   {
+      deleteDirectory(new File(getTestDir()));
+
+      new File(getTestDir()).mkdir();
+
+      factory = new NIOSequentialFileFactory(getTestDir(),
+                                             true,
+                                             ConfigurationImpl.DEFAULT_JOURNAL_BUFFER_SIZE_NIO,
+                                             ConfigurationImpl.DEFAULT_JOURNAL_BUFFER_TIMEOUT_NIO,
+                                             false);
+
+      factory.setBufferAdaptive(adaptive);
+
+      final JournalImpl journal = new JournalImpl(FILE_SIZE, 2, 0, 0, factory, "hornetq-data", "hq", 1);
+
+      journal.start();
+
+      journal.loadInternalOnly();
+
+      final AtomicLong sequence = new AtomicLong(0);
+
+      final AtomicLong totalLatency = new AtomicLong(0);
+
+      final CountDownLatch done = new CountDownLatch(senders);
+
+      final long end = System.currentTimeMillis() + MeasureGroupCommitTest.RUN_TIME;
+
+      Thread[] threads = new Thread[senders];
+
+      for (int i = 0; i < senders; i++)
+      {
+         threads[i] = new Thread()
+         {
+            @Override
+            public void run()
+            {
+               try
+               {
+                  byte[] record = new byte[MeasureGroupCommitTest.RECORD_SIZE];
+
+                  while (System.currentTimeMillis() < end)
+                  {
+                     long start = System.nanoTime();
+
+                     journal.appendAddRecord(sequence.incrementAndGet(), (byte)1, record, true);
+
+                     totalLatency.addAndGet(System.nanoTime() - start);
+                  }
+               }
+               catch (Exception e)
+               {
+                  e.printStackTrace();
+               }
+               finally
+               {
+                  done.countDown();
+               }
+            }
+         };
+
+         threads[i].start();
+      }
+
+      done.await();
+
+      long records = sequence.get();
+
+      System.out.println((adaptive ? "adaptive" : "fixed   ") + " senders=" +
+                         senders +
+                         " records/sec=" +
+                         records * 1000 / MeasureGroupCommitTest.RUN_TIME +
+                         " average latency=" +
+                         totalLatency.get() / records / 1000 +
+                         " us, syncs=" +
+                         factory.getTimedBuffer().getSyncsDone() +
+                         ", average sync latency=" +
+                         factory.getTimedBuffer().getAverageSyncLatency() / 1000 +
+                         " us");
+
+      journal.stop();
+   }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.performance.journal;
+
+import java.io.File;
+
+import org.hornetq.core.journal.impl.JournalImpl;
+import org.hornetq.core.journal.impl.NIOSequentialFileFactory;
+import org.hornetq.tests.util.UnitTestCase;
+
+/**
+ * Measures the time spent loading a journal with many data files, reading the files sequentially and with
+ * the parallel pre-scan of JournalFilesReader.
+ *
+ * The journal is written once (NUMBER_OF_FILES files of 10MiB) and then loaded LOADS times with each setting.
+ * Results are only meaningful on a machine with several cores and a fast disk, where decoding is the bottleneck.
+ */
+public class MeasureJournalLoadTest extends UnitTestCase
+{
+   // Constants -----------------------------------------------------
+
+   private static final int FILE_SIZE = 10 * 1024 * 1024;
+
+   private static final int NUMBER_OF_FILES = 50;
+
+   private static final int RECORD_SIZE = 1024;
+
+   private static final int LOADS = 3;
+
+   // Attributes ----------------------------------------------------
+
+   private NIOSequentialFileFactory factory;
+
+   // Public --------------------------------------------------------
+
+   public void testLoad() throws Exception
+   {
+      int numberOfRecords = fillJournal();
+
+      int[] settings = new int[] { 1, 2, 4, Runtime.getRuntime().availableProcessors() };
+
+      for (int i = 0; i < LOADS; i++)
+      {
+         for (int parallelism : settings)
+         {
+            measure(parallelism, numberOfRecords);
+         }
+      }
+   }
+
+   // Protected -----------------------------------------------------
+
+   @Override
+   protected void setUp() throws Exception
+   {
+      super.setUp();
+
+      File file = new File(getTestDir());
+
+      deleteDirectory(file);
+
+      file.mkdir();
+
+      factory = new NIOSequentialFileFactory(getTestDir());
+   }
+
+   // Private -------------------------------------------------------
+
+   private int fillJournal() throws Exception
+   {
+      JournalImpl journal = createJournal(1);
+
+      journal.start();
+
+      journal.loadInternalOnly();
+
+      byte[] record = new byte[RECORD_SIZE];
+
+      int numberOfRecords = 0;
+
+      while (journal.getDataFilesCount() < NUMBER_OF_FILES)
+      {
+         journal.appendAddRecord(numberOfRecords, (byte)1, record, false);
+
+         // a few updates and deletes so the load has to reconcile records across files
+         if (numberOfRecords % 10 == 0)
+         {
+            journal.appendUpdateRecord(numberOfRecords, (byte)1, record, false);
+         }
+
+         if (numberOfRecords % 100 == 0 && numberOfRecords > 0)
+         {
+            journal.appendDeleteRecord(numberOfRecords - 50, false);
+         }
+
+         numberOfRecords++;
+      }
+
+      journal.stop();
+
+      return numberOfRecords;
+   }
+
+   private void measure(final int parallelism, final int numberOfRecords) throws Exception
+   {
+      JournalImpl journal = createJournal(parallelism);
+
+      journal.start();
+
+      long start = System.currentTimeMillis();
+
+      journal.loadInternalOnly();
+
+      long elapsed = System.currentTimeMillis() - start;
+
+      System.out.println("Loaded " + numberOfRecords +
+                         " records on " +
+                         journal.getDataFilesCount() +
+                         " files with parallelism=" +
+                         parallelism +
+                         " in " +
+                         elapsed +
+                         " ms");
+
+      journal.stop();
+   }
+
+   private JournalImpl createJournal(final int parallelism)
+   {
+      JournalImpl journal = new JournalImpl(FILE_SIZE, 2, 0, 0, factory, "hornetq-data", "hq", 1);
+
+      journal.setAutoReclaim(false);
+
+      journal.setLoadParallelism(parallelism);
+
+      return journal;
+   }
+}
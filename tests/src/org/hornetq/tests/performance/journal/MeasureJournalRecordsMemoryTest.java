@@ -0,0 +1,109 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.performance.journal;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hornetq.tests.util.UnitTestCase;
+import org.hornetq.utils.ConcurrentLongHashMap;
+
+/**
+ * Measures the heap used to track the journal records, comparing the ConcurrentLongHashMap used by JournalImpl with a
+ * ConcurrentHashMap<Long, JournalRecord>.
+ * 
+ * All the keys map to the same value, so only the memory of the map itself is measured.
+ * 
+ * Run it with a large heap (-Xmx12G) as the ConcurrentHashMap needs several gigabytes for 50M records.
+ */
+public class MeasureJournalRecordsMemoryTest extends UnitTestCase
+{
+   // Constants -----------------------------------------------------
+
+   private static final int NUMBER_OF_RECORDS = 50000000;
+
+   private static final Object VALUE = new Object();
+
+   // Public --------------------------------------------------------
+
+   public void testConcurrentLongHashMap() throws Exception
+   {
+      long before = usedMemory();
+
+      long start = System.currentTimeMillis();
+
+      ConcurrentLongHashMap<Object> records = new ConcurrentLongHashMap<Object>();
+
+      for (long id = 0; id < NUMBER_OF_RECORDS; id++)
+      {
+         records.put(id, VALUE);
+      }
+
+      long elapsed = System.currentTimeMillis() - start;
+
+      report("ConcurrentLongHashMap", usedMemory() - before, elapsed);
+
+      assertEquals(NUMBER_OF_RECORDS, records.size());
+   }
+
+   public void testConcurrentHashMap() throws Exception
+   {
+      long before = usedMemory();
+
+      long start = System.currentTimeMillis();
+
+      Map<Long, Object> records = new ConcurrentHashMap<Long, Object>();
+
+      for (long id = 0; id < NUMBER_OF_RECORDS; id++)
+      {
+         records.put(id, VALUE);
+      }
+
+      long elapsed = System.currentTimeMillis() - start;
+
+      report("ConcurrentHashMap<Long, ?>", usedMemory() - before, elapsed);
+
+      assertEquals(NUMBER_OF_RECORDS, records.size());
+   }
+
+   // Private -------------------------------------------------------
+
+   private void report(final String name, final long bytes, final long elapsed)
+   {
+      System.out.println(name + ": " +
+                         NUMBER_OF_RECORDS +
+                         " records use " +
+                         bytes /
+                         (1024 * 1024) +
+                         " MiB (" +
+                         bytes /
+                         NUMBER_OF_RECORDS +
+                         " bytes per record), filled in " +
+                         elapsed +
+                         " ms");
+   }
+
+   private long usedMemory() throws Exception
+   {
+      Runtime runtime = Runtime.getRuntime();
+
+      for (int i = 0; i < 5; i++)
+      {
+         System.gc();
+         Thread.sleep(100);
+      }
+
+      return runtime.totalMemory() - runtime.freeMemory();
+   }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.performance.message;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+import junit.framework.Assert;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.HornetQBuffers;
+import org.hornetq.api.core.Message;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.server.ServerMessage;
+import org.hornetq.core.server.impl.ServerMessageImpl;
+import org.hornetq.tests.util.UnitTestCase;
+
+/**
+ * Measures decoding the headers and properties of a message and reading what routing and persisting it needs, as the
+ * server does with every message it receives, loads from the journal or reads from a page.
+ */
+public class MeasureMessageDecodeTest extends UnitTestCase
+{
+
+   // Constants -----------------------------------------------------
+
+   private static final int WARMUP_LOOPS = 500000;
+
+   private static final int LOOPS = 2000000;
+
+   // Attributes ----------------------------------------------------
+
+   // the routed messages are kept as a queue would, so they are really allocated
+   private final ServerMessage[] routed = new ServerMessage[1024];
+
+   // Public --------------------------------------------------------
+
+   public void testNoProperties() throws Exception
+   {
+      measure(0);
+   }
+
+   public void testFiveProperties() throws Exception
+   {
+      measure(5);
+   }
+
+   public void testFiftyProperties() throws Exception
+   {
+      measure(50);
+   }
+
+   // Private -------------------------------------------------------
+
+   private void measure(final int numberOfProperties) throws Exception
+   {
+      ServerMessage message = new ServerMessageImpl(1, 1000);
+      message.setAddress(new SimpleString("jms.queue.measure"));
+
+      for (int i = 0; i < numberOfProperties; i++)
+      {
+         message.putStringProperty(new SimpleString("property" + i), new SimpleString("value" + i));
+      }
+
+      HornetQBuffer encoded = HornetQBuffers.fixedBuffer(message.getHeadersAndPropertiesEncodeSize());
+      message.encodeHeadersAndProperties(encoded);
+
+      HornetQBuffer persisted = HornetQBuffers.fixedBuffer(message.getHeadersAndPropertiesEncodeSize());
+
+      Assert.assertEquals(message.getHeadersAndPropertiesEncodeSize(), run(encoded, persisted, 1));
+
+      run(encoded, persisted, WARMUP_LOOPS);
+
+      long collections = collections();
+
+      long start = System.nanoTime();
+
+      run(encoded, persisted, LOOPS);
+
+      long elapsed = System.nanoTime() - start;
+
+      System.out.println(numberOfProperties + " properties: decode + route + encode = " +
+                         elapsed /
+                         LOOPS +
+                         " ns/message, " +
+                         (collections() - collections) +
+                         " collections");
+   }
+
+   private int run(final HornetQBuffer encoded, final HornetQBuffer persisted, final int loops)
+   {
+      int size = 0;
+
+      for (int i = 0; i < loops; i++)
+      {
+         encoded.readerIndex(0);
+
+         ServerMessage message = new ServerMessageImpl();
+         message.decodeHeadersAndProperties(encoded);
+
+         // what the post office reads while routing
+         message.getDuplicateProperty();
+         message.hasInternalProperties();
+         message.getObjectProperty(Message.HDR_SCHEDULED_DELIVERY_TIME);
+         message.getSimpleStringProperty(Message.HDR_LAST_VALUE_NAME);
+         message.getSimpleStringProperty(Message.HDR_GROUP_ID);
+         message.getHeadersAndPropertiesEncodeSize();
+
+         persisted.clear();
+         message.encodeHeadersAndProperties(persisted);
+
+         routed[i & routed.length - 1] = message;
+
+         size = persisted.writerIndex();
+      }
+
+      return size;
+   }
+
+   private static long collections()
+   {
+      long collections = 0;
+
+      for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+      {
+         collections += gc.getCollectionCount();
+      }
+
+      return collections;
+   }
+}
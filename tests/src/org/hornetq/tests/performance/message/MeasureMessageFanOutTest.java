@@ -0,0 +1,154 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.performance.message;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+import junit.framework.Assert;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.HornetQException;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.protocol.core.impl.RemotingConnectionImpl;
+import org.hornetq.core.protocol.core.impl.wireformat.SessionReceiveMessage;
+import org.hornetq.core.remoting.impl.invm.InVMConnection;
+import org.hornetq.core.server.ServerMessage;
+import org.hornetq.core.server.impl.ServerMessageImpl;
+import org.hornetq.spi.core.protocol.ProtocolType;
+import org.hornetq.spi.core.protocol.RemotingConnection;
+import org.hornetq.spi.core.remoting.Acceptor;
+import org.hornetq.spi.core.remoting.Connection;
+import org.hornetq.spi.core.remoting.ConnectionLifeCycleListener;
+import org.hornetq.tests.util.UnitTestCase;
+
+/**
+ * Measures encoding the deliveries of messages routed to many subscriptions, as the server does for every consumer
+ * of a topic before handing the packets to the connections.
+ */
+public class MeasureMessageFanOutTest extends UnitTestCase
+{
+
+   // Constants -----------------------------------------------------
+
+   private static final int CONSUMERS = 500;
+
+   private static final int WARMUP_MESSAGES = 2000;
+
+   private static final int MESSAGES = 10000;
+
+   // Attributes ----------------------------------------------------
+
+   // the packets are kept as the connections would while writing them, so they are really allocated
+   private final HornetQBuffer[] written = new HornetQBuffer[1024];
+
+   // Public --------------------------------------------------------
+
+   public void testSmallBody() throws Exception
+   {
+      measure(100);
+   }
+
+   public void testLargeBody() throws Exception
+   {
+      measure(10 * 1024);
+   }
+
+   // Private -------------------------------------------------------
+
+   private void measure(final int bodySize) throws Exception
+   {
+      InVMConnection transport = new InVMConnection(null, 0, null, new FakeListener(), null);
+
+      RemotingConnection connection = new RemotingConnectionImpl(transport, -1, null);
+
+      Assert.assertTrue(run(connection, bodySize, 1) > bodySize);
+
+      run(connection, bodySize, WARMUP_MESSAGES);
+
+      long collections = collections();
+
+      long start = System.nanoTime();
+
+      run(connection, bodySize, MESSAGES);
+
+      long elapsed = System.nanoTime() - start;
+
+      System.out.println(bodySize + " bytes body to " +
+                         CONSUMERS +
+                         " consumers: " +
+                         elapsed /
+                         ((long)MESSAGES * CONSUMERS) +
+                         " ns/delivery, " +
+                         (collections() - collections) +
+                         " collections");
+   }
+
+   private int run(final RemotingConnection connection, final int bodySize, final int messages)
+   {
+      int size = 0;
+
+      for (int i = 0; i < messages; i++)
+      {
+         ServerMessage message = new ServerMessageImpl(i, bodySize + 100);
+         message.setAddress(new SimpleString("jms.topic.measure"));
+         message.getBodyBuffer().writeBytes(new byte[bodySize]);
+         message.putIntProperty(new SimpleString("count"), i);
+
+         for (int j = 0; j < CONSUMERS; j++)
+         {
+            HornetQBuffer packet = new SessionReceiveMessage(j, message, 1).encode(connection);
+
+            written[j & written.length - 1] = packet;
+
+            size = packet.writerIndex();
+         }
+      }
+
+      return size;
+   }
+
+   private static long collections()
+   {
+      long collections = 0;
+
+      for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+      {
+         collections += gc.getCollectionCount();
+      }
+
+      return collections;
+   }
+
+   // Inner classes -------------------------------------------------
+
+   private static class FakeListener implements ConnectionLifeCycleListener
+   {
+      public void connectionCreated(final Acceptor acceptor, final Connection connection, final ProtocolType protocol)
+      {
+      }
+
+      public void connectionDestroyed(final Object connectionID)
+      {
+      }
+
+      public void connectionException(final Object connectionID, final HornetQException me)
+      {
+      }
+
+      public void connectionReadyForWrites(final Object connectionID, final boolean ready)
+      {
+      }
+   }
+}
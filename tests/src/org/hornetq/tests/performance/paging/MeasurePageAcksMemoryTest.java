@@ -0,0 +1,144 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.performance.paging;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.hornetq.core.paging.cursor.PagePosition;
+import org.hornetq.core.paging.cursor.impl.PageAckBitmap;
+import org.hornetq.core.paging.cursor.impl.PagePositionImpl;
+import org.hornetq.tests.util.UnitTestCase;
+import org.hornetq.utils.ConcurrentHashSet;
+
+/**
+ * Measures the heap used to track the acks of SUBSCRIBERS subscriptions lagging across PAGES pages, comparing the
+ * PageAckBitmap used by PageSubscriptionImpl with the set of acked PagePositions plus the set of removed references.
+ *
+ * Every page has half of its messages acked by a persistent subscription, so a record ID is kept for every ack.
+ *
+ * Run it with a large heap (-Xmx8G) as the sets need several gigabytes.
+ */
+public class MeasurePageAcksMemoryTest extends UnitTestCase
+{
+   // Constants -----------------------------------------------------
+
+   private static final int SUBSCRIBERS = 100;
+
+   private static final int PAGES = 10000;
+
+   private static final int MESSAGES_PER_PAGE = 20;
+
+   // Public --------------------------------------------------------
+
+   public void testPageAckBitmap() throws Exception
+   {
+      long before = usedMemory();
+
+      long start = System.currentTimeMillis();
+
+      PageAckBitmap[] pages = new PageAckBitmap[SUBSCRIBERS * PAGES];
+
+      long recordID = 0;
+
+      for (int i = 0; i < pages.length; i++)
+      {
+         pages[i] = new PageAckBitmap();
+
+         for (int msg = 0; msg < MESSAGES_PER_PAGE; msg += 2)
+         {
+            PagePosition pos = new PagePositionImpl(i % PAGES, msg);
+            pos.setRecordID(recordID++);
+            pages[i].addACK(pos);
+         }
+      }
+
+      long elapsed = System.currentTimeMillis() - start;
+
+      report("PageAckBitmap", usedMemory() - before, elapsed, recordID);
+
+      assertEquals(MESSAGES_PER_PAGE / 2, pages[0].getNumberOfAcks());
+   }
+
+   public void testPositionSets() throws Exception
+   {
+      long before = usedMemory();
+
+      long start = System.currentTimeMillis();
+
+      @SuppressWarnings("unchecked")
+      Set<PagePosition>[] acks = new Set[SUBSCRIBERS * PAGES];
+
+      @SuppressWarnings("unchecked")
+      Set<PagePosition>[] removed = new Set[SUBSCRIBERS * PAGES];
+
+      long recordID = 0;
+
+      for (int i = 0; i < acks.length; i++)
+      {
+         acks[i] = Collections.synchronizedSet(new LinkedHashSet<PagePosition>());
+         removed[i] = new ConcurrentHashSet<PagePosition>();
+
+         for (int msg = 0; msg < MESSAGES_PER_PAGE; msg += 2)
+         {
+            PagePosition pos = new PagePositionImpl(i % PAGES, msg);
+            pos.setRecordID(recordID++);
+            removed[i].add(pos);
+            acks[i].add(pos);
+         }
+      }
+
+      long elapsed = System.currentTimeMillis() - start;
+
+      report("Set<PagePosition>", usedMemory() - before, elapsed, recordID);
+
+      assertEquals(MESSAGES_PER_PAGE / 2, acks[0].size());
+      assertEquals(MESSAGES_PER_PAGE / 2, removed[0].size());
+   }
+
+   // Private -------------------------------------------------------
+
+   private void report(final String name, final long bytes, final long elapsed, final long numberOfAcks)
+   {
+      System.out.println(name + ": " +
+                         SUBSCRIBERS +
+                         " subscribers x " +
+                         PAGES +
+                         " pages with " +
+                         numberOfAcks +
+                         " acks use " +
+                         bytes /
+                         (1024 * 1024) +
+                         " MiB (" +
+                         bytes /
+                         numberOfAcks +
+                         " bytes per ack), filled in " +
+                         elapsed +
+                         " ms");
+   }
+
+   private long usedMemory() throws Exception
+   {
+      Runtime runtime = Runtime.getRuntime();
+
+      for (int i = 0; i < 5; i++)
+      {
+         System.gc();
+         Thread.sleep(100);
+      }
+
+      return runtime.totalMemory() - runtime.freeMemory();
+   }
+}
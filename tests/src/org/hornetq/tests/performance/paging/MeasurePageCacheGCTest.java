@@ -0,0 +1,291 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.performance.paging;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+import org.hornetq.core.paging.Page;
+import org.hornetq.core.paging.PagedMessage;
+import org.hornetq.core.paging.cursor.PageCache;
+import org.hornetq.core.paging.cursor.impl.PageCacheMap;
+import org.hornetq.core.paging.impl.PagedMessageImpl;
+import org.hornetq.core.server.impl.ServerMessageImpl;
+import org.hornetq.core.settings.impl.PageCacheEvictionPolicy;
+import org.hornetq.tests.util.UnitTestCase;
+import org.hornetq.utils.SoftValueHashMap;
+
+/**
+ * Compares the garbage collection caused by the page cache of PageCursorProviderImpl when it was held on soft
+ * references with the byte-bounded PageCacheMap, with SUBSCRIBERS subscriptions reading PAGES pages at different
+ * speeds.
+ *
+ * The soft cache holds pages until the heap is nearly full, so the old generation fills up with decoded pages and full
+ * collections clear them in bulk. Run it with a heap smaller than the paged data (-Xmx128M).
+ */
+public class MeasurePageCacheGCTest extends UnitTestCase
+{
+   // Constants -----------------------------------------------------
+
+   private static final int SUBSCRIBERS = 10;
+
+   private static final int PAGES = 2000;
+
+   private static final int MESSAGES_PER_PAGE = 100;
+
+   private static final int MESSAGE_SIZE = 1024;
+
+   private static final int MAX_CACHE_PAGES = 1000;
+
+   private static final long MAX_CACHE_BYTES = 32 * 1024 * 1024;
+
+   // Public --------------------------------------------------------
+
+   public void testSoftCache() throws Exception
+   {
+      final SoftValueHashMap<Long, PageCache> cache = new SoftValueHashMap<Long, PageCache>(MAX_CACHE_PAGES);
+
+      measure("SoftValueHashMap", new CacheAccess()
+      {
+         public PageCache get(final long pageId)
+         {
+            return cache.get(pageId);
+         }
+
+         public void put(final long pageId, final PageCache page)
+         {
+            cache.put(pageId, page);
+         }
+
+         public String stats()
+         {
+            return "pages=" + cache.size();
+         }
+      });
+   }
+
+   public void testByteBoundedCache() throws Exception
+   {
+      for (PageCacheEvictionPolicy policy : PageCacheEvictionPolicy.values())
+      {
+         final PageCacheMap cache = new PageCacheMap(MAX_CACHE_PAGES, MAX_CACHE_BYTES, policy);
+
+         measure("PageCacheMap " + policy, new CacheAccess()
+         {
+            public PageCache get(final long pageId)
+            {
+               return cache.get(pageId);
+            }
+
+            public void put(final long pageId, final PageCache page)
+            {
+               cache.put(pageId, page);
+            }
+
+            public void readerPages(final long[] pages)
+            {
+               cache.setReaderPages(pages);
+            }
+
+            public String stats()
+            {
+               return "pages=" + cache.size() +
+                      ", bytes=" +
+                      cache.getSizeBytes() +
+                      ", hits=" +
+                      cache.getHits() +
+                      ", misses=" +
+                      cache.getMisses() +
+                      ", evictions=" +
+                      cache.getEvictions();
+            }
+         });
+      }
+   }
+
+   // Private -------------------------------------------------------
+
+   private void measure(final String name, final CacheAccess cache) throws Exception
+   {
+      long gcCountBefore = gcCount();
+      long gcTimeBefore = gcTime();
+
+      long start = System.currentTimeMillis();
+
+      long[] positions = new long[SUBSCRIBERS];
+
+      long reads = 0;
+
+      long maxPause = 0;
+
+      boolean done = false;
+
+      while (!done)
+      {
+         done = true;
+
+         for (int i = 0; i < SUBSCRIBERS; i++)
+         {
+            // subscriber i moves (i + 1) pages for each page of the slowest one
+            for (int step = 0; step <= i && positions[i] < PAGES; step++)
+            {
+               long readStart = System.nanoTime();
+
+               long pageId = positions[i]++;
+
+               PageCache page = cache.get(pageId);
+
+               if (page == null)
+               {
+                  reads++;
+                  page = new BenchPageCache(pageId);
+                  cache.put(pageId, page);
+               }
+
+               // consume the page
+               for (PagedMessage msg : page.getMessages())
+               {
+                  msg.getMessage().getBodyBuffer().readerIndex(0);
+               }
+
+               maxPause = Math.max(maxPause, System.nanoTime() - readStart);
+            }
+
+            done &= positions[i] >= PAGES;
+         }
+
+         cache.readerPages(positions.clone());
+      }
+
+      long elapsed = System.currentTimeMillis() - start;
+
+      System.out.println(name + ": " +
+                         reads +
+                         " page reads in " +
+                         elapsed +
+                         " ms, " +
+                         (gcCount() - gcCountBefore) +
+                         " collections taking " +
+                         (gcTime() - gcTimeBefore) +
+                         " ms, longest page access " +
+                         maxPause /
+                         1000000 +
+                         " ms, " +
+                         cache.stats());
+   }
+
+   private static long gcCount()
+   {
+      long count = 0;
+      for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+      {
+         count += Math.max(0, gc.getCollectionCount());
+      }
+      return count;
+   }
+
+   private static long gcTime()
+   {
+      long time = 0;
+      for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+      {
+         time += Math.max(0, gc.getCollectionTime());
+      }
+      return time;
+   }
+
+   // Inner classes -------------------------------------------------
+
+   private abstract static class CacheAccess
+   {
+      abstract PageCache get(long pageId);
+
+      abstract void put(long pageId, PageCache page);
+
+      void readerPages(final long[] pages)
+      {
+      }
+
+      abstract String stats();
+   }
+
+   /** A decoded page, as PageCacheImpl would hold after reading it from disk */
+   private static class BenchPageCache implements PageCache
+   {
+      private final long pageId;
+
+      private PagedMessage[] messages;
+
+      BenchPageCache(final long pageId)
+      {
+         this.pageId = pageId;
+
+         messages = new PagedMessage[MESSAGES_PER_PAGE];
+
+         for (int i = 0; i < MESSAGES_PER_PAGE; i++)
+         {
+            ServerMessageImpl msg = new ServerMessageImpl(pageId * MESSAGES_PER_PAGE + i, MESSAGE_SIZE + 100);
+            msg.getBodyBuffer().writeBytes(new byte[MESSAGE_SIZE]);
+            messages[i] = new PagedMessageImpl(msg, new long[] { 1 });
+         }
+      }
+
+      public Page getPage()
+      {
+         return null;
+      }
+
+      public long getPageId()
+      {
+         return pageId;
+      }
+
+      public int getNumberOfMessages()
+      {
+         return messages.length;
+      }
+
+      public void setMessages(final PagedMessage[] messages)
+      {
+         this.messages = messages;
+      }
+
+      public PagedMessage[] getMessages()
+      {
+         return messages;
+      }
+
+      public boolean isLive()
+      {
+         return false;
+      }
+
+      public PagedMessage getMessage(final int messageNumber)
+      {
+         return messages[messageNumber];
+      }
+
+      public void lock()
+      {
+      }
+
+      public void unlock()
+      {
+      }
+
+      public void close()
+      {
+      }
+   }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.performance.paging;
+
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.config.Configuration;
+import org.hornetq.core.paging.PagingStore;
+import org.hornetq.core.paging.cursor.PageSubscription;
+import org.hornetq.core.paging.cursor.PagedReference;
+import org.hornetq.core.server.HornetQServer;
+import org.hornetq.core.server.Queue;
+import org.hornetq.core.server.ServerMessage;
+import org.hornetq.core.server.impl.RoutingContextImpl;
+import org.hornetq.core.server.impl.ServerMessageImpl;
+import org.hornetq.core.settings.impl.AddressSettings;
+import org.hornetq.tests.util.ServiceTestBase;
+import org.hornetq.utils.LinkedListIterator;
+
+/**
+ * Measures how long tasks wait on the executor of a paged address while the cleanup reclaims PAGES consumed pages at
+ * once, as it happens after a restart or when a large transaction is acked.
+ *
+ * A probe thread keeps one task at a time on the executor used by the subscriptions, so the longest wait is the
+ * longest time a subscription couldn't run its acks, counters or cleanup checks.
+ */
+public class MeasurePageCleanupTest extends ServiceTestBase
+{
+   // Constants -----------------------------------------------------
+
+   private static final SimpleString ADDRESS = new SimpleString("test-cleanup");
+
+   private static final int PAGES = 10000;
+
+   private static final int MESSAGES_PER_PAGE = 2;
+
+   private static final int MESSAGE_SIZE = 1024;
+
+   private static final int PAGE_SIZE = 10 * 1024 * 1024;
+
+   // Attributes ----------------------------------------------------
+
+   private HornetQServer server;
+
+   // Public --------------------------------------------------------
+
+   public void testReclaimPages() throws Exception
+   {
+      Queue queue = server.createQueue(ADDRESS, ADDRESS, null, true, false);
+      queue.pause();
+
+      PagingStore store = server.getPagingManager().getPageStore(ADDRESS);
+
+      store.startPaging();
+
+      RoutingContextImpl ctx = new RoutingContextImpl(null);
+      ctx.addQueue(ADDRESS, queue);
+
+      for (int page = 0; page < PAGES; page++)
+      {
+         for (int i = 0; i < MESSAGES_PER_PAGE; i++)
+         {
+            ServerMessage msg = new ServerMessageImpl(server.getStorageManager().generateUniqueID(), MESSAGE_SIZE + 100);
+            msg.getBodyBuffer().writeBytes(new byte[MESSAGE_SIZE]);
+            store.page(msg, ctx, ctx.getContextListing(ADDRESS));
+         }
+
+         store.forceAnotherPage();
+      }
+
+      PageSubscription subscription = queue.getPageSubscription();
+
+      // every page is acked before any is reclaimed
+      subscription.disableAutoCleanup();
+
+      LinkedListIterator<PagedReference> iterator = subscription.iterator();
+
+      PagedReference ref;
+
+      while ((ref = iterator.next()) != null)
+      {
+         subscription.ack(ref);
+      }
+
+      server.getStorageManager().waitOnOperations();
+
+      Probe probe = new Probe(subscription.getExecutor());
+
+      Thread probeThread = new Thread(probe);
+
+      probeThread.start();
+
+      long start = System.currentTimeMillis();
+
+      subscription.enableAutoCleanup();
+
+      subscription.cleanupEntries(false);
+
+      long timeout = System.currentTimeMillis() + 300000;
+
+      // the last page written is kept until the subscription moves to the next one
+
+      while (store.getFirstPage() < PAGES && System.currentTimeMillis() < timeout)
+      {
+         Thread.sleep(10);
+      }
+
+      store.getCursorProvier().flushExecutors();
+
+      long elapsed = System.currentTimeMillis() - start;
+
+      probe.stop = true;
+
+      probeThread.join();
+
+      assertTrue(store.getFirstPage() >= PAGES);
+
+      System.out.println(PAGES + " pages reclaimed in " +
+                         elapsed +
+                         " ms, " +
+                         probe.tasks +
+                         " probe tasks, longest wait " +
+                         TimeUnit.NANOSECONDS.toMillis(probe.maxWait) +
+                         " ms, " +
+                         probe.slowTasks +
+                         " tasks waited over 10 ms");
+   }
+
+   // Protected -----------------------------------------------------
+
+   @Override
+   protected void setUp() throws Exception
+   {
+      super.setUp();
+
+      Configuration config = createDefaultConfig();
+
+      config.setJournalSyncNonTransactional(false);
+
+      server = createServer(true, config, PAGE_SIZE, -1, new HashMap<String, AddressSettings>());
+
+      server.start();
+   }
+
+   @Override
+   protected void tearDown() throws Exception
+   {
+      server.stop();
+      server = null;
+      super.tearDown();
+   }
+
+   // Inner classes -------------------------------------------------
+
+   private static class Probe implements Runnable
+   {
+      private final Executor executor;
+
+      volatile boolean stop;
+
+      long tasks;
+
+      long maxWait;
+
+      long slowTasks;
+
+      Probe(final Executor executor)
+      {
+         this.executor = executor;
+      }
+
+      public void run()
+      {
+         try
+         {
+            while (!stop)
+            {
+               final CountDownLatch latch = new CountDownLatch(1);
+
+               long submitted = System.nanoTime();
+
+               executor.execute(new Runnable()
+               {
+                  public void run()
+                  {
+                     latch.countDown();
+                  }
+               });
+
+               latch.await();
+
+               long wait = System.nanoTime() - submitted;
+
+               tasks++;
+
+               maxWait = Math.max(maxWait, wait);
+
+               if (wait > TimeUnit.MILLISECONDS.toNanos(10))
+               {
+                  slowTasks++;
+               }
+
+               Thread.sleep(1);
+            }
+         }
+         catch (InterruptedException e)
+         {
+            Thread.currentThread().interrupt();
+         }
+      }
+   }
+}
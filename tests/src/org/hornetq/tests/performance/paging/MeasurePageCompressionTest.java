@@ -0,0 +1,185 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.performance.paging;
+
+import java.util.List;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.journal.SequentialFile;
+import org.hornetq.core.journal.SequentialFileFactory;
+import org.hornetq.core.journal.impl.NIOSequentialFileFactory;
+import org.hornetq.core.paging.PagedMessage;
+import org.hornetq.core.paging.impl.PageImpl;
+import org.hornetq.core.paging.impl.PagedMessageImpl;
+import org.hornetq.core.persistence.impl.nullpm.NullStorageManager;
+import org.hornetq.core.server.impl.ServerMessageImpl;
+import org.hornetq.tests.util.UnitTestCase;
+
+/**
+ * Measures the paging write and read throughput and the disk used for PAGES pages of JSON messages, with and without
+ * page-compress.
+ *
+ * Each page is synced once it's complete, as PagingStoreImpl does when moving to the next page.
+ */
+public class MeasurePageCompressionTest extends UnitTestCase
+{
+   // Constants -----------------------------------------------------
+
+   private static final int PAGES = 50;
+
+   private static final int MESSAGES_PER_PAGE = 1000;
+
+   private static final int MESSAGE_SIZE = 2048;
+
+   // Public --------------------------------------------------------
+
+   public void testCompression() throws Exception
+   {
+      for (int i = 0; i < 2; i++)
+      {
+         // the first pass is only a warm up
+         measure(false);
+         measure(true);
+      }
+   }
+
+   // Private -------------------------------------------------------
+
+   private void measure(final boolean compressed) throws Exception
+   {
+      recreateDirectory(getTestDir());
+
+      SequentialFileFactory factory = new NIOSequentialFileFactory(getTestDir());
+
+      byte[][] bodies = new byte[MESSAGES_PER_PAGE][];
+
+      for (int i = 0; i < MESSAGES_PER_PAGE; i++)
+      {
+         bodies[i] = createBody(i);
+      }
+
+      long uncompressedBytes = 0;
+
+      long diskBytes = 0;
+
+      long start = System.currentTimeMillis();
+
+      for (int page = 0; page < PAGES; page++)
+      {
+         PageImpl impl = openPage(factory, page);
+
+         impl.setCompressed(compressed);
+
+         for (int i = 0; i < MESSAGES_PER_PAGE; i++)
+         {
+            ServerMessageImpl msg = new ServerMessageImpl(page * MESSAGES_PER_PAGE + i, MESSAGE_SIZE + 100);
+            msg.setAddress(new SimpleString("Test"));
+            msg.getBodyBuffer().writeBytes(bodies[i]);
+
+            PagedMessage pagedMessage = new PagedMessageImpl(msg, new long[] { 1 });
+
+            uncompressedBytes += pagedMessage.getEncodeSize() + PageImpl.SIZE_RECORD;
+
+            impl.write(pagedMessage);
+         }
+
+         impl.sync();
+         impl.close();
+
+         diskBytes += impl.getSize();
+      }
+
+      long writeTime = System.currentTimeMillis() - start;
+
+      start = System.currentTimeMillis();
+
+      long messages = 0;
+
+      for (int page = 0; page < PAGES; page++)
+      {
+         PageImpl impl = openPage(factory, page);
+
+         List<PagedMessage> list = impl.read(new NullStorageManager());
+
+         impl.close();
+
+         for (PagedMessage msg : list)
+         {
+            msg.getMessage();
+            messages++;
+         }
+      }
+
+      long readTime = System.currentTimeMillis() - start;
+
+      assertEquals(PAGES * MESSAGES_PER_PAGE, messages);
+
+      System.out.println((compressed ? "compressed" : "uncompressed") + ": " +
+                         messages +
+                         " messages, " +
+                         diskBytes /
+                         (1024 * 1024) +
+                         " MiB on disk for " +
+                         uncompressedBytes /
+                         (1024 * 1024) +
+                         " MiB of records, written in " +
+                         writeTime +
+                         " ms (" +
+                         messages *
+                         1000 /
+                         Math.max(1, writeTime) +
+                         " msg/s), read in " +
+                         readTime +
+                         " ms (" +
+                         messages *
+                         1000 /
+                         Math.max(1, readTime) +
+                         " msg/s)");
+   }
+
+   private PageImpl openPage(final SequentialFileFactory factory, final int page) throws Exception
+   {
+      SequentialFile file = factory.createSequentialFile(page + ".page", 1);
+
+      PageImpl impl = new PageImpl(new SimpleString("Test"), new NullStorageManager(), factory, file, page);
+
+      impl.open();
+
+      return impl;
+   }
+
+   /** A JSON document, as in the backlogs page-compress is meant for */
+   private byte[] createBody(final int i)
+   {
+      StringBuffer text = new StringBuffer("[");
+
+      for (int item = 0; text.length() < MESSAGE_SIZE - 200; item++)
+      {
+         text.append("{\"order\":" + (i * 31 + item) +
+                     ",\"customer\":\"customer-" +
+                     (i + item) % 97 +
+                     "\",\"status\":\"" +
+                     (item % 3 == 0 ? "PENDING" : "SHIPPED") +
+                     "\",\"amount\":" +
+                     (i + item) % 1000 +
+                     "." +
+                     item % 100 +
+                     "},");
+      }
+
+      text.append("{}]");
+
+      return text.toString().getBytes();
+   }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.performance.paging;
+
+import java.util.Random;
+
+import org.hornetq.core.paging.Page;
+import org.hornetq.core.paging.PagedMessage;
+import org.hornetq.core.paging.cursor.PageCache;
+import org.hornetq.core.paging.cursor.impl.PageCacheMap;
+import org.hornetq.core.paging.impl.PagedMessageImpl;
+import org.hornetq.core.server.impl.ServerMessageImpl;
+import org.hornetq.core.settings.impl.PageCacheEvictionPolicy;
+import org.hornetq.tests.util.UnitTestCase;
+
+/**
+ * Counts the pages read and decoded by the page cache of PageCursorProviderImpl when SUBSCRIBERS subscriptions of a
+ * topic move roughly in step, with and without pinning the pages they are positioned on.
+ *
+ * Each subscription consumes a burst of messages at random times, as consumers with flow control do, and stays within
+ * SPREAD pages of the slowest one. The cache holds the live page and SPREAD other pages, so it can't always hold
+ * every page with a subscription on it.
+ */
+public class MeasurePagePinTest extends UnitTestCase
+{
+   // Constants -----------------------------------------------------
+
+   private static final int SUBSCRIBERS = 20;
+
+   private static final int PAGES = 500;
+
+   private static final int MESSAGES_PER_PAGE = 100;
+
+   private static final int MESSAGE_SIZE = 1024;
+
+   private static final int BURST = 10;
+
+   private static final double BURST_PROBABILITY = 0.05;
+
+   private static final int SPREAD = 6;
+
+   private static final int MAX_CACHE_PAGES = SPREAD + 1;
+
+   // Public --------------------------------------------------------
+
+   public void testWithoutPins() throws Exception
+   {
+      measure(false);
+   }
+
+   public void testWithPins() throws Exception
+   {
+      measure(true);
+   }
+
+   // Private -------------------------------------------------------
+
+   private void measure(final boolean pin) throws Exception
+   {
+      PageCacheMap cache = new PageCacheMap(MAX_CACHE_PAGES, -1, PageCacheEvictionPolicy.LRU);
+
+      cache.put(Long.MAX_VALUE, new BenchPageCache(Long.MAX_VALUE, true));
+
+      long[] positions = new long[SUBSCRIBERS];
+
+      long[] pinned = new long[SUBSCRIBERS];
+
+      for (int i = 0; i < SUBSCRIBERS; i++)
+      {
+         // spread over the first pages
+         positions[i] = (long)i * SPREAD * MESSAGES_PER_PAGE / SUBSCRIBERS;
+         pinned[i] = -1;
+      }
+
+      Random random = new Random(1);
+
+      long reads = 0;
+
+      long start = System.currentTimeMillis();
+
+      boolean done = false;
+
+      while (!done)
+      {
+         done = true;
+
+         long slowest = Long.MAX_VALUE;
+         for (long position : positions)
+         {
+            slowest = Math.min(slowest, position / MESSAGES_PER_PAGE);
+         }
+
+         for (int i = 0; i < SUBSCRIBERS; i++)
+         {
+            if (random.nextDouble() >= BURST_PROBABILITY || positions[i] / MESSAGES_PER_PAGE >= slowest + SPREAD)
+            {
+               done &= positions[i] >= PAGES * MESSAGES_PER_PAGE;
+               continue;
+            }
+
+            for (int burst = 0; burst < BURST && positions[i] < PAGES * MESSAGES_PER_PAGE; burst++)
+            {
+               long pageId = positions[i]++ / MESSAGES_PER_PAGE;
+
+               if (pin && pinned[i] != pageId)
+               {
+                  cache.pin(pageId);
+                  if (pinned[i] >= 0)
+                  {
+                     cache.unpin(pinned[i]);
+                  }
+                  pinned[i] = pageId;
+               }
+
+               reads += read(cache, pageId);
+            }
+
+            done &= positions[i] >= PAGES * MESSAGES_PER_PAGE;
+         }
+      }
+
+      long elapsed = System.currentTimeMillis() - start;
+
+      System.out.println((pin ? "With pins" : "Without pins") + ": " +
+                         reads +
+                         " page reads for " +
+                         PAGES +
+                         " pages in " +
+                         elapsed +
+                         " ms, hits=" +
+                         cache.getHits() +
+                         ", misses=" +
+                         cache.getMisses() +
+                         ", evictions=" +
+                         cache.getEvictions() +
+                         ", pinned evictions=" +
+                         cache.getPinnedEvictions());
+   }
+
+   private static int read(final PageCacheMap cache, final long pageId)
+   {
+      if (cache.get(pageId) != null)
+      {
+         return 0;
+      }
+
+      cache.put(pageId, new BenchPageCache(pageId, false));
+
+      return 1;
+   }
+
+   // Inner classes -------------------------------------------------
+
+   /** A decoded page, as PageCacheImpl would hold after reading it from disk */
+   private static class BenchPageCache implements PageCache
+   {
+      private final long pageId;
+
+      private final boolean live;
+
+      private PagedMessage[] messages;
+
+      BenchPageCache(final long pageId, final boolean live)
+      {
+         this.pageId = pageId;
+         this.live = live;
+
+         messages = new PagedMessage[live ? 0 : MESSAGES_PER_PAGE];
+
+         for (int i = 0; i < messages.length; i++)
+         {
+            ServerMessageImpl msg = new ServerMessageImpl(pageId * MESSAGES_PER_PAGE + i, MESSAGE_SIZE + 100);
+            msg.getBodyBuffer().writeBytes(new byte[MESSAGE_SIZE]);
+            messages[i] = new PagedMessageImpl(msg, new long[] { 1 });
+         }
+      }
+
+      public Page getPage()
+      {
+         return null;
+      }
+
+      public long getPageId()
+      {
+         return pageId;
+      }
+
+      public int getNumberOfMessages()
+      {
+         return messages.length;
+      }
+
+      public void setMessages(final PagedMessage[] messages)
+      {
+         this.messages = messages;
+      }
+
+      public PagedMessage[] getMessages()
+      {
+         return messages;
+      }
+
+      public boolean isLive()
+      {
+         return live;
+      }
+
+      public PagedMessage getMessage(final int messageNumber)
+      {
+         return messages[messageNumber];
+      }
+
+      public void lock()
+      {
+      }
+
+      public void unlock()
+      {
+      }
+
+      public void close()
+      {
+      }
+   }
+}
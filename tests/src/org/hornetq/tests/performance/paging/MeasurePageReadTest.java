@@ -0,0 +1,159 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.performance.paging;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.journal.SequentialFile;
+import org.hornetq.core.journal.SequentialFileFactory;
+import org.hornetq.core.journal.impl.MappedSequentialFileFactory;
+import org.hornetq.core.journal.impl.NIOSequentialFileFactory;
+import org.hornetq.core.paging.PagedMessage;
+import org.hornetq.core.paging.impl.PageImpl;
+import org.hornetq.core.paging.impl.PagedMessageImpl;
+import org.hornetq.core.persistence.impl.nullpm.NullStorageManager;
+import org.hornetq.core.server.impl.ServerMessageImpl;
+import org.hornetq.tests.util.UnitTestCase;
+
+/**
+ * Compares reading a backlog of PAGES pages through PagingStoreFactoryNIO's NIOSequentialFileFactory, which copies
+ * each page into a buffer and decodes every message, with the MappedSequentialFileFactory used with page-mapped-read,
+ * which decodes a message only when it's used.
+ *
+ * Each backlog is read ROUNDS times, once delivering every message and once only looking at the queue IDs of each
+ * message, as a subscription does for messages routed to other queues.
+ */
+public class MeasurePageReadTest extends UnitTestCase
+{
+   // Constants -----------------------------------------------------
+
+   private static final int PAGES = 100;
+
+   private static final int MESSAGES_PER_PAGE = 1000;
+
+   private static final int MESSAGE_SIZE = 1024;
+
+   private static final int ROUNDS = 5;
+
+   // Public --------------------------------------------------------
+
+   public void testReadBacklog() throws Exception
+   {
+      recreateDirectory(getTestDir());
+
+      writePages(new NIOSequentialFileFactory(getTestDir()));
+
+      for (int i = 0; i < 2; i++)
+      {
+         // the first pass is only a warm up
+         measure("NIO", new NIOSequentialFileFactory(getTestDir()), true);
+         measure("NIO", new NIOSequentialFileFactory(getTestDir()), false);
+         measure("Mapped", new MappedSequentialFileFactory(getTestDir()), true);
+         measure("Mapped", new MappedSequentialFileFactory(getTestDir()), false);
+      }
+   }
+
+   // Private -------------------------------------------------------
+
+   private void writePages(final SequentialFileFactory factory) throws Exception
+   {
+      for (int page = 0; page < PAGES; page++)
+      {
+         PageImpl impl = openPage(factory, page);
+
+         for (int i = 0; i < MESSAGES_PER_PAGE; i++)
+         {
+            ServerMessageImpl msg = new ServerMessageImpl(page * MESSAGES_PER_PAGE + i, MESSAGE_SIZE + 100);
+            msg.setAddress(new SimpleString("Test"));
+            msg.getBodyBuffer().writeBytes(new byte[MESSAGE_SIZE]);
+            impl.write(new PagedMessageImpl(msg, new long[] { 1 }));
+         }
+
+         impl.sync();
+         impl.close();
+      }
+   }
+
+   private void measure(final String name, final SequentialFileFactory factory, final boolean deliver) throws Exception
+   {
+      long gcTimeBefore = gcTime();
+
+      long start = System.currentTimeMillis();
+
+      long queueIDs = 0;
+
+      long bodies = 0;
+
+      for (int round = 0; round < ROUNDS; round++)
+      {
+         for (int page = 0; page < PAGES; page++)
+         {
+            PageImpl impl = openPage(factory, page);
+
+            List<PagedMessage> messages = impl.read(new NullStorageManager());
+
+            impl.close();
+
+            for (PagedMessage msg : messages)
+            {
+               queueIDs += msg.getQueueIDs().length;
+
+               if (deliver)
+               {
+                  bodies += msg.getMessage().getBodyBuffer().readableBytes();
+               }
+            }
+         }
+      }
+
+      long elapsed = System.currentTimeMillis() - start;
+
+      System.out.println(name + (deliver ? " delivering: " : " routing only: ") +
+                         ROUNDS *
+                         PAGES +
+                         " pages read in " +
+                         elapsed +
+                         " ms, GC " +
+                         (gcTime() - gcTimeBefore) +
+                         " ms (" +
+                         queueIDs +
+                         " queue IDs, " +
+                         bodies +
+                         " bytes delivered)");
+   }
+
+   private PageImpl openPage(final SequentialFileFactory factory, final int page) throws Exception
+   {
+      SequentialFile file = factory.createSequentialFile(page + ".page", 1);
+
+      PageImpl impl = new PageImpl(new SimpleString("Test"), new NullStorageManager(), factory, file, page);
+
+      impl.open();
+
+      return impl;
+   }
+
+   private static long gcTime()
+   {
+      long time = 0;
+      for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+      {
+         time += Math.max(0, gc.getCollectionTime());
+      }
+      return time;
+   }
+}
@@ -15,6 +15,7 @@ package org.hornetq.tests.performance.paging;
 
 import java.util.HashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.hornetq.api.core.HornetQException;
 import org.hornetq.api.core.SimpleString;
@@ -23,6 +24,7 @@ import org.hornetq.core.config.Configuration;
 import org.hornetq.core.server.HornetQServer;
 import org.hornetq.core.settings.impl.AddressSettings;
 import org.hornetq.tests.util.ServiceTestBase;
+import org.hornetq.utils.StripedCounter;
 
 /**
  * A MeasurePagingMultiThreadTest
@@ -182,12 +184,208 @@ public class MeasurePagingMultiThreadTest extends ServiceTestBase
 
    }
 
+   /**
+    * Each sender produces to its own address, all of them paging once the global-max-size is reached, so the only
+    * state they share on the paging side is the global size accounting.
+    */
+   public void testPagingMultipleAddresses() throws Throwable
+   {
+      final int NUMBER_OF_THREADS = 18;
+      final int NUMBER_OF_MESSAGES = 10000;
+      final int SIZE_OF_MESSAGE = 1024;
+
+      Configuration config = createDefaultConfig();
+
+      config.setGlobalMaxSize(10 * 1024 * 1024);
+
+      HornetQServer messagingService = createServer(true,
+                                                    config,
+                                                    100 * 1024,
+                                                    -1,
+                                                    new HashMap<String, AddressSettings>());
+      messagingService.start();
+      ServerLocator locator = createInVMNonHALocator();
+      try
+      {
+         final ClientSessionFactory factory = locator.createSessionFactory();
+
+         final CountDownLatch latchAlign = new CountDownLatch(NUMBER_OF_THREADS);
+
+         final CountDownLatch latchStart = new CountDownLatch(1);
+
+         class Sender extends Thread
+         {
+            private final ClientSession session;
+
+            private final ClientProducer producer;
+
+            private final ClientMessage msg;
+
+            Throwable e;
+
+            public Sender(final SimpleString adr) throws Exception
+            {
+               createDestination(factory, adr);
+               session = factory.createSession(false, true, true);
+               producer = session.createProducer(adr);
+               msg = session.createMessage(true);
+               msg.getBodyBuffer().writeBytes(new byte[SIZE_OF_MESSAGE]);
+            }
+
+            public void cleanUp() throws Exception
+            {
+               session.close();
+            }
+
+            @Override
+            public void run()
+            {
+               try
+               {
+                  latchAlign.countDown();
+                  latchStart.await();
+
+                  sendMessages(NUMBER_OF_MESSAGES, producer, msg);
+               }
+               catch (Throwable e)
+               {
+                  this.e = e;
+               }
+            }
+         }
+
+         Sender senders[] = new Sender[NUMBER_OF_THREADS];
+
+         for (int i = 0; i < NUMBER_OF_THREADS; i++)
+         {
+            senders[i] = new Sender(new SimpleString("test-adr-" + i));
+            senders[i].start();
+         }
+
+         latchAlign.await();
+
+         long timeStart = System.currentTimeMillis();
+
+         latchStart.countDown();
+
+         for (Thread t : senders)
+         {
+            t.join();
+         }
+
+         long timeEnd = System.currentTimeMillis();
+
+         System.out.println("Total Time on " + NUMBER_OF_THREADS +
+                            " addresses: " +
+                            (timeEnd - timeStart) +
+                            " milliseconds what represented " +
+                            NUMBER_OF_MESSAGES *
+                            NUMBER_OF_THREADS *
+                            1000 /
+                            (timeEnd - timeStart) +
+                            " per second, global size " +
+                            messagingService.getPagingManager().getTotalMemory() +
+                            ", global full " +
+                            messagingService.getPagingManager().isGlobalFull());
+
+         for (Sender s : senders)
+         {
+            if (s.e != null)
+            {
+               throw s.e;
+            }
+            s.cleanUp();
+         }
+      }
+      finally
+      {
+         locator.close();
+         messagingService.stop();
+      }
+   }
+
+   /**
+    * Only the global size accounting done for every routed and acknowledged message, against a single AtomicLong.
+    */
+   public void testGlobalSizeAccounting() throws Throwable
+   {
+      final int NUMBER_OF_THREADS = 18;
+      final int NUMBER_OF_UPDATES = 2000000;
+
+      final AtomicLong single = new AtomicLong();
+
+      measureAccounting("AtomicLong", NUMBER_OF_THREADS, NUMBER_OF_UPDATES, new Runnable()
+      {
+         public void run()
+         {
+            for (int i = 0; i < NUMBER_OF_UPDATES; i++)
+            {
+               single.addAndGet(1100);
+               single.addAndGet(-1100);
+            }
+         }
+      });
+
+      final StripedCounter striped = new StripedCounter(Runtime.getRuntime().availableProcessors() * 2, 64 * 1024);
+
+      measureAccounting("StripedCounter", NUMBER_OF_THREADS, NUMBER_OF_UPDATES, new Runnable()
+      {
+         public void run()
+         {
+            for (int i = 0; i < NUMBER_OF_UPDATES; i++)
+            {
+               striped.add(1100);
+               striped.add(-1100);
+            }
+         }
+      });
+   }
+
    // Package protected ---------------------------------------------
 
    // Protected -----------------------------------------------------
 
    // Private -------------------------------------------------------
 
+   private void measureAccounting(final String name,
+                                  final int threads,
+                                  final int updates,
+                                  final Runnable updater) throws Exception
+   {
+      Thread[] updaters = new Thread[threads];
+
+      long start = System.currentTimeMillis();
+
+      for (int i = 0; i < threads; i++)
+      {
+         updaters[i] = new Thread(updater);
+         updaters[i].start();
+      }
+
+      for (Thread t : updaters)
+      {
+         t.join();
+      }
+
+      long elapsed = Math.max(1, System.currentTimeMillis() - start);
+
+      System.out.println(name + ": " +
+                         threads +
+                         " threads did " +
+                         2L *
+                         updates *
+                         threads +
+                         " updates in " +
+                         elapsed +
+                         " milliseconds what represented " +
+                         2L *
+                         updates *
+                         threads *
+                         1000 /
+                         elapsed +
+                         " per second");
+   }
+
    /**
     * @param adr
     * @param nMessages
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.performance.paging;
+
+import java.util.HashMap;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.client.ClientConsumer;
+import org.hornetq.api.core.client.ClientMessage;
+import org.hornetq.api.core.client.ClientProducer;
+import org.hornetq.api.core.client.ClientSession;
+import org.hornetq.api.core.client.ClientSessionFactory;
+import org.hornetq.api.core.client.ServerLocator;
+import org.hornetq.core.config.Configuration;
+import org.hornetq.core.journal.TestableJournal;
+import org.hornetq.core.persistence.impl.journal.JournalStorageManager;
+import org.hornetq.core.server.HornetQServer;
+import org.hornetq.core.server.Queue;
+import org.hornetq.core.settings.impl.AddressSettings;
+import org.hornetq.tests.util.ServiceTestBase;
+
+/**
+ * Measures how long a server takes to start with paged messages on several queues of an address, consumed one by one
+ * from every queue but the last one.
+ *
+ * Each paged message increments the page counter of every queue and each ack updates the page transaction of the
+ * message. The page transactions are only deleted once every queue has acked their messages, so with one queue left
+ * behind their update records are replayed on every startup unless they are compacted.
+ * The server is restarted twice, with the journal compacted in between as the server does once enough files are
+ * used, so the second startup only reads the records the first one left alive.
+ */
+public class MeasurePagingStartupTest extends ServiceTestBase
+{
+   // Constants -----------------------------------------------------
+
+   private static final SimpleString ADDRESS = new SimpleString("test-startup");
+
+   private static final int QUEUES = 4;
+
+   private static final int MESSAGES = 100000;
+
+   private static final int TX_SIZE = 1000;
+
+   private static final int CONSUMED = 90000;
+
+   // Attributes ----------------------------------------------------
+
+   private HornetQServer server;
+
+   private ServerLocator locator;
+
+   // Public --------------------------------------------------------
+
+   public void testStartup() throws Exception
+   {
+      for (int i = 0; i < QUEUES; i++)
+      {
+         server.createQueue(ADDRESS, ADDRESS.concat("-" + i), null, true, false);
+      }
+
+      ClientSessionFactory sf = locator.createSessionFactory();
+
+      ClientSession session = sf.createSession(false, false);
+
+      ClientProducer producer = session.createProducer(ADDRESS);
+
+      for (int i = 0; i < MESSAGES; i++)
+      {
+         ClientMessage msg = session.createMessage(true);
+         msg.getBodyBuffer().writeBytes(new byte[100]);
+         producer.send(msg);
+
+         if (i % TX_SIZE == TX_SIZE - 1)
+         {
+            session.commit();
+         }
+      }
+
+      session.close();
+
+      // every ack is on its own transaction
+      session = sf.createSession(false, true, true);
+
+      session.start();
+
+      for (int i = 0; i < QUEUES - 1; i++)
+      {
+         ClientConsumer consumer = session.createConsumer(ADDRESS.concat("-" + i));
+
+         for (int j = 0; j < CONSUMED; j++)
+         {
+            ClientMessage msg = consumer.receive(5000);
+            assertNotNull(msg);
+            msg.acknowledge();
+         }
+
+         consumer.close();
+      }
+
+      session.close();
+
+      sf.close();
+
+      for (int restart = 1; restart <= 2; restart++)
+      {
+         if (restart > 1)
+         {
+            JournalStorageManager storage = (JournalStorageManager)server.getStorageManager();
+            ((TestableJournal)storage.getMessageJournal()).testCompact();
+         }
+
+         server.stop();
+
+         long start = System.currentTimeMillis();
+
+         server.start();
+
+         long elapsed = System.currentTimeMillis() - start;
+
+         for (int i = 0; i < QUEUES - 1; i++)
+         {
+            Queue queue = server.locateQueue(ADDRESS.concat("-" + i));
+            assertEquals(MESSAGES - CONSUMED, queue.getMessageCount());
+         }
+
+         Queue last = server.locateQueue(ADDRESS.concat("-" + (QUEUES - 1)));
+         assertEquals(MESSAGES, last.getMessageCount());
+
+         System.out.println("Startup " + restart +
+                            " with " +
+                            MESSAGES +
+                            " messages paged on " +
+                            QUEUES +
+                            " queues, " +
+                            CONSUMED +
+                            " consumed from all but one: " +
+                            elapsed +
+                            " ms");
+      }
+   }
+
+   // Protected -----------------------------------------------------
+
+   @Override
+   protected void setUp() throws Exception
+   {
+      super.setUp();
+
+      Configuration config = createDefaultConfig();
+
+      config.setJournalSyncNonTransactional(false);
+      config.setJournalSyncTransactional(false);
+
+      server = createServer(true, config, 100 * 1024, 200 * 1024, new HashMap<String, AddressSettings>());
+
+      server.start();
+
+      locator = createInVMNonHALocator();
+      locator.setBlockOnDurableSend(false);
+      locator.setBlockOnAcknowledge(false);
+      locator.setAckBatchSize(0);
+   }
+
+   @Override
+   protected void tearDown() throws Exception
+   {
+      locator.close();
+      server.stop();
+      server = null;
+      super.tearDown();
+   }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.performance.remoting;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.hornetq.api.core.TransportConfiguration;
+import org.hornetq.api.core.client.ClientConsumer;
+import org.hornetq.api.core.client.ClientMessage;
+import org.hornetq.api.core.client.ClientProducer;
+import org.hornetq.api.core.client.ClientSession;
+import org.hornetq.api.core.client.ClientSessionFactory;
+import org.hornetq.api.core.client.HornetQClient;
+import org.hornetq.api.core.client.ServerLocator;
+import org.hornetq.core.config.Configuration;
+import org.hornetq.core.remoting.impl.netty.NettyAcceptorFactory;
+import org.hornetq.core.remoting.impl.netty.TransportConstants;
+import org.hornetq.core.server.HornetQServer;
+import org.hornetq.tests.util.ServiceTestBase;
+
+/**
+ * Measures sending and receiving non persistent messages over netty with batching enabled on both ends, so the
+ * sends and the deliveries are written in batches.
+ */
+public class MeasureBatchedThroughputTest extends ServiceTestBase
+{
+   // Constants -----------------------------------------------------
+
+   private static final long DELAY = 10;
+
+   private static final String QUEUE = "measure";
+
+   // Attributes ----------------------------------------------------
+
+   private HornetQServer server;
+
+   private ServerLocator locator;
+
+   // Public --------------------------------------------------------
+
+   public void testSmallMessages() throws Exception
+   {
+      measure(100, 200000);
+   }
+
+   public void testLargeMessages() throws Exception
+   {
+      measure(64 * 1024, 5000);
+   }
+
+   // Protected -----------------------------------------------------
+
+   @Override
+   protected void setUp() throws Exception
+   {
+      super.setUp();
+
+      Map<String, Object> params = new HashMap<String, Object>();
+      params.put(TransportConstants.BATCH_DELAY, DELAY);
+
+      Configuration config = createBasicConfig();
+      config.getAcceptorConfigurations().add(new TransportConfiguration(NettyAcceptorFactory.class.getName(), params));
+      config.setSecurityEnabled(false);
+
+      server = createServer(false, config);
+      server.start();
+
+      locator = HornetQClient.createServerLocatorWithoutHA(new TransportConfiguration(ServiceTestBase.NETTY_CONNECTOR_FACTORY,
+                                                                                      params));
+   }
+
+   @Override
+   protected void tearDown() throws Exception
+   {
+      locator.close();
+
+      server.stop();
+
+      server = null;
+
+      super.tearDown();
+   }
+
+   // Private -------------------------------------------------------
+
+   private void measure(final int bodySize, final int numberOfMessages) throws Exception
+   {
+      ClientSessionFactory sf = locator.createSessionFactory();
+
+      // sessions aren't used by more than one thread, the sender has its own
+      ClientSession session = sf.createSession();
+
+      ClientSession sendSession = sf.createSession();
+
+      session.createQueue(QUEUE, QUEUE);
+
+      ClientProducer producer = sendSession.createProducer(QUEUE);
+
+      ClientConsumer consumer = session.createConsumer(QUEUE);
+
+      session.start();
+
+      byte[] body = new byte[bodySize];
+
+      // warm up
+      sendReceive(sendSession, producer, consumer, body, numberOfMessages / 10);
+
+      long start = System.currentTimeMillis();
+
+      sendReceive(sendSession, producer, consumer, body, numberOfMessages);
+
+      long elapsed = System.currentTimeMillis() - start;
+
+      System.out.println(bodySize + " bytes body: " +
+                         numberOfMessages *
+                         1000L /
+                         elapsed +
+                         " msgs/s, " +
+                         (long)numberOfMessages *
+                         bodySize *
+                         1000L /
+                         elapsed /
+                         (1024 * 1024) +
+                         " MB/s");
+
+      sf.close();
+   }
+
+   private void sendReceive(final ClientSession sendSession,
+                            final ClientProducer producer,
+                            final ClientConsumer consumer,
+                            final byte[] body,
+                            final int numberOfMessages) throws Exception
+   {
+      Thread sender = new Thread()
+      {
+         @Override
+         public void run()
+         {
+            try
+            {
+               for (int i = 0; i < numberOfMessages; i++)
+               {
+                  ClientMessage msg = sendSession.createMessage(false);
+
+                  msg.getBodyBuffer().writeBytes(body);
+
+                  producer.send(msg);
+               }
+            }
+            catch (Exception e)
+            {
+               e.printStackTrace();
+            }
+         }
+      };
+
+      sender.start();
+
+      for (int i = 0; i < numberOfMessages; i++)
+      {
+         ClientMessage msg = consumer.receive(10000);
+
+         assertNotNull(msg);
+
+         msg.acknowledge();
+      }
+
+      sender.join();
+   }
+}
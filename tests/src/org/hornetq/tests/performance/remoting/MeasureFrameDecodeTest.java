@@ -0,0 +1,193 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.performance.remoting;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+import junit.framework.Assert;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.HornetQBuffers;
+import org.hornetq.api.core.HornetQException;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.buffers.impl.ChannelBufferWrapper;
+import org.hornetq.core.protocol.core.impl.PacketImpl;
+import org.hornetq.core.protocol.core.impl.RemotingConnectionImpl;
+import org.hornetq.core.protocol.core.impl.wireformat.SessionSendMessage;
+import org.hornetq.core.remoting.impl.invm.InVMConnection;
+import org.hornetq.core.remoting.impl.netty.HornetQFrameDecoder2;
+import org.hornetq.core.server.ServerMessage;
+import org.hornetq.core.server.impl.ServerMessageImpl;
+import org.hornetq.spi.core.protocol.ProtocolType;
+import org.hornetq.spi.core.protocol.RemotingConnection;
+import org.hornetq.spi.core.remoting.Acceptor;
+import org.hornetq.spi.core.remoting.Connection;
+import org.hornetq.spi.core.remoting.ConnectionLifeCycleListener;
+import org.hornetq.tests.util.UnitTestCase;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.embedder.DecoderEmbedder;
+
+/**
+ * Measures what the server does with a produced message from the socket read to the journal record: decoding the frame,
+ * decoding the message from it and encoding the message on the journal buffer.
+ */
+public class MeasureFrameDecodeTest extends UnitTestCase
+{
+
+   // Constants -----------------------------------------------------
+
+   private static final int WARMUP_MESSAGES = 20000;
+
+   private static final int MESSAGES = 100000;
+
+   // Attributes ----------------------------------------------------
+
+   // the messages are kept as a queue would, so they are really allocated
+   private final ServerMessage[] routed = new ServerMessage[256];
+
+   // Public --------------------------------------------------------
+
+   public void testSmallBody() throws Exception
+   {
+      measure(100, false);
+      measure(100, true);
+   }
+
+   public void testLargeBody() throws Exception
+   {
+      measure(64 * 1024, false);
+      measure(64 * 1024, true);
+   }
+
+   // Private -------------------------------------------------------
+
+   private void measure(final int bodySize, final boolean sliceFrames) throws Exception
+   {
+      byte[] packet = encode(bodySize);
+
+      DecoderEmbedder<ChannelBuffer> decoder = new DecoderEmbedder<ChannelBuffer>(new HornetQFrameDecoder2(sliceFrames));
+
+      HornetQBuffer journal = HornetQBuffers.fixedBuffer(packet.length);
+
+      Assert.assertTrue(run(decoder, packet, journal, 1) > bodySize);
+
+      run(decoder, packet, journal, WARMUP_MESSAGES);
+
+      long collections = collections();
+
+      long start = System.nanoTime();
+
+      run(decoder, packet, journal, MESSAGES);
+
+      long elapsed = System.nanoTime() - start;
+
+      System.out.println(bodySize + " bytes body, " +
+                         (sliceFrames ? "sliced" : "copied") +
+                         " frames: read + decode + journal encode = " +
+                         elapsed /
+                         MESSAGES +
+                         " ns/message, " +
+                         (collections() - collections) +
+                         " collections");
+   }
+
+   private int run(final DecoderEmbedder<ChannelBuffer> decoder,
+                   final byte[] packet,
+                   final HornetQBuffer journal,
+                   final int messages)
+   {
+      int size = 0;
+
+      for (int i = 0; i < messages; i++)
+      {
+         // the socket read, on a buffer allocated for it as netty does
+         ChannelBuffer read = ChannelBuffers.buffer(packet.length);
+         read.writeBytes(packet);
+
+         decoder.offer(read);
+
+         HornetQBuffer frame = new ChannelBufferWrapper(decoder.poll());
+
+         Assert.assertEquals(PacketImpl.SESS_SEND, frame.readByte());
+
+         SessionSendMessage send = new SessionSendMessage();
+         send.decode(frame);
+
+         ServerMessage message = (ServerMessage)send.getMessage();
+
+         journal.clear();
+         message.encode(journal);
+
+         routed[i & routed.length - 1] = message;
+
+         size = journal.writerIndex();
+      }
+
+      return size;
+   }
+
+   private byte[] encode(final int bodySize)
+   {
+      InVMConnection transport = new InVMConnection(null, 0, null, new FakeListener(), null);
+
+      RemotingConnection connection = new RemotingConnectionImpl(transport, -1, null);
+
+      ServerMessage message = new ServerMessageImpl(1, bodySize + 100);
+      message.setAddress(new SimpleString("jms.queue.measure"));
+      message.getBodyBuffer().writeBytes(new byte[bodySize]);
+      message.putIntProperty(new SimpleString("count"), 1);
+
+      HornetQBuffer encoded = new SessionSendMessage(message, false).encode(connection);
+
+      byte[] packet = new byte[encoded.writerIndex()];
+      encoded.getBytes(0, packet);
+
+      return packet;
+   }
+
+   private static long collections()
+   {
+      long collections = 0;
+
+      for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+      {
+         collections += gc.getCollectionCount();
+      }
+
+      return collections;
+   }
+
+   // Inner classes -------------------------------------------------
+
+   private static class FakeListener implements ConnectionLifeCycleListener
+   {
+      public void connectionCreated(final Acceptor acceptor, final Connection connection, final ProtocolType protocol)
+      {
+      }
+
+      public void connectionDestroyed(final Object connectionID)
+      {
+      }
+
+      public void connectionException(final Object connectionID, final HornetQException me)
+      {
+      }
+
+      public void connectionReadyForWrites(final Object connectionID, final boolean ready)
+      {
+      }
+   }
+}
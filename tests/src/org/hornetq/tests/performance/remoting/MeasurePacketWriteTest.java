@@ -0,0 +1,140 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.performance.remoting;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executor;
+
+import junit.framework.Assert;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.HornetQException;
+import org.hornetq.core.protocol.core.Packet;
+import org.hornetq.core.protocol.core.impl.RemotingConnectionImpl;
+import org.hornetq.core.protocol.core.impl.wireformat.SessionAcknowledgeMessage;
+import org.hornetq.core.remoting.impl.invm.InVMConnection;
+import org.hornetq.spi.core.protocol.ProtocolType;
+import org.hornetq.spi.core.protocol.RemotingConnection;
+import org.hornetq.spi.core.remoting.Acceptor;
+import org.hornetq.spi.core.remoting.BufferHandler;
+import org.hornetq.spi.core.remoting.Connection;
+import org.hornetq.spi.core.remoting.ConnectionLifeCycleListener;
+import org.hornetq.tests.util.UnitTestCase;
+
+/**
+ * Measures encoding small packets and writing them on a connection, as acks and most of the other packets are sent.
+ */
+public class MeasurePacketWriteTest extends UnitTestCase
+{
+
+   // Constants -----------------------------------------------------
+
+   private static final int WARMUP_PACKETS = 1000000;
+
+   private static final int PACKETS = 5000000;
+
+   // Attributes ----------------------------------------------------
+
+   private long received;
+
+   // Public --------------------------------------------------------
+
+   public void testWriteAcks() throws Exception
+   {
+      BufferHandler handler = new BufferHandler()
+      {
+         public void bufferReceived(final Object connectionID, final HornetQBuffer buffer)
+         {
+            received += buffer.readableBytes();
+         }
+      };
+
+      Executor direct = new Executor()
+      {
+         public void execute(final Runnable command)
+         {
+            command.run();
+         }
+      };
+
+      InVMConnection transport = new InVMConnection(null, 0, handler, new FakeListener(), direct);
+
+      RemotingConnection connection = new RemotingConnectionImpl(transport, -1, null);
+
+      write(connection, WARMUP_PACKETS);
+
+      long collections = collections();
+
+      long start = System.nanoTime();
+
+      write(connection, PACKETS);
+
+      long elapsed = System.nanoTime() - start;
+
+      Assert.assertTrue(received > 0);
+
+      System.out.println("Encode + write: " + elapsed /
+                         PACKETS +
+                         " ns/packet, " +
+                         (collections() - collections) +
+                         " collections");
+   }
+
+   // Private -------------------------------------------------------
+
+   private void write(final RemotingConnection connection, final int packets)
+   {
+      for (int i = 0; i < packets; i++)
+      {
+         Packet ack = new SessionAcknowledgeMessage(1, i, false);
+         ack.setChannelID(10);
+
+         connection.getTransportConnection().write(ack.encode(connection));
+      }
+   }
+
+   private static long collections()
+   {
+      long collections = 0;
+
+      for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+      {
+         collections += gc.getCollectionCount();
+      }
+
+      return collections;
+   }
+
+   // Inner classes -------------------------------------------------
+
+   private static class FakeListener implements ConnectionLifeCycleListener
+   {
+      public void connectionCreated(final Acceptor acceptor, final Connection connection, final ProtocolType protocol)
+      {
+      }
+
+      public void connectionDestroyed(final Object connectionID)
+      {
+      }
+
+      public void connectionException(final Object connectionID, final HornetQException me)
+      {
+      }
+
+      public void connectionReadyForWrites(final Object connectionID, final boolean ready)
+      {
+      }
+   }
+}
@@ -266,6 +266,150 @@ public class PageCursorStressTest extends ServiceTestBase
       assertNull(cache);
    }
 
+   public void testReadAhead() throws Exception
+   {
+      final int NUM_MESSAGES = 100;
+
+      int numberOfPages = addMessages(NUM_MESSAGES, 1024 * 1024);
+
+      System.out.println("NumberOfPages = " + numberOfPages);
+
+      PageCursorProvider cursorProvider = lookupCursorProvider();
+
+      cursorProvider.setReadAhead(1);
+      cursorProvider.setReadAheadThreshold(0.5);
+
+      PageSubscription cursor = cursorProvider.getSubscription(queue.getID());
+
+      LinkedListIterator<PagedReference> iterator = cursor.iterator();
+
+      PagedReference msg = iterator.next();
+
+      long firstPage = msg.getPosition().getPageNr();
+
+      int messagesOnFirstPage = cursorProvider.getPageCache(firstPage).getNumberOfMessages();
+
+      for (int i = 1; i < messagesOnFirstPage; i++)
+      {
+         msg = iterator.next();
+         assertEquals(firstPage, msg.getPosition().getPageNr());
+      }
+
+      // the next page was scheduled once the cursor went through half of the first page
+      cursorProvider.flushExecutors();
+
+      long misses = cursorProvider.getCacheMisses();
+
+      msg = iterator.next();
+
+      assertEquals(firstPage + 1, msg.getPosition().getPageNr());
+      assertEquals(messagesOnFirstPage, msg.getMessage().getIntProperty("key").intValue());
+
+      // moving into the next page didn't have to read it
+      assertEquals(misses, cursorProvider.getCacheMisses());
+   }
+
+   public void testIteratorsPinTheirOwnPages() throws Exception
+   {
+      final int NUM_MESSAGES = 100;
+
+      int numberOfPages = addMessages(NUM_MESSAGES, 1024 * 1024);
+
+      System.out.println("NumberOfPages = " + numberOfPages);
+
+      PageCursorProvider cursorProvider = lookupCursorProvider();
+
+      PageSubscription cursor = cursorProvider.getSubscription(queue.getID());
+
+      // a browser and the delivery iterator on the same subscription
+      LinkedListIterator<PagedReference> browser = cursor.iterator();
+      LinkedListIterator<PagedReference> iterator = cursor.iterator();
+
+      long firstPage = browser.next().getPosition().getPageNr();
+
+      PagedReference msg;
+      do
+      {
+         msg = iterator.next();
+      }
+      while (msg.getPosition().getPageNr() == firstPage);
+
+      long secondPage = msg.getPosition().getPageNr();
+
+      assertEquals(1, cursorProvider.getPagePins(firstPage));
+      assertEquals(1, cursorProvider.getPagePins(secondPage));
+
+      browser.close();
+
+      assertEquals(0, cursorProvider.getPagePins(firstPage));
+      assertEquals(1, cursorProvider.getPagePins(secondPage));
+
+      // closed iterators don't pin again
+      browser.next();
+      assertEquals(0, cursorProvider.getPagePins(firstPage));
+
+      cursor.destroy();
+
+      assertEquals(0, cursorProvider.getPagePins(secondPage));
+   }
+
+   public void testPinnedPageIsReadOnce() throws Exception
+   {
+      final int NUM_MESSAGES = 100;
+
+      PageSubscription slowCursor = createNonPersistentCursor(new Filter()
+      {
+         public boolean match(ServerMessage message)
+         {
+            return true;
+         }
+
+         public SimpleString getFilterString()
+         {
+            return new SimpleString("all");
+         }
+      });
+
+      int numberOfPages = addMessages(NUM_MESSAGES, 1024 * 1024);
+
+      System.out.println("NumberOfPages = " + numberOfPages);
+
+      PageCursorProvider cursorProvider = lookupCursorProvider();
+
+      // room for the live page, the page of each subscription and the one being read
+      cursorProvider.setCacheMaxSize(4);
+
+      LinkedListIterator<PagedReference> slowIterator = slowCursor.iterator();
+
+      PagedReference msg = slowIterator.next();
+
+      long firstPage = msg.getPosition().getPageNr();
+
+      // the fast subscription goes a few pages ahead of the slow one, cycling the cache
+      LinkedListIterator<PagedReference> fastIterator = queue.getPageSubscription().iterator();
+
+      do
+      {
+         msg = fastIterator.next();
+      }
+      while (msg.getPosition().getPageNr() < firstPage + 4);
+
+      long misses = cursorProvider.getCacheMisses();
+
+      int messagesOnFirstPage = cursorProvider.getPageCache(firstPage).getNumberOfMessages();
+
+      for (int i = 1; i < messagesOnFirstPage; i++)
+      {
+         msg = slowIterator.next();
+         assertEquals(firstPage, msg.getPosition().getPageNr());
+         assertEquals(i, msg.getMessage().getIntProperty("key").intValue());
+      }
+
+      // the page of the slow subscription was kept on the cache
+      assertEquals(misses, cursorProvider.getCacheMisses());
+      assertEquals(0, cursorProvider.getCachePinnedEvictions());
+   }
+
    public void testRestartWithHoleOnAck() throws Exception
    {
 
@@ -861,6 +1005,11 @@ public class PageCursorStressTest extends ServiceTestBase
 
    // Protected -----------------------------------------------------
 
+   protected boolean isMappedRead()
+   {
+      return false;
+   }
+
    protected void tearDown() throws Exception
    {
       server.stop();
@@ -892,6 +1041,8 @@ public class PageCursorStressTest extends ServiceTestBase
 
       config.setJournalSyncNonTransactional(true);
 
+      config.setPageMappedRead(isMappedRead());
+
       server = createServer(true, config, PAGE_SIZE, PAGE_MAX, new HashMap<String, AddressSettings>());
 
       server.start();
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.stress.server;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import junit.framework.Assert;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.filter.Filter;
+import org.hornetq.core.server.Consumer;
+import org.hornetq.core.server.HandleStatus;
+import org.hornetq.core.server.MessageReference;
+import org.hornetq.core.server.ServerMessage;
+import org.hornetq.core.server.impl.QueueImpl;
+import org.hornetq.core.server.impl.ServerMessageImpl;
+import org.hornetq.tests.util.UnitTestCase;
+import org.hornetq.utils.OrderedExecutorFactory;
+
+/**
+ * Several producers add messages to a single queue while 1, 8, 32 and 128 consumers receive them, printing the
+ * throughput for each number of consumers.
+ * 
+ * As on the routing of a clustered address, producers check if the queue has a matching consumer before adding
+ * every message.
+ */
+public class QueueConcurrencyStressTest extends UnitTestCase
+{
+
+   // Constants -----------------------------------------------------
+
+   private static final int NUMBER_OF_PRODUCERS = 8;
+
+   private static final int MESSAGES_PER_PRODUCER = 250000;
+
+   // Attributes ----------------------------------------------------
+
+   private ScheduledThreadPoolExecutor scheduledExecutor;
+
+   private ExecutorService threadPool;
+
+   // Public --------------------------------------------------------
+
+   @Override
+   protected void setUp() throws Exception
+   {
+      super.setUp();
+      scheduledExecutor = new ScheduledThreadPoolExecutor(1);
+      threadPool = Executors.newCachedThreadPool();
+   }
+
+   @Override
+   protected void tearDown() throws Exception
+   {
+      scheduledExecutor.shutdownNow();
+      threadPool.shutdownNow();
+      super.tearDown();
+   }
+
+   public void testOneConsumer() throws Exception
+   {
+      internalTest(1);
+   }
+
+   public void testEightConsumers() throws Exception
+   {
+      internalTest(8);
+   }
+
+   public void testThirtyTwoConsumers() throws Exception
+   {
+      internalTest(32);
+   }
+
+   public void testOneHundredTwentyEightConsumers() throws Exception
+   {
+      internalTest(128);
+   }
+
+   // Private -------------------------------------------------------
+
+   private void internalTest(final int numberOfConsumers) throws Exception
+   {
+      final QueueImpl queue = new QueueImpl(1,
+                                            new SimpleString("address1"),
+                                            new SimpleString("queue1"),
+                                            null,
+                                            false,
+                                            true,
+                                            scheduledExecutor,
+                                            null,
+                                            null,
+                                            null,
+                                            new OrderedExecutorFactory(threadPool).getExecutor());
+
+      final int numberOfMessages = NUMBER_OF_PRODUCERS * MESSAGES_PER_PRODUCER;
+
+      final AtomicIntegerArray deliveries = new AtomicIntegerArray(numberOfMessages);
+
+      final CountDownLatch done = new CountDownLatch(numberOfMessages);
+
+      final AtomicInteger errors = new AtomicInteger(0);
+
+      for (int i = 0; i < numberOfConsumers; i++)
+      {
+         queue.addConsumer(new CountingConsumer(deliveries, done));
+      }
+
+      final CountDownLatch start = new CountDownLatch(1);
+
+      Thread[] producers = new Thread[NUMBER_OF_PRODUCERS];
+
+      for (int i = 0; i < producers.length; i++)
+      {
+         final int firstID = i * MESSAGES_PER_PRODUCER;
+
+         producers[i] = new Thread()
+         {
+            @Override
+            public void run()
+            {
+               try
+               {
+                  start.await();
+
+                  for (int id = firstID; id < firstID + MESSAGES_PER_PRODUCER; id++)
+                  {
+                     ServerMessage message = new ServerMessageImpl(id, 50);
+
+                     if (!queue.hasMatchingConsumer(message))
+                     {
+                        errors.incrementAndGet();
+                     }
+
+                     queue.addTail(message.createReference(queue), id % 2 == 0);
+                  }
+               }
+               catch (Throwable e)
+               {
+                  e.printStackTrace();
+                  errors.incrementAndGet();
+               }
+            }
+         };
+
+         producers[i].start();
+      }
+
+      long begin = System.currentTimeMillis();
+
+      start.countDown();
+
+      for (Thread producer : producers)
+      {
+         producer.join();
+      }
+
+      Assert.assertTrue(done.await(60, TimeUnit.SECONDS));
+
+      long elapsed = System.currentTimeMillis() - begin;
+
+      System.out.println(numberOfConsumers + " consumers received " +
+                         numberOfMessages +
+                         " messages in " +
+                         elapsed +
+                         " ms, " +
+                         numberOfMessages *
+                         1000l /
+                         Math.max(1, elapsed) +
+                         " messages/second");
+
+      Assert.assertEquals(0, errors.get());
+
+      for (int i = 0; i < numberOfMessages; i++)
+      {
+         Assert.assertEquals("message " + i, 1, deliveries.get(i));
+      }
+
+      Assert.assertEquals(0, queue.getMessageCount());
+
+      queue.close();
+   }
+
+   // Inner classes -------------------------------------------------
+
+   private static final class CountingConsumer implements Consumer
+   {
+      private final AtomicIntegerArray deliveries;
+
+      private final CountDownLatch done;
+
+      CountingConsumer(final AtomicIntegerArray deliveries, final CountDownLatch done)
+      {
+         this.deliveries = deliveries;
+         this.done = done;
+      }
+
+      public HandleStatus handle(final MessageReference reference) throws Exception
+      {
+         deliveries.incrementAndGet((int)reference.getMessage().getMessageID());
+
+         done.countDown();
+
+         return HandleStatus.HANDLED;
+      }
+
+      public Filter getFilter()
+      {
+         return null;
+      }
+
+      public String debug()
+      {
+         return toString();
+      }
+   }
+}
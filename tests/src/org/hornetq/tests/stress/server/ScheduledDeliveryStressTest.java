@@ -0,0 +1,139 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.tests.stress.server;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import junit.framework.Assert;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.server.MessageReference;
+import org.hornetq.core.server.impl.QueueImpl;
+import org.hornetq.core.server.impl.ScheduledDeliveryHandlerImpl;
+import org.hornetq.core.server.impl.ServerMessageImpl;
+import org.hornetq.tests.util.UnitTestCase;
+
+/**
+ * Measures the scheduling throughput of ScheduledDeliveryHandlerImpl with a large number of pending messages.
+ * 
+ * Run it with a large heap (-Xmx6G), as every pending message is kept in memory.
+ */
+public class ScheduledDeliveryStressTest extends UnitTestCase
+{
+
+   // Constants -----------------------------------------------------
+
+   private static final int NUMBER_OF_MESSAGES = 10000000;
+
+   /** Delivery times are spread over this period, starting far enough in the future so nothing is delivered during the test */
+   private static final long SCHEDULE_PERIOD = 60 * 60 * 1000;
+
+   private static final int NUMBER_OF_LOOKUPS = 100000;
+
+   // Attributes ----------------------------------------------------
+
+   private ScheduledThreadPoolExecutor scheduledExecutor;
+
+   private ExecutorService executor;
+
+   // Public --------------------------------------------------------
+
+   @Override
+   protected void setUp() throws Exception
+   {
+      super.setUp();
+      scheduledExecutor = new ScheduledThreadPoolExecutor(1);
+      executor = Executors.newSingleThreadExecutor();
+   }
+
+   @Override
+   protected void tearDown() throws Exception
+   {
+      scheduledExecutor.shutdownNow();
+      executor.shutdownNow();
+      super.tearDown();
+   }
+
+   public void testScheduleTenMillionMessages() throws Exception
+   {
+      QueueImpl queue = new QueueImpl(1,
+                                      new SimpleString("address1"),
+                                      new SimpleString("queue1"),
+                                      null,
+                                      false,
+                                      true,
+                                      scheduledExecutor,
+                                      null,
+                                      null,
+                                      null,
+                                      executor);
+
+      ScheduledDeliveryHandlerImpl handler = new ScheduledDeliveryHandlerImpl(scheduledExecutor);
+
+      long firstDelivery = System.currentTimeMillis() + SCHEDULE_PERIOD;
+
+      long start = System.currentTimeMillis();
+
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         MessageReference ref = new ServerMessageImpl(i, 50).createReference(queue);
+
+         ref.setScheduledDeliveryTime(firstDelivery + i % SCHEDULE_PERIOD);
+
+         handler.checkAndSchedule(ref, true);
+
+         if ((i + 1) % 1000000 == 0)
+         {
+            long elapsed = System.currentTimeMillis() - start;
+            System.out.println("Scheduled " + (i + 1) +
+                               " messages in " +
+                               elapsed +
+                               " ms, " +
+                               (i + 1) * 1000l / Math.max(1, elapsed) +
+                               " messages/second, executor queue size = " +
+                               scheduledExecutor.getQueue().size());
+         }
+      }
+
+      Assert.assertEquals(NUMBER_OF_MESSAGES, handler.getScheduledCount());
+
+      start = System.currentTimeMillis();
+
+      for (int i = 0; i < NUMBER_OF_LOOKUPS; i++)
+      {
+         long id = (long)i * (NUMBER_OF_MESSAGES / NUMBER_OF_LOOKUPS);
+         Assert.assertNotNull(handler.removeReferenceWithID(id));
+      }
+
+      long elapsed = System.currentTimeMillis() - start;
+
+      System.out.println("Removed " + NUMBER_OF_LOOKUPS + " messages by ID in " + elapsed + " ms");
+
+      start = System.currentTimeMillis();
+
+      List<MessageReference> cancelled = handler.cancel(null);
+
+      elapsed = System.currentTimeMillis() - start;
+
+      System.out.println("Cancelled " + cancelled.size() + " messages in " + elapsed + " ms");
+
+      Assert.assertEquals(NUMBER_OF_MESSAGES - NUMBER_OF_LOOKUPS, cancelled.size());
+
+      Assert.assertEquals(0, handler.getScheduledCount());
+
+      queue.close();
+   }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.unit.core.buffers.impl;
+
+import junit.framework.Assert;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.HornetQBuffers;
+import org.hornetq.core.buffers.impl.BufferPool;
+import org.hornetq.tests.util.UnitTestCase;
+
+/**
+ * A BufferPoolTest
+ */
+public class BufferPoolTest extends UnitTestCase
+{
+
+   // Public --------------------------------------------------------
+
+   public void testReuse()
+   {
+      BufferPool pool = new BufferPool(100, 2);
+
+      HornetQBuffer buffer = pool.acquire(100);
+      Assert.assertTrue(BufferPool.isPooled(buffer));
+      Assert.assertEquals(100, buffer.capacity());
+
+      buffer.writeLong(1);
+
+      BufferPool.release(buffer);
+
+      // released twice by mistake, still pooled once
+      BufferPool.release(buffer);
+      Assert.assertEquals(1, pool.getPooledBuffers());
+
+      HornetQBuffer reused = pool.acquire(100);
+      Assert.assertSame(buffer, reused);
+      Assert.assertEquals(0, reused.readerIndex());
+      Assert.assertEquals(0, reused.writerIndex());
+
+      Assert.assertEquals(1, pool.getAllocations());
+      Assert.assertEquals(1, pool.getHits());
+   }
+
+   public void testOtherSizesNotPooled()
+   {
+      BufferPool pool = new BufferPool(100, 2);
+
+      HornetQBuffer buffer = pool.acquire(50);
+      Assert.assertFalse(BufferPool.isPooled(buffer));
+      Assert.assertEquals(50, buffer.capacity());
+
+      BufferPool.release(buffer);
+      Assert.assertEquals(0, pool.getPooledBuffers());
+
+      // buffers from elsewhere are ignored
+      BufferPool.release(HornetQBuffers.fixedBuffer(100));
+      Assert.assertEquals(0, pool.getPooledBuffers());
+   }
+
+   public void testGrownBufferNotPooled()
+   {
+      BufferPool pool = new BufferPool(100, 2);
+
+      HornetQBuffer buffer = pool.acquire(100);
+      buffer.writeBytes(new byte[150]);
+
+      BufferPool.release(buffer);
+      Assert.assertEquals(0, pool.getPooledBuffers());
+   }
+
+   public void testMaxBuffers()
+   {
+      BufferPool pool = new BufferPool(100, 2);
+
+      HornetQBuffer[] buffers = new HornetQBuffer[3];
+
+      for (int i = 0; i < buffers.length; i++)
+      {
+         buffers[i] = pool.acquire(100);
+      }
+
+      for (HornetQBuffer buffer : buffers)
+      {
+         BufferPool.release(buffer);
+      }
+
+      Assert.assertEquals(2, pool.getPooledBuffers());
+      Assert.assertEquals(3, pool.getAllocations());
+      Assert.assertEquals(0, pool.getHits());
+   }
+}
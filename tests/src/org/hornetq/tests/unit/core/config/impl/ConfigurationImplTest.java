@@ -67,6 +67,7 @@ public class ConfigurationImplTest extends UnitTestCase
       Assert.assertEquals(ConfigurationImpl.DEFAULT_MESSAGE_EXPIRY_SCAN_PERIOD, conf.getMessageExpiryScanPeriod()); // OK
       Assert.assertEquals(ConfigurationImpl.DEFAULT_MESSAGE_EXPIRY_THREAD_PRIORITY,
                           conf.getMessageExpiryThreadPriority()); // OK
+      Assert.assertEquals(ConfigurationImpl.DEFAULT_SCHEDULED_DELIVERY_TICK, conf.getScheduledDeliveryTick());
       Assert.assertEquals(ConfigurationImpl.DEFAULT_TRANSACTION_TIMEOUT_SCAN_PERIOD,
                           conf.getTransactionTimeoutScanPeriod()); // OK
       Assert.assertEquals(ConfigurationImpl.DEFAULT_MANAGEMENT_ADDRESS, conf.getManagementAddress()); // OK
@@ -85,12 +86,18 @@ public class ConfigurationImplTest extends UnitTestCase
       Assert.assertEquals(ConfigurationImpl.DEFAULT_ASYNC_CONNECTION_EXECUTION_ENABLED,
                           conf.isAsyncConnectionExecutionEnabled());
       Assert.assertEquals(ConfigurationImpl.DEFAULT_PAGING_DIR, conf.getPagingDirectory());
+      Assert.assertEquals(ConfigurationImpl.DEFAULT_PAGE_MAPPED_READ, conf.isPageMappedRead());
+      Assert.assertEquals(ConfigurationImpl.DEFAULT_GLOBAL_MAX_SIZE, conf.getGlobalMaxSize());
       Assert.assertEquals(ConfigurationImpl.DEFAULT_LARGE_MESSAGES_DIR, conf.getLargeMessagesDirectory());
       Assert.assertEquals(ConfigurationImpl.DEFAULT_JOURNAL_COMPACT_PERCENTAGE, conf.getJournalCompactPercentage());
+      Assert.assertEquals(ConfigurationImpl.DEFAULT_JOURNAL_COMPACT_MAX_RATE, conf.getJournalCompactMaxRate());
+      Assert.assertEquals(ConfigurationImpl.DEFAULT_JOURNAL_COMPACT_MAX_FILES, conf.getJournalCompactMaxFiles());
+      Assert.assertEquals(ConfigurationImpl.DEFAULT_JOURNAL_LOAD_PARALLELISM, conf.getJournalLoadParallelism());
       Assert.assertEquals(ConfigurationImpl.DEFAULT_JOURNAL_BUFFER_TIMEOUT_AIO, conf.getJournalBufferTimeout_AIO());
       Assert.assertEquals(ConfigurationImpl.DEFAULT_JOURNAL_BUFFER_TIMEOUT_NIO, conf.getJournalBufferTimeout_NIO());
       Assert.assertEquals(ConfigurationImpl.DEFAULT_JOURNAL_BUFFER_SIZE_AIO, conf.getJournalBufferSize_AIO());
       Assert.assertEquals(ConfigurationImpl.DEFAULT_JOURNAL_BUFFER_SIZE_NIO, conf.getJournalBufferSize_NIO());
+      Assert.assertEquals(ConfigurationImpl.DEFAULT_JOURNAL_BUFFER_ADAPTIVE, conf.isJournalBufferAdaptive());
       Assert.assertEquals(ConfigurationImpl.DEFAULT_JOURNAL_LOG_WRITE_RATE, conf.isLogJournalWriteRate());
       Assert.assertEquals(ConfigurationImpl.DEFAULT_JOURNAL_PERF_BLAST_PAGES, conf.getJournalPerfBlastPages());
       Assert.assertEquals(ConfigurationImpl.DEFAULT_MESSAGE_COUNTER_ENABLED, conf.isMessageCounterEnabled());
@@ -189,6 +196,10 @@ public class ConfigurationImplTest extends UnitTestCase
          conf.setMessageExpiryScanPeriod(l);
          Assert.assertEquals(l, conf.getMessageExpiryScanPeriod());
 
+         l = RandomUtil.randomLong();
+         conf.setScheduledDeliveryTick(l);
+         Assert.assertEquals(l, conf.getScheduledDeliveryTick());
+
          b = RandomUtil.randomBoolean();
          conf.setPersistDeliveryCountBeforeDelivery(b);
          Assert.assertEquals(b, conf.isPersistDeliveryCountBeforeDelivery());
@@ -245,6 +256,22 @@ public class ConfigurationImplTest extends UnitTestCase
          conf.setJournalCompactPercentage(i);
          Assert.assertEquals(i, conf.getJournalCompactPercentage());
 
+         i = RandomUtil.randomInt();
+         conf.setJournalCompactMaxRate(i);
+         Assert.assertEquals(i, conf.getJournalCompactMaxRate());
+
+         i = RandomUtil.randomInt();
+         conf.setJournalCompactMaxFiles(i);
+         Assert.assertEquals(i, conf.getJournalCompactMaxFiles());
+
+         i = RandomUtil.randomInt();
+         conf.setJournalLoadParallelism(i);
+         Assert.assertEquals(i, conf.getJournalLoadParallelism());
+
+         b = RandomUtil.randomBoolean();
+         conf.setJournalBufferAdaptive(b);
+         Assert.assertEquals(b, conf.isJournalBufferAdaptive());
+
          i = RandomUtil.randomInt();
          conf.setJournalBufferSize_AIO(i);
          Assert.assertEquals(i, conf.getJournalBufferSize_AIO());
@@ -277,6 +304,14 @@ public class ConfigurationImplTest extends UnitTestCase
          conf.setPagingDirectory(s);
          Assert.assertEquals(s, conf.getPagingDirectory());
 
+         b = RandomUtil.randomBoolean();
+         conf.setPageMappedRead(b);
+         Assert.assertEquals(b, conf.isPageMappedRead());
+
+         l = RandomUtil.randomLong();
+         conf.setGlobalMaxSize(l);
+         Assert.assertEquals(l, conf.getGlobalMaxSize());
+
          s = RandomUtil.randomString();
          conf.setLargeMessagesDirectory(s);
          Assert.assertEquals(s, conf.getLargeMessagesDirectory());
@@ -406,6 +441,14 @@ public class ConfigurationImplTest extends UnitTestCase
       conf.setMessageExpiryScanPeriod(l);
       Assert.assertEquals(l, conf.getMessageExpiryScanPeriod());
 
+      l = RandomUtil.randomLong();
+      conf.setScheduledDeliveryTick(l);
+      Assert.assertEquals(l, conf.getScheduledDeliveryTick());
+
+      i = RandomUtil.randomInt();
+      conf.setJournalLoadParallelism(i);
+      Assert.assertEquals(i, conf.getJournalLoadParallelism());
+
       b = RandomUtil.randomBoolean();
       conf.setPersistDeliveryCountBeforeDelivery(b);
       Assert.assertEquals(b, conf.isPersistDeliveryCountBeforeDelivery());
@@ -105,6 +105,8 @@ public class DefaultsFileConfigurationTest extends ConfigurationImplTest
 
       Assert.assertEquals(ConfigurationImpl.DEFAULT_JOURNAL_COMPACT_PERCENTAGE, conf.getJournalCompactPercentage());
 
+      Assert.assertEquals(ConfigurationImpl.DEFAULT_JOURNAL_LOAD_PARALLELISM, conf.getJournalLoadParallelism());
+
       Assert.assertEquals(ConfigurationImpl.DEFAULT_JOURNAL_MIN_FILES, conf.getJournalMinFiles());
 
       Assert.assertEquals(ConfigurationImpl.DEFAULT_JOURNAL_MAX_IO_AIO, conf.getJournalMaxIO_AIO());
@@ -140,6 +142,8 @@ public class DefaultsFileConfigurationTest extends ConfigurationImplTest
 
       Assert.assertEquals(ConfigurationImpl.DEFAULT_MESSAGE_EXPIRY_THREAD_PRIORITY,
                           conf.getMessageExpiryThreadPriority());
+
+      Assert.assertEquals(ConfigurationImpl.DEFAULT_SCHEDULED_DELIVERY_TICK, conf.getScheduledDeliveryTick());
    }
 
    // Protected ---------------------------------------------------------------------------------------------
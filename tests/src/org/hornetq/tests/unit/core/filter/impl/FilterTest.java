@@ -13,12 +13,15 @@
 
 package org.hornetq.tests.unit.core.filter.impl;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import junit.framework.Assert;
 
 import org.hornetq.api.core.HornetQException;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.filter.Filter;
 import org.hornetq.core.filter.impl.FilterImpl;
+import org.hornetq.core.filter.impl.IndexablePredicate;
 import org.hornetq.core.logging.Logger;
 import org.hornetq.core.server.ServerMessage;
 import org.hornetq.core.server.impl.ServerMessageImpl;
@@ -667,6 +670,154 @@ public class FilterTest extends UnitTestCase
       Assert.assertTrue(filter.match(message));
    }
 
+   public void testMixedNumericTypes() throws Exception
+   {
+      filter = FilterImpl.createFilter(new SimpleString("MyInt >= 0 AND MyFloat < 0.5 AND MyShort = 3.0"));
+
+      message.putIntProperty(new SimpleString("MyInt"), 1);
+      message.putFloatProperty(new SimpleString("MyFloat"), 0.25f);
+      message.putShortProperty(new SimpleString("MyShort"), (short)3);
+      Assert.assertTrue(filter.match(message));
+
+      message.putIntProperty(new SimpleString("MyInt"), -1);
+      Assert.assertFalse(filter.match(message));
+
+      filter = FilterImpl.createFilter(new SimpleString("MyDouble >= 0"));
+
+      message.putDoubleProperty(new SimpleString("MyDouble"), -0.5);
+      Assert.assertFalse(filter.match(message));
+
+      message.putDoubleProperty(new SimpleString("MyDouble"), 0.5);
+      Assert.assertTrue(filter.match(message));
+
+      message.putDoubleProperty(new SimpleString("MyDouble"), Double.NaN);
+      Assert.assertFalse(filter.match(message));
+   }
+
+   public void testUnknownResult() throws Exception
+   {
+      // missing properties make the comparisons unknown, which doesn't match
+      filter = FilterImpl.createFilter(new SimpleString("MyInt > 10"));
+      Assert.assertFalse(filter.match(message));
+
+      filter = FilterImpl.createFilter(new SimpleString("NOT (MyInt > 10)"));
+      Assert.assertFalse(filter.match(message));
+
+      filter = FilterImpl.createFilter(new SimpleString("MyInt > 10 OR MyString = 'foo'"));
+      Assert.assertFalse(filter.match(message));
+
+      doPutStringProperty("MyString", "foo");
+      Assert.assertTrue(filter.match(message));
+
+      filter = FilterImpl.createFilter(new SimpleString("MyInt BETWEEN 1 AND 10"));
+      Assert.assertFalse(filter.match(message));
+
+      filter = FilterImpl.createFilter(new SimpleString("MyInt NOT BETWEEN 1 AND 10"));
+      Assert.assertFalse(filter.match(message));
+
+      message.putIntProperty(new SimpleString("MyInt"), 11);
+      Assert.assertTrue(filter.match(message));
+   }
+
+   public void testBadObject() throws Exception
+   {
+      filter = FilterImpl.createFilter(new SimpleString("MyString = 5 OR MyBoolean"));
+
+      doPutStringProperty("MyString", "foo");
+      message.putIntProperty(new SimpleString("MyBoolean"), 5);
+
+      Assert.assertFalse(filter.match(message));
+   }
+
+   public void testIndexablePredicate() throws Exception
+   {
+      IndexablePredicate predicate = getIndexablePredicate("region = 'EU'");
+      Assert.assertEquals(new SimpleString("region"), predicate.getProperty());
+      Assert.assertFalse(predicate.isRange());
+      Assert.assertTrue(predicate.getValues().contains(new SimpleString("EU")));
+
+      predicate = getIndexablePredicate("region IN ('EU', 'US') OR 'APAC' = region");
+      Assert.assertEquals(3, predicate.getValues().size());
+
+      predicate = getIndexablePredicate("price = 7");
+      Assert.assertTrue(predicate.getValues().contains(IndexablePredicate.toIndexKey(7L)));
+
+      predicate = getIndexablePredicate("10 < price AND price <= 20");
+      Assert.assertTrue(predicate.isRange());
+      Assert.assertTrue(predicate.isInRange(15));
+      Assert.assertFalse(predicate.isInRange(5));
+      Assert.assertFalse(predicate.isInRange(25));
+
+      // an indexable term of a conjunction is enough
+      predicate = getIndexablePredicate("region = 'EU' AND MyString LIKE 'a%'");
+      Assert.assertEquals(new SimpleString("region"), predicate.getProperty());
+
+      Assert.assertNull(getIndexablePredicate("region <> 'EU'"));
+      Assert.assertNull(getIndexablePredicate("region NOT IN ('EU')"));
+      Assert.assertNull(getIndexablePredicate("region = 'EU' OR price = 7"));
+      Assert.assertNull(getIndexablePredicate("region = 'EU' OR MyString LIKE 'a%'"));
+      Assert.assertNull(getIndexablePredicate("HQPriority = 4"));
+   }
+
+   private IndexablePredicate getIndexablePredicate(final String filterString) throws Exception
+   {
+      return ((FilterImpl)FilterImpl.createFilter(filterString)).getIndexablePredicate();
+   }
+
+   public void testConcurrentMatch() throws Exception
+   {
+      filter = FilterImpl.createFilter(new SimpleString("MyInt BETWEEN 0 AND 499 AND MyString LIKE 'a%' AND MyOther IN ('x', 'y')"));
+
+      final ServerMessage[] messages = new ServerMessage[1000];
+
+      for (int i = 0; i < messages.length; i++)
+      {
+         messages[i] = new ServerMessageImpl(i, 1000);
+         messages[i].putIntProperty(new SimpleString("MyInt"), i);
+         messages[i].putStringProperty(new SimpleString("MyString"), new SimpleString(i % 2 == 0 ? "abc" : "bcd"));
+         messages[i].putStringProperty(new SimpleString("MyOther"), new SimpleString("x"));
+      }
+
+      final AtomicInteger errors = new AtomicInteger(0);
+
+      Thread[] threads = new Thread[10];
+
+      for (int i = 0; i < threads.length; i++)
+      {
+         threads[i] = new Thread()
+         {
+            @Override
+            public void run()
+            {
+               for (int loop = 0; loop < 100; loop++)
+               {
+                  for (int j = 0; j < messages.length; j++)
+                  {
+                     boolean expected = j < 500 && j % 2 == 0;
+
+                     if (filter.match(messages[j]) != expected)
+                     {
+                        errors.incrementAndGet();
+                     }
+                  }
+               }
+            }
+         };
+      }
+
+      for (Thread t : threads)
+      {
+         t.start();
+      }
+
+      for (Thread t : threads)
+      {
+         t.join();
+      }
+
+      Assert.assertEquals(0, errors.get());
+   }
+
    // Private -----------------------------------------------------------------------------------
 
    private void doPutStringProperty(final String key, final String value)
@@ -26,6 +26,7 @@ import java.util.Map;
 import junit.framework.Assert;
 
 import org.hornetq.core.journal.EncodingSupport;
+import org.hornetq.core.journal.LoaderCallback;
 import org.hornetq.core.journal.PreparedTransactionInfo;
 import org.hornetq.core.journal.RecordInfo;
 import org.hornetq.core.journal.SequentialFileFactory;
@@ -290,6 +291,51 @@ public abstract class JournalImplTestBase extends UnitTestCase
 
       // check prepared transactions
 
+      checkTransactionsEquivalent(getPreparedTransactions(), preparedTransactions);
+   }
+
+   protected void loadStreamingAndCheck() throws Exception
+   {
+      final List<RecordInfo> committedRecords = new ArrayList<RecordInfo>();
+
+      final List<PreparedTransactionInfo> preparedTransactions = new ArrayList<PreparedTransactionInfo>();
+
+      journal.loadStreaming(new LoaderCallback()
+      {
+         public void addRecord(final RecordInfo info)
+         {
+            committedRecords.add(info);
+         }
+
+         public void updateRecord(final RecordInfo info)
+         {
+            committedRecords.add(info);
+         }
+
+         public void deleteRecord(final long id)
+         {
+            Assert.fail("A streaming load shouldn't deliver deletes, id=" + id);
+         }
+
+         public void addPreparedTransaction(final PreparedTransactionInfo preparedTransaction)
+         {
+            preparedTransactions.add(preparedTransaction);
+         }
+
+         public void failedTransaction(final long transactionID,
+                                       final List<RecordInfo> records,
+                                       final List<RecordInfo> recordsToDelete)
+         {
+         }
+      });
+
+      checkRecordsEquivalent(records, committedRecords);
+
+      checkTransactionsEquivalent(getPreparedTransactions(), preparedTransactions);
+   }
+
+   private List<PreparedTransactionInfo> getPreparedTransactions()
+   {
       List<PreparedTransactionInfo> prepared = new ArrayList<PreparedTransactionInfo>();
 
       for (Map.Entry<Long, TransactionHolder> entry : transactions.entrySet())
@@ -306,7 +352,7 @@ public abstract class JournalImplTestBase extends UnitTestCase
          }
       }
 
-      checkTransactionsEquivalent(prepared, preparedTransactions);
+      return prepared;
    }
 
    protected void load() throws Exception
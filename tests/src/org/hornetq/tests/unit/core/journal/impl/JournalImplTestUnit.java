@@ -3144,6 +3144,109 @@ public abstract class JournalImplTestUnit extends JournalImplTestBase
 
    }
 
+   public void testLoadStreaming() throws Exception
+   {
+      setup(10, 10 * 1024, true);
+
+      createJournal();
+      startJournal();
+      load();
+
+      add(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+      update(2, 3);
+      delete(4);
+
+      addTx(20, 11, 12);
+      updateTx(20, 1);
+      deleteTx(20, 5);
+      commit(20);
+
+      addTx(21, 13);
+      updateTx(21, 2);
+      rollback(21);
+
+      EncodingSupport xid = new SimpleEncoding(10, (byte)0);
+      addTx(22, 14);
+      updateTx(22, 3);
+      deleteTx(22, 6);
+      prepare(22, xid);
+
+      // deletes on later files than the records they remove
+      delete(11);
+      update(12);
+      add(15);
+      delete(1, 15);
+
+      stopJournal();
+      createJournal();
+      startJournal();
+      loadStreamingAndCheck();
+
+      // the journal is usable after a streaming load
+      add(16);
+      update(12);
+      commit(22);
+
+      stopJournal();
+      createJournal();
+      startJournal();
+      loadAndCheck();
+
+      stopJournal();
+      createJournal();
+      startJournal();
+      loadStreamingAndCheck();
+   }
+
+   public void testParallelLoad() throws Exception
+   {
+      setup(2, 10 * 1024, true);
+
+      createJournal();
+      startJournal();
+      load();
+
+      for (int i = 0; i < 50; i++)
+      {
+         long id = i * 10;
+
+         add(id + 1, id + 2, id + 3);
+         update(id + 1);
+
+         addTx(id + 4, id + 5, id + 6);
+         deleteTx(id + 4, id + 2);
+
+         if (i % 3 == 0)
+         {
+            rollback(id + 4);
+         }
+         else
+         {
+            commit(id + 4);
+         }
+
+         if (i > 0)
+         {
+            delete(id - 7);
+         }
+      }
+
+      stopJournal();
+
+      Assert.assertTrue(fileFactory.listFiles(fileExtension).size() > 4);
+
+      createJournal();
+      ((JournalImpl)journal).setLoadParallelism(4);
+      startJournal();
+      loadAndCheck();
+
+      stopJournal();
+      createJournal();
+      ((JournalImpl)journal).setLoadParallelism(4);
+      startJournal();
+      loadStreamingAndCheck();
+   }
+
    protected abstract int getAlignment();
 
 }
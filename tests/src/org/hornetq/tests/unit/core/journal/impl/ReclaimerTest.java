@@ -985,6 +985,15 @@ public class ReclaimerTest extends UnitTestCase
          return totalDep;
       }
 
+      public void transactionCompleted(final JournalFile completionFile)
+      {
+      }
+
+      public long getLastTransactionCompletionFileID()
+      {
+         return -1;
+      }
+
       /* (non-Javadoc)
        * @see org.hornetq.core.journal.impl.JournalFile#getJournalVersion()
        */
@@ -223,12 +223,133 @@ public class TimedBufferTest extends UnitTestCase
 
    }
 
+   public void testAdaptiveTimeout() throws Exception
+   {
+      final int timeout = TimedBufferTest.ONE_SECOND / 10;
+
+      final ArrayList<List<IOAsyncTask>> pendingCallbacks = new ArrayList<List<IOAsyncTask>>();
+
+      class TestObserver implements TimedBufferObserver
+      {
+         public synchronized void flushBuffer(final ByteBuffer buffer, final boolean sync, final List<IOAsyncTask> callbacks)
+         {
+            pendingCallbacks.add(callbacks);
+         }
+
+         public ByteBuffer newBuffer(final int minSize, final int maxSize)
+         {
+            return ByteBuffer.allocate(maxSize);
+         }
+
+         public int getRemainingBytes()
+         {
+            return 1024 * 1024;
+         }
+      }
+
+      TestObserver observer = new TestObserver();
+
+      TimedBuffer timedBuffer = new TimedBuffer(100, timeout, false);
+
+      timedBuffer.setAdaptive(true);
+
+      timedBuffer.start();
+
+      try
+      {
+         timedBuffer.setObserver(observer);
+
+         // nothing measured yet
+         Assert.assertEquals(timeout, timedBuffer.getCurrentTimeout());
+
+         addSync(timedBuffer);
+
+         timedBuffer.flush();
+
+         Assert.assertEquals(1, timedBuffer.getPendingSyncs());
+
+         Thread.sleep(40);
+
+         complete(observer, pendingCallbacks);
+
+         Assert.assertEquals(0, timedBuffer.getPendingSyncs());
+         Assert.assertEquals(1, timedBuffer.getSyncsDone());
+
+         long latency = timedBuffer.getAverageSyncLatency();
+
+         Assert.assertTrue("latency = " + latency, latency >= 40000000l);
+
+         // the device is idle, we only wait for a fraction of the sync time
+         int idleTimeout = timedBuffer.getCurrentTimeout();
+
+         Assert.assertTrue(idleTimeout < latency);
+         Assert.assertTrue(idleTimeout < timeout);
+
+         addSync(timedBuffer);
+
+         timedBuffer.flush();
+
+         // a sync is pending, so it's worth waiting about the time of a sync
+         int busyTimeout = timedBuffer.getCurrentTimeout();
+
+         Assert.assertEquals(Math.min(timeout, latency), busyTimeout);
+         Assert.assertTrue(busyTimeout > idleTimeout);
+
+         timedBuffer.setAdaptive(false);
+
+         Assert.assertEquals(timeout, timedBuffer.getCurrentTimeout());
+
+         complete(observer, pendingCallbacks);
+
+         Assert.assertEquals(0, timedBuffer.getPendingSyncs());
+
+         // the latency is not measured anymore, only the user's callback is flushed
+         addSync(timedBuffer);
+
+         timedBuffer.flush();
+
+         Assert.assertEquals(0, timedBuffer.getPendingSyncs());
+
+         synchronized (observer)
+         {
+            Assert.assertEquals(1, pendingCallbacks.get(0).size());
+         }
+
+         complete(observer, pendingCallbacks);
+
+         Assert.assertEquals(2, timedBuffer.getSyncsDone());
+      }
+      finally
+      {
+         timedBuffer.stop();
+      }
+   }
+
    // Package protected ---------------------------------------------
 
    // Protected -----------------------------------------------------
 
    // Private -------------------------------------------------------
 
+   private void addSync(final TimedBuffer timedBuffer)
+   {
+      timedBuffer.checkSize(10);
+      timedBuffer.addBytes(HornetQBuffers.wrappedBuffer(new byte[10]), true, dummyCallback);
+   }
+
+   private void complete(final Object observer, final List<List<IOAsyncTask>> pendingCallbacks)
+   {
+      synchronized (observer)
+      {
+         Assert.assertEquals(1, pendingCallbacks.size());
+
+         for (IOAsyncTask callback : pendingCallbacks.remove(0))
+         {
+            callback.done();
+         }
+      }
+   }
+
    // Inner classes -------------------------------------------------
 
 }
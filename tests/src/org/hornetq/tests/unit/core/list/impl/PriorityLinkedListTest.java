@@ -13,6 +13,8 @@
 
 package org.hornetq.tests.unit.core.list.impl;
 
+import org.hornetq.utils.IDExtractor;
+import org.hornetq.utils.LinkedListIterator;
 import org.hornetq.utils.PriorityLinkedListImpl;
 
 /**
@@ -31,4 +33,46 @@ public class PriorityLinkedListTest extends PriorityLinkedListTestBase
       return new PriorityLinkedListImpl<Wibble>(10);
    }
 
+   public void testGetAndRemoveWithID()
+   {
+      PriorityLinkedListImpl<Wibble> list = new PriorityLinkedListImpl<Wibble>(10, new IDExtractor<Wibble>()
+      {
+         public long getID(final Wibble element)
+         {
+            return element.s.charAt(0);
+         }
+      });
+
+      list.addTail(a, 0);
+      list.addTail(b, 9);
+      list.addTail(c, 9);
+      list.addTail(d, 4);
+
+      LinkedListIterator<Wibble> iter = list.iterator();
+
+      assertTrue(iter.hasNext());
+      assertEquals(b, iter.next());
+
+      assertEquals(d, list.getWithID('d'));
+      assertNull(list.getWithID('e'));
+
+      assertEquals(b, list.removeWithID('b'));
+      assertEquals(c, list.removeWithID('c'));
+      assertNull(list.removeWithID('c'));
+      assertEquals(2, list.size());
+
+      assertTrue(iter.hasNext());
+      assertEquals(d, iter.next());
+
+      assertEquals(a, list.removeWithID('a'));
+      assertEquals(d, list.poll());
+      assertNull(list.poll());
+      assertTrue(list.isEmpty());
+
+      list.addTail(e, 2);
+      assertEquals(e, list.poll());
+
+      iter.close();
+   }
+
 }
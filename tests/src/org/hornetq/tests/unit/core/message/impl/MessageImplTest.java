@@ -17,12 +17,26 @@ import java.util.Set;
 
 import junit.framework.Assert;
 
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.HornetQBuffers;
+import org.hornetq.api.core.HornetQException;
 import org.hornetq.api.core.Message;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.client.impl.ClientMessageImpl;
 import org.hornetq.core.logging.Logger;
+import org.hornetq.core.protocol.core.impl.PacketImpl;
+import org.hornetq.core.protocol.core.impl.RemotingConnectionImpl;
+import org.hornetq.core.protocol.core.impl.wireformat.SessionReceiveMessage;
+import org.hornetq.core.remoting.impl.invm.InVMConnection;
+import org.hornetq.core.server.impl.ServerMessageImpl;
+import org.hornetq.spi.core.protocol.ProtocolType;
+import org.hornetq.spi.core.protocol.RemotingConnection;
+import org.hornetq.spi.core.remoting.Acceptor;
+import org.hornetq.spi.core.remoting.Connection;
+import org.hornetq.spi.core.remoting.ConnectionLifeCycleListener;
 import org.hornetq.tests.util.RandomUtil;
 import org.hornetq.tests.util.UnitTestCase;
+import org.jboss.netty.buffer.CompositeChannelBuffer;
 
 /**
  * 
@@ -224,6 +238,74 @@ public class MessageImplTest extends UnitTestCase
       }
    }
 
+   public void testDeliveriesShareEncoding() throws Exception
+   {
+      deliver(1000, true);
+   }
+
+   public void testSmallDeliveriesCopyEncoding() throws Exception
+   {
+      deliver(10, false);
+   }
+
+   public void testPropertiesAddedToFixedSizeBuffer() throws Exception
+   {
+      ServerMessageImpl message = new ServerMessageImpl(1, 1500);
+      message.setAddress(new SimpleString("address"));
+      message.getBodyBuffer().writeBytes(new byte[] { 1, 2, 3 });
+      message.putStringProperty(new SimpleString("prop"), new SimpleString("value"));
+
+      // as a message decoded from a received packet, on a fixed size buffer
+      HornetQBuffer encoded = message.getEncodedBuffer();
+      byte[] bytes = new byte[encoded.writerIndex()];
+      encoded.getBytes(0, bytes);
+
+      ServerMessageImpl received = new ServerMessageImpl();
+      received.decodeFromBuffer(HornetQBuffers.wrappedBuffer(bytes));
+
+      received.putStringProperty(new SimpleString("added"), new SimpleString("added-value"));
+
+      encoded = received.getEncodedBuffer();
+      bytes = new byte[encoded.writerIndex()];
+      encoded.getBytes(0, bytes);
+
+      ServerMessageImpl copy = new ServerMessageImpl();
+      copy.decodeFromBuffer(HornetQBuffers.wrappedBuffer(bytes));
+
+      Assert.assertEquals("value", copy.getStringProperty("prop"));
+      Assert.assertEquals("added-value", copy.getStringProperty("added"));
+
+      byte[] body = new byte[3];
+      copy.getBodyBuffer().readBytes(body);
+      UnitTestCase.assertEqualsByteArrays(new byte[] { 1, 2, 3 }, body);
+   }
+
+   public void testCopyOfFixedSizeBufferIsDynamic() throws Exception
+   {
+      ServerMessageImpl received = decodeFromFixedSizeBuffer();
+
+      HornetQBuffer copy = received.copy().getEncodedBuffer();
+
+      // a fixed size buffer would throw IndexOutOfBoundsException here
+      copy.writerIndex(copy.capacity());
+      copy.writeByte((byte)1);
+   }
+
+   public void testForcedCopyOfFixedSizeBufferIsDynamic() throws Exception
+   {
+      ServerMessageImpl received = decodeFromFixedSizeBuffer();
+
+      received.getEncodedBuffer();
+
+      // the encoding gets smaller, so the buffer is copied (as it was used) but doesn't need to grow
+      received.removeProperty(new SimpleString("prop"));
+
+      HornetQBuffer copy = received.getEncodedBuffer();
+
+      copy.writerIndex(copy.capacity());
+      copy.writeByte((byte)1);
+   }
+
    // Protected -------------------------------------------------------------------------------
 
    protected void assertMessagesEquivalent(final Message msg1, final Message msg2)
@@ -262,4 +344,107 @@ public class MessageImplTest extends UnitTestCase
 
    // Private ----------------------------------------------------------------------------------
 
+   /** As a message decoded from a received packet, on a fixed size buffer */
+   private ServerMessageImpl decodeFromFixedSizeBuffer() throws Exception
+   {
+      ServerMessageImpl message = new ServerMessageImpl(1, 1500);
+      message.setAddress(new SimpleString("address"));
+      message.getBodyBuffer().writeBytes(new byte[] { 1, 2, 3 });
+      message.putStringProperty(new SimpleString("prop"), new SimpleString("value"));
+
+      HornetQBuffer encoded = message.getEncodedBuffer();
+      byte[] bytes = new byte[encoded.writerIndex()];
+      encoded.getBytes(0, bytes);
+
+      ServerMessageImpl received = new ServerMessageImpl();
+      received.decodeFromBuffer(HornetQBuffers.wrappedBuffer(bytes));
+
+      return received;
+   }
+
+   private void deliver(final int bodySize, final boolean shared) throws Exception
+   {
+      byte[] body = new byte[bodySize];
+      for (int i = 0; i < body.length; i++)
+      {
+         body[i] = RandomUtil.randomByte();
+      }
+
+      SimpleString prop = new SimpleString("prop");
+
+      ServerMessageImpl message = new ServerMessageImpl(1, 1500);
+      message.setAddress(new SimpleString("address"));
+      message.getBodyBuffer().writeBytes(body);
+      message.putStringProperty(prop, new SimpleString("value"));
+
+      InVMConnection transport = new InVMConnection(null, 0, null, new FakeListener(), null);
+
+      RemotingConnection connection = new RemotingConnectionImpl(transport, -1, null);
+
+      HornetQBuffer first = new SessionReceiveMessage(1, message, 1).encode(connection);
+      HornetQBuffer second = new SessionReceiveMessage(2, message, 3).encode(connection);
+
+      // shared deliveries wrap the message encoding between their own headers and trailer
+      Assert.assertEquals(shared, first.channelBuffer() instanceof CompositeChannelBuffer);
+      Assert.assertEquals(shared, second.channelBuffer() instanceof CompositeChannelBuffer);
+
+      assertReceived(first, 1, 1, body, "value");
+      assertReceived(second, 2, 3, body, "value");
+
+      // a change on the message doesn't touch the encoding already being delivered
+      message.putStringProperty(prop, new SimpleString("changed"));
+
+      HornetQBuffer third = new SessionReceiveMessage(3, message, 1).encode(connection);
+
+      assertReceived(first, 1, 1, body, "value");
+      assertReceived(third, 3, 1, body, "changed");
+   }
+
+   private void assertReceived(final HornetQBuffer encoded,
+                               final long consumerID,
+                               final int deliveryCount,
+                               final byte[] body,
+                               final String value)
+   {
+      HornetQBuffer buffer = encoded.copy(0, encoded.writerIndex());
+
+      Assert.assertEquals(buffer.writerIndex() - 4, buffer.readInt());
+      Assert.assertEquals(PacketImpl.SESS_RECEIVE_MSG, buffer.readByte());
+
+      SessionReceiveMessage received = new SessionReceiveMessage();
+      received.decode(buffer);
+
+      Assert.assertEquals(consumerID, received.getConsumerID());
+      Assert.assertEquals(deliveryCount, received.getDeliveryCount());
+
+      Message message = received.getMessage();
+
+      Assert.assertEquals(new SimpleString("address"), message.getAddress());
+      Assert.assertEquals(value, message.getStringProperty("prop"));
+
+      byte[] receivedBody = new byte[body.length];
+      message.getBodyBuffer().readBytes(receivedBody);
+      UnitTestCase.assertEqualsByteArrays(body, receivedBody);
+   }
+
+   // Inner classes ----------------------------------------------------------------------------
+
+   private static class FakeListener implements ConnectionLifeCycleListener
+   {
+      public void connectionCreated(final Acceptor acceptor, final Connection connection, final ProtocolType protocol)
+      {
+      }
+
+      public void connectionDestroyed(final Object connectionID)
+      {
+      }
+
+      public void connectionException(final Object connectionID, final HornetQException me)
+      {
+      }
+
+      public void connectionReadyForWrites(final Object connectionID, final boolean ready)
+      {
+      }
+   }
 }
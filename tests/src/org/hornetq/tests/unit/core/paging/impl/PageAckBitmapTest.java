@@ -0,0 +1,92 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.unit.core.paging.impl;
+
+import junit.framework.Assert;
+
+import org.hornetq.core.paging.cursor.PagePosition;
+import org.hornetq.core.paging.cursor.impl.PageAckBitmap;
+import org.hornetq.core.paging.cursor.impl.PagePositionImpl;
+import org.hornetq.tests.util.UnitTestCase;
+
+/**
+ * A PageAckBitmapTest
+ */
+public class PageAckBitmapTest extends UnitTestCase
+{
+
+   // Public --------------------------------------------------------
+
+   public void testAckAndRemove()
+   {
+      PageAckBitmap bitmap = new PageAckBitmap();
+
+      Assert.assertTrue(bitmap.addACK(new PagePositionImpl(1, 10)));
+      Assert.assertFalse(bitmap.addACK(new PagePositionImpl(1, 10)));
+
+      Assert.assertTrue(bitmap.isAcked(new PagePositionImpl(1, 10)));
+      Assert.assertTrue(bitmap.isRemoved(new PagePositionImpl(1, 10)));
+
+      Assert.assertFalse(bitmap.isAcked(new PagePositionImpl(1, 9)));
+      Assert.assertFalse(bitmap.isRemoved(new PagePositionImpl(1, 9)));
+
+      bitmap.remove(new PagePositionImpl(1, 9));
+
+      Assert.assertTrue(bitmap.isRemoved(new PagePositionImpl(1, 9)));
+      Assert.assertFalse(bitmap.isAcked(new PagePositionImpl(1, 9)));
+
+      Assert.assertTrue(bitmap.addACK(new PagePositionImpl(1, 9)));
+
+      // bookmarks before the first message are not counted
+      Assert.assertTrue(bitmap.addACK(new PagePositionImpl(1, -1)));
+      Assert.assertFalse(bitmap.isRemoved(new PagePositionImpl(1, -1)));
+
+      Assert.assertEquals(2, bitmap.getNumberOfAcks());
+   }
+
+   public void testRecordIDs()
+   {
+      PageAckBitmap bitmap = new PageAckBitmap();
+
+      for (int i = 0; i < 100; i++)
+      {
+         PagePosition pos = new PagePositionImpl(1, i);
+
+         // only the even positions are persistent
+         if (i % 2 == 0)
+         {
+            pos.setRecordID(1000 + i);
+         }
+
+         bitmap.addACK(pos);
+      }
+
+      long[] records = bitmap.getRecordIDs();
+
+      Assert.assertEquals(50, records.length);
+
+      for (int i = 0; i < records.length; i++)
+      {
+         Assert.assertEquals(1000 + i * 2, records[i]);
+      }
+
+      bitmap.clearACKs();
+
+      Assert.assertEquals(0, bitmap.getRecordIDs().length);
+      Assert.assertEquals(0, bitmap.getNumberOfAcks());
+
+      // removed references are still ignored after the acks were cleared
+      Assert.assertTrue(bitmap.isRemoved(new PagePositionImpl(1, 50)));
+   }
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.unit.core.paging.impl;
+
+import junit.framework.Assert;
+
+import org.hornetq.core.paging.Page;
+import org.hornetq.core.paging.PagedMessage;
+import org.hornetq.core.paging.cursor.PageCache;
+import org.hornetq.core.paging.cursor.impl.PageCacheMap;
+import org.hornetq.core.paging.impl.PagedMessageImpl;
+import org.hornetq.core.server.impl.ServerMessageImpl;
+import org.hornetq.core.settings.impl.PageCacheEvictionPolicy;
+import org.hornetq.tests.util.UnitTestCase;
+
+/**
+ * A PageCacheMapTest
+ */
+public class PageCacheMapTest extends UnitTestCase
+{
+
+   // Public --------------------------------------------------------
+
+   public void testMaxElementsLRU()
+   {
+      PageCacheMap map = new PageCacheMap(3, -1, PageCacheEvictionPolicy.LRU);
+
+      for (long i = 1; i <= 3; i++)
+      {
+         map.put(i, new FakePageCache(i, 10));
+      }
+
+      // page 1 becomes the most recently used
+      Assert.assertNotNull(map.get(1));
+
+      map.put(4, new FakePageCache(4, 10));
+
+      Assert.assertEquals(3, map.size());
+      Assert.assertNull(map.peek(2));
+      Assert.assertNotNull(map.peek(1));
+      Assert.assertEquals(1, map.getEvictions());
+
+      Assert.assertNull(map.get(2));
+      Assert.assertEquals(1, map.getHits());
+      Assert.assertEquals(1, map.getMisses());
+   }
+
+   public void testMaxBytes()
+   {
+      FakePageCache page = new FakePageCache(1, 10);
+
+      long pageSize = sizeOf(page);
+
+      PageCacheMap map = new PageCacheMap(-1, pageSize * 3, PageCacheEvictionPolicy.LRU);
+
+      for (long i = 1; i <= 10; i++)
+      {
+         map.put(i, new FakePageCache(i, 10));
+         Assert.assertTrue(map.getSizeBytes() <= pageSize * 3);
+      }
+
+      Assert.assertEquals(3, map.size());
+      Assert.assertEquals(pageSize * 3, map.getSizeBytes());
+      Assert.assertEquals(7, map.getEvictions());
+   }
+
+   public void testLiveAndReadingPagesAreNotEvicted()
+   {
+      PageCacheMap map = new PageCacheMap(1, -1, PageCacheEvictionPolicy.LRU);
+
+      FakePageCache live = new FakePageCache(1, 10);
+      live.live = true;
+      map.put(1, live);
+
+      FakePageCache reading = new FakePageCache(2, 0);
+      reading.setMessages(null);
+      map.put(2, reading);
+
+      map.put(3, new FakePageCache(3, 10));
+
+      // only page 3 could be evicted, but it's the one used last
+      Assert.assertEquals(3, map.size());
+      Assert.assertEquals(0, map.getEvictions());
+
+      // the page is read, now it can be evicted
+      reading.setMessages(createMessages(10));
+      map.put(2, reading);
+      Assert.assertNull(map.peek(3));
+      Assert.assertNotNull(map.peek(1));
+      Assert.assertNotNull(map.peek(2));
+   }
+
+   public void testSizeBytesFollowsRemovals()
+   {
+      PageCacheMap map = new PageCacheMap(-1, -1, PageCacheEvictionPolicy.LRU);
+
+      FakePageCache page1 = new FakePageCache(1, 10);
+      FakePageCache page2 = new FakePageCache(2, 5);
+      map.put(1, page1);
+      map.put(2, page2);
+      Assert.assertEquals(sizeOf(page1) + sizeOf(page2), map.getSizeBytes());
+
+      // replacing a page accounts the new one only
+      FakePageCache page1Again = new FakePageCache(1, 3);
+      map.put(1, page1Again);
+      Assert.assertEquals(sizeOf(page1Again) + sizeOf(page2), map.getSizeBytes());
+
+      // a page being read is accounted once it's read
+      FakePageCache reading = new FakePageCache(3, 0);
+      reading.setMessages(null);
+      map.put(3, reading);
+      Assert.assertEquals(sizeOf(page1Again) + sizeOf(page2), map.getSizeBytes());
+      reading.setMessages(createMessages(7));
+      Assert.assertEquals(sizeOf(page1Again) + sizeOf(page2) + sizeOf(reading), map.getSizeBytes());
+
+      map.remove(2);
+      Assert.assertEquals(sizeOf(page1Again) + sizeOf(reading), map.getSizeBytes());
+
+      // evicting page 1, the one used least recently
+      map.setMaxBytes(sizeOf(reading));
+      Assert.assertNull(map.peek(1));
+      Assert.assertEquals(sizeOf(reading), map.getSizeBytes());
+
+      map.clear();
+      Assert.assertEquals(0, map.getSizeBytes());
+   }
+
+   public void testLFU()
+   {
+      PageCacheMap map = new PageCacheMap(3, -1, PageCacheEvictionPolicy.LFU);
+
+      for (long i = 1; i <= 3; i++)
+      {
+         map.put(i, new FakePageCache(i, 10));
+      }
+
+      for (int i = 0; i < 5; i++)
+      {
+         map.get(1);
+      }
+
+      map.get(2);
+      map.get(2);
+      map.get(3);
+
+      map.put(4, new FakePageCache(4, 10));
+
+      Assert.assertNull(map.peek(3));
+      Assert.assertNotNull(map.peek(1));
+      Assert.assertNotNull(map.peek(2));
+   }
+
+   public void testFurthestNextUse()
+   {
+      PageCacheMap map = new PageCacheMap(3, -1, PageCacheEvictionPolicy.FURTHEST_NEXT_USE);
+
+      // subscriptions reading pages 2 and 5
+      map.setReaderPages(new long[] { 2, 5, -1 });
+
+      map.put(1, new FakePageCache(1, 10));
+      map.put(2, new FakePageCache(2, 10));
+      map.put(4, new FakePageCache(4, 10));
+
+      // page 1 is behind every subscription
+      map.put(5, new FakePageCache(5, 10));
+      Assert.assertNull(map.peek(1));
+
+      // page 4 is the one needed last (two pages ahead of the subscription on page 2)
+      map.get(4);
+      map.put(6, new FakePageCache(6, 10));
+      Assert.assertNull(map.peek(4));
+      Assert.assertNotNull(map.peek(2));
+      Assert.assertNotNull(map.peek(5));
+      Assert.assertNotNull(map.peek(6));
+   }
+
+   public void testPinnedPagesEvictedLast()
+   {
+      PageCacheMap map = new PageCacheMap(2, -1, PageCacheEvictionPolicy.LRU);
+
+      // two subscriptions on page 1
+      map.pin(1);
+      map.pin(1);
+
+      map.put(1, new FakePageCache(1, 10));
+      map.put(2, new FakePageCache(2, 10));
+      map.put(3, new FakePageCache(3, 10));
+
+      // page 1 is the least recently used but it's pinned
+      Assert.assertNotNull(map.peek(1));
+      Assert.assertNull(map.peek(2));
+      Assert.assertEquals(2, map.getPins(1));
+
+      map.unpin(1);
+      map.put(4, new FakePageCache(4, 10));
+      Assert.assertNotNull(map.peek(1));
+      Assert.assertNull(map.peek(3));
+
+      // the last pin is gone, it's evicted as usual
+      map.unpin(1);
+      Assert.assertEquals(0, map.getPins(1));
+      map.put(5, new FakePageCache(5, 10));
+      Assert.assertNull(map.peek(1));
+
+      Assert.assertEquals(0, map.getPinnedEvictions());
+   }
+
+   public void testPinnedPagesAreBounded()
+   {
+      PageCacheMap map = new PageCacheMap(2, -1, PageCacheEvictionPolicy.LRU);
+
+      for (long i = 1; i <= 3; i++)
+      {
+         map.pin(i);
+         map.put(i, new FakePageCache(i, 10));
+      }
+
+      // every page is pinned, the cache still keeps its limit
+      Assert.assertEquals(2, map.size());
+      Assert.assertNull(map.peek(1));
+      Assert.assertEquals(1, map.getPinnedEvictions());
+
+      // unpinning a page that was never pinned is ignored
+      map.unpin(10);
+      Assert.assertEquals(0, map.getPins(10));
+   }
+
+   // Private -------------------------------------------------------
+
+   private static long sizeOf(final PageCache cache)
+   {
+      long size = 0;
+      for (PagedMessage msg : cache.getMessages())
+      {
+         size += msg.getEncodeSize();
+      }
+      return size;
+   }
+
+   private static PagedMessage[] createMessages(final int numberOfMessages)
+   {
+      PagedMessage[] messages = new PagedMessage[numberOfMessages];
+
+      for (int i = 0; i < numberOfMessages; i++)
+      {
+         ServerMessageImpl msg = new ServerMessageImpl(i, 1024);
+         msg.getBodyBuffer().writeBytes(new byte[100]);
+         messages[i] = new PagedMessageImpl(msg, new long[] { 1 });
+      }
+
+      return messages;
+   }
+
+   // Inner classes -------------------------------------------------
+
+   private static class FakePageCache implements PageCache
+   {
+      final long pageId;
+
+      boolean live;
+
+      PagedMessage[] messages;
+
+      FakePageCache(final long pageId, final int numberOfMessages)
+      {
+         this.pageId = pageId;
+         messages = createMessages(numberOfMessages);
+      }
+
+      public Page getPage()
+      {
+         return null;
+      }
+
+      public long getPageId()
+      {
+         return pageId;
+      }
+
+      public int getNumberOfMessages()
+      {
+         return messages.length;
+      }
+
+      public void setMessages(final PagedMessage[] messages)
+      {
+         this.messages = messages;
+      }
+
+      public PagedMessage[] getMessages()
+      {
+         return messages;
+      }
+
+      public boolean isLive()
+      {
+         return live;
+      }
+
+      public PagedMessage getMessage(final int messageNumber)
+      {
+         return messages[messageNumber];
+      }
+
+      public void lock()
+      {
+      }
+
+      public void unlock()
+      {
+      }
+
+      public void close()
+      {
+      }
+   }
+}
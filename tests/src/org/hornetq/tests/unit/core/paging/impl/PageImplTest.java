@@ -13,6 +13,8 @@
 
 package org.hornetq.tests.unit.core.paging.impl;
 
+import java.io.File;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
@@ -23,6 +25,7 @@ import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.journal.SequentialFile;
 import org.hornetq.core.journal.SequentialFileFactory;
+import org.hornetq.core.journal.impl.MappedSequentialFileFactory;
 import org.hornetq.core.journal.impl.NIOSequentialFileFactory;
 import org.hornetq.core.paging.PagedMessage;
 import org.hornetq.core.paging.impl.PageImpl;
@@ -31,6 +34,7 @@ import org.hornetq.core.persistence.impl.nullpm.NullStorageManager;
 import org.hornetq.core.server.ServerMessage;
 import org.hornetq.core.server.impl.ServerMessageImpl;
 import org.hornetq.tests.unit.core.journal.impl.fakes.FakeSequentialFileFactory;
+import org.hornetq.tests.util.RandomUtil;
 import org.hornetq.tests.util.UnitTestCase;
 
 /**
@@ -62,6 +66,191 @@ public class PageImplTest extends UnitTestCase
       testDamagedPage(new NIOSequentialFileFactory(getTestDir()), 1000);
    }
 
+   public void testPageWithMappedRead() throws Exception
+   {
+      recreateDirectory(getTestDir());
+      testAdd(new MappedSequentialFileFactory(getTestDir()), 1000);
+   }
+
+   public void testDamagedDataWithMappedRead() throws Exception
+   {
+      recreateDirectory(getTestDir());
+      testDamagedPage(new MappedSequentialFileFactory(getTestDir()), 1000);
+   }
+
+   /** Messages read from a mapped page are only decoded when used */
+   public void testMappedReadIsLazy() throws Exception
+   {
+      recreateDirectory(getTestDir());
+
+      SequentialFileFactory factory = new MappedSequentialFileFactory(getTestDir());
+
+      SequentialFile file = factory.createSequentialFile("00010.page", 1);
+
+      PageImpl impl = new PageImpl(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+
+      impl.open();
+
+      SimpleString simpleDestination = new SimpleString("Test");
+
+      addPageElements(simpleDestination, impl, 10);
+
+      int pageSize = impl.getSize();
+
+      impl.close();
+
+      file = factory.createSequentialFile("00010.page", 1);
+      file.open();
+      impl = new PageImpl(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+
+      List<PagedMessage> msgs = impl.read(new NullStorageManager());
+
+      impl.close();
+
+      Assert.assertEquals(10, msgs.size());
+
+      int encodeSize = 0;
+
+      for (PagedMessage msg : msgs)
+      {
+         Assert.assertTrue(msg.toString().contains("not decoded"));
+
+         int lazySize = msg.getEncodeSize();
+
+         encodeSize += lazySize + PageImpl.SIZE_RECORD;
+
+         // the mapping is still valid after the file was closed
+         Assert.assertEquals(simpleDestination, msg.getMessage().getAddress());
+
+         Assert.assertEquals(lazySize, msg.getEncodeSize());
+
+         Assert.assertFalse(msg.toString().contains("not decoded"));
+      }
+
+      Assert.assertEquals(pageSize, encodeSize);
+
+      impl.delete(null);
+   }
+
+   public void testCompressedWithNIO() throws Exception
+   {
+      recreateDirectory(getTestDir());
+      testCompressed(new NIOSequentialFileFactory(getTestDir()), 100);
+   }
+
+   public void testCompressedWithMappedRead() throws Exception
+   {
+      recreateDirectory(getTestDir());
+      testCompressed(new MappedSequentialFileFactory(getTestDir()), 100);
+   }
+
+   public void testCompressedFake() throws Exception
+   {
+      testCompressed(new FakeSequentialFileFactory(1, false), 10);
+   }
+
+   /** A compressed record that can't be inflated is handled as any other damaged record */
+   public void testDamagedCompressedRecord() throws Exception
+   {
+      recreateDirectory(getTestDir());
+
+      SequentialFileFactory factory = new NIOSequentialFileFactory(getTestDir());
+
+      SequentialFile file = factory.createSequentialFile("00010.page", 1);
+
+      PageImpl impl = new PageImpl(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+
+      impl.setCompressed(true);
+
+      impl.open();
+
+      for (int i = 0; i < 3; i++)
+      {
+         impl.write(createMessage(i, createTextBody(i)));
+      }
+
+      impl.close();
+
+      // overwriting the deflated data of the first record, after its start byte, size and encode size
+      RandomAccessFile rfile = new RandomAccessFile(new File(getTestDir(), "00010.page"), "rw");
+      try
+      {
+         rfile.seek(9);
+         rfile.write(new byte[20]);
+      }
+      finally
+      {
+         rfile.close();
+      }
+
+      file = factory.createSequentialFile("00010.page", 1);
+      impl = new PageImpl(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+      impl.open();
+
+      Assert.assertEquals(0, impl.read(new NullStorageManager()).size());
+
+      impl.delete(null);
+   }
+
+   protected void testCompressed(final SequentialFileFactory factory, final int numberOfElements) throws Exception
+   {
+      SequentialFile file = factory.createSequentialFile("00010.page", 1);
+
+      PageImpl impl = new PageImpl(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+
+      impl.setCompressed(true);
+
+      impl.setIndexed(true);
+
+      impl.open();
+
+      ArrayList<byte[]> bodies = new ArrayList<byte[]>();
+
+      int uncompressedSize = 0;
+
+      for (int i = 0; i < numberOfElements; i++)
+      {
+         // random bodies can't be compressed and are written as they are
+         byte[] body = i % 2 == 0 ? createTextBody(i) : RandomUtil.randomBytes(1024);
+
+         PagedMessage msg = createMessage(i, body);
+
+         bodies.add(body);
+
+         uncompressedSize += msg.getEncodeSize() + PageImpl.SIZE_RECORD;
+
+         impl.write(msg);
+      }
+
+      impl.sync();
+      impl.close();
+
+      // half of the messages compress several times
+      Assert.assertTrue("size=" + impl.getSize() + ", uncompressed=" + uncompressedSize,
+                        impl.getSize() < uncompressedSize * 3 / 4);
+
+      file = factory.createSequentialFile("00010.page", 1);
+      impl = new PageImpl(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+      impl.open();
+
+      List<PagedMessage> msgs = impl.read(new NullStorageManager());
+
+      Assert.assertEquals(numberOfElements, msgs.size());
+
+      for (int i = 0; i < numberOfElements; i++)
+      {
+         assertMessage(i, bodies.get(i), msgs.get(i));
+      }
+
+      // through the index, one compressed and one uncompressed
+      assertMessage(0, bodies.get(0), impl.readMessage(new NullStorageManager(), 0));
+      assertMessage(1, bodies.get(1), impl.readMessage(new NullStorageManager(), 1));
+
+      impl.close();
+
+      impl.delete(null);
+   }
+
    public void testPageFakeWithoutCallbacks() throws Exception
    {
       testAdd(new FakeSequentialFileFactory(1, false), 10);
@@ -73,6 +262,102 @@ public class PageImplTest extends UnitTestCase
       testDamagedPage(new FakeSequentialFileFactory(1, false), 100);
    }
 
+   public void testIndexedReadWithNIO() throws Exception
+   {
+      recreateDirectory(getTestDir());
+      testIndexedRead(new NIOSequentialFileFactory(getTestDir()), 100);
+   }
+
+   public void testIndexedReadFake() throws Exception
+   {
+      testIndexedRead(new FakeSequentialFileFactory(1, false), 10);
+   }
+
+   /** An index not matching the records already on the page is not used */
+   public void testIndexDiscarded() throws Exception
+   {
+      recreateDirectory(getTestDir());
+
+      SequentialFileFactory factory = new NIOSequentialFileFactory(getTestDir());
+
+      SequentialFile file = factory.createSequentialFile("00010.page", 1);
+
+      PageImpl impl = new PageImpl(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+
+      impl.open();
+
+      SimpleString simpleDestination = new SimpleString("Test");
+
+      addPageElements(simpleDestination, impl, 5);
+
+      // the index is enabled after the page already had records
+      impl.setIndexed(true);
+
+      addPageElements(simpleDestination, impl, 5);
+
+      impl.close();
+
+      Assert.assertEquals(0, factory.listFiles("index").size());
+
+      file = factory.createSequentialFile("00010.page", 1);
+      impl = new PageImpl(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+      impl.open();
+
+      Assert.assertNull(impl.readMessage(new NullStorageManager(), 7));
+      Assert.assertEquals(10, impl.read(new NullStorageManager()).size());
+
+      impl.delete(null);
+   }
+
+   protected void testIndexedRead(final SequentialFileFactory factory, final int numberOfElements) throws Exception
+   {
+      SequentialFile file = factory.createSequentialFile("00010.page", 1);
+
+      PageImpl impl = new PageImpl(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+
+      impl.setIndexed(true);
+
+      impl.open();
+
+      SimpleString simpleDestination = new SimpleString("Test");
+
+      ArrayList<HornetQBuffer> buffers = addPageElements(simpleDestination, impl, numberOfElements);
+
+      impl.sync();
+      impl.close();
+
+      Assert.assertEquals(1, factory.listFiles("index").size());
+
+      file = factory.createSequentialFile("00010.page", 1);
+      impl = new PageImpl(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+      impl.open();
+
+      // backwards, so every read has to position the file
+      for (int i = numberOfElements - 1; i >= 0; i--)
+      {
+         PagedMessage msg = impl.readMessage(new NullStorageManager(), i);
+
+         Assert.assertNotNull(msg);
+
+         Assert.assertEquals(simpleDestination, msg.getMessage().getAddress());
+
+         UnitTestCase.assertEqualsByteArrays(buffers.get(i).toByteBuffer().array(), msg.getMessage()
+                                                                                       .getBodyBuffer()
+                                                                                       .toByteBuffer()
+                                                                                       .array());
+      }
+
+      Assert.assertNull(impl.readMessage(new NullStorageManager(), numberOfElements));
+
+      impl.close();
+
+      impl.delete(null);
+
+      Assert.assertEquals(0, factory.listFiles("page").size());
+
+      Assert.assertEquals(0, factory.listFiles("index").size());
+   }
+
    /** Validate if everything we add is recovered */
    protected void testAdd(final SequentialFileFactory factory, final int numberOfElements) throws Exception
    {
@@ -202,6 +487,46 @@ public class PageImplTest extends UnitTestCase
     * @return
     * @throws Exception
     */
+   private PagedMessage createMessage(final int i, final byte[] body)
+   {
+      ServerMessage msg = new ServerMessageImpl(i, body.length + 100);
+
+      msg.getBodyBuffer().writeBytes(body);
+
+      msg.setAddress(new SimpleString("Test"));
+
+      return new PagedMessageImpl(msg, new long[] { i });
+   }
+
+   private void assertMessage(final int i, final byte[] body, final PagedMessage msg)
+   {
+      Assert.assertNotNull(msg);
+
+      Assert.assertEquals(i, msg.getQueueIDs()[0]);
+
+      Assert.assertEquals(i, msg.getMessage().getMessageID());
+
+      byte[] actual = new byte[body.length];
+
+      HornetQBuffer bodyBuffer = msg.getMessage().getBodyBuffer();
+      bodyBuffer.readerIndex(0);
+      bodyBuffer.readBytes(actual);
+
+      UnitTestCase.assertEqualsByteArrays(body, actual);
+   }
+
+   private byte[] createTextBody(final int i)
+   {
+      StringBuffer text = new StringBuffer();
+
+      while (text.length() < 1024)
+      {
+         text.append("{\"id\":" + i + ",\"customer\":\"customer-" + i + "\",\"status\":\"PENDING\",\"amount\":100.0}");
+      }
+
+      return text.toString().getBytes();
+   }
+
    protected ArrayList<HornetQBuffer> addPageElements(final SimpleString simpleDestination,
                                                       final PageImpl page,
                                                       final int numberOfElements) throws Exception
@@ -16,13 +16,17 @@ package org.hornetq.tests.unit.core.paging.impl;
 import java.io.File;
 import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import junit.framework.Assert;
 
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.paging.Page;
 import org.hornetq.core.paging.PagedMessage;
+import org.hornetq.core.paging.PagingStore;
 import org.hornetq.core.paging.impl.PagingManagerImpl;
 import org.hornetq.core.paging.impl.PagingStoreFactoryNIO;
 import org.hornetq.core.paging.impl.TestSupportPageStore;
@@ -112,6 +116,68 @@ public class PagingManagerImplTest extends UnitTestCase
       Assert.assertFalse(store.page(msg, new RoutingContextImpl(null)));
    }
 
+   public void testGlobalMaxSize() throws Exception
+   {
+      HierarchicalRepository<AddressSettings> addressSettings = new HierarchicalObjectRepository<AddressSettings>();
+      AddressSettings settings = new AddressSettings();
+      settings.setAddressFullMessagePolicy(AddressFullMessagePolicy.BLOCK);
+      addressSettings.setDefault(settings);
+
+      ExecutorService executor = Executors.newCachedThreadPool();
+
+      PagingStoreFactoryNIO storeFactory = new PagingStoreFactoryNIO(getPageDir(),
+                                                                     100,
+                                                                     null,
+                                                                     new OrderedExecutorFactory(executor),
+                                                                     true);
+
+      storeFactory.setPostOffice(new FakePostOffice());
+
+      PagingManagerImpl managerImpl = new PagingManagerImpl(storeFactory,
+                                                            new NullStorageManager(),
+                                                            addressSettings,
+                                                            1000);
+
+      managerImpl.start();
+
+      PagingStore store1 = managerImpl.getPageStore(new SimpleString("store1"));
+      PagingStore store2 = managerImpl.getPageStore(new SimpleString("store2"));
+
+      store1.addSize(600);
+      Assert.assertFalse(managerImpl.isGlobalFull());
+
+      store2.addSize(500);
+      Assert.assertTrue(managerImpl.isGlobalFull());
+      Assert.assertEquals(1100, managerImpl.getTotalMemory());
+
+      final CountDownLatch latch = new CountDownLatch(1);
+
+      // neither address is over its own limit, only the global one
+      store1.executeRunnableWhenMemoryAvailable(new Runnable()
+      {
+         public void run()
+         {
+            latch.countDown();
+         }
+      });
+
+      Assert.assertFalse(latch.await(100, TimeUnit.MILLISECONDS));
+
+      // under the limit but not under the resume size
+      store2.addSize(-150);
+      Assert.assertTrue(managerImpl.isGlobalFull());
+      Assert.assertFalse(latch.await(100, TimeUnit.MILLISECONDS));
+
+      store2.addSize(-50);
+      Assert.assertFalse(managerImpl.isGlobalFull());
+      Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+      managerImpl.stop();
+
+      executor.shutdown();
+      Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+   }
+
    // Package protected ---------------------------------------------
 
    // Protected -----------------------------------------------------
@@ -25,7 +25,10 @@ import org.hornetq.core.journal.SequentialFileFactory;
 import org.hornetq.core.journal.impl.NIOSequentialFileFactory;
 import org.hornetq.core.message.impl.MessageInternal;
 import org.hornetq.core.paging.*;
+import org.hornetq.core.paging.cursor.PageCursorProvider;
 import org.hornetq.core.paging.cursor.PagePosition;
+import org.hornetq.core.paging.cursor.PageSubscriptionCounter;
+import org.hornetq.core.paging.cursor.PagedReference;
 import org.hornetq.core.paging.impl.PageTransactionInfoImpl;
 import org.hornetq.core.paging.impl.PagingStoreImpl;
 import org.hornetq.core.paging.impl.TestSupportPageStore;
@@ -42,8 +45,10 @@ import org.hornetq.core.replication.ReplicationManager;
 import org.hornetq.core.server.LargeServerMessage;
 import org.hornetq.core.server.MessageReference;
 import org.hornetq.core.server.Queue;
+import org.hornetq.core.server.RoutingContext;
 import org.hornetq.core.server.ServerMessage;
 import org.hornetq.core.server.group.impl.GroupBinding;
+import org.hornetq.core.server.impl.QueueImpl;
 import org.hornetq.core.server.impl.RoutingContextImpl;
 import org.hornetq.core.server.impl.ServerMessageImpl;
 import org.hornetq.core.settings.HierarchicalRepository;
@@ -56,6 +61,7 @@ import org.hornetq.tests.unit.core.server.impl.fakes.FakePostOffice;
 import org.hornetq.tests.util.RandomUtil;
 import org.hornetq.tests.util.UnitTestCase;
 import org.hornetq.utils.ExecutorFactory;
+import org.hornetq.utils.LinkedListIterator;
 
 import javax.transaction.xa.Xid;
 import java.nio.ByteBuffer;
@@ -147,6 +153,209 @@ public class PagingStoreImplTest extends UnitTestCase
 
    }
 
+   public void testPageCacheBoundedByDefault() throws Exception
+   {
+      AddressSettings addressSettings = new AddressSettings();
+      addressSettings.setAddressFullMessagePolicy(AddressFullMessagePolicy.PAGE);
+
+      PagingStore storeImpl = new PagingStoreImpl(PagingStoreImplTest.destinationTestName,
+                                                  null,
+                                                  100,
+                                                  createMockManager(),
+                                                  createStorageManagerMock(),
+                                                  new FakeSequentialFileFactory(),
+                                                  null,
+                                                  PagingStoreImplTest.destinationTestName,
+                                                  addressSettings,
+                                                  getExecutorFactory().getExecutor(),
+                                                  true);
+
+      // the decoded pages are strongly referenced, the cache can't be left unbounded
+      Assert.assertTrue(AddressSettings.DEFAULT_PAGE_CACHE_MAX_BYTES > 0);
+      Assert.assertEquals(AddressSettings.DEFAULT_PAGE_CACHE_MAX_BYTES,
+                          storeImpl.getCursorProvier().getCacheMaxSizeBytes());
+   }
+
+   public void testSnapshotCountersCommitFailure() throws Exception
+   {
+      SequentialFileFactory factory = new FakeSequentialFileFactory();
+
+      AddressSettings addressSettings = new AddressSettings();
+      addressSettings.setAddressFullMessagePolicy(AddressFullMessagePolicy.PAGE);
+
+      final List<Long> deletedIncrements = new ArrayList<Long>();
+
+      final AtomicInteger failedCommits = new AtomicInteger(1);
+
+      StorageManager storageManager = new FakeStorageManager()
+      {
+         @Override
+         public void deleteIncrementRecord(final long txID, final long recordID) throws Exception
+         {
+            deletedIncrements.add(recordID);
+         }
+
+         @Override
+         public void commit(final long txID) throws Exception
+         {
+            if (failedCommits.getAndDecrement() > 0)
+            {
+               throw new IllegalStateException("commit failure");
+            }
+         }
+      };
+
+      PagingStore storeImpl = new PagingStoreImpl(PagingStoreImplTest.destinationTestName,
+                                                  null,
+                                                  100,
+                                                  createMockManager(),
+                                                  storageManager,
+                                                  factory,
+                                                  null,
+                                                  PagingStoreImplTest.destinationTestName,
+                                                  addressSettings,
+                                                  getExecutorFactory().getExecutor(),
+                                                  true);
+
+      storeImpl.start();
+
+      PageCursorProvider cursorProvider = storeImpl.getCursorProvier();
+
+      PageSubscriptionCounter counter = cursorProvider.createSubscription(1, null, true).getCounter();
+
+      counter.addInc(10, 1);
+      counter.addInc(11, 1);
+
+      // the failed snapshot is rolled back, so the increment records are still on the journal
+      cursorProvider.snapshotCounters();
+
+      Assert.assertEquals(Arrays.asList(10L, 11L), deletedIncrements);
+
+      counter.addInc(12, 1);
+
+      deletedIncrements.clear();
+
+      cursorProvider.snapshotCounters();
+
+      Assert.assertEquals(Arrays.asList(10L, 11L, 12L), deletedIncrements);
+
+      deletedIncrements.clear();
+
+      // the committed snapshot replaced them
+      cursorProvider.snapshotCounters();
+
+      Assert.assertTrue(deletedIncrements.isEmpty());
+
+      Assert.assertEquals(3, counter.getValue());
+
+      storeImpl.stop();
+   }
+
+   public void testReadAheadLoadsNextPage() throws Exception
+   {
+      SequentialFileFactory factory = new FakeSequentialFileFactory();
+      SimpleString destination = new SimpleString("test");
+
+      AddressSettings addressSettings = new AddressSettings();
+      addressSettings.setAddressFullMessagePolicy(AddressFullMessagePolicy.PAGE);
+
+      ScheduledExecutorService scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+
+      try
+      {
+         PagingStore storeImpl = new PagingStoreImpl(PagingStoreImplTest.destinationTestName,
+                                                     null,
+                                                     100,
+                                                     createMockManager(),
+                                                     new FakeStorageManager(),
+                                                     factory,
+                                                     null,
+                                                     PagingStoreImplTest.destinationTestName,
+                                                     addressSettings,
+                                                     getExecutorFactory().getExecutor(),
+                                                     true);
+
+         storeImpl.start();
+
+         storeImpl.startPaging();
+
+         RoutingContext ctx = new RoutingContextImpl(null);
+         ctx.addQueue(destination, createPagingQueue(storeImpl, destination, scheduledExecutor));
+
+         // 3 pages of 10 messages, the last one is the live page
+         for (int i = 0; i < 30; i++)
+         {
+            if (i > 0 && i % 10 == 0)
+            {
+               storeImpl.forceAnotherPage();
+            }
+
+            ServerMessage msg = createMessage(i, storeImpl, destination, createRandomBuffer(i, 10));
+
+            Assert.assertTrue(storeImpl.page(msg, ctx, ctx.getContextListing(destination)));
+         }
+
+         storeImpl.stop();
+
+         // restarted, so none of the pages is in the cache
+         storeImpl = new PagingStoreImpl(PagingStoreImplTest.destinationTestName,
+                                         null,
+                                         100,
+                                         createMockManager(),
+                                         new FakeStorageManager(),
+                                         factory,
+                                         null,
+                                         PagingStoreImplTest.destinationTestName,
+                                         addressSettings,
+                                         getExecutorFactory().getExecutor(),
+                                         true);
+
+         storeImpl.start();
+
+         PageCursorProvider cursorProvider = storeImpl.getCursorProvier();
+
+         cursorProvider.setReadAhead(1);
+         cursorProvider.setReadAheadThreshold(0.5);
+
+         Queue queue = createPagingQueue(storeImpl, destination, scheduledExecutor);
+
+         LinkedListIterator<PagedReference> iterator = queue.getPageSubscription().iterator();
+
+         // going through the first half of the first page doesn't read the next one
+         for (int i = 0; i < 4; i++)
+         {
+            Assert.assertEquals(i, iterator.next().getMessage().getMessageID());
+         }
+
+         cursorProvider.flushExecutors();
+
+         long misses = cursorProvider.getCacheMisses();
+
+         Assert.assertEquals(4, iterator.next().getMessage().getMessageID());
+
+         // the threshold was crossed, the second page is read on the executor
+         cursorProvider.flushExecutors();
+
+         Assert.assertEquals(misses + 1, cursorProvider.getCacheMisses());
+
+         for (int i = 5; i < 20; i++)
+         {
+            Assert.assertEquals(i, iterator.next().getMessage().getMessageID());
+         }
+
+         // the cursor moved into the second page without reading it
+         Assert.assertEquals(misses + 1, cursorProvider.getCacheMisses());
+
+         iterator.close();
+
+         storeImpl.stop();
+      }
+      finally
+      {
+         scheduledExecutor.shutdown();
+      }
+   }
+
    public void testPageWithNIO() throws Exception
    {
       recreateDirectory(getTestDir());
@@ -928,6 +1137,24 @@ public class PagingStoreImplTest extends UnitTestCase
       return msg;
    }
 
+   private Queue createPagingQueue(final PagingStore store,
+                                   final SimpleString destination,
+                                   final ScheduledExecutorService scheduledExecutor)
+   {
+      return new QueueImpl(1,
+                           destination,
+                           destination,
+                           null,
+                           store.getCursorProvier().createSubscription(1, null, true),
+                           true,
+                           false,
+                           scheduledExecutor,
+                           null,
+                           null,
+                           null,
+                           getExecutorFactory().getExecutor());
+   }
+
    protected HornetQBuffer createRandomBuffer(final long id, final int size)
    {
       return RandomUtil.randomBuffer(size, id);
@@ -1090,6 +1317,11 @@ public class PagingStoreImplTest extends UnitTestCase
 
       }
 
+      public void executeRunnableWhenMemoryAvailable(final Runnable runnable)
+      {
+         runnable.run();
+      }
+
       /* (non-Javadoc)
        * @see org.hornetq.core.settings.HierarchicalRepositoryChangeListener#onChange()
        */
@@ -1617,6 +1849,11 @@ public class PagingStoreImplTest extends UnitTestCase
          return 0;
       }
 
+      public long storePageCounterSnapshot(long txID, long[] queueIDs, long[] values) throws Exception
+      {
+         return 0;
+      }
+
       /* (non-Javadoc)
        * @see org.hornetq.core.persistence.StorageManager#deleteIncrementRecord(long, long)
        */
@@ -1755,6 +1992,10 @@ public class PagingStoreImplTest extends UnitTestCase
          
       }
 
+      public void deletePageCompleteTransactional(long txID, long ackID) throws Exception
+      {
+      }
+
       /* (non-Javadoc)
        * @see org.hornetq.core.persistence.StorageManager#deleteCursorAcknowledge(long)
        */
@@ -14,10 +14,12 @@
 package org.hornetq.tests.unit.core.postoffice.impl;
 
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 import javax.transaction.xa.Xid;
 
@@ -26,6 +28,7 @@ import org.hornetq.api.core.HornetQException;
 import org.hornetq.api.core.PropertyConversionException;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.filter.Filter;
+import org.hornetq.core.filter.impl.FilterImpl;
 import org.hornetq.core.message.BodyEncoder;
 import org.hornetq.core.paging.PagingStore;
 import org.hornetq.core.postoffice.Binding;
@@ -83,6 +86,123 @@ public class BindingsImplTest extends UnitTestCase
       }
    }
 
+   public void testSelectorIndexRoutesLikeFullEvaluation() throws Exception
+   {
+      String[] filters = new String[] { null,
+                                        "region = 'EU'",
+                                        "region = 'US'",
+                                        "region IN ('EU', 'APAC')",
+                                        "region = 'EU' OR region = 'US'",
+                                        "price > 10",
+                                        "price BETWEEN 5 AND 15",
+                                        "20 >= price",
+                                        "price = 7",
+                                        "price = 7 AND region = 'EU'",
+                                        "region = 'EU' OR price > 10",
+                                        "region <> 'EU'",
+                                        "region LIKE 'E%'",
+                                        "region = 'EU' AND JMSPriority > 4" };
+
+      BindingsImpl indexed = new BindingsImpl(null, null, null);
+      indexed.setSelectorIndex(true);
+      assertTrue(indexed.isSelectorIndex());
+
+      BindingsImpl notIndexed = new BindingsImpl(null, null, null);
+
+      for (int i = 0; i < filters.length; i++)
+      {
+         indexed.addBinding(new RecordingBinding(i, filters[i]));
+         notIndexed.addBinding(new RecordingBinding(i, filters[i]));
+      }
+
+      String[] regions = new String[] { "EU", "US", "APAC", null };
+      Object[] prices = new Object[] { 7, 7L, 7.0d, 12.5f, 3, 20, null, "7" };
+
+      for (String region : regions)
+      {
+         for (Object price : prices)
+         {
+            for (byte priority = 0; priority < 10; priority += 5)
+            {
+               ServerMessage message = new ServerMessageImpl(1, 100);
+               message.setPriority(priority);
+               if (region != null)
+               {
+                  message.putStringProperty("region", region);
+               }
+               if (price != null)
+               {
+                  message.putObjectProperty("price", price);
+               }
+
+               assertEquals(routedTo(notIndexed, message), routedTo(indexed, message));
+            }
+         }
+      }
+   }
+
+   public void testSelectorIndexRemoveBinding() throws Exception
+   {
+      BindingsImpl bindings = new BindingsImpl(null, null, null);
+
+      RecordingBinding eu = new RecordingBinding(1, "region = 'EU'");
+      RecordingBinding eu2 = new RecordingBinding(2, "region IN ('EU')");
+      RecordingBinding cheap = new RecordingBinding(3, "price < 10");
+
+      bindings.addBinding(eu);
+      bindings.addBinding(eu2);
+
+      // bindings added before the index is enabled are indexed too
+      bindings.setSelectorIndex(true);
+
+      bindings.addBinding(cheap);
+
+      ServerMessage message = new ServerMessageImpl(1, 100);
+      message.putStringProperty("region", "EU");
+      message.putIntProperty("price", 5);
+
+      assertEquals(set(1L, 2L, 3L), routedTo(bindings, message));
+
+      bindings.removeBinding(eu);
+      bindings.removeBinding(cheap);
+
+      assertEquals(set(2L), routedTo(bindings, message));
+
+      bindings.removeBinding(eu2);
+
+      assertEquals(set(), routedTo(bindings, message));
+
+      bindings.setSelectorIndex(false);
+      assertFalse(bindings.isSelectorIndex());
+   }
+
+   private Set<Long> routedTo(final BindingsImpl bindings, final ServerMessage message) throws Exception
+   {
+      for (Binding binding : bindings.getBindings())
+      {
+         ((RecordingBinding)binding).routed = false;
+      }
+
+      bindings.route(message, new RoutingContextImpl(new FakeTransaction()));
+
+      Set<Long> ids = new TreeSet<Long>();
+
+      for (Binding binding : bindings.getBindings())
+      {
+         if (((RecordingBinding)binding).routed)
+         {
+            ids.add(binding.getID());
+         }
+      }
+
+      return ids;
+   }
+
+   private Set<Long> set(final Long... ids)
+   {
+      return new TreeSet<Long>(Arrays.asList(ids));
+   }
+
    private void internalTest(final boolean route) throws Exception
    {
       final FakeBinding fake = new FakeBinding(new SimpleString("a"));
@@ -590,6 +710,12 @@ public class BindingsImplTest extends UnitTestCase
          return null;
       }
 
+      public HornetQBuffer getSharedEncodedBuffer()
+      {
+         // TODO Auto-generated method stub
+         return null;
+      }
+
       public int getEncodeSize()
       {
          // TODO Auto-generated method stub
@@ -1163,6 +1289,40 @@ public class BindingsImplTest extends UnitTestCase
 
    }
 
+   class RecordingBinding extends FakeBinding
+   {
+      final long id;
+
+      final Filter filter;
+
+      boolean routed;
+
+      RecordingBinding(final long id, final String filter) throws Exception
+      {
+         super(new SimpleString("queue" + id));
+         this.id = id;
+         this.filter = FilterImpl.createFilter(filter);
+      }
+
+      @Override
+      public Filter getFilter()
+      {
+         return filter;
+      }
+
+      @Override
+      public long getID()
+      {
+         return id;
+      }
+
+      @Override
+      public void route(final ServerMessage message, final RoutingContext context) throws Exception
+      {
+         routed = true;
+      }
+   }
+
    // Package protected ---------------------------------------------
 
    // Protected -----------------------------------------------------
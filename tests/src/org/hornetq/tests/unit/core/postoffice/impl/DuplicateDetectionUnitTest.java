@@ -336,6 +336,11 @@ public class DuplicateDetectionUnitTest extends ServiceTestBase
       {
       }
 
+      public void executeRunnableWhenMemoryAvailable(final Runnable runnable)
+      {
+         runnable.run();
+      }
+
       /* (non-Javadoc)
        * @see org.hornetq.core.settings.HierarchicalRepositoryChangeListener#onChange()
        */
@@ -13,6 +13,7 @@
 
 package org.hornetq.tests.unit.core.postoffice.impl;
 
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Executor;
@@ -360,6 +361,14 @@ public class FakeQueue implements Queue
       return 0;
    }
 
+   /* (non-Javadoc)
+    * @see org.hornetq.core.server.Queue#getMessageCountNonBlocking()
+    */
+   public long getMessageCountNonBlocking()
+   {
+      return 0;
+   }
+
    /* (non-Javadoc)
     * @see org.hornetq.core.server.Queue#getMessagesAdded()
     */
@@ -1339,6 +1339,158 @@ public class QueueImplTest extends UnitTestCase
 
    }
 
+   public void testExecutorTasksAfterManyAddTail() throws Exception
+   {
+      QueueImpl queue = new QueueImpl(1,
+                                      QueueImplTest.address1,
+                                      QueueImplTest.queue1,
+                                      null,
+                                      false,
+                                      true,
+                                      scheduledExecutor,
+                                      null,
+                                      null,
+                                      null,
+                                      executor);
+
+      final CountDownLatch release = new CountDownLatch(1);
+
+      // holds the executor, so every message is waiting on the same poller when it runs
+      executor.execute(new Runnable()
+      {
+         public void run()
+         {
+            try
+            {
+               release.await();
+            }
+            catch (InterruptedException e)
+            {
+            }
+         }
+      });
+
+      final int numMessages = QueueImpl.MAX_DELIVERIES_IN_LOOP * 2 + 500;
+
+      for (int i = 0; i < numMessages; i++)
+      {
+         queue.addTail(generateReference(queue, i));
+      }
+
+      release.countDown();
+
+      // getMessageCount runs on the executor, after the poller
+      Assert.assertEquals(numMessages, queue.getMessageCount());
+      Assert.assertNotNull(queue.getReference(numMessages - 1));
+   }
+
+   public void testRemoveReferenceWithIDAndChangePriority() throws Exception
+   {
+      QueueImpl queue = new QueueImpl(1,
+                                      QueueImplTest.address1,
+                                      QueueImplTest.queue1,
+                                      null,
+                                      false,
+                                      true,
+                                      scheduledExecutor,
+                                      null,
+                                      null,
+                                      null,
+                                      executor);
+
+      final int numMessages = 10;
+
+      List<MessageReference> refs = new ArrayList<MessageReference>();
+
+      for (int i = 0; i < numMessages; i++)
+      {
+         MessageReference ref = generateReference(queue, i);
+
+         refs.add(ref);
+
+         queue.addHead(ref);
+      }
+
+      Assert.assertSame(refs.get(4), queue.removeReferenceWithID(4));
+      Assert.assertNull(queue.removeReferenceWithID(4));
+      Assert.assertNull(queue.getReference(4));
+
+      Assert.assertTrue(queue.changeReferencePriority(7, (byte)9));
+      Assert.assertFalse(queue.changeReferencePriority(4, (byte)9));
+
+      // The reference is added back asynchronously
+      queue.flushExecutor();
+
+      Assert.assertEquals(9, queue.getReference(7).getMessage().getPriority());
+
+      FakeConsumer consumer = new FakeConsumer();
+
+      queue.addConsumer(consumer);
+
+      queue.deliverNow();
+
+      // The higher priority is delivered first
+      Assert.assertEquals(numMessages - 1, consumer.getReferences().size());
+      Assert.assertSame(refs.get(7), consumer.getReferences().get(0));
+      Assert.assertFalse(consumer.getReferences().contains(refs.get(4)));
+      Assert.assertNull(queue.getReference(7));
+   }
+
+   public void testChangeReferencesPriorityOverManyBatches() throws Exception
+   {
+      QueueImpl queue = new QueueImpl(1,
+                                      QueueImplTest.address1,
+                                      QueueImplTest.queue1,
+                                      null,
+                                      false,
+                                      true,
+                                      scheduledExecutor,
+                                      null,
+                                      null,
+                                      null,
+                                      executor);
+
+      // the queue lock is released between batches, the references changed are only added back at the end
+      final int numMessages = QueueImpl.MAX_DELIVERIES_IN_LOOP * 2 + 500;
+
+      for (int i = 0; i < numMessages; i++)
+      {
+         queue.addTail(generateReference(queue, i));
+      }
+
+      queue.flushExecutor();
+
+      Filter evenFilter = new Filter()
+      {
+         public boolean match(final ServerMessage message)
+         {
+            return message.getMessageID() % 2 == 0;
+         }
+
+         public SimpleString getFilterString()
+         {
+            return null;
+         }
+      };
+
+      Assert.assertEquals(numMessages / 2, queue.changeReferencesPriority(evenFilter, (byte)9));
+
+      Assert.assertEquals(numMessages, queue.getMessageCount());
+
+      // the higher priority comes first, every reference is on the queue once
+      Iterator<MessageReference> iterator = queue.iterator();
+
+      for (int i = 0; i < numMessages; i++)
+      {
+         long expectedID = i < numMessages / 2 ? i * 2 : (i - numMessages / 2) * 2 + 1;
+
+         Assert.assertTrue(iterator.hasNext());
+         Assert.assertEquals(expectedID, iterator.next().getMessage().getMessageID());
+      }
+
+      Assert.assertFalse(iterator.hasNext());
+   }
+
    /**
     * Test the paused and resumed states with async deliveries.
     * @throws Exception
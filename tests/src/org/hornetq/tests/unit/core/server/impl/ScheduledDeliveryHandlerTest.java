@@ -0,0 +1,297 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.unit.core.server.impl;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import junit.framework.Assert;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.server.MessageReference;
+import org.hornetq.core.server.impl.QueueImpl;
+import org.hornetq.core.server.impl.ScheduledDeliveryHandlerImpl;
+import org.hornetq.tests.unit.core.server.impl.fakes.FakeConsumer;
+import org.hornetq.tests.unit.core.server.impl.fakes.FakeFilter;
+import org.hornetq.tests.util.UnitTestCase;
+
+/**
+ * A ScheduledDeliveryHandlerTest
+ */
+public class ScheduledDeliveryHandlerTest extends UnitTestCase
+{
+   // The tests ----------------------------------------------------------------
+
+   private ScheduledExecutorService scheduledExecutor;
+
+   private ExecutorService executor;
+
+   private QueueImpl queue;
+
+   @Override
+   protected void setUp() throws Exception
+   {
+      super.setUp();
+      scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+      executor = Executors.newSingleThreadExecutor();
+      queue = new QueueImpl(1,
+                            new SimpleString("address1"),
+                            new SimpleString("queue1"),
+                            null,
+                            false,
+                            true,
+                            scheduledExecutor,
+                            null,
+                            null,
+                            null,
+                            executor);
+   }
+
+   @Override
+   protected void tearDown() throws Exception
+   {
+      queue.close();
+      scheduledExecutor.shutdownNow();
+      executor.shutdownNow();
+      super.tearDown();
+   }
+
+   public void testNoExecutor() throws Exception
+   {
+      ScheduledDeliveryHandlerImpl handler = new ScheduledDeliveryHandlerImpl(null);
+
+      MessageReference ref = generateReference(queue, 1);
+      ref.setScheduledDeliveryTime(System.currentTimeMillis() + 1000);
+
+      Assert.assertFalse(handler.checkAndSchedule(ref, true));
+      Assert.assertEquals(0, handler.getScheduledCount());
+   }
+
+   public void testNotScheduled() throws Exception
+   {
+      ScheduledDeliveryHandlerImpl handler = new ScheduledDeliveryHandlerImpl(scheduledExecutor);
+
+      Assert.assertFalse(handler.checkAndSchedule(generateReference(queue, 1), true));
+      Assert.assertEquals(0, handler.getScheduledCount());
+   }
+
+   public void testSameSlotDeliveredInOrder() throws Exception
+   {
+      ScheduledDeliveryHandlerImpl handler = new ScheduledDeliveryHandlerImpl(scheduledExecutor, 500);
+
+      long deliveryTime = System.currentTimeMillis() + 500;
+
+      MessageReference[] refs = new MessageReference[10];
+
+      for (int i = 0; i < refs.length; i++)
+      {
+         refs[i] = generateReference(queue, i);
+         refs[i].setScheduledDeliveryTime(deliveryTime);
+         Assert.assertTrue(handler.checkAndSchedule(refs[i], true));
+      }
+
+      Assert.assertEquals(refs.length, handler.getScheduledCount());
+
+      FakeConsumer consumer = new FakeConsumer();
+
+      queue.addConsumer(consumer);
+
+      for (MessageReference ref : refs)
+      {
+         Assert.assertSame(ref, consumer.waitForNextReference(5000));
+         Assert.assertEquals(0, ref.getScheduledDeliveryTime());
+      }
+
+      Assert.assertTrue(System.currentTimeMillis() >= deliveryTime);
+      Assert.assertEquals(0, handler.getScheduledCount());
+      Assert.assertTrue(handler.getScheduledReferences().isEmpty());
+   }
+
+   public void testRemoveReferenceWithID() throws Exception
+   {
+      ScheduledDeliveryHandlerImpl handler = new ScheduledDeliveryHandlerImpl(scheduledExecutor);
+
+      long deliveryTime = System.currentTimeMillis() + 60000;
+
+      for (int i = 0; i < 100; i++)
+      {
+         MessageReference ref = generateReference(queue, i);
+         ref.setScheduledDeliveryTime(deliveryTime + i * 100);
+         handler.checkAndSchedule(ref, true);
+      }
+
+      MessageReference removed = handler.removeReferenceWithID(50);
+      Assert.assertNotNull(removed);
+      Assert.assertEquals(50, removed.getMessage().getMessageID());
+
+      Assert.assertNull(handler.removeReferenceWithID(50));
+      Assert.assertNull(handler.removeReferenceWithID(1000));
+
+      Assert.assertEquals(99, handler.getScheduledCount());
+
+      List<MessageReference> refs = handler.getScheduledReferences();
+      Assert.assertEquals(99, refs.size());
+
+      long lastTime = 0;
+      for (MessageReference ref : refs)
+      {
+         Assert.assertFalse(ref.getMessage().getMessageID() == 50);
+         Assert.assertTrue(ref.getScheduledDeliveryTime() > lastTime);
+         lastTime = ref.getScheduledDeliveryTime();
+      }
+   }
+
+   public void testCancel() throws Exception
+   {
+      ScheduledDeliveryHandlerImpl handler = new ScheduledDeliveryHandlerImpl(scheduledExecutor);
+
+      long deliveryTime = System.currentTimeMillis() + 60000;
+
+      for (int i = 0; i < 10; i++)
+      {
+         MessageReference ref = generateReference(queue, i);
+         ref.getMessage().putStringProperty("even", Boolean.toString(i % 2 == 0));
+         ref.setScheduledDeliveryTime(deliveryTime);
+         handler.checkAndSchedule(ref, true);
+      }
+
+      List<MessageReference> cancelled = handler.cancel(new FakeFilter("even", "true"));
+
+      Assert.assertEquals(5, cancelled.size());
+
+      for (MessageReference ref : cancelled)
+      {
+         Assert.assertEquals(0, ref.getMessage().getMessageID() % 2);
+         Assert.assertNull(handler.removeReferenceWithID(ref.getMessage().getMessageID()));
+      }
+
+      Assert.assertEquals(5, handler.getScheduledCount());
+
+      Assert.assertEquals(5, handler.cancel(null).size());
+
+      Assert.assertEquals(0, handler.getScheduledCount());
+   }
+
+   public void testCancelledSlotIsNotDelivered() throws Exception
+   {
+      ScheduledDeliveryHandlerImpl handler = new ScheduledDeliveryHandlerImpl(scheduledExecutor, 100);
+
+      MessageReference ref = generateReference(queue, 1);
+      ref.setScheduledDeliveryTime(System.currentTimeMillis() + 100);
+      handler.checkAndSchedule(ref, true);
+
+      Assert.assertSame(ref, handler.removeReferenceWithID(1));
+
+      MessageReference ref2 = generateReference(queue, 2);
+      ref2.setScheduledDeliveryTime(System.currentTimeMillis() + 300);
+      handler.checkAndSchedule(ref2, true);
+
+      FakeConsumer consumer = new FakeConsumer();
+
+      queue.addConsumer(consumer);
+
+      Assert.assertSame(ref2, consumer.waitForNextReference(5000));
+      Assert.assertTrue(consumer.getReferences().isEmpty());
+      Assert.assertEquals(0, handler.getScheduledCount());
+   }
+
+   public void testSingleTickTask() throws Exception
+   {
+      ScheduledThreadPoolExecutor tickExecutor = new ScheduledThreadPoolExecutor(1);
+
+      try
+      {
+         ScheduledDeliveryHandlerImpl handler = new ScheduledDeliveryHandlerImpl(tickExecutor);
+
+         long deliveryTime = System.currentTimeMillis() + 60000;
+
+         // Every reference on a different tick, some of them several turns of the wheel ahead
+         for (int i = 0; i < 1000; i++)
+         {
+            MessageReference ref = generateReference(queue, i);
+            ref.setScheduledDeliveryTime(deliveryTime + i * 100);
+            handler.checkAndSchedule(ref, true);
+         }
+
+         Assert.assertEquals(1000, handler.getScheduledCount());
+         Assert.assertEquals(1, tickExecutor.getQueue().size());
+      }
+      finally
+      {
+         tickExecutor.shutdownNow();
+      }
+   }
+
+   public void testSameBucketOnDifferentTurns() throws Exception
+   {
+      ScheduledThreadPoolExecutor tickExecutor = new ScheduledThreadPoolExecutor(1);
+
+      try
+      {
+         ScheduledDeliveryHandlerImpl handler = new ScheduledDeliveryHandlerImpl(tickExecutor, 1);
+
+         long laterTime = System.currentTimeMillis() + ScheduledDeliveryHandlerImpl.WHEEL_SIZE + 300;
+
+         // Both go on the same bucket, one turn of the wheel apart
+         long earlierTime = laterTime - ScheduledDeliveryHandlerImpl.WHEEL_SIZE;
+
+         MessageReference later = generateReference(queue, 1);
+         later.setScheduledDeliveryTime(laterTime);
+         handler.checkAndSchedule(later, true);
+
+         MessageReference earlier = generateReference(queue, 2);
+         earlier.setScheduledDeliveryTime(earlierTime);
+         handler.checkAndSchedule(earlier, true);
+
+         List<MessageReference> refs = handler.getScheduledReferences();
+         Assert.assertSame(earlier, refs.get(0));
+         Assert.assertSame(later, refs.get(1));
+
+         FakeConsumer consumer = new FakeConsumer();
+
+         queue.addConsumer(consumer);
+
+         Assert.assertSame(earlier, consumer.waitForNextReference(5000));
+         Assert.assertTrue(System.currentTimeMillis() >= earlierTime);
+         Assert.assertEquals(1, handler.getScheduledCount());
+
+         Assert.assertSame(later, consumer.waitForNextReference(5000));
+         Assert.assertTrue(System.currentTimeMillis() >= laterTime);
+         Assert.assertEquals(0, handler.getScheduledCount());
+
+         // The tick task is cancelled once nothing is scheduled
+         tickExecutor.purge();
+         Assert.assertEquals(0, tickExecutor.getQueue().size());
+      }
+      finally
+      {
+         tickExecutor.shutdownNow();
+      }
+   }
+
+   public void testInvalidTick() throws Exception
+   {
+      try
+      {
+         new ScheduledDeliveryHandlerImpl(scheduledExecutor, 0);
+         Assert.fail("Exception expected");
+      }
+      catch (IllegalArgumentException expected)
+      {
+      }
+   }
+}
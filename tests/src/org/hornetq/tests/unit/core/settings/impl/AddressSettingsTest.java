@@ -18,6 +18,7 @@ import junit.framework.Assert;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.settings.impl.AddressFullMessagePolicy;
 import org.hornetq.core.settings.impl.AddressSettings;
+import org.hornetq.core.settings.impl.PageCacheEvictionPolicy;
 import org.hornetq.tests.util.UnitTestCase;
 
 /**
@@ -36,6 +37,14 @@ public class AddressSettingsTest extends UnitTestCase
       Assert.assertEquals(AddressSettings.DEFAULT_MESSAGE_COUNTER_HISTORY_DAY_LIMIT,
                           addressSettings.getMessageCounterHistoryDayLimit());
       Assert.assertEquals(AddressSettings.DEFAULT_REDELIVER_DELAY, addressSettings.getRedeliveryDelay());
+      Assert.assertEquals(AddressSettings.DEFAULT_PAGE_CACHE_MAX_BYTES, addressSettings.getPageCacheMaxBytes());
+      Assert.assertEquals(AddressSettings.DEFAULT_PAGE_CACHE_EVICTION_POLICY,
+                          addressSettings.getPageCacheEvictionPolicy());
+      Assert.assertEquals(AddressSettings.DEFAULT_PAGE_READ_AHEAD, addressSettings.getPageReadAhead());
+      Assert.assertEquals(AddressSettings.DEFAULT_PAGE_READ_AHEAD_THRESHOLD,
+                          addressSettings.getPageReadAheadThreshold());
+      Assert.assertEquals(AddressSettings.DEFAULT_PAGE_INDEX, addressSettings.isPageIndex());
+      Assert.assertEquals(AddressSettings.DEFAULT_PAGE_COMPRESS, addressSettings.isPageCompress());
 
    }
 
@@ -53,6 +62,12 @@ public class AddressSettingsTest extends UnitTestCase
       addressSettingsToMerge.setMessageCounterHistoryDayLimit(1002);
       addressSettingsToMerge.setRedeliveryDelay(1003);
       addressSettingsToMerge.setPageSizeBytes(1004);
+      addressSettingsToMerge.setPageCacheMaxBytes(1005);
+      addressSettingsToMerge.setPageCacheEvictionPolicy(PageCacheEvictionPolicy.FURTHEST_NEXT_USE);
+      addressSettingsToMerge.setPageReadAhead(2);
+      addressSettingsToMerge.setPageReadAheadThreshold(0.75);
+      addressSettingsToMerge.setPageIndex(true);
+      addressSettingsToMerge.setPageCompress(true);
       addressSettings.merge(addressSettingsToMerge);
       Assert.assertEquals(addressSettings.getDeadLetterAddress(), DLQ);
       Assert.assertEquals(addressSettings.getExpiryAddress(), exp);
@@ -61,6 +76,12 @@ public class AddressSettingsTest extends UnitTestCase
       Assert.assertEquals(addressSettings.getMessageCounterHistoryDayLimit(), 1002);
       Assert.assertEquals(addressSettings.getRedeliveryDelay(), 1003);
       Assert.assertEquals(addressSettings.getPageSizeBytes(), 1004);
+      Assert.assertEquals(addressSettings.getPageCacheMaxBytes(), 1005);
+      Assert.assertEquals(PageCacheEvictionPolicy.FURTHEST_NEXT_USE, addressSettings.getPageCacheEvictionPolicy());
+      Assert.assertEquals(2, addressSettings.getPageReadAhead());
+      Assert.assertEquals(0.75, addressSettings.getPageReadAheadThreshold());
+      Assert.assertTrue(addressSettings.isPageIndex());
+      Assert.assertTrue(addressSettings.isPageCompress());
       Assert.assertEquals(AddressFullMessagePolicy.DROP, addressSettings.getAddressFullMessagePolicy());
    }
 
@@ -0,0 +1,317 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.unit.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.hornetq.tests.util.UnitTestCase;
+import org.hornetq.utils.ConcurrentLongHashMap;
+
+/**
+ * A ConcurrentLongHashMapTest
+ */
+public class ConcurrentLongHashMapTest extends UnitTestCase
+{
+   // Attributes ----------------------------------------------------
+
+   private ConcurrentLongHashMap<String> map;
+
+   // Public --------------------------------------------------------
+
+   public void testPutGetRemove() throws Exception
+   {
+      Assert.assertNull(map.put(1, "a"));
+      Assert.assertEquals("a", map.put(1, "b"));
+      Assert.assertEquals("b", map.putIfAbsent(1, "c"));
+      Assert.assertNull(map.putIfAbsent(-1, "d"));
+      Assert.assertNull(map.put(0, "e"));
+
+      Assert.assertEquals(3, map.size());
+      Assert.assertEquals("b", map.get(1));
+      Assert.assertEquals("d", map.get(-1));
+      Assert.assertEquals("e", map.get(0));
+      Assert.assertNull(map.get(2));
+      Assert.assertTrue(map.containsKey(0));
+
+      Assert.assertFalse(map.remove(1, "a"));
+      Assert.assertTrue(map.remove(1, "b"));
+      Assert.assertNull(map.remove(1));
+      Assert.assertEquals("d", map.remove(-1));
+      Assert.assertEquals(1, map.size());
+
+      map.clear();
+      Assert.assertTrue(map.isEmpty());
+      Assert.assertNull(map.get(0));
+   }
+
+   public void testNullValue() throws Exception
+   {
+      try
+      {
+         map.put(1, null);
+         Assert.fail("Should throw exception");
+      }
+      catch (NullPointerException e)
+      {
+         // OK
+      }
+   }
+
+   public void testMapInterface() throws Exception
+   {
+      Map<Long, String> asMap = map;
+
+      asMap.put(10l, "a");
+      asMap.put(20l, "b");
+
+      Assert.assertEquals("a", asMap.get(10l));
+      Assert.assertNull(asMap.get("10"));
+      Assert.assertTrue(asMap.containsKey(20l));
+      Assert.assertEquals(2, asMap.keySet().size());
+      Assert.assertTrue(asMap.values().contains("b"));
+
+      Iterator<Long> iterator = asMap.keySet().iterator();
+      long removed = iterator.next();
+      iterator.remove();
+
+      Assert.assertEquals(1, map.size());
+      Assert.assertFalse(map.containsKey(removed));
+   }
+
+   /** Compares with a HashMap after many random operations, so chains are cloned on removals and rehashed */
+   public void testRandomOperations() throws Exception
+   {
+      Map<Long, String> expected = new HashMap<Long, String>();
+
+      Random random = new Random(1234);
+
+      for (int i = 0; i < 200000; i++)
+      {
+         long key = random.nextInt(5000);
+
+         switch (random.nextInt(3))
+         {
+            case 0:
+               Assert.assertEquals(expected.put(key, "v" + i), map.put(key, "v" + i));
+               break;
+            case 1:
+               Assert.assertEquals(expected.remove(key), map.remove(key));
+               break;
+            default:
+               Assert.assertEquals(expected.get(key), map.get(key));
+         }
+      }
+
+      Assert.assertEquals(expected.size(), map.size());
+      Assert.assertEquals(expected, new HashMap<Long, String>(map));
+
+      long[] keys = map.keys();
+      Arrays.sort(keys);
+      Assert.assertEquals(expected.size(), keys.length);
+
+      for (long key : keys)
+      {
+         Assert.assertTrue(expected.containsKey(key));
+      }
+
+      Assert.assertEquals(expected.size(), map.valuesSnapshot().size());
+
+      ConcurrentLongHashMap<String> copy = new ConcurrentLongHashMap<String>();
+      copy.putAll(map);
+      Assert.assertEquals(expected, copy);
+   }
+
+   public void testConcurrentUpdates() throws Exception
+   {
+      final int threads = 8;
+
+      final int keysPerThread = 50000;
+
+      final CountDownLatch start = new CountDownLatch(1);
+
+      final AtomicInteger errors = new AtomicInteger(0);
+
+      Thread[] workers = new Thread[threads];
+
+      for (int t = 0; t < threads; t++)
+      {
+         final long base = (long)t * keysPerThread;
+
+         workers[t] = new Thread()
+         {
+            @Override
+            public void run()
+            {
+               try
+               {
+                  start.await();
+
+                  for (long key = base; key < base + keysPerThread; key++)
+                  {
+                     map.put(key, "v");
+                  }
+
+                  for (long key = base; key < base + keysPerThread; key += 2)
+                  {
+                     if (map.remove(key) == null)
+                     {
+                        errors.incrementAndGet();
+                     }
+                  }
+               }
+               catch (Throwable e)
+               {
+                  e.printStackTrace();
+                  errors.incrementAndGet();
+               }
+            }
+         };
+
+         workers[t].start();
+      }
+
+      start.countDown();
+
+      for (Thread worker : workers)
+      {
+         worker.join();
+      }
+
+      Assert.assertEquals(0, errors.get());
+      Assert.assertEquals(threads * keysPerThread / 2, map.size());
+
+      for (long key = 0; key < threads * keysPerThread; key++)
+      {
+         Assert.assertEquals(key % 2 == 1, map.containsKey(key));
+      }
+   }
+
+   public void testEntryCursor() throws Exception
+   {
+      Map<Long, String> expected = new HashMap<Long, String>();
+
+      for (long key = 0; key < 1000; key++)
+      {
+         map.put(key, "v" + key);
+         expected.put(key, "v" + key);
+      }
+
+      Map<Long, String> iterated = new HashMap<Long, String>();
+
+      ConcurrentLongHashMap.EntryCursor<String> cursor = map.entryCursor();
+
+      while (cursor.next())
+      {
+         Assert.assertNull(iterated.put(cursor.getKey(), cursor.getValue()));
+      }
+
+      Assert.assertFalse(cursor.next());
+      Assert.assertEquals(expected, iterated);
+
+      Assert.assertFalse(new ConcurrentLongHashMap<String>().entryCursor().next());
+   }
+
+   /** Reads don't lock, they must still find every key while other keys are added and removed */
+   public void testReadsDuringUpdates() throws Exception
+   {
+      final int stableKeys = 1000;
+
+      for (long key = 0; key < stableKeys; key++)
+      {
+         map.put(key, "stable");
+      }
+
+      final AtomicInteger errors = new AtomicInteger(0);
+
+      final CountDownLatch done = new CountDownLatch(1);
+
+      Thread writer = new Thread()
+      {
+         @Override
+         public void run()
+         {
+            try
+            {
+               for (int round = 0; round < 20; round++)
+               {
+                  for (long key = stableKeys; key < stableKeys + 20000; key++)
+                  {
+                     map.put(key, "v");
+                  }
+
+                  for (long key = stableKeys; key < stableKeys + 20000; key++)
+                  {
+                     map.remove(key);
+                  }
+               }
+            }
+            catch (Throwable e)
+            {
+               e.printStackTrace();
+               errors.incrementAndGet();
+            }
+            finally
+            {
+               done.countDown();
+            }
+         }
+      };
+
+      writer.start();
+
+      while (done.getCount() > 0)
+      {
+         for (long key = 0; key < stableKeys; key++)
+         {
+            if (!"stable".equals(map.get(key)))
+            {
+               errors.incrementAndGet();
+            }
+         }
+      }
+
+      writer.join();
+
+      Assert.assertEquals(0, errors.get());
+      Assert.assertEquals(stableKeys, map.size());
+   }
+
+   // Package protected ---------------------------------------------
+
+   // Protected -----------------------------------------------------
+
+   @Override
+   protected void setUp() throws Exception
+   {
+      super.setUp();
+
+      map = new ConcurrentLongHashMap<String>();
+   }
+
+   @Override
+   protected void tearDown() throws Exception
+   {
+      map = null;
+
+      super.tearDown();
+   }
+}
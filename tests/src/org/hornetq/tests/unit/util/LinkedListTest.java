@@ -21,6 +21,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 import org.hornetq.core.logging.Logger;
 import org.hornetq.tests.util.UnitTestCase;
+import org.hornetq.utils.IDExtractor;
 import org.hornetq.utils.LinkedListImpl;
 import org.hornetq.utils.LinkedListIterator;
 
@@ -967,6 +968,116 @@ public class LinkedListTest extends UnitTestCase
 
    }
 
+   public void testGetAndRemoveWithID()
+   {
+      LinkedListImpl<Integer> indexed = new LinkedListImpl<Integer>(new IDExtractor<Integer>()
+      {
+         public long getID(final Integer element)
+         {
+            return element;
+         }
+      });
+
+      int num = 10;
+
+      for (int i = 0; i < num; i++)
+      {
+         indexed.addTail(i);
+      }
+
+      LinkedListIterator<Integer> iter = indexed.iterator();
+
+      assertEquals(0, iter.next().intValue());
+      assertEquals(1, iter.next().intValue());
+
+      assertEquals(5, indexed.getWithID(5).intValue());
+      assertNull(indexed.getWithID(num));
+
+      // Removing the current element of an iterator moves it forward
+      assertEquals(1, indexed.removeWithID(1).intValue());
+      assertEquals(5, indexed.removeWithID(5).intValue());
+      assertEquals(9, indexed.removeWithID(9).intValue());
+      assertNull(indexed.removeWithID(5));
+      assertEquals(num - 3, indexed.size());
+
+      assertEquals(2, iter.next().intValue());
+      assertEquals(3, iter.next().intValue());
+      assertEquals(4, iter.next().intValue());
+      assertEquals(6, iter.next().intValue());
+
+      // Elements removed by poll and iterators are removed from the index
+      assertEquals(0, indexed.poll().intValue());
+      assertNull(indexed.getWithID(0));
+      iter.remove();
+      assertNull(indexed.getWithID(6));
+
+      indexed.addHead(6);
+      assertEquals(6, indexed.removeWithID(6).intValue());
+      assertEquals(2, indexed.poll().intValue());
+
+      indexed.clear();
+      assertNull(indexed.getWithID(3));
+
+      iter.close();
+
+      try
+      {
+         list.removeWithID(1);
+         fail("Should throw exception");
+      }
+      catch (IllegalStateException e)
+      {
+         // OK
+      }
+   }
+
+   public void testIndexBuiltOnFirstLookupByID()
+   {
+      final AtomicInteger extracted = new AtomicInteger(0);
+
+      LinkedListImpl<Integer> indexed = new LinkedListImpl<Integer>(new IDExtractor<Integer>()
+      {
+         public long getID(final Integer element)
+         {
+            extracted.incrementAndGet();
+            return element;
+         }
+      });
+
+      int num = 10;
+
+      for (int i = 0; i < num; i++)
+      {
+         indexed.addTail(i);
+      }
+      indexed.addHead(-1);
+      assertEquals(-1, indexed.poll().intValue());
+
+      // Nothing is indexed until the list is looked up by ID
+      assertEquals(0, extracted.get());
+
+      assertEquals(7, indexed.getWithID(7).intValue());
+      assertEquals(num, extracted.get());
+
+      // From then on the index is kept up to date
+      indexed.addTail(num);
+      assertEquals(num, indexed.removeWithID(num).intValue());
+      assertEquals(0, indexed.poll().intValue());
+      assertNull(indexed.getWithID(0));
+
+      // The index is dropped once the list is empty
+      while (indexed.poll() != null)
+      {
+      }
+      extracted.set(0);
+      indexed.addTail(3);
+      indexed.addTail(4);
+      assertEquals(0, extracted.get());
+
+      assertEquals(4, indexed.removeWithID(4).intValue());
+      assertEquals(3, indexed.getWithID(3).intValue());
+   }
+
    public void testMultipleIterators1()
    {
       int num = 10;
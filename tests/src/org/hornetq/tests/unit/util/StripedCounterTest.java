@@ -0,0 +1,103 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.unit.util;
+
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.Assert;
+
+import org.hornetq.tests.util.UnitTestCase;
+import org.hornetq.utils.StripedCounter;
+
+/**
+ * A StripedCounterTest
+ */
+public class StripedCounterTest extends UnitTestCase
+{
+
+   // Public --------------------------------------------------------
+
+   public void testSlack()
+   {
+      StripedCounter counter = new StripedCounter(3, 100);
+
+      Assert.assertEquals(4, counter.getStripes());
+
+      // held on the stripe of this thread
+      Assert.assertEquals(0, counter.add(99));
+      Assert.assertEquals(0, counter.getApproximate());
+      Assert.assertEquals(99, counter.sum());
+
+      // the stripe is folded once over the slack
+      Assert.assertEquals(100, counter.add(1));
+      Assert.assertEquals(100, counter.sum());
+
+      Assert.assertEquals(100, counter.add(-99));
+      Assert.assertEquals(0, counter.add(-1));
+      Assert.assertEquals(0, counter.sum());
+
+      Assert.assertEquals(-150, counter.add(-150));
+   }
+
+   public void testConcurrentAdds() throws Exception
+   {
+      final StripedCounter counter = new StripedCounter(4, 1000);
+
+      final int THREADS = 8;
+
+      final int ADDS = 100000;
+
+      final CountDownLatch start = new CountDownLatch(1);
+
+      Thread[] threads = new Thread[THREADS];
+
+      for (int i = 0; i < THREADS; i++)
+      {
+         final int delta = i % 2 == 0 ? 3 : -1;
+
+         threads[i] = new Thread()
+         {
+            @Override
+            public void run()
+            {
+               try
+               {
+                  start.await();
+               }
+               catch (InterruptedException e)
+               {
+                  return;
+               }
+
+               for (int j = 0; j < ADDS; j++)
+               {
+                  counter.add(delta);
+               }
+            }
+         };
+
+         threads[i].start();
+      }
+
+      start.countDown();
+
+      for (Thread thread : threads)
+      {
+         thread.join();
+      }
+
+      Assert.assertEquals(THREADS / 2 * ADDS * 3 - THREADS / 2 * ADDS, counter.sum());
+      Assert.assertTrue(Math.abs(counter.sum() - counter.getApproximate()) < counter.getStripes() * 1000);
+   }
+}
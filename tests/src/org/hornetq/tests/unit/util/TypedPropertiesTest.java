@@ -236,6 +236,96 @@ public class TypedPropertiesTest extends UnitTestCase
       TypedPropertiesTest.assertEqualsTypeProperties(emptyProps, decodedProps);
    }
 
+   public void testDecodedPropertiesReadFromEncoding() throws Exception
+   {
+      SimpleString bytesKey = RandomUtil.randomSimpleString();
+      byte[] bytes = RandomUtil.randomBytes();
+      SimpleString stringKey = RandomUtil.randomSimpleString();
+      SimpleString string = RandomUtil.randomSimpleString();
+      SimpleString longKey = RandomUtil.randomSimpleString();
+      long longValue = RandomUtil.randomLong();
+      SimpleString nullKey = RandomUtil.randomSimpleString();
+      SimpleString charKey = RandomUtil.randomSimpleString();
+      char charValue = RandomUtil.randomChar();
+
+      props.putBytesProperty(bytesKey, bytes);
+      props.putSimpleStringProperty(stringKey, string);
+      props.putLongProperty(longKey, longValue);
+      props.putSimpleStringProperty(nullKey, null);
+      props.putCharProperty(charKey, charValue);
+
+      HornetQBuffer buffer = HornetQBuffers.dynamicBuffer(1024);
+      props.encode(buffer);
+
+      TypedProperties decodedProps = new TypedProperties();
+      decodedProps.decode(buffer);
+
+      Assert.assertEquals(props.getEncodeSize(), decodedProps.getEncodeSize());
+      Assert.assertEquals(props.getMemoryOffset(), decodedProps.getMemoryOffset());
+
+      UnitTestCase.assertEqualsByteArrays(bytes, decodedProps.getBytesProperty(bytesKey));
+      Assert.assertEquals(string, decodedProps.getSimpleStringProperty(stringKey));
+      Assert.assertEquals(longValue, decodedProps.getLongProperty(longKey).longValue());
+      Assert.assertEquals(charValue, decodedProps.getCharProperty(charKey).charValue());
+      Assert.assertTrue(decodedProps.containsProperty(nullKey));
+      Assert.assertNull(decodedProps.getProperty(nullKey));
+      Assert.assertFalse(decodedProps.containsProperty(key));
+      Assert.assertNull(decodedProps.getProperty(key));
+
+      // the encoding is written back as it was read
+      HornetQBuffer reencoded = HornetQBuffers.dynamicBuffer(1024);
+      decodedProps.encode(reencoded);
+      Assert.assertEquals(buffer.writerIndex(), reencoded.writerIndex());
+      for (int i = 0; i < buffer.writerIndex(); i++)
+      {
+         Assert.assertEquals(buffer.getByte(i), reencoded.getByte(i));
+      }
+
+      // copies share the encoding until they are changed
+      TypedProperties copy = new TypedProperties(decodedProps);
+      copy.removeProperty(stringKey);
+      copy.putIntProperty(key, 10);
+
+      Assert.assertEquals(string, decodedProps.getSimpleStringProperty(stringKey));
+      Assert.assertNull(decodedProps.getProperty(key));
+      Assert.assertNull(copy.getProperty(stringKey));
+      Assert.assertEquals(10, copy.getIntProperty(key).intValue());
+      Assert.assertEquals(longValue, copy.getLongProperty(longKey).longValue());
+
+      TypedPropertiesTest.assertEqualsTypeProperties(props, decodedProps);
+   }
+
+   public void testDecodeManyProperties() throws Exception
+   {
+      for (int i = 0; i < 50; i++)
+      {
+         props.putIntProperty(new SimpleString("key" + i), i);
+      }
+
+      props.putBooleanProperty(new SimpleString("_HQ_internal"), true);
+
+      HornetQBuffer buffer = HornetQBuffers.dynamicBuffer(1024);
+      props.encode(buffer);
+
+      TypedProperties decodedProps = new TypedProperties();
+      decodedProps.decode(buffer);
+
+      Assert.assertTrue(decodedProps.hasInternalProperties());
+
+      for (int i = 0; i < 50; i++)
+      {
+         Assert.assertEquals(i, decodedProps.getIntProperty(new SimpleString("key" + i)).intValue());
+      }
+
+      Assert.assertEquals(0, decodedProps.removeProperty(new SimpleString("key0")));
+      Assert.assertEquals(props.getEncodeSize() - SimpleString.sizeofString(new SimpleString("key0")) - 5,
+                          decodedProps.getEncodeSize());
+
+      buffer.clear();
+      decodedProps.encode(buffer);
+      Assert.assertEquals(decodedProps.getEncodeSize(), buffer.writerIndex());
+   }
+
    @Override
    protected void setUp() throws Exception
    {